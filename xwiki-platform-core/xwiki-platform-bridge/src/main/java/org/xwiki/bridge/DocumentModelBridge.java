@@ -22,6 +22,7 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
 
 /**
  * Exposes methods for accessing Documents. This is temporary until we remodel the Model classes and the Document
@@ -127,6 +128,19 @@
      */
     XDOM getXDOM();
 
+    /**
+     * Same as {@link #getXDOM()} but the returned XDOM might be shared with other callers, so it must not be modified.
+     * Use it when you only need to read the XDOM to avoid copying it.
+     * 
+     * @return the XDOM for the document, which must not be modified
+     * @since 11.5RC1
+     */
+    @Unstable
+    default XDOM getReadOnlyXDOM()
+    {
+        return getXDOM();
+    }
+
     /**
      * @return the document's content author user reference
      * @since 7.2M1
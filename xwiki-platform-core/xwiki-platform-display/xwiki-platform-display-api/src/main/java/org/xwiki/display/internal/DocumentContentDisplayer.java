@@ -277,25 +277,30 @@ protected XDOM display(DocumentModelBridge document, String nameSpace, DocumentD
      */
     private XDOM getContent(DocumentModelBridge document, final DocumentDisplayerParameters parameters)
     {
-        XDOM content = parameters.isContentTranslated() ? getTranslatedContent(document) : document.getXDOM();
+        if (parameters.getSectionId() == null) {
+            return parameters.isContentTranslated() ? getTranslatedContent(document, false) : document.getXDOM();
+        }
+
+        // Only the section is going to be modified so there is no need to copy the whole content
+        XDOM content =
+            parameters.isContentTranslated() ? getTranslatedContent(document, true) : document.getReadOnlyXDOM();
 
-        if (parameters.getSectionId() != null) {
-            HeaderBlock headerBlock =
-                content.getFirstBlock(new CompositeBlockMatcher(new ClassBlockMatcher(HeaderBlock.class),
-                    new BlockMatcher()
+        HeaderBlock headerBlock =
+            content.getFirstBlock(new CompositeBlockMatcher(new ClassBlockMatcher(HeaderBlock.class),
+                new BlockMatcher()
+                {
+                    @Override
+                    public boolean match(Block block)
                     {
-                        @Override
-                        public boolean match(Block block)
-                        {
-                            return ((HeaderBlock) block).getId().equals(parameters.getSectionId());
-                        }
-                    }), Block.Axes.DESCENDANT);
-            if (headerBlock == null) {
-                throw new RuntimeException("Cannot find section [" + parameters.getSectionId() + "] in document ["
-                    + this.defaultEntityReferenceSerializer.serialize(document.getDocumentReference()) + "]");
-            } else {
-                content = new XDOM(headerBlock.getSection().getChildren(), content.getMetaData());
-            }
+                        return ((HeaderBlock) block).getId().equals(parameters.getSectionId());
+                    }
+                }), Block.Axes.DESCENDANT);
+        if (headerBlock == null) {
+            throw new RuntimeException("Cannot find section [" + parameters.getSectionId() + "] in document ["
+                + this.defaultEntityReferenceSerializer.serialize(document.getDocumentReference()) + "]");
+        } else {
+            content = new XDOM(headerBlock.getSection().clone().getChildren(),
+                new MetaData(content.getMetaData().getMetaData()));
         }
 
         return content;
@@ -308,9 +313,11 @@ public boolean match(Block block)
      * we load the current translation from the database/cache and use its content.
      * 
      * @param document the source document
+     * @param readOnly true if the returned XDOM is not going to be modified, in which case the cached XDOM of the
+     *            document is returned instead of a copy
      * @return the translated content of the given document, as XDOM tree
      */
-    private XDOM getTranslatedContent(DocumentModelBridge document)
+    private XDOM getTranslatedContent(DocumentModelBridge document, boolean readOnly)
     {
         try {
             DocumentModelBridge translatedDocument =
@@ -322,7 +329,7 @@ private XDOM getTranslatedContent(DocumentModelBridge document)
                 // The language of the given document doesn't match the context language. Use the translated content.
                 if (document.getSyntax().equals(translatedDocument.getSyntax())) {
                     // Use getXDOM() because it caches the XDOM.
-                    return translatedDocument.getXDOM();
+                    return readOnly ? translatedDocument.getReadOnlyXDOM() : translatedDocument.getXDOM();
                 } else {
                     // If the translated document has a different syntax then we have to parse its content using the
                     // syntax of the given document.
@@ -333,7 +340,7 @@ private XDOM getTranslatedContent(DocumentModelBridge document)
         } catch (Exception e) {
             // Use the content of the given document.
         }
-        return document.getXDOM();
+        return readOnly ? document.getReadOnlyXDOM() : document.getXDOM();
     }
 
     /**
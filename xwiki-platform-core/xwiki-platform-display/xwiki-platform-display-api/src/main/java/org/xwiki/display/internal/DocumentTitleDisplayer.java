@@ -67,13 +67,14 @@ protected XDOM extractTitleFromContent(DocumentModelBridge document, DocumentDis
         // generate headings for example or some other transformations could modify headings. However we don't do this
         // at the moment since it would be too costly to do so. In the future we will even probably remove the feature
         // of generating the title from the content.
+        // The XDOM is only read, only the heading is copied before being transformed.
         List<HeaderBlock> blocks =
-            document.getXDOM().getBlocks(new ClassBlockMatcher(HeaderBlock.class), Block.Axes.DESCENDANT);
+            document.getReadOnlyXDOM().getBlocks(new ClassBlockMatcher(HeaderBlock.class), Block.Axes.DESCENDANT);
         if (!blocks.isEmpty()) {
             HeaderBlock heading = blocks.get(0);
             // Check the heading depth after which we should return null if no heading was found.
             if (heading.getLevel().getAsInt() <= displayConfiguration.getTitleHeadingDepth()) {
-                XDOM headingXDOM = new XDOM(Collections.<Block> singletonList(heading));
+                XDOM headingXDOM = new XDOM(Collections.<Block> singletonList(heading.clone()));
                 try {
                     TransformationContext txContext =
                         new TransformationContext(headingXDOM, document.getSyntax(),
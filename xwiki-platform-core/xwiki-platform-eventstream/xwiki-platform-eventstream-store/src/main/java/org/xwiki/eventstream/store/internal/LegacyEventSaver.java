@@ -22,12 +22,17 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.store.XWikiHibernateStore;
+import com.xpn.xwiki.util.AbstractXWikiRunnable;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.DisposePriority;
+import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.namespace.NamespaceContextExecutor;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.eventstream.Event;
 import org.xwiki.eventstream.events.EventStreamAddedEvent;
 import org.xwiki.model.namespace.WikiNamespace;
@@ -39,23 +44,88 @@
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Save an event into the legacy event store.
+ * <p>
+ * When asynchronous saving is enabled (see {@link LegacyEventStreamStoreConfiguration#isAsynchronous()}) the events
+ * are prepared in the calling thread but saved by a background thread which groups them in one transaction per target
+ * wiki. When such a transaction fails the events are saved again one by one so that a single invalid event does not
+ * prevent the others from being stored, and {@link EventStreamAddedEvent} is only sent for the stored events. The
+ * pending events are saved before the component is disposed.
  *
  * @since 11.1RC1
  * @version $Id$
  */
 @Component(roles = LegacyEventSaver.class)
 @Singleton
-public class LegacyEventSaver
+// We start the disposal a bit earlier because we want the pending events to be saved before the database access is
+// shutdown.
+@DisposePriority(500)
+public class LegacyEventSaver implements Disposable
 {
     /**
      * Key used to store the request ID in the context.
      */
     private static final String GROUP_ID_CONTEXT_KEY = "activitystream_requestid";
 
+    /**
+     * Special entry asking the background thread to stop.
+     */
+    private static final QueueEntry QUEUE_ENTRY_STOP = new QueueEntry(null, null, null);
+
+    private static class QueueEntry
+    {
+        private final Event event;
+
+        private final LegacyEvent legacyEvent;
+
+        private final List<String> wikis;
+
+        private final long date = System.currentTimeMillis();
+
+        QueueEntry(Event event, LegacyEvent legacyEvent, List<String> wikis)
+        {
+            this.event = event;
+            this.legacyEvent = legacyEvent;
+            this.wikis = wikis;
+        }
+    }
+
+    private class Saver extends AbstractXWikiRunnable
+    {
+        @Override
+        protected void runInternal()
+        {
+            logger.debug("Start event stream saver thread");
+
+            boolean stop = false;
+            while (!stop) {
+                try {
+                    stop = saveQueuedEvents();
+                } catch (InterruptedException e) {
+                    logger.warn("The event stream saver thread has been interrupted", e);
+                    Thread.currentThread().interrupt();
+                    stop = true;
+                }
+            }
+
+            logger.debug("Stop event stream saver thread");
+        }
+    }
+
     @Inject
     private LegacyEventConverter eventConverter;
 
@@ -83,6 +153,16 @@
     @Inject
     private NamespaceContextExecutor namespaceContextExecutor;
 
+    private volatile BlockingQueue<QueueEntry> queue;
+
+    private Thread saverThread;
+
+    private volatile boolean disposed;
+
+    private final AtomicLong asynchronousSavedCount = new AtomicLong();
+
+    private volatile long lastAsynchronousLag;
+
     /**
      * Add a new event to the storage.
      *
@@ -97,23 +177,216 @@ public void saveEvent(Event event)
         LegacyEvent legacyEvent = eventConverter.convertEventToLegacyActivity(event);
 
         try {
-            boolean isSavedOnMainStore = false;
+            List<String> wikis = getTargetWikis(legacyEvent);
 
-            if (configuration.useLocalStore()) {
-                // save event into the database where it should be located
-                saveLegacyEvent(legacyEvent, legacyEvent.getWiki());
-                isSavedOnMainStore = wikiDescriptorManager.isMainWiki(legacyEvent.getWiki());
+            // Fallback on synchronous save when the background thread can't keep up
+            if (!configuration.isAsynchronous() || !offer(new QueueEntry(event, legacyEvent, wikis))) {
+                for (String wiki : wikis) {
+                    saveLegacyEvents(Collections.singletonList(legacyEvent), wiki);
+                }
+
+                observationManager.notify(new EventStreamAddedEvent(), event);
             }
+        } catch (Exception e) {
+            logger.error("Failed to save an event in the event stream.", e);
+        }
+    }
+
+    /**
+     * @return the number of events waiting to be saved by the background thread
+     * @since 11.5RC1
+     */
+    public int getPendingEventCount()
+    {
+        BlockingQueue<QueueEntry> currentQueue = this.queue;
+
+        return currentQueue != null ? currentQueue.size() : 0;
+    }
+
+    /**
+     * @return the time in milliseconds the oldest event waiting to be saved by the background thread has been waiting
+     *         for, 0 when there is no pending event
+     * @since 11.5RC1
+     */
+    public long getLag()
+    {
+        BlockingQueue<QueueEntry> currentQueue = this.queue;
+        QueueEntry oldestEntry = currentQueue != null ? currentQueue.peek() : null;
+
+        return oldestEntry != null && oldestEntry != QUEUE_ENTRY_STOP ? System.currentTimeMillis() - oldestEntry.date
+            : 0;
+    }
+
+    /**
+     * @return the time in milliseconds between the moment the last event saved by the background thread was added and
+     *         the moment it was saved
+     * @since 11.5RC1
+     */
+    public long getLastAsynchronousLag()
+    {
+        return this.lastAsynchronousLag;
+    }
+
+    /**
+     * @return the number of events saved by the background thread since it was started
+     * @since 11.5RC1
+     */
+    public long getAsynchronousSavedCount()
+    {
+        return this.asynchronousSavedCount.get();
+    }
+
+    /**
+     * @param legacyEvent the event to save
+     * @return the wikis in which the event should be saved
+     */
+    private List<String> getTargetWikis(LegacyEvent legacyEvent)
+    {
+        List<String> wikis = new ArrayList<>(2);
+
+        boolean isSavedOnMainStore = false;
 
-            if (configuration.useMainStore() && !isSavedOnMainStore) {
-                // save event into the main database (if the event was not already be recorded on the main store,
-                // otherwise we would duplicate the event)
-                saveLegacyEvent(legacyEvent, wikiDescriptorManager.getMainWikiId());
+        if (configuration.useLocalStore()) {
+            // save event into the database where it should be located
+            wikis.add(legacyEvent.getWiki());
+            isSavedOnMainStore = wikiDescriptorManager.isMainWiki(legacyEvent.getWiki());
+        }
+
+        if (configuration.useMainStore() && !isSavedOnMainStore) {
+            // save event into the main database (if the event was not already be recorded on the main store,
+            // otherwise we would duplicate the event)
+            wikis.add(wikiDescriptorManager.getMainWikiId());
+        }
+
+        return wikis;
+    }
+
+    /**
+     * @param entry the event to save in the background thread
+     * @return true if the event has been added to the queue, false if it should be saved synchronously
+     */
+    private synchronized boolean offer(QueueEntry entry)
+    {
+        if (this.disposed) {
+            return false;
+        }
+
+        if (this.saverThread == null) {
+            this.queue = new ArrayBlockingQueue<>(Math.max(configuration.getAsynchronousQueueSize(), 1));
+
+            this.saverThread = new Thread(new Saver(), "Event stream saver");
+            // The JVM should be allowed to shutdown while this thread is running
+            this.saverThread.setDaemon(true);
+            this.saverThread.start();
+        }
+
+        return this.queue.offer(entry);
+    }
+
+    /**
+     * Wait for events and save them, grouped in one transaction per wiki.
+     *
+     * @return true if the thread should stop
+     * @throws InterruptedException when the thread is interrupted while waiting for events
+     */
+    private boolean saveQueuedEvents() throws InterruptedException
+    {
+        QueueEntry entry = this.queue.take();
+
+        int batchSize = configuration.getAsynchronousBatchSize();
+
+        List<QueueEntry> entries = new ArrayList<>();
+        boolean stop = false;
+        do {
+            if (entry == QUEUE_ENTRY_STOP) {
+                // Save what has already been taken before stopping
+                stop = true;
+                break;
             }
 
-            observationManager.notify(new EventStreamAddedEvent(), event);
+            entries.add(entry);
+        } while (entries.size() < batchSize && (entry = this.queue.poll()) != null);
+
+        if (!entries.isEmpty()) {
+            saveEntries(entries);
+        }
+
+        return stop;
+    }
+
+    private void saveEntries(List<QueueEntry> entries)
+    {
+        Map<String, List<QueueEntry>> entriesByWiki = new LinkedHashMap<>();
+        for (QueueEntry entry : entries) {
+            for (String wiki : entry.wikis) {
+                entriesByWiki.computeIfAbsent(wiki, k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        Set<QueueEntry> failedEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<String, List<QueueEntry>> wikiEntries : entriesByWiki.entrySet()) {
+            saveEntries(wikiEntries.getValue(), wikiEntries.getKey(), failedEntries);
+        }
+
+        long now = System.currentTimeMillis();
+        for (QueueEntry entry : entries) {
+            // Only notify about the events which have actually been stored
+            if (!failedEntries.contains(entry)) {
+                try {
+                    observationManager.notify(new EventStreamAddedEvent(), entry.event);
+                } catch (Exception e) {
+                    logger.error("Failed to notify about event [{}] added to the event stream.", entry.event.getId(),
+                        e);
+                }
+            }
+        }
+
+        this.lastAsynchronousLag = now - entries.get(entries.size() - 1).date;
+        this.asynchronousSavedCount.addAndGet(entries.size() - failedEntries.size());
+    }
+
+    private void saveEntries(List<QueueEntry> entries, String wiki, Set<QueueEntry> failedEntries)
+    {
+        try {
+            saveLegacyEvents(entries.stream().map(entry -> entry.legacyEvent).collect(Collectors.toList()), wiki);
         } catch (Exception e) {
-            logger.error("Failed to save an event in the event stream.", e);
+            logger.warn("Failed to save [{}] events in the event stream of wiki [{}], saving them one by one: {}",
+                entries.size(), wiki, ExceptionUtils.getRootCauseMessage(e));
+
+            // Don't lose the whole batch because of a single event
+            for (QueueEntry entry : entries) {
+                try {
+                    saveLegacyEvents(Collections.singletonList(entry.legacyEvent), wiki);
+                } catch (Exception entryException) {
+                    logger.error("Failed to save event [{}] in the event stream of wiki [{}].", entry.event.getId(),
+                        wiki, entryException);
+
+                    failedEntries.add(entry);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        Thread thread;
+        synchronized (this) {
+            // New events will be saved synchronously
+            this.disposed = true;
+
+            thread = this.saverThread;
+        }
+
+        if (thread != null) {
+            // Let the background thread save the pending events before stopping
+            try {
+                this.queue.put(QUEUE_ENTRY_STOP);
+                thread.join();
+            } catch (InterruptedException e) {
+                logger.warn("Interrupted while waiting for the pending events to be saved in the event stream.", e);
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
@@ -174,7 +447,7 @@ private String generateEventId(Event event, XWikiContext context)
         return id;
     }
 
-    private void saveLegacyEvent(LegacyEvent event, String wikiId) throws Exception
+    private void saveLegacyEvents(List<LegacyEvent> events, String wikiId) throws Exception
     {
         namespaceContextExecutor.execute(new WikiNamespace(wikiId),
             () -> {
@@ -183,10 +456,19 @@ private void saveLegacyEvent(LegacyEvent event, String wikiId) throws Exception
                 try {
                     hibernateStore.beginTransaction(context);
                     Session session = hibernateStore.getSession(context);
-                    session.save(event);
+                    for (LegacyEvent event : events) {
+                        session.save(event);
+                    }
                     hibernateStore.endTransaction(context, true);
-                } catch (XWikiException e) {
-                    hibernateStore.endTransaction(context, false);
+                } catch (XWikiException | RuntimeException e) {
+                    try {
+                        hibernateStore.endTransaction(context, false);
+                    } catch (Exception rollbackException) {
+                        logger.debug("Failed to rollback the event stream transaction", rollbackException);
+                    }
+
+                    // Let the caller know the events have not been saved
+                    throw e;
                 }
 
                 return null;
@@ -43,6 +43,8 @@
 
     private static final String DAYS_TO_KEEP_EVENTS = "daystokeepevents";
 
+    private static final String ASYNCHRONOUS = "asynchronous.";
+
     @Inject
     private WikiDescriptorManager wikiDescriptorManager;
 
@@ -104,4 +106,32 @@ public int getNumberOfDaysToKeep()
         return configurationSource.getProperty(PREFERENCE_PREFIX + DAYS_TO_KEEP_EVENTS,
                 legacyConfigurationSource.getProperty(LEGACY_PREFERENCE_PREFIX + DAYS_TO_KEEP_EVENTS, 0));
     }
+
+    /**
+     * @return true if the events should be saved by a background thread instead of the thread which produced them
+     * @since 11.5RC1
+     */
+    public boolean isAsynchronous()
+    {
+        return configurationSource.getProperty(PREFERENCE_PREFIX + ASYNCHRONOUS + "enabled", false);
+    }
+
+    /**
+     * @return the maximum number of events waiting to be saved by the background thread, the events are saved
+     *         synchronously when this limit is reached
+     * @since 11.5RC1
+     */
+    public int getAsynchronousQueueSize()
+    {
+        return configurationSource.getProperty(PREFERENCE_PREFIX + ASYNCHRONOUS + "queueSize", 10000);
+    }
+
+    /**
+     * @return the maximum number of events saved by the background thread in a single transaction
+     * @since 11.5RC1
+     */
+    public int getAsynchronousBatchSize()
+    {
+        return configurationSource.getProperty(PREFERENCE_PREFIX + ASYNCHRONOUS + "batchSize", 100);
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eventstream.store.internal;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import javax.inject.Provider;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.namespace.NamespaceContextExecutor;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.events.EventStreamAddedEvent;
+import org.xwiki.eventstream.internal.DefaultEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.store.XWikiHibernateStore;
+import com.xpn.xwiki.web.Utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link LegacyEventSaver}.
+ *
+ * @version $Id$
+ */
+public class LegacyEventSaverTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<LegacyEventSaver> mocker =
+        new MockitoComponentMockingRule<>(LegacyEventSaver.class);
+
+    private LegacyEventStreamStoreConfiguration configuration;
+
+    private LegacyEventConverter eventConverter;
+
+    private ObservationManager observationManager;
+
+    private XWikiHibernateStore hibernateStore;
+
+    private Session session;
+
+    private final CountDownLatch queued = new CountDownLatch(1);
+
+    private final Map<Event, LegacyEvent> legacyEvents = new HashMap<>();
+
+    @Before
+    public void before() throws Exception
+    {
+        Utils.setComponentManager(this.mocker);
+        this.mocker.registerMockComponent(Execution.class);
+        this.mocker.registerMockComponent(ExecutionContextManager.class);
+
+        this.configuration = this.mocker.getInstance(LegacyEventStreamStoreConfiguration.class);
+        when(this.configuration.useLocalStore()).thenReturn(true);
+        when(this.configuration.getAsynchronousQueueSize()).thenReturn(10);
+        when(this.configuration.getAsynchronousBatchSize()).thenReturn(10);
+
+        WikiDescriptorManager wikiDescriptorManager = this.mocker.getInstance(WikiDescriptorManager.class);
+        when(wikiDescriptorManager.isMainWiki("xwiki")).thenReturn(true);
+
+        this.eventConverter = this.mocker.getInstance(LegacyEventConverter.class);
+        this.observationManager = this.mocker.getInstance(ObservationManager.class);
+
+        XWiki xwiki = mock(XWiki.class);
+        XWikiContext xcontext = new XWikiContext();
+        xcontext.setWiki(xwiki);
+        Provider<XWikiContext> xcontextProvider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+
+        this.hibernateStore = mock(XWikiHibernateStore.class);
+        when(xwiki.getHibernateStore()).thenReturn(this.hibernateStore);
+        this.session = mock(Session.class);
+        when(this.hibernateStore.getSession(xcontext)).thenReturn(this.session);
+
+        NamespaceContextExecutor namespaceContextExecutor = this.mocker.getInstance(NamespaceContextExecutor.class);
+        when(namespaceContextExecutor.execute(any(), any())).then(invocation -> {
+            // Wait for all the events to be queued before saving the first one
+            this.queued.await();
+
+            return invocation.<Callable<?>>getArgument(1).call();
+        });
+    }
+
+    private Event mockEvent(String id) throws Exception
+    {
+        DefaultEvent event = new DefaultEvent();
+        event.setId(id);
+        event.setGroupId("group");
+        event.setUser(new DocumentReference("xwiki", "XWiki", "User"));
+        event.setWiki(new WikiReference("xwiki"));
+        event.setApplication("xwiki");
+        event.setDate(new Date());
+
+        LegacyEvent legacyEvent = new LegacyEvent();
+        legacyEvent.setEventId(id);
+        legacyEvent.setWiki("xwiki");
+        when(this.eventConverter.convertEventToLegacyActivity(event)).thenReturn(legacyEvent);
+        this.legacyEvents.put(event, legacyEvent);
+
+        return event;
+    }
+
+    private LegacyEvent getLegacyEvent(Event event)
+    {
+        return this.legacyEvents.get(event);
+    }
+
+    @Test
+    public void saveEventAsynchronouslyWhenOneEventFails() throws Exception
+    {
+        when(this.configuration.isAsynchronous()).thenReturn(true);
+
+        Event event1 = mockEvent("event1");
+        Event event2 = mockEvent("event2");
+        Event event3 = mockEvent("event3");
+        when(this.session.save(same(getLegacyEvent(event3)))).thenThrow(new HibernateException("invalid event"));
+
+        // The first event is saved alone while the two other ones are saved in the same batch
+        this.mocker.getComponentUnderTest().saveEvent(event1);
+        this.mocker.getComponentUnderTest().saveEvent(event2);
+        this.mocker.getComponentUnderTest().saveEvent(event3);
+        this.queued.countDown();
+
+        // Wait for the pending events to be saved
+        this.mocker.getComponentUnderTest().dispose();
+
+        // The failed batch is saved again one by one
+        verify(this.session, times(2)).save(same(getLegacyEvent(event2)));
+        verify(this.session, times(2)).save(same(getLegacyEvent(event3)));
+        verify(this.hibernateStore, times(2)).endTransaction(any(XWikiContext.class), eq(false));
+
+        // Only the stored events are notified
+        verify(this.observationManager).notify(any(EventStreamAddedEvent.class), same(event1));
+        verify(this.observationManager).notify(any(EventStreamAddedEvent.class), same(event2));
+        verify(this.observationManager, never()).notify(any(EventStreamAddedEvent.class), same(event3));
+
+        assertEquals(2, this.mocker.getComponentUnderTest().getAsynchronousSavedCount());
+    }
+
+    @Test
+    public void saveEventSynchronouslyWhenTheEventFails() throws Exception
+    {
+        this.queued.countDown();
+
+        Event event = mockEvent("event");
+        when(this.session.save(same(getLegacyEvent(event)))).thenThrow(new HibernateException("invalid event"));
+
+        this.mocker.getComponentUnderTest().saveEvent(event);
+
+        verify(this.hibernateStore).endTransaction(any(XWikiContext.class), eq(false));
+        verify(this.observationManager, never()).notify(any(EventStreamAddedEvent.class), same(event));
+    }
+}
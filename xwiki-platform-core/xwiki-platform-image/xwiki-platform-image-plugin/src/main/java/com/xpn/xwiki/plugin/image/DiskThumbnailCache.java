@@ -0,0 +1,256 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Store thumbnails on the file system, with a maximum total size. When the maximum size is reached the least recently
+ * used thumbnails are deleted. The thumbnails survive a restart: the recently used order is restored from the
+ * last modification date of the files, which is updated each time a thumbnail is accessed.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+class DiskThumbnailCache
+{
+    /**
+     * Write the content of a thumbnail.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    interface ThumbnailWriter
+    {
+        /**
+         * @param output the stream where to write the thumbnail
+         * @throws Exception if writing the thumbnail fails
+         */
+        void write(OutputStream output) throws Exception;
+    }
+
+    /**
+     * A stored thumbnail, opened while holding the lock of the cache so that it can still be read even if it's evicted
+     * by a concurrent {@link DiskThumbnailCache#put(String, ThumbnailWriter)} before being streamed.
+     *
+     * @version $Id$
+     */
+    static final class Thumbnail
+    {
+        private final File file;
+
+        private final long size;
+
+        private final FileInputStream stream;
+
+        Thumbnail(File file, long size, FileInputStream stream)
+        {
+            this.file = file;
+            this.size = size;
+            this.stream = stream;
+        }
+
+        /**
+         * @return the file containing the thumbnail, which might not exist anymore if the thumbnail has been evicted
+         */
+        File getFile()
+        {
+            return this.file;
+        }
+
+        /**
+         * @return the size of the thumbnail in bytes
+         */
+        long getSize()
+        {
+            return this.size;
+        }
+
+        /**
+         * @return the opened content of the thumbnail, to be closed by the caller
+         */
+        FileInputStream getStream()
+        {
+            return this.stream;
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiskThumbnailCache.class);
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final File directory;
+
+    private final long maxSize;
+
+    /**
+     * The size of each stored thumbnail, in recently used order.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    /**
+     * @param directory the directory where to store the thumbnails
+     * @param maxSize the maximum total size of the thumbnails in bytes
+     */
+    DiskThumbnailCache(File directory, long maxSize)
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        this.directory.mkdirs();
+
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                if (file.getName().endsWith(TEMPORARY_SUFFIX)) {
+                    // Leftover of a thumbnail which was being written when the server stopped
+                    file.delete();
+                } else {
+                    this.entries.put(file.getName(), file.length());
+                    this.size += file.length();
+                }
+            }
+        }
+
+        evict();
+    }
+
+    /**
+     * @param key the key of the thumbnail
+     * @return the opened thumbnail or {@code null} if it's not stored
+     */
+    synchronized Thumbnail get(String key)
+    {
+        String name = getName(key);
+
+        Long fileSize = this.entries.get(name);
+        if (fileSize != null) {
+            File file = new File(this.directory, name);
+            try {
+                // Open the file while holding the lock so that it cannot be deleted by an eviction before it's read
+                FileInputStream stream = new FileInputStream(file);
+                file.setLastModified(System.currentTimeMillis());
+
+                return new Thumbnail(file, fileSize, stream);
+            } catch (FileNotFoundException e) {
+                // The file has been deleted behind our back
+                this.entries.remove(name);
+                this.size -= fileSize;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param key the key of the thumbnail
+     * @return {@code true} if the thumbnail is stored
+     */
+    synchronized boolean contains(String key)
+    {
+        return this.entries.containsKey(getName(key));
+    }
+
+    /**
+     * Write and store a thumbnail.
+     *
+     * @param key the key of the thumbnail
+     * @param writer used to write the content of the thumbnail
+     * @return the file containing the thumbnail
+     * @throws Exception if writing the thumbnail fails
+     */
+    File put(String key, ThumbnailWriter writer) throws Exception
+    {
+        String name = getName(key);
+        File file = new File(this.directory, name);
+
+        // Write the thumbnail outside of the lock and then move it in place atomically so that readers never see a
+        // partially written file
+        File temporaryFile = File.createTempFile(name, TEMPORARY_SUFFIX, this.directory);
+        try {
+            try (OutputStream output = new FileOutputStream(temporaryFile)) {
+                writer.write(output);
+            }
+
+            synchronized (this) {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+                Long previousSize = this.entries.put(name, file.length());
+                this.size += file.length() - (previousSize != null ? previousSize : 0);
+
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+
+        return file;
+    }
+
+    /**
+     * @return the total size of the stored thumbnails in bytes
+     */
+    synchronized long getSize()
+    {
+        return this.size;
+    }
+
+    private String getName(String key)
+    {
+        return DigestUtils.sha256Hex(key);
+    }
+
+    private synchronized void evict()
+    {
+        Iterator<Map.Entry<String, Long>> iterator = this.entries.entrySet().iterator();
+        while (this.size > this.maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+
+            try {
+                Files.deleteIfExists(new File(this.directory, entry.getKey()).toPath());
+            } catch (IOException e) {
+                LOG.warn("Failed to delete the thumbnail [{}]: {}", entry.getKey(), e.getMessage());
+            }
+
+            this.size -= entry.getValue();
+            iterator.remove();
+        }
+    }
+}
@@ -21,11 +21,21 @@
 
 import java.awt.Image;
 import java.awt.image.RenderedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,11 +44,13 @@
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.environment.Environment;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.api.Api;
 import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
 import com.xpn.xwiki.plugin.XWikiDefaultPlugin;
 import com.xpn.xwiki.plugin.XWikiPluginInterface;
 import com.xpn.xwiki.web.Utils;
@@ -62,11 +74,39 @@ public class ImagePlugin extends XWikiDefaultPlugin
      */
     private static final String PLUGIN_NAME = "image";
 
+    /**
+     * The configuration parameter holding the maximum size (in megabytes) of the thumbnails stored on disk.
+     */
+    private static final String DISK_SIZE_PARAMETER = "xwiki.plugin.image.cache.diskSize";
+
+    /**
+     * The format of the keys used to cache the thumbnails.
+     */
+    private static final String KEY_FORMAT = "%s;%s;%s;%s;%s;%s";
+
+    /**
+     * The format of the keys used to store the thumbnails on disk. The stored thumbnails survive a restart so the key
+     * also contains the date and size of the attachment, which change when the content is replaced without creating a
+     * new version.
+     */
+    private static final String DISK_KEY_FORMAT = "%s;%s;%s;%s;%s;%s;%s;%s";
+
     /**
      * Cache for already served images.
      */
     private Cache<XWikiAttachment> imageCache;
 
+    /**
+     * Store for already served images, used instead of {@link #imageCache} when
+     * {@code xwiki.plugin.image.cache.diskSize} is configured.
+     */
+    private DiskThumbnailCache diskCache;
+
+    /**
+     * The thumbnails currently being generated, so that concurrent requests for the same thumbnail share the work.
+     */
+    private final ConcurrentMap<String, FutureTask<Object>> pendingThumbnails = new ConcurrentHashMap<>();
+
     /**
      * The size of the cache. This parameter can be configured using the key {@code xwiki.plugin.image.cache.capacity}.
      */
@@ -137,7 +177,11 @@ public void init(XWikiContext context)
      */
     private void initCache(XWikiContext context)
     {
-        if (this.imageCache == null) {
+        if (this.diskCache == null) {
+            initDiskCache(context);
+        }
+
+        if (this.diskCache == null && this.imageCache == null) {
             CacheConfiguration configuration = new CacheConfiguration();
 
             configuration.setConfigurationId("xwiki.plugin.image");
@@ -166,6 +210,26 @@ private void initCache(XWikiContext context)
         }
     }
 
+    /**
+     * Tries to initialize the disk thumbnail store, if enabled with {@code xwiki.plugin.image.cache.diskSize}. If the
+     * initialization fails the disk store remains {@code null} and the in-memory cache is used instead.
+     *
+     * @param context the XWiki context
+     */
+    private void initDiskCache(XWikiContext context)
+    {
+        long diskSize = context.getWiki().ParamAsLong(DISK_SIZE_PARAMETER, 0);
+        if (diskSize > 0) {
+            try {
+                File directory = new File(Utils.getComponent(Environment.class).getPermanentDirectory(),
+                    "cache/image/thumbnails");
+                this.diskCache = new DiskThumbnailCache(directory, diskSize * 1024 * 1024);
+            } catch (Exception e) {
+                LOG.error("Error initializing the image disk cache, falling back on the memory cache.", e);
+            }
+        }
+    }
+
     @Override
     public void flushCache()
     {
@@ -173,6 +237,9 @@ public void flushCache()
             this.imageCache.dispose();
         }
         this.imageCache = null;
+
+        // The thumbnails stored on disk are bound to an attachment version so there is no need to remove them
+        this.diskCache = null;
     }
 
     /**
@@ -249,9 +316,14 @@ private XWikiAttachment downloadImage(XWikiAttachment image, int width, int heig
 
         boolean keepAspectRatio = Boolean.valueOf(context.getRequest().getParameter("keepAspectRatio"));
 
-        XWikiAttachment thumbnail = (this.imageCache == null)
-            ? shrinkImage(image, width, height, keepAspectRatio, quality, context)
-            : downloadImageFromCache(image, width, height, keepAspectRatio, quality, context);
+        XWikiAttachment thumbnail;
+        if (this.diskCache != null) {
+            thumbnail = downloadImageFromDisk(image, width, height, keepAspectRatio, quality, context);
+        } else if (this.imageCache != null) {
+            thumbnail = downloadImageFromCache(image, width, height, keepAspectRatio, quality, context);
+        } else {
+            thumbnail = shrinkImage(image, width, height, keepAspectRatio, quality, context);
+        }
 
         // If the image has been transformed, update the file name extension to match the image format.
         String fileName = thumbnail.getFilename();
@@ -281,17 +353,117 @@ private XWikiAttachment downloadImageFromCache(XWikiAttachment image, int width,
         boolean keepAspectRatio, float quality, XWikiContext context) throws Exception
     {
         String key =
-            String.format("%s;%s;%s;%s;%s;%s", image.getId(), image.getVersion(), width, height, keepAspectRatio,
-                quality);
+            String.format(KEY_FORMAT, image.getId(), image.getVersion(), width, height, keepAspectRatio, quality);
 
         XWikiAttachment thumbnail = this.imageCache.get(key);
         if (thumbnail == null) {
-            thumbnail = shrinkImage(image, width, height, keepAspectRatio, quality, context);
-            this.imageCache.set(key, thumbnail);
+            thumbnail = generateOnce(key, () -> {
+                XWikiAttachment shrunk = shrinkImage(image, width, height, keepAspectRatio, quality, context);
+                this.imageCache.set(key, shrunk);
+                return shrunk;
+            });
         }
         return thumbnail;
     }
 
+    /**
+     * Downloads the given image from the disk store. The returned attachment streams its content from the stored
+     * file instead of holding it in memory.
+     *
+     * @param image the image to be downloaded
+     * @param width the desired image width; this value is taken into account only if it is greater than zero and less
+     *            than the current image width
+     * @param height the desired image height; this value is taken into account only if it is greater than zero and less
+     *            than the current image height
+     * @param keepAspectRatio {@code true} to preserve aspect ratio when resizing the image, {@code false} otherwise
+     * @param quality the desired compression quality
+     * @param context the XWiki context
+     * @return the transformed image
+     * @throws Exception if transforming the image fails
+     */
+    private XWikiAttachment downloadImageFromDisk(XWikiAttachment image, int width, int height,
+        boolean keepAspectRatio, float quality, XWikiContext context) throws Exception
+    {
+        // The date and size of the attachment distinguish a content re-uploaded without changing the version
+        String key = String.format(DISK_KEY_FORMAT, image.getReference(), image.getVersion(),
+            image.getDate() != null ? image.getDate().getTime() : 0, image.getLongSize(), width, height,
+            keepAspectRatio, quality);
+
+        DiskThumbnailCache.Thumbnail stored = this.diskCache.get(key);
+        if (stored == null) {
+            generateOnce(key, () -> {
+                // Another request might have stored the thumbnail in the meantime
+                if (!this.diskCache.contains(key)) {
+                    RenderedImage shrunkImage = scaleImage(image, width, height, keepAspectRatio, quality, context);
+
+                    // An empty file indicates that the original image should be served as is
+                    this.diskCache.put(key, output -> {
+                        if (shrunkImage != null) {
+                            this.imageProcessor.writeImage(shrunkImage, image.getMimeType(context),
+                                getQuality(quality), output);
+                        }
+                    });
+                }
+
+                return null;
+            });
+
+            // Each request gets its own opened thumbnail
+            stored = this.diskCache.get(key);
+            if (stored == null) {
+                // Already evicted, the disk store is probably too small
+                return shrinkImage(image, width, height, keepAspectRatio, quality, context);
+            }
+        }
+
+        if (stored.getSize() == 0) {
+            stored.getStream().close();
+
+            return image;
+        }
+
+        XWikiAttachment thumbnail = image.clone();
+        thumbnail.setAttachment_content(new ThumbnailContent(stored));
+        thumbnail.setLongSize(stored.getSize());
+
+        return thumbnail;
+    }
+
+    /**
+     * Executes the passed generator unless the same thumbnail is already being generated, in which case the result of
+     * the running generation is reused.
+     *
+     * @param <T> the type of the generated thumbnail
+     * @param key the key of the thumbnail
+     * @param generator generates the thumbnail
+     * @return the generated thumbnail
+     * @throws Exception if generating the thumbnail fails
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T generateOnce(String key, Callable<T> generator) throws Exception
+    {
+        FutureTask<Object> task = new FutureTask<>(generator::call);
+        FutureTask<Object> pendingTask = this.pendingThumbnails.putIfAbsent(key, task);
+        if (pendingTask == null) {
+            pendingTask = task;
+            try {
+                task.run();
+            } finally {
+                this.pendingThumbnails.remove(key, task);
+            }
+        }
+
+        try {
+            return (T) pendingTask.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
     /**
      * Reduces the size (i.e. the number of bytes) of an image by scaling its width and height and by reducing its
      * compression quality. This helps decreasing the time needed to download the image attachment.
@@ -312,26 +484,14 @@ private XWikiAttachment downloadImageFromCache(XWikiAttachment image, int width,
     private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWidth, int requestedHeight,
         boolean keepAspectRatio, float requestedQuality, XWikiContext context) throws Exception
     {
-        Image image = this.imageProcessor.readImage(attachment.getContentInputStream(context));
-
-        // Compute the new image dimension.
-        int currentWidth = image.getWidth(null);
-        int currentHeight = image.getHeight(null);
-        int[] dimensions =
-            reduceImageDimensions(currentWidth, currentHeight, requestedWidth, requestedHeight, keepAspectRatio);
+        RenderedImage shrunkImage =
+            scaleImage(attachment, requestedWidth, requestedHeight, keepAspectRatio, requestedQuality, context);
 
-        float quality = requestedQuality;
-        if (quality < 0) {
-            // If no scaling is needed and the quality parameter is not specified, return the original image.
-            if (dimensions[0] == currentWidth && dimensions[1] == currentHeight) {
-                return attachment;
-            }
-            quality = this.defaultQuality;
+        // If no scaling is needed and the quality parameter is not specified, return the original image.
+        if (shrunkImage == null) {
+            return attachment;
         }
 
-        // Scale the image to the new dimensions.
-        RenderedImage shrunkImage = this.imageProcessor.scaleImage(image, dimensions[0], dimensions[1]);
-
         // Create an image attachment for the shrunk image.
         XWikiAttachment thumbnail = (XWikiAttachment) attachment.clone();
         thumbnail.loadAttachmentContent(context);
@@ -339,7 +499,7 @@ private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWid
         OutputStream acos = thumbnail.getAttachment_content().getContentOutputStream();
         this.imageProcessor.writeImage(shrunkImage,
             attachment.getMimeType(context),
-            quality,
+            getQuality(requestedQuality),
             acos);
 
         IOUtils.closeQuietly(acos);
@@ -347,6 +507,49 @@ private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWid
         return thumbnail;
     }
 
+    /**
+     * Scales the given image to the requested dimensions.
+     *
+     * @param attachment the image to be scaled
+     * @param requestedWidth the desired image width; this value is taken into account only if it is greater than zero
+     *            and less than the current image width
+     * @param requestedHeight the desired image height; this value is taken into account only if it is greater than zero
+     *            and less than the current image height
+     * @param keepAspectRatio {@code true} to preserve the image aspect ratio even when both requested dimensions are
+     *            properly specified, {@code false} otherwise
+     * @param requestedQuality the desired compression quality
+     * @param context the XWiki context
+     * @return the scaled image or {@code null} if no scaling is needed and the quality is not specified
+     * @throws Exception if scaling the image fails
+     */
+    private RenderedImage scaleImage(XWikiAttachment attachment, int requestedWidth, int requestedHeight,
+        boolean keepAspectRatio, float requestedQuality, XWikiContext context) throws Exception
+    {
+        Image image = this.imageProcessor.readImage(attachment.getContentInputStream(context));
+
+        // Compute the new image dimension.
+        int currentWidth = image.getWidth(null);
+        int currentHeight = image.getHeight(null);
+        int[] dimensions =
+            reduceImageDimensions(currentWidth, currentHeight, requestedWidth, requestedHeight, keepAspectRatio);
+
+        if (requestedQuality < 0 && dimensions[0] == currentWidth && dimensions[1] == currentHeight) {
+            return null;
+        }
+
+        // Scale the image to the new dimensions.
+        return this.imageProcessor.scaleImage(image, dimensions[0], dimensions[1]);
+    }
+
+    /**
+     * @param requestedQuality the requested compression quality
+     * @return the compression quality to use
+     */
+    private float getQuality(float requestedQuality)
+    {
+        return requestedQuality < 0 ? this.defaultQuality : requestedQuality;
+    }
+
     /**
      * Computes the new image dimension which:
      * <ul>
@@ -425,4 +628,74 @@ public int getHeight(XWikiAttachment attachment, XWikiContext context) throws IO
     {
         return this.imageProcessor.readImage(attachment.getContentInputStream(context)).getHeight(null);
     }
+
+    /**
+     * The content of a thumbnail stored on disk. The file is opened when the thumbnail is retrieved from the disk store
+     * and all the reads go through it, so that the thumbnail can still be served if it's evicted in the meantime. The
+     * file is closed by {@link #close()}, once the thumbnail has been served.
+     *
+     * @version $Id$
+     */
+    private static class ThumbnailContent extends XWikiAttachmentContent implements Closeable
+    {
+        private final long size;
+
+        private final FileInputStream stream;
+
+        ThumbnailContent(DiskThumbnailCache.Thumbnail thumbnail)
+        {
+            this.size = thumbnail.getSize();
+            this.stream = thumbnail.getStream();
+        }
+
+        ThumbnailContent(ThumbnailContent content)
+        {
+            super(content);
+
+            this.size = content.size;
+            this.stream = content.stream;
+        }
+
+        @Override
+        public ThumbnailContent clone()
+        {
+            return new ThumbnailContent(this);
+        }
+
+        @Override
+        @Deprecated
+        public byte[] getContent()
+        {
+            try (InputStream input = getContentInputStream()) {
+                return IOUtils.toByteArray(input);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to load the thumbnail content", e);
+            }
+        }
+
+        @Override
+        public InputStream getContentInputStream()
+        {
+            try {
+                // Each read (e.g. each requested byte range) starts from the beginning of the opened file
+                this.stream.getChannel().position(0);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read the thumbnail content", e);
+            }
+
+            return new CloseShieldInputStream(this.stream);
+        }
+
+        @Override
+        public long getLongSize()
+        {
+            return this.size;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.stream.close();
+        }
+    }
 }
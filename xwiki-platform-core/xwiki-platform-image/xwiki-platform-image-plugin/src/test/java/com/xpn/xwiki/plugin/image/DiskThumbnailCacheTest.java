@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link DiskThumbnailCache}.
+ *
+ * @version $Id$
+ */
+public class DiskThumbnailCacheTest
+{
+    private File directory = new File("target/test-thumbnails");
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    @Test
+    public void putAndGet() throws Exception
+    {
+        DiskThumbnailCache cache = new DiskThumbnailCache(this.directory, 10);
+
+        assertNull(cache.get("key"));
+
+        File file = cache.put("key", output -> output.write(new byte[] { 1, 2, 3 }));
+
+        assertEquals(3, file.length());
+        DiskThumbnailCache.Thumbnail thumbnail = cache.get("key");
+        try (InputStream stream = thumbnail.getStream()) {
+            assertEquals(file, thumbnail.getFile());
+            assertEquals(3, thumbnail.getSize());
+            assertArrayEquals(new byte[] { 1, 2, 3 }, IOUtils.toByteArray(stream));
+        }
+        assertEquals(3, cache.getSize());
+        assertTrue(cache.contains("key"));
+    }
+
+    @Test
+    public void readEvictedThumbnail() throws Exception
+    {
+        DiskThumbnailCache cache = new DiskThumbnailCache(this.directory, 4);
+
+        cache.put("first", output -> output.write(new byte[] { 1, 2, 3, 4 }));
+        DiskThumbnailCache.Thumbnail thumbnail = cache.get("first");
+
+        // Evict the thumbnail before it's read
+        cache.put("second", output -> output.write(new byte[4]));
+        assertFalse(cache.contains("first"));
+
+        try (InputStream stream = thumbnail.getStream()) {
+            assertArrayEquals(new byte[] { 1, 2, 3, 4 }, IOUtils.toByteArray(stream));
+        }
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception
+    {
+        DiskThumbnailCache cache = new DiskThumbnailCache(this.directory, 10);
+
+        cache.put("first", output -> output.write(new byte[4]));
+        cache.put("second", output -> output.write(new byte[4]));
+        cache.get("first").getStream().close();
+        cache.put("third", output -> output.write(new byte[4]));
+
+        assertTrue(cache.contains("first"));
+        assertFalse(cache.contains("second"));
+        assertTrue(cache.contains("third"));
+        assertEquals(8, cache.getSize());
+    }
+
+    @Test
+    public void restoreAfterRestart() throws Exception
+    {
+        new DiskThumbnailCache(this.directory, 10).put("key", output -> output.write(new byte[4]));
+
+        DiskThumbnailCache cache = new DiskThumbnailCache(this.directory, 10);
+
+        assertTrue(cache.contains("key"));
+        assertEquals(4, cache.getSize());
+    }
+}
@@ -22,27 +22,38 @@
 import java.awt.Image;
 import java.awt.image.RenderedImage;
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheManager;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.DocumentReference;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiAttachmentContent;
+import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.test.MockitoOldcore;
 import com.xpn.xwiki.test.junit5.mockito.InjectMockitoOldcore;
 import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
 import com.xpn.xwiki.web.XWikiServletRequest;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Unit tests for the {@link ImagePlugin} class.
@@ -165,4 +176,62 @@ public void testCacheOfScaledAttachment() throws Exception
             "image/png", .5F, attachmentOutputStream);
         Mockito.verify(imageCache, Mockito.times(1)).set(cacheKey, attachment);
     }
+
+    @Test
+    public void downloadDiskCachedThumbnail() throws Exception
+    {
+        XWikiContext xcontext = this.oldCore.getXWikiContext();
+
+        File directory = new File("target/test-image-plugin");
+        FileUtils.deleteDirectory(directory);
+        Environment environment = this.oldCore.getMocker().registerMockComponent(Environment.class);
+        Mockito.when(environment.getPermanentDirectory()).thenReturn(directory);
+        Mockito.when(environment.getTemporaryDirectory()).thenReturn(directory);
+        Mockito.doReturn(1L).when(this.oldCore.getSpyXWiki()).ParamAsLong("xwiki.plugin.image.cache.diskSize", 0);
+
+        XWikiAttachment attachment =
+            new XWikiAttachment(new XWikiDocument(new DocumentReference("wiki", "Space", "Page")), "image.png");
+        attachment.setMimeType("image/png");
+        attachment.setContent(new ByteArrayInputStream(IMAGE_CONTENT));
+
+        XWikiServletRequest request = Mockito.mock(XWikiServletRequest.class);
+        Mockito.when(request.getParameter("width")).thenReturn("30");
+        xcontext.setRequest(request);
+
+        Image image = Mockito.mock(Image.class);
+        Mockito.when(image.getWidth(null)).thenReturn(400);
+        Mockito.when(image.getHeight(null)).thenReturn(300);
+        Mockito.when(this.imageProcessor.readImage(ArgumentMatchers.any(InputStream.class))).thenReturn(image);
+        RenderedImage renderedImage = Mockito.mock(RenderedImage.class);
+        Mockito.when(this.imageProcessor.scaleImage(image, 30, 22)).thenReturn(renderedImage);
+        byte[] thumbnailContent = new byte[] { 1, 2, 3, 4 };
+        Mockito.doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(3).write(thumbnailContent);
+            return null;
+        }).when(this.imageProcessor).writeImage(ArgumentMatchers.eq(renderedImage), ArgumentMatchers.eq("image/png"),
+            ArgumentMatchers.anyFloat(), ArgumentMatchers.any(OutputStream.class));
+
+        // Store the thumbnail
+        XWikiAttachment thumbnail = this.plugin.downloadAttachment(attachment, xcontext);
+        ((Closeable) thumbnail.getAttachment_content()).close();
+
+        // Served from the disk store
+        thumbnail = this.plugin.downloadAttachment(attachment, xcontext);
+        XWikiAttachmentContent content = thumbnail.getAttachment_content();
+
+        Mockito.verify(this.imageProcessor, Mockito.times(1)).scaleImage(image, 30, 22);
+        assertEquals(4, thumbnail.getLongSize());
+        // The content must be read through the opened file
+        assertNull(content.getContentFile());
+
+        // The thumbnail is still served after being evicted, as many times as needed (e.g. for several byte ranges)
+        FileUtils.cleanDirectory(new File(directory, "cache/image/thumbnails"));
+        assertArrayEquals(thumbnailContent, IOUtils.toByteArray(thumbnail.getContentInputStream(xcontext)));
+        try (InputStream stream = thumbnail.getContentInputStream(xcontext)) {
+            assertArrayEquals(thumbnailContent, IOUtils.toByteArray(stream));
+        }
+
+        ((Closeable) content).close();
+        assertThrows(RuntimeException.class, () -> content.getContentInputStream());
+    }
 }
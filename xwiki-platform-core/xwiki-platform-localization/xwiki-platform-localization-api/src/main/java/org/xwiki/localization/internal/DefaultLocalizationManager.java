@@ -19,6 +19,7 @@
  */
 package org.xwiki.localization.internal;
 
+import java.util.Collection;
 import java.util.Locale;
 
 import javax.inject.Inject;
@@ -71,7 +72,20 @@ public class DefaultLocalizationManager implements LocalizationManager
     @Override
     public Translation getTranslation(String key, Locale locale)
     {
-        for (TranslationBundle bundle : this.bundleContext.getBundles()) {
+        Collection<TranslationBundle> bundles = this.bundleContext.getBundles();
+
+        // The bundles shared by the contexts of a wiki remember the translations already resolved through them
+        if (bundles instanceof IndexedTranslationBundles && key != null && locale != null) {
+            return ((IndexedTranslationBundles) bundles).getTranslation(key, locale,
+                (indexKey, indexLocale) -> getTranslation(bundles, indexKey, indexLocale));
+        }
+
+        return getTranslation(bundles, key, locale);
+    }
+
+    private Translation getTranslation(Collection<TranslationBundle> bundles, String key, Locale locale)
+    {
+        for (TranslationBundle bundle : bundles) {
             try {
                 Translation translation = bundle.getTranslation(key, locale);
                 if (translation != null && translation.getLocale().equals(locale)) {
@@ -85,7 +99,7 @@ public Translation getTranslation(String key, Locale locale)
         // Try parent locale
         Locale parentLocale = LocaleUtils.getParentLocale(locale);
         if (parentLocale != null) {
-            return getTranslation(key, parentLocale);
+            return getTranslation(bundles, key, parentLocale);
         }
 
         return null;
@@ -19,12 +19,14 @@
  */
 package org.xwiki.localization.internal;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -35,6 +37,9 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.NamespacedComponentManager;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.localization.TranslationBundle;
@@ -42,22 +47,39 @@
 import org.xwiki.model.EntityType;
 import org.xwiki.model.ModelContext;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.ComponentDescriptorAddedEvent;
+import org.xwiki.observation.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.observation.event.Event;
 
 /**
  * Default implementation of {@link TranslationBundleContext}.
+ * <p>
+ * The bundles registered as components for a wiki (and the root ones) are shared between all the execution contexts
+ * targeting this wiki (along with an index of the translations they provide) until a bundle is registered,
+ * unregistered or updated. Once bundles have been registered for a more specific namespace (user, space or document)
+ * the bundles of each context are looked up again and the shared ones are only used when they are the same. A context
+ * gets its own copy as soon as a bundle is added to it with {@link #addBundle(TranslationBundle)}.
  *
  * @version $Id$
  * @since 4.3M2
  */
 @Component
 @Singleton
-public class DefaultTranslationBundleContext implements TranslationBundleContext
+public class DefaultTranslationBundleContext implements TranslationBundleContext, Initializable
 {
     /**
      * The key associated to the list of bundles in the {@link ExecutionContext}.
      */
     public static final String CKEY_BUNDLES = "localization.bundles";
 
+    private static final String WIKI_NAMESPACE_PREFIX = "wiki:";
+
+    private static final List<Event> EVENTS =
+        Arrays.<Event>asList(new ComponentDescriptorAddedEvent(TranslationBundle.class),
+            new ComponentDescriptorRemovedEvent(TranslationBundle.class), new TranslationBundleUpdatedEvent());
+
     /**
      * Used to access the current context.
      */
@@ -71,6 +93,13 @@ public class DefaultTranslationBundleContext implements TranslationBundleContext
     @Named("context")
     private Provider<ComponentManager> componentManagerProvider;
 
+    /**
+     * Used to access Bundles registered as components for the current wiki or the root namespace.
+     */
+    @Inject
+    @Named("wiki")
+    private Provider<ComponentManager> wikiComponentManagerProvider;
+
     /**
      * The logger.
      */
@@ -80,12 +109,108 @@ public class DefaultTranslationBundleContext implements TranslationBundleContext
     @Inject
     private ModelContext modelContext;
 
-    private SortedSet<TranslationBundle> initializeCurrentBundles()
+    @Inject
+    private ObservationManager observation;
+
+    /**
+     * The bundles shared by all the contexts, indexed by wiki.
+     */
+    private final Map<String, IndexedTranslationBundles> sharedBundles = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time the bundles change so that bundles looked up before the change are not shared.
+     */
+    private volatile long generation;
+
+    /**
+     * True when bundles have been registered for a namespace more specific than the wiki (user, space or document), in
+     * which case the bundles visible from a wiki also depend on the current user and document.
+     */
+    private volatile boolean contextBundles;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.observation.addListener(new EventListener()
+        {
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                if (event instanceof TranslationBundleUpdatedEvent) {
+                    onBundlesChanged(((TranslationBundleUpdatedEvent) event).getNamespace());
+                } else if (source instanceof NamespacedComponentManager) {
+                    onBundlesChanged(((NamespacedComponentManager) source).getNamespace());
+                } else {
+                    onBundlesChanged(null);
+                }
+            }
+
+            @Override
+            public String getName()
+            {
+                return "localization.bundles.context";
+            }
+
+            @Override
+            public List<Event> getEvents()
+            {
+                return EVENTS;
+            }
+        });
+    }
+
+    /**
+     * @param namespace the namespace in which bundles have been registered, unregistered or updated, null for the root
+     *            namespace
+     */
+    synchronized void onBundlesChanged(String namespace)
+    {
+        ++this.generation;
+
+        if (namespace != null && namespace.startsWith(WIKI_NAMESPACE_PREFIX)) {
+            this.sharedBundles.remove(namespace.substring(WIKI_NAMESPACE_PREFIX.length()));
+        } else {
+            if (namespace != null) {
+                this.contextBundles = true;
+            }
+
+            this.sharedBundles.clear();
+        }
+    }
+
+    private synchronized void share(String wiki, IndexedTranslationBundles bundles, long bundlesGeneration)
+    {
+        // Don't put back bundles which were looked up before they changed
+        if (bundlesGeneration == this.generation) {
+            this.sharedBundles.put(wiki, bundles);
+        }
+    }
+
+    private Collection<TranslationBundle> initializeCurrentBundles(String currentWiki)
+    {
+        IndexedTranslationBundles wikiBundles = this.sharedBundles.get(currentWiki);
+        if (wikiBundles == null) {
+            long bundlesGeneration = this.generation;
+            wikiBundles = new IndexedTranslationBundles(lookupBundles(this.wikiComponentManagerProvider.get()));
+            share(currentWiki, wikiBundles, bundlesGeneration);
+        }
+
+        if (this.contextBundles) {
+            // Add the bundles registered for the current user, space or document
+            SortedSet<TranslationBundle> currentBundles = lookupBundles(this.componentManagerProvider.get());
+            if (currentBundles.size() != wikiBundles.size() || !currentBundles.containsAll(wikiBundles)) {
+                return currentBundles;
+            }
+        }
+
+        return wikiBundles;
+    }
+
+    private SortedSet<TranslationBundle> lookupBundles(ComponentManager componentManager)
     {
         SortedSet<TranslationBundle> currentBundles = new TreeSet<>();
 
         try {
-            ComponentManager componentManager = this.componentManagerProvider.get();
             List<TranslationBundle> availableBundles =
                 componentManager.<TranslationBundle>getInstanceList(TranslationBundle.class);
             currentBundles.addAll(availableBundles);
@@ -99,13 +224,13 @@ private SortedSet<TranslationBundle> initializeCurrentBundles()
     /**
      * @return the current bundles
      */
-    private Map<String, SortedSet<TranslationBundle>> getBundlesInternal()
+    private Map<String, Collection<TranslationBundle>> getBundlesInternal()
     {
-        Map<String, SortedSet<TranslationBundle>> bundles;
+        Map<String, Collection<TranslationBundle>> bundles;
 
         ExecutionContext context = this.execution.getContext();
         if (context != null) {
-            bundles = (Map<String, SortedSet<TranslationBundle>>) context.getProperty(CKEY_BUNDLES);
+            bundles = (Map<String, Collection<TranslationBundle>>) context.getProperty(CKEY_BUNDLES);
 
             if (bundles == null) {
                 // Register the Execution Context property with an empty map that will be populated for each wiki.
@@ -119,15 +244,19 @@ private Map<String, SortedSet<TranslationBundle>> getBundlesInternal()
         return bundles;
     }
 
-    private SortedSet<TranslationBundle> getCurrentBundlesInternal()
+    private Collection<TranslationBundle> getCurrentBundlesInternal()
     {
-        String currentWiki = getCurrentWiki();
-        Map<String, SortedSet<TranslationBundle>> bundlesMap = getBundlesInternal();
-        SortedSet<TranslationBundle> currentBundles = bundlesMap.get(currentWiki);
+        return getCurrentBundlesInternal(getCurrentWiki(), getBundlesInternal());
+    }
+
+    private Collection<TranslationBundle> getCurrentBundlesInternal(String currentWiki,
+        Map<String, Collection<TranslationBundle>> bundlesMap)
+    {
+        Collection<TranslationBundle> currentBundles = bundlesMap.get(currentWiki);
 
         if (currentBundles == null) {
             // The context wiki has changed, initialize the bundles for the new current wiki.
-            currentBundles = initializeCurrentBundles();
+            currentBundles = initializeCurrentBundles(currentWiki);
             bundlesMap.put(currentWiki, currentBundles);
         }
 
@@ -147,7 +276,17 @@ public void addBundle(TranslationBundle bundle)
         // the wiki they were demanded from (i.e. displaying a document from another wiki that includes an onDemand
         // bundle will not affect the bundles of the wiki of the calling document, when the display finishes, so they
         // will be properly isolated. This is valid the other way around as well.)
-        getCurrentBundlesInternal().add(bundle);
+        String currentWiki = getCurrentWiki();
+        Map<String, Collection<TranslationBundle>> bundlesMap = getBundlesInternal();
+        Collection<TranslationBundle> currentBundles = getCurrentBundlesInternal(currentWiki, bundlesMap);
+
+        if (currentBundles instanceof IndexedTranslationBundles) {
+            // Don't modify the bundles shared with other contexts
+            currentBundles = new TreeSet<>(currentBundles);
+            bundlesMap.put(currentWiki, currentBundles);
+        }
+
+        currentBundles.add(bundle);
     }
 
     private String getCurrentWiki()
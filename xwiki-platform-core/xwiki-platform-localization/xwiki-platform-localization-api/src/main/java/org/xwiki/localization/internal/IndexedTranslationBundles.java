@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+import org.xwiki.localization.Translation;
+import org.xwiki.localization.TranslationBundle;
+
+/**
+ * An immutable set of {@link TranslationBundle}s shared by all the execution contexts targeting the same wiki, along
+ * with an index of the translations already resolved through it. The index is built lazily, key by key, since bundles
+ * don't expose the list of keys they provide.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+final class IndexedTranslationBundles extends AbstractCollection<TranslationBundle>
+{
+    /**
+     * The maximum number of indexed keys per locale. The index of a locale is cleared when this limit is reached.
+     */
+    private static final int MAX_KEYS = 10000;
+
+    private final SortedSet<TranslationBundle> bundles;
+
+    private final Map<Locale, Map<String, Translation>> index = new ConcurrentHashMap<>();
+
+    /**
+     * @param bundles the bundles
+     */
+    IndexedTranslationBundles(Collection<TranslationBundle> bundles)
+    {
+        this.bundles = Collections.unmodifiableSortedSet(new TreeSet<>(bundles));
+    }
+
+    /**
+     * @param key the key of the translation
+     * @param locale the locale of the translation
+     * @param resolver used to find the translation in the bundles when it's not yet indexed
+     * @return the translation, null if none could be found
+     */
+    Translation getTranslation(String key, Locale locale, BiFunction<String, Locale, Translation> resolver)
+    {
+        Map<String, Translation> translations = this.index.computeIfAbsent(locale, k -> new ConcurrentHashMap<>());
+
+        Translation translation = translations.get(key);
+        if (translation == null) {
+            translation = resolver.apply(key, locale);
+
+            // Missing translations are not indexed: some bundles don't answer until the wiki is fully initialized and
+            // should be asked again later.
+            if (translation != null) {
+                if (translations.size() >= MAX_KEYS) {
+                    translations.clear();
+                }
+                translations.put(key, translation);
+            }
+        }
+
+        return translation;
+    }
+
+    @Override
+    public Iterator<TranslationBundle> iterator()
+    {
+        return this.bundles.iterator();
+    }
+
+    @Override
+    public int size()
+    {
+        return this.bundles.size();
+    }
+}
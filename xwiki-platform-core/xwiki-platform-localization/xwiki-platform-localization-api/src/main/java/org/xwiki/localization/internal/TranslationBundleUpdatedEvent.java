@@ -0,0 +1,73 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * An event triggered when the translations provided by one or several {@link org.xwiki.localization.TranslationBundle}s
+ * changed without the bundles being registered or unregistered (for example when the document behind a bundle is
+ * modified).
+ * <p>
+ * The event also sends the following parameters:
+ * </p>
+ * <ul>
+ * <li>source: the {@link org.xwiki.localization.TranslationBundle} or the factory which triggered the event</li>
+ * <li>data: null</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class TranslationBundleUpdatedEvent implements Event
+{
+    private final String namespace;
+
+    /**
+     * Matches any update, whatever the impacted namespace.
+     */
+    public TranslationBundleUpdatedEvent()
+    {
+        this(null);
+    }
+
+    /**
+     * @param namespace the namespace (for example {@code wiki:mywiki} or {@code user:xwiki:XWiki.User}) in which the
+     *            updated bundles are visible, null if they are visible everywhere
+     */
+    public TranslationBundleUpdatedEvent(String namespace)
+    {
+        this.namespace = namespace;
+    }
+
+    /**
+     * @return the namespace in which the updated bundles are visible, null if they are visible everywhere
+     */
+    public String getNamespace()
+    {
+        return this.namespace;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof TranslationBundleUpdatedEvent;
+    }
+}
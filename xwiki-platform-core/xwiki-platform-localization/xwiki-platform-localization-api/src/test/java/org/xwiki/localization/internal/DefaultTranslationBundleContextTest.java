@@ -41,6 +41,8 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -63,6 +65,8 @@
 
     private Provider<ComponentManager> mockContextComponentManagerProvider;
 
+    private Provider<ComponentManager> mockWikiComponentManagerProvider;
+
     @Before
     public void before() throws Exception
     {
@@ -77,13 +81,21 @@ public void before() throws Exception
         this.mockContextComponentManagerProvider =
             this.mocker.registerMockComponent(
                 new DefaultParameterizedType(null, Provider.class, ComponentManager.class), "context");
+        this.mockWikiComponentManagerProvider = this.mocker.registerMockComponent(
+            new DefaultParameterizedType(null, Provider.class, ComponentManager.class), "wiki");
+    }
+
+    private void mockComponentManager(ComponentManager componentManager)
+    {
+        when(this.mockContextComponentManagerProvider.get()).thenReturn(componentManager);
+        when(this.mockWikiComponentManagerProvider.get()).thenReturn(componentManager);
     }
 
     @Test
     public void getBundlesNewContext() throws Exception
     {
         // Map the context component manager to the test component manager for easier test setup.
-        when(this.mockContextComponentManagerProvider.get()).thenReturn(this.mocker);
+        mockComponentManager(this.mocker);
 
         TranslationBundle mockTranslationBundle = this.mocker.registerMockComponent(TranslationBundle.class);
 
@@ -101,7 +113,7 @@ public void getBundlesSwitchContext() throws Exception
     {
         // Mock the first wiki bundles.
         ComponentManager mockWiki1ComponentManager = mock(ComponentManager.class);
-        when(this.mockContextComponentManagerProvider.get()).thenReturn(mockWiki1ComponentManager);
+        mockComponentManager(mockWiki1ComponentManager);
 
         TranslationBundle mockWiki1TranslationBundle = mock(TranslationBundle.class);
         List<TranslationBundle> wiki1Bundles = Arrays.asList(mockWiki1TranslationBundle);
@@ -119,7 +131,7 @@ public void getBundlesSwitchContext() throws Exception
 
         // Mock the second wiki bundles.
         ComponentManager mockWiki2ComponentManager = mock(ComponentManager.class);
-        when(this.mockContextComponentManagerProvider.get()).thenReturn(mockWiki2ComponentManager);
+        mockComponentManager(mockWiki2ComponentManager);
 
         TranslationBundle mockWiki2TranslationBundle = mock(TranslationBundle.class);
         List<TranslationBundle> wiki2Bundles = Arrays.asList(mockWiki2TranslationBundle);
@@ -149,7 +161,7 @@ public void getBundlesSwitchContext() throws Exception
     public void addBundlesToCurrentContext() throws Exception
     {
         // Map the context component manager to the test component manager for easier test setup.
-        when(this.mockContextComponentManagerProvider.get()).thenReturn(this.mocker);
+        mockComponentManager(this.mocker);
 
         Collection<TranslationBundle> bundles = this.mocker.getComponentUnderTest().getBundles();
 
@@ -166,4 +178,93 @@ public void addBundlesToCurrentContext() throws Exception
         assertEquals(1, bundles.size());
         assertTrue(bundles.contains(mockBundleToAdd));
     }
+
+    @Test
+    public void getBundlesSharedBetweenContexts() throws Exception
+    {
+        mockComponentManager(this.mocker);
+
+        Collection<TranslationBundle> firstBundles = this.mocker.getComponentUnderTest().getBundles();
+
+        // Simulate a new request.
+        this.mockExecutionContext.removeProperty(DefaultTranslationBundleContext.CKEY_BUNDLES);
+
+        Collection<TranslationBundle> secondBundles = this.mocker.getComponentUnderTest().getBundles();
+
+        assertSame(firstBundles, secondBundles);
+
+        // Adding a bundle to the context should not affect the shared bundles.
+        this.mocker.getComponentUnderTest().addBundle(mock(TranslationBundle.class));
+
+        assertEquals(0, secondBundles.size());
+
+        // Updating the bundles of the current wiki should invalidate the shared bundles.
+        ((DefaultTranslationBundleContext) this.mocker.getComponentUnderTest()).onBundlesChanged("wiki:currentWiki");
+        this.mockExecutionContext.removeProperty(DefaultTranslationBundleContext.CKEY_BUNDLES);
+
+        assertNotSame(firstBundles, this.mocker.getComponentUnderTest().getBundles());
+    }
+
+    @Test
+    public void getBundlesWithUserBundles() throws Exception
+    {
+        TranslationBundle wikiBundle = mock(TranslationBundle.class, "wiki");
+        TranslationBundle userBundle = mock(TranslationBundle.class, "user");
+        when(wikiBundle.compareTo(userBundle)).thenReturn(1);
+        when(userBundle.compareTo(wikiBundle)).thenReturn(-1);
+
+        ComponentManager wikiComponentManager = mock(ComponentManager.class, "wikiComponentManager");
+        when(wikiComponentManager.<TranslationBundle>getInstanceList(TranslationBundle.class))
+            .thenReturn(Arrays.asList(wikiBundle));
+        when(this.mockWikiComponentManagerProvider.get()).thenReturn(wikiComponentManager);
+
+        ComponentManager userComponentManager = mock(ComponentManager.class, "userComponentManager");
+        when(userComponentManager.<TranslationBundle>getInstanceList(TranslationBundle.class))
+            .thenReturn(Arrays.asList(wikiBundle, userBundle));
+        when(this.mockContextComponentManagerProvider.get()).thenReturn(userComponentManager);
+
+        ((DefaultTranslationBundleContext) this.mocker.getComponentUnderTest())
+            .onBundlesChanged("user:currentWiki:XWiki.user");
+
+        Collection<TranslationBundle> userBundles = this.mocker.getComponentUnderTest().getBundles();
+
+        assertEquals(2, userBundles.size());
+        assertTrue(userBundles.contains(userBundle));
+
+        // Another user without specific bundles gets the shared bundles of the wiki
+        ComponentManager otherUserComponentManager = mock(ComponentManager.class, "otherUserComponentManager");
+        when(otherUserComponentManager.<TranslationBundle>getInstanceList(TranslationBundle.class))
+            .thenReturn(Arrays.asList(wikiBundle));
+        when(this.mockContextComponentManagerProvider.get()).thenReturn(otherUserComponentManager);
+        this.mockExecutionContext.removeProperty(DefaultTranslationBundleContext.CKEY_BUNDLES);
+
+        Collection<TranslationBundle> otherUserBundles = this.mocker.getComponentUnderTest().getBundles();
+
+        assertEquals(1, otherUserBundles.size());
+        assertTrue(otherUserBundles instanceof IndexedTranslationBundles);
+        assertEquals(wikiBundle, otherUserBundles.iterator().next());
+    }
+
+    @Test
+    public void getBundlesChangedDuringLookup() throws Exception
+    {
+        DefaultTranslationBundleContext bundleContext =
+            (DefaultTranslationBundleContext) this.mocker.getComponentUnderTest();
+
+        ComponentManager componentManager = mock(ComponentManager.class);
+        when(componentManager.<TranslationBundle>getInstanceList(TranslationBundle.class)).then(invocation -> {
+            // Simulate a bundle registered while the bundles are looked up
+            bundleContext.onBundlesChanged("wiki:currentWiki");
+
+            return Arrays.asList();
+        });
+        mockComponentManager(componentManager);
+
+        Collection<TranslationBundle> firstBundles = bundleContext.getBundles();
+
+        this.mockExecutionContext.removeProperty(DefaultTranslationBundleContext.CKEY_BUNDLES);
+
+        // The outdated bundles should not have been shared
+        assertNotSame(firstBundles, bundleContext.getBundles());
+    }
 }
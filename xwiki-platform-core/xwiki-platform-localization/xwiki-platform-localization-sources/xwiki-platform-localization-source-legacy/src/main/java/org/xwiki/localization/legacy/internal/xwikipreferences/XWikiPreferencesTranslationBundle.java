@@ -39,9 +39,11 @@
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.localization.Translation;
 import org.xwiki.localization.internal.AbstractTranslationBundle;
+import org.xwiki.localization.internal.TranslationBundleUpdatedEvent;
 import org.xwiki.localization.message.TranslationMessageParser;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.observation.ObservationManager;
 
 import com.xpn.xwiki.XWikiContext;
 
@@ -95,6 +97,9 @@ public class XWikiPreferencesTranslationBundle extends AbstractTranslationBundle
     @Inject
     private Provider<XWikiContext> contextProvider;
 
+    @Inject
+    private ObservationManager observation;
+
     /**
      * The cache of bundles by wiki.
      */
@@ -173,6 +178,9 @@ private synchronized XWikiPreferencesWikiTranslationBundle getBundleSynchronized
             try {
                 bundle = createWikiBundle(wiki);
                 this.wikiBundlesCache.put(wiki, bundle);
+
+                // The translations of the wiki were not available until now
+                this.observation.notify(new TranslationBundleUpdatedEvent("wiki:" + wiki), this);
             } catch (ComponentLookupException e) {
                 this.logger.error("Failed to create preferences bundle for wiki [{}]", wiki, e);
             }
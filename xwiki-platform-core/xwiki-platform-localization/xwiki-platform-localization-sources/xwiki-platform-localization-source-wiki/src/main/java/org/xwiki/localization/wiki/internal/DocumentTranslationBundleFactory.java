@@ -52,6 +52,7 @@
 import org.xwiki.localization.TranslationBundle;
 import org.xwiki.localization.TranslationBundleDoesNotExistsException;
 import org.xwiki.localization.TranslationBundleFactory;
+import org.xwiki.localization.internal.TranslationBundleUpdatedEvent;
 import org.xwiki.localization.message.TranslationMessageParser;
 import org.xwiki.localization.wiki.internal.TranslationDocumentModel.Scope;
 import org.xwiki.model.reference.DocumentReference;
@@ -395,6 +396,8 @@ private void unregisterTranslationBundle(XWikiDocument document)
                 createComponentDescriptor(document.getDocumentReference());
 
             getComponentManager(document, scope, true).unregisterComponent(descriptor);
+
+            this.observation.notify(new TranslationBundleUpdatedEvent(getComponentManagerHint(document, scope)), this);
         }
 
         // Remove from cache
@@ -423,6 +426,8 @@ private void registerTranslationBundle(XWikiDocument document) throws Translatio
             ComponentDocumentTranslationBundle bundle = createComponentDocumentBundle(document, descriptor);
 
             getComponentManager(document, scope, true).registerComponent(descriptor, bundle);
+
+            this.observation.notify(new TranslationBundleUpdatedEvent(getComponentManagerHint(document, scope)), this);
         }
     }
 
@@ -472,6 +477,16 @@ private ComponentDescriptor<TranslationBundle> createComponentDescriptor(Documen
      * @return the component manager corresponding to the provided {@link Scope}
      */
     private ComponentManager getComponentManager(XWikiDocument document, Scope scope, boolean create)
+    {
+        return this.cmManager.getComponentManager(getComponentManagerHint(document, scope), create);
+    }
+
+    /**
+     * @param document the translation document
+     * @param scope the translation scope
+     * @return the namespace of the component manager corresponding to the provided {@link Scope}
+     */
+    private String getComponentManagerHint(XWikiDocument document, Scope scope)
     {
         String hint;
 
@@ -487,7 +502,7 @@ private ComponentManager getComponentManager(XWikiDocument document, Scope scope
                 break;
         }
 
-        return this.cmManager.getComponentManager(hint, create);
+        return hint;
     }
 
     @Override
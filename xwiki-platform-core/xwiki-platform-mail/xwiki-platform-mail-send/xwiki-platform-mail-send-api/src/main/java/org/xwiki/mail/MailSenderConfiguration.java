@@ -23,6 +23,7 @@
 import java.util.Properties;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Represents all XWiki configuration options for the Mail Sending feature.
@@ -101,4 +102,17 @@
      * @since 6.4RC1
      */
     long getSendWaitTime();
+
+    /**
+     * @return the number of threads sending mails in parallel, each one with its own connection to the SMTP server.
+     *         Note that {@link #getSendWaitTime()} is still respected for each SMTP server, whatever the number of
+     *         threads, so more threads only speed up the sending of mails to a single SMTP server when the send wait
+     *         time is lowered.
+     * @since 11.5RC1
+     */
+    @Unstable
+    default int getSendThreadCount()
+    {
+        return 1;
+    }
 }
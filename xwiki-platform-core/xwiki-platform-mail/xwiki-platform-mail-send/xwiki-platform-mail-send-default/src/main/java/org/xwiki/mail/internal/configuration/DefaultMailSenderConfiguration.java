@@ -95,6 +95,8 @@ public class DefaultMailSenderConfiguration implements MailSenderConfiguration
      */
     private static final long DEFAULT_SEND_WAIT_TIME = 8 * 1000L;
 
+    private static final int DEFAULT_SEND_THREAD_COUNT = 1;
+
     private static final String FROM_PROPERTY = "from";
     private static final String BCC_PROPERTY = "bcc";
     private static final String HOST_PROPERTY = "host";
@@ -325,4 +327,10 @@ public long getSendWaitTime()
 
         return waitTime;
     }
+
+    @Override
+    public int getSendThreadCount()
+    {
+        return this.xwikiPropertiesSource.getProperty(PREFIX + "sendThreadCount", DEFAULT_SEND_THREAD_COUNT);
+    }
 }
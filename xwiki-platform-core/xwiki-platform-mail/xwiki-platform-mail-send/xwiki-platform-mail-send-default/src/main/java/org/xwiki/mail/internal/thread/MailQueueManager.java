@@ -19,6 +19,8 @@
  */
 package org.xwiki.mail.internal.thread;
 
+import java.util.concurrent.TimeUnit;
+
 import org.xwiki.component.annotation.Role;
 
 /**
@@ -48,6 +50,17 @@
      */
     T peekMessage();
 
+    /**
+     * Removes and returns the next mail on the queue, waiting for one to be available if necessary.
+     *
+     * @param timeout how long to wait for a mail before giving up
+     * @param unit the unit of the timeout
+     * @return the next mail on the queue or {@code null} if none was available before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     * @since 11.5RC1
+     */
+    T pollMessage(long timeout, TimeUnit unit) throws InterruptedException;
+
     /**
      * Removes the next mail on the queue.
      *
@@ -19,7 +19,12 @@
  */
 package org.xwiki.mail.internal.thread;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -41,7 +46,9 @@
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Runnable that regularly check for mails on a Queue, and for each mail tries to send it.
+ * Runnable that regularly check for mails on a Queue, and for each mail tries to send it. The mails are sent by a pool
+ * of workers (see {@link org.xwiki.mail.MailSenderConfiguration#getSendThreadCount()}), each one with its own
+ * connection to the SMTP server.
  *
  * @version $Id$
  * @since 6.4
@@ -51,6 +58,19 @@
 @Singleton
 public class SendMailRunnable extends AbstractMailRunnable
 {
+    /**
+     * The name of the parameter passed to the {@link MailListener} send methods and holding the number of attempts
+     * which were needed to send the mail.
+     *
+     * @since 11.5RC1
+     */
+    public static final String SEND_ATTEMPTS_PARAMETER = "sendAttempts";
+
+    /**
+     * How long a worker waits for a mail before checking if it should stop.
+     */
+    private static final long POLL_TIMEOUT = 500L;
+
     @Inject
     private MailQueueManager<SendMailQueueItem> sendMailQueueManager;
 
@@ -64,25 +84,48 @@ public class SendMailRunnable extends AbstractMailRunnable
     @Inject
     private Provider<XWikiContext> contextProvider;
 
-    private Transport currentTransport;
-
-    private Session currentSession;
-
-    private int count;
+    /**
+     * The date before which no mail should be sent, for each SMTP server. Used to respect the send wait time whatever
+     * the number of workers.
+     */
+    private final Map<String, Long> nextSendDates = new HashMap<>();
 
     @Override
     public void run()
     {
-        try {
-            // Make sure we initialize an execution context.
-            prepareContext();
+        // The current thread is the first worker, start the other ones
+        List<Thread> workerThreads = new ArrayList<>();
+        for (int i = 1; i < this.configuration.getSendThreadCount(); i++) {
+            Thread workerThread = new Thread(new SendMailWorker());
+            workerThread.setName("Mail Sender Thread " + i);
+            workerThread.setDaemon(true);
+            workerThread.start();
+            workerThreads.add(workerThread);
+        }
 
-            runInternal();
-        } catch (ExecutionContextException e) {
-            // Not much to do but log.
-            logger.error("Failed to initialize the send mail thread's execution context", e);
+        try {
+            new SendMailWorker().run();
         } finally {
-            closeTransport();
+            stopWorkers(workerThreads);
+        }
+    }
+
+    private void stopWorkers(List<Thread> workerThreads)
+    {
+        stopProcessing();
+
+        for (Thread workerThread : workerThreads) {
+            // Make sure the Thread goes out of sleep if it's sleeping so that it stops immediately.
+            workerThread.interrupt();
+        }
+
+        try {
+            for (Thread workerThread : workerThreads) {
+                workerThread.join();
+            }
+        } catch (InterruptedException e) {
+            this.logger.debug("Interrupted while waiting for the mail sender workers to stop", e);
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -101,107 +144,165 @@ private void prepareContextForQueueItem(SendMailQueueItem mailItem)
         xcontext.setWikiId(mailItem.getWikiId());
     }
 
-    private void runInternal()
+    /**
+     * Email throttling: wait until the send wait time has elapsed since the previous mail sent to the same SMTP server,
+     * whatever the worker which sent it.
+     *
+     * @param session the session used to send the mail
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void waitSendWaitTime(Session session) throws InterruptedException
     {
-        do {
-            try {
-                // Handle next message in the queue
-                if (this.sendMailQueueManager.hasMessage()) {
-                    // Important: only remove the mail item from the queue after the mail has been sent as
-                    // otherwise, MailSender.waitTillSent() may return before the mail is actually sent!
-                    SendMailQueueItem mailItem = this.sendMailQueueManager.peekMessage();
-                    try {
-                        sendMail(mailItem);
-                    } finally {
-                        this.sendMailQueueManager.removeMessageFromQueue(mailItem);
-                    }
-                    // Email throttling: Wait before processing the next mail queue item
-                    // Note: it's important that we wait after the previous item has been removed from the queue in
-                    // order to let users know as soon as possible that their mail has been sent (otherwise when sending
-                    // a synchronous mail, the user would have to wait the send wait time!).
-                    waitSendWaitTime();
-                }
-                // Note: a short pause to catch thread interruptions and to be kind on CPU.
-                Thread.sleep(50L);
-            } catch (InterruptedException e) {
-                // Thread has been stopped, exit
-                this.logger.debug("Mail Sender Thread was forcefully stopped", e);
-                break;
-            } catch (Exception e) {
-                // There was an unexpected problem, we just log the problem but keep the thread alive!
-                this.logger.error("Unexpected error in the Mail Sender Thread", e);
+        long sendWaitTime = this.configuration.getSendWaitTime();
+        if (sendWaitTime > 0) {
+            String server = session.getProperty("mail.smtp.host") + ':' + session.getProperty("mail.smtp.port");
+
+            long now = System.currentTimeMillis();
+            long sendDate;
+            synchronized (this.nextSendDates) {
+                sendDate = Math.max(now, this.nextSendDates.getOrDefault(server, now));
+                this.nextSendDates.put(server, sendDate + sendWaitTime);
             }
-        } while (!this.shouldStop);
+
+            Thread.sleep(sendDate - now);
+        }
     }
 
     /**
-     * Send the mail.
+     * Take mails from the queue and send them, reusing the same connection to the SMTP server.
      *
-     * @param item the queue item containing all the data for sending the mail
+     * @version $Id$
      */
-    protected void sendMail(SendMailQueueItem item)
+    private final class SendMailWorker implements Runnable
     {
-        prepareContextForQueueItem(item);
+        private Transport currentTransport;
 
-        MailListener listener = item.getListener();
+        private Session currentSession;
 
-        ExtendedMimeMessage message;
-        try {
-            // Step 1: Load the message from the filesystem store
-            message = this.mailContentStore.load(item.getSession(), item.getBatchId(), item.getUniqueMessageId());
-        } catch (Exception e) {
-            if (listener != null) {
-                listener.onSendMessageFatalError(item.getUniqueMessageId(), e, Collections.<String, Object>emptyMap());
-            }
-            return;
-        }
+        private int count;
 
-        try {
-            // Step 2: If the current Session in use is different from the one passed then close
-            // the current Transport, get a new one and reconnect.
-            // Also do that every 100 mails sent.
-            // TODO: explain why!
-            if (item.getSession() != this.currentSession || (this.count % 100) == 0) {
+        @Override
+        public void run()
+        {
+            try {
+                // Make sure we initialize an execution context.
+                prepareContext();
+
+                runInternal();
+            } catch (ExecutionContextException e) {
+                // Not much to do but log.
+                logger.error("Failed to initialize the send mail thread's execution context", e);
+            } finally {
                 closeTransport();
-                this.currentSession = item.getSession();
-                this.currentTransport = this.currentSession.getTransport("smtp");
-                this.currentTransport.connect();
-            } else if (!this.currentTransport.isConnected()) {
-                this.currentTransport.connect();
             }
+        }
+
+        private void runInternal()
+        {
+            do {
+                try {
+                    // Handle next message in the queue, waiting for one to be available
+                    SendMailQueueItem mailItem = sendMailQueueManager.pollMessage(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (mailItem != null) {
+                        sendMail(mailItem);
+                    }
+                } catch (InterruptedException e) {
+                    // Thread has been stopped, exit
+                    logger.debug("Mail Sender Thread was forcefully stopped", e);
+                    break;
+                } catch (Exception e) {
+                    // There was an unexpected problem, we just log the problem but keep the thread alive!
+                    logger.error("Unexpected error in the Mail Sender Thread", e);
+                }
+            } while (!shouldStop);
+        }
 
-            // Step 3: Send the mail
-            // Unlike the static send method, the sendMessage method does not call the saveChanges method on the
-            // message; this prevent the MessageID header to be changed.
-            this.currentTransport.sendMessage(message, message.getAllRecipients());
-            this.count++;
+        /**
+         * Send the mail.
+         *
+         * @param item the queue item containing all the data for sending the mail
+         * @throws InterruptedException if interrupted while waiting for the send wait time
+         */
+        private void sendMail(SendMailQueueItem item) throws InterruptedException
+        {
+            prepareContextForQueueItem(item);
 
-            // Step 4: Notify the user of the success if a listener has been provided
-            if (listener != null) {
-                listener.onSendMessageSuccess(message, Collections.<String, Object>emptyMap());
-            }
-        } catch (Exception e) {
-            // An error occurred, notify the user if a listener has been provided.
-            if (listener != null) {
-                listener.onSendMessageError(message, e, Collections.<String, Object>emptyMap());
+            MailListener listener = item.getListener();
+
+            ExtendedMimeMessage message;
+            try {
+                // Step 1: Load the message from the filesystem store
+                message = mailContentStore.load(item.getSession(), item.getBatchId(), item.getUniqueMessageId());
+            } catch (Exception e) {
+                if (listener != null) {
+                    listener.onSendMessageFatalError(item.getUniqueMessageId(), e,
+                        Collections.<String, Object>emptyMap());
+                }
+                return;
             }
-        }
-    }
 
-    private void waitSendWaitTime() throws InterruptedException
-    {
-        long sendWaitTime = this.configuration.getSendWaitTime();
-        Thread.sleep(sendWaitTime);
-    }
+            // Step 2: Email throttling
+            waitSendWaitTime(item.getSession());
 
-    private void closeTransport()
-    {
-        if (this.currentTransport != null) {
+            int attempts = 1;
             try {
-                this.currentTransport.close();
-            } catch (MessagingException e) {
-                this.logger.warn("Failed to close JavaMail Transport connection. Reason [{}]",
-                    ExceptionUtils.getRootCauseMessage(e));
+                // Step 3: If the current Session in use is different from the one passed then close
+                // the current Transport, get a new one and reconnect.
+                // Also do that every 100 mails sent.
+                // TODO: explain why!
+                boolean reusedConnection = false;
+                if (item.getSession() != this.currentSession || (this.count % 100) == 0) {
+                    closeTransport();
+                    this.currentSession = item.getSession();
+                    this.currentTransport = this.currentSession.getTransport("smtp");
+                    this.currentTransport.connect();
+                } else if (!this.currentTransport.isConnected()) {
+                    this.currentTransport.connect();
+                } else {
+                    reusedConnection = true;
+                }
+
+                // Step 4: Send the mail
+                // Unlike the static send method, the sendMessage method does not call the saveChanges method on the
+                // message; this prevent the MessageID header to be changed.
+                try {
+                    this.currentTransport.sendMessage(message, message.getAllRecipients());
+                } catch (MessagingException e) {
+                    if (!reusedConnection || this.currentTransport.isConnected()) {
+                        throw e;
+                    }
+
+                    // The reused connection has been closed by the server (e.g. because it was idle), try again once
+                    // with a new connection
+                    attempts++;
+                    this.currentTransport.connect();
+                    this.currentTransport.sendMessage(message, message.getAllRecipients());
+                }
+                this.count++;
+
+                // Step 5: Notify the user of the success if a listener has been provided
+                if (listener != null) {
+                    listener.onSendMessageSuccess(message,
+                        Collections.<String, Object>singletonMap(SEND_ATTEMPTS_PARAMETER, attempts));
+                }
+            } catch (Exception e) {
+                // An error occurred, notify the user if a listener has been provided.
+                if (listener != null) {
+                    listener.onSendMessageError(message, e,
+                        Collections.<String, Object>singletonMap(SEND_ATTEMPTS_PARAMETER, attempts));
+                }
+            }
+        }
+
+        private void closeTransport()
+        {
+            if (this.currentTransport != null) {
+                try {
+                    this.currentTransport.close();
+                } catch (MessagingException e) {
+                    logger.warn("Failed to close JavaMail Transport connection. Reason [{}]",
+                        ExceptionUtils.getRootCauseMessage(e));
+                }
             }
         }
     }
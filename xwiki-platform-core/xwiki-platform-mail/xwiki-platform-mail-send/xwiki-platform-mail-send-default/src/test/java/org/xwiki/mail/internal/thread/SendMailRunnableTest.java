@@ -19,13 +19,21 @@
  */
 package org.xwiki.mail.internal.thread;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Provider;
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
 import javax.mail.internet.MimeMessage;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -35,6 +43,7 @@
 import org.xwiki.mail.ExtendedMimeMessage;
 import org.xwiki.mail.MailContentStore;
 import org.xwiki.mail.MailListener;
+import org.xwiki.mail.MailSenderConfiguration;
 import org.xwiki.mail.MailState;
 import org.xwiki.mail.MailStatus;
 import org.xwiki.mail.MailStoreException;
@@ -65,6 +74,40 @@
 })
 public class SendMailRunnableTest
 {
+    /**
+     * The date at which each mail has been sent by {@link RecordingTransport}, indexed by the mail content.
+     */
+    private static final Map<Object, Long> SEND_DATES = new ConcurrentHashMap<>();
+
+    /**
+     * Transport which doesn't connect to any server and records when each mail is sent.
+     *
+     * @version $Id$
+     */
+    public static class RecordingTransport extends Transport
+    {
+        public RecordingTransport(Session session, URLName urlname)
+        {
+            super(session, urlname);
+        }
+
+        @Override
+        protected boolean protocolConnect(String host, int port, String user, String password)
+        {
+            return true;
+        }
+
+        @Override
+        public void sendMessage(Message message, Address[] addresses) throws MessagingException
+        {
+            try {
+                SEND_DATES.put(message.getContent(), System.currentTimeMillis());
+            } catch (IOException e) {
+                throw new MessagingException("Failed to read the mail content", e);
+            }
+        }
+    }
+
     @InjectMockComponents
     private SendMailRunnable sendMailRunnable;
 
@@ -210,4 +253,66 @@ public void sendMailWhenMailRetrievalFails() throws Exception
         }
         assertEquals(2, errorCount);
     }
+
+    @Test
+    public void sendWaitTimeIsAppliedPerServer() throws Exception
+    {
+        MailSenderConfiguration configuration = this.componentManager.getInstance(MailSenderConfiguration.class);
+        when(configuration.getSendWaitTime()).thenReturn(500L);
+        when(configuration.getSendThreadCount()).thenReturn(2);
+
+        Session sessionA = createRecordingSession("server-a");
+        Session sessionB = createRecordingSession("server-b");
+
+        MemoryMailListener listener = this.componentManager.getInstance(MailListener.class, "memory");
+        String batchId = UUID.randomUUID().toString();
+        listener.onPrepareBegin(batchId, Collections.emptyMap());
+        ((UpdateableMailStatusResult) listener.getMailStatusResult()).setTotalSize(3);
+
+        MailQueueManager<SendMailQueueItem> mailQueueManager = this.componentManager.getInstance(
+            new DefaultParameterizedType(null, MailQueueManager.class, SendMailQueueItem.class));
+        MailContentStore contentStore = this.componentManager.getInstance(MailContentStore.class, "filesystem");
+        for (String content : new String[] { "A1", "A2", "B1" }) {
+            Session session = content.startsWith("A") ? sessionA : sessionB;
+            MimeMessage mimeMessage = new MimeMessage(session);
+            mimeMessage.setText(content);
+            ExtendedMimeMessage message = new ExtendedMimeMessage(mimeMessage);
+            listener.onPrepareMessageSuccess(message, Collections.emptyMap());
+            when(contentStore.load(session, batchId, message.getUniqueMessageId())).thenReturn(message);
+            mailQueueManager.addToQueue(
+                new SendMailQueueItem(message.getUniqueMessageId(), session, listener, batchId, "xwiki"));
+        }
+
+        Thread thread = new Thread(this.sendMailRunnable);
+        thread.start();
+
+        try {
+            listener.getMailStatusResult().waitTillProcessed(10000L);
+        } finally {
+            this.sendMailRunnable.stopProcessing();
+            thread.interrupt();
+            thread.join();
+        }
+
+        assertEquals(3, listener.getMailStatusResult().getProcessedMailCount());
+
+        // The mails sent to the same server are spaced out by the send wait time, whatever the number of threads
+        long firstA = Math.min(SEND_DATES.get("A1"), SEND_DATES.get("A2"));
+        long secondA = Math.max(SEND_DATES.get("A1"), SEND_DATES.get("A2"));
+        assertTrue(secondA - firstA >= 450, "Mails to the same server were sent too close to each other");
+
+        // The mail sent to another server doesn't have to wait for them
+        assertTrue(SEND_DATES.get("B1") < secondA, "The mail to the other server waited for the first server");
+    }
+
+    private Session createRecordingSession(String host) throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.host", host);
+        properties.setProperty("mail.smtp.port", "25");
+        Session session = Session.getInstance(properties);
+        session.setProvider(new javax.mail.Provider(javax.mail.Provider.Type.TRANSPORT, "smtp",
+            RecordingTransport.class.getName(), "XWiki", null));
+        return session;
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail;
+
+import java.util.Date;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Delivery statistics of a batch of mails: how many mails were sent, how long they waited between the moment they
+ * were prepared and the moment they were sent, and how fast they were sent.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Unstable
+public class MailBatchStatistics
+{
+    private final String batchId;
+
+    private final long sentCount;
+
+    private final long errorCount;
+
+    private final long retryCount;
+
+    private final long totalLatency;
+
+    private final long maxLatency;
+
+    private final Date firstSendDate;
+
+    private final Date lastSendDate;
+
+    /**
+     * @param batchId the identifier of the batch
+     * @param sentCount the number of mails sent successfully
+     * @param errorCount the number of mails which failed to be sent
+     * @param retryCount the number of additional attempts which were needed to send the mails
+     * @param totalLatency the sum of the delays (in milliseconds) between the preparation and the sending of each mail
+     * @param maxLatency the longest delay (in milliseconds) between the preparation and the sending of a mail
+     * @param firstSendDate the date at which the first mail of the batch was processed
+     * @param lastSendDate the date at which the last mail of the batch was processed
+     */
+    public MailBatchStatistics(String batchId, long sentCount, long errorCount, long retryCount, long totalLatency,
+        long maxLatency, Date firstSendDate, Date lastSendDate)
+    {
+        this.batchId = batchId;
+        this.sentCount = sentCount;
+        this.errorCount = errorCount;
+        this.retryCount = retryCount;
+        this.totalLatency = totalLatency;
+        this.maxLatency = maxLatency;
+        this.firstSendDate = firstSendDate;
+        this.lastSendDate = lastSendDate;
+    }
+
+    /**
+     * @return the identifier of the batch
+     */
+    public String getBatchId()
+    {
+        return this.batchId;
+    }
+
+    /**
+     * @return the number of mails sent successfully
+     */
+    public long getSentCount()
+    {
+        return this.sentCount;
+    }
+
+    /**
+     * @return the number of mails which failed to be sent
+     */
+    public long getErrorCount()
+    {
+        return this.errorCount;
+    }
+
+    /**
+     * @return the number of additional attempts which were needed to send the mails (e.g. because the connection to
+     *         the SMTP server had been closed)
+     */
+    public long getRetryCount()
+    {
+        return this.retryCount;
+    }
+
+    /**
+     * @return the average delay in milliseconds between the moment a mail was prepared (i.e. put in the send queue)
+     *         and the moment it was sent
+     */
+    public long getAverageLatency()
+    {
+        long count = this.sentCount + this.errorCount;
+
+        return count > 0 ? this.totalLatency / count : 0;
+    }
+
+    /**
+     * @return the longest delay in milliseconds between the moment a mail was prepared and the moment it was sent
+     */
+    public long getMaxLatency()
+    {
+        return this.maxLatency;
+    }
+
+    /**
+     * @return the number of mails processed per second, between the first and the last mail of the batch
+     */
+    public double getThroughput()
+    {
+        long count = this.sentCount + this.errorCount;
+        if (count == 0) {
+            return 0;
+        }
+
+        long duration = this.lastSendDate.getTime() - this.firstSendDate.getTime();
+
+        return duration > 0 ? count * 1000D / duration : count;
+    }
+
+    /**
+     * @return the date at which the first mail of the batch was processed
+     */
+    public Date getFirstSendDate()
+    {
+        return this.firstSendDate;
+    }
+
+    /**
+     * @return the date at which the last mail of the batch was processed
+     */
+    public Date getLastSendDate()
+    {
+        return this.lastSendDate;
+    }
+}
@@ -23,6 +23,7 @@
 import java.util.Map;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Save, load and search mail results.
@@ -86,4 +87,18 @@ List<MailStatus> load(Map<String, Object> filterMap, int offset, int count, Stri
      * @throws MailStoreException when an error occurs deleting the message
      */
     void delete(String uniqueMessageId, Map<String, Object> parameters) throws MailStoreException;
+
+    /**
+     * Get the delivery statistics (latency between enqueue and send, throughput, retries) of a batch of mails.
+     *
+     * @param batchId the identifier of the batch
+     * @return the statistics of the batch or null if they are not available
+     * @throws MailStoreException when an error occurs while computing the statistics
+     * @since 11.5RC1
+     */
+    @Unstable
+    default MailBatchStatistics getBatchStatistics(String batchId) throws MailStoreException
+    {
+        return null;
+    }
 }
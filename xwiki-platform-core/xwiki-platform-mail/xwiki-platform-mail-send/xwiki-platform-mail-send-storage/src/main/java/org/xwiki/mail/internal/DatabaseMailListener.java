@@ -39,6 +39,7 @@
 import org.xwiki.mail.MailStatusStore;
 import org.xwiki.mail.MailStorageConfiguration;
 import org.xwiki.mail.MailStoreException;
+import org.xwiki.mail.internal.thread.SendMailRunnable;
 
 import com.xpn.xwiki.XWikiContext;
 
@@ -67,6 +68,9 @@ public class DatabaseMailListener extends AbstractMailListener implements Initia
     @Inject
     private MailStorageConfiguration configuration;
 
+    @Inject
+    private MailBatchStatisticsCollector batchStatistics;
+
     private DatabaseMailStatusResult mailStatusResult;
 
     @Override
@@ -124,6 +128,7 @@ public void onSendMessageSuccess(ExtendedMimeMessage message, Map<String, Object
 
         String uniqueMessageId = message.getUniqueMessageId();
         MailStatus status = retrieveExistingMailStatus(uniqueMessageId, MailState.SEND_SUCCESS);
+        recordStatistics(status, parameters, true);
 
         if (status != null) {
             status.setState(MailState.SEND_SUCCESS);
@@ -172,6 +177,7 @@ public void onSendMessageError(ExtendedMimeMessage message, Exception exception,
 
         String uniqueMessageId = message.getUniqueMessageId();
         MailStatus status = retrieveExistingMailStatus(uniqueMessageId, MailState.SEND_ERROR);
+        recordStatistics(status, parameters, false);
 
         if (status != null) {
             status.setState(MailState.SEND_ERROR);
@@ -207,6 +213,17 @@ private MailStatus retrieveExistingMailStatus(String uniqueMessageId, MailState
         return status;
     }
 
+    private void recordStatistics(MailStatus status, Map<String, Object> parameters, boolean success)
+    {
+        // The status date is the date at which the mail was prepared, i.e. put in the send queue
+        long latency = status != null && status.getDate() != null
+            ? System.currentTimeMillis() - status.getDate().getTime() : 0;
+        Object attempts = parameters != null ? parameters.get(SendMailRunnable.SEND_ATTEMPTS_PARAMETER) : null;
+
+        this.batchStatistics.record(getBatchId(), latency, attempts instanceof Integer ? (Integer) attempts : 1,
+            success);
+    }
+
     @Override
     public MailStatusResult getMailStatusResult()
     {
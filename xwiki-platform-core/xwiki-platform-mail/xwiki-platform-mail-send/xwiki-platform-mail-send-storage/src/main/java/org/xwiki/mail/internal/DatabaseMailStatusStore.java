@@ -34,6 +34,7 @@
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.mail.MailBatchStatistics;
 import org.xwiki.mail.MailStatus;
 import org.xwiki.mail.MailStatusStore;
 import org.xwiki.mail.MailStoreException;
@@ -66,6 +67,9 @@ public class DatabaseMailStatusStore implements MailStatusStore
     @Named("hibernate")
     private XWikiStoreInterface hibernateStore;
 
+    @Inject
+    private MailBatchStatisticsCollector batchStatistics;
+
     @Override
     public void save(final MailStatus status, final Map<String, Object> parameters) throws MailStoreException
     {
@@ -292,4 +296,11 @@ private void addValueTolog(StringBuilder builder, Object value)
     {
         builder.append('[').append(value).append(']');
     }
+
+    @Override
+    public MailBatchStatistics getBatchStatistics(String batchId)
+    {
+        // Delivery statistics are not persisted, they are only kept in memory for the most recent batches
+        return this.batchStatistics.get(batchId);
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.mail.MailBatchStatistics;
+
+/**
+ * Keeps in memory the delivery statistics of the most recent mail batches.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component(roles = MailBatchStatisticsCollector.class)
+@Singleton
+public class MailBatchStatisticsCollector
+{
+    /**
+     * The maximum number of batches for which statistics are kept.
+     */
+    private static final int MAX_BATCHES = 100;
+
+    private final Map<String, BatchStatistics> batches = new LinkedHashMap<String, BatchStatistics>(16, 0.75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BatchStatistics> eldest)
+        {
+            return size() > MAX_BATCHES;
+        }
+    };
+
+    /**
+     * Mutable statistics of a batch, only accessed while holding the lock on {@link #batches}.
+     */
+    private static final class BatchStatistics
+    {
+        private long sentCount;
+
+        private long errorCount;
+
+        private long retryCount;
+
+        private long totalLatency;
+
+        private long maxLatency;
+
+        private long firstSendDate;
+
+        private long lastSendDate;
+    }
+
+    /**
+     * Record the sending of a mail.
+     *
+     * @param batchId the identifier of the batch the mail belongs to
+     * @param latency the delay in milliseconds between the preparation and the sending of the mail
+     * @param attempts the number of attempts which were needed to send the mail
+     * @param success true if the mail was sent successfully
+     */
+    public void record(String batchId, long latency, int attempts, boolean success)
+    {
+        long now = System.currentTimeMillis();
+
+        synchronized (this.batches) {
+            BatchStatistics statistics = this.batches.computeIfAbsent(batchId, key -> new BatchStatistics());
+
+            if (success) {
+                statistics.sentCount++;
+            } else {
+                statistics.errorCount++;
+            }
+            statistics.retryCount += Math.max(0, attempts - 1);
+            statistics.totalLatency += Math.max(0, latency);
+            statistics.maxLatency = Math.max(statistics.maxLatency, latency);
+            if (statistics.firstSendDate == 0) {
+                statistics.firstSendDate = now;
+            }
+            statistics.lastSendDate = now;
+        }
+    }
+
+    /**
+     * @param batchId the identifier of the batch
+     * @return the statistics of the batch or null if no mail of this batch has been sent recently
+     */
+    public MailBatchStatistics get(String batchId)
+    {
+        synchronized (this.batches) {
+            BatchStatistics statistics = this.batches.get(batchId);
+            if (statistics == null) {
+                return null;
+            }
+
+            return new MailBatchStatistics(batchId, statistics.sentCount, statistics.errorCount,
+                statistics.retryCount, statistics.totalLatency, statistics.maxLatency,
+                new Date(statistics.firstSendDate), new Date(statistics.lastSendDate));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.mail.MailBatchStatistics;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for {@link MailBatchStatisticsCollector}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+public class MailBatchStatisticsCollectorTest
+{
+    @InjectMockComponents
+    private MailBatchStatisticsCollector collector;
+
+    @Test
+    public void recordAndGet()
+    {
+        assertNull(this.collector.get("batch"));
+
+        this.collector.record("batch", 100, 1, true);
+        this.collector.record("batch", 300, 2, true);
+        this.collector.record("batch", 200, 1, false);
+        this.collector.record("otherBatch", 1000, 1, true);
+
+        MailBatchStatistics statistics = this.collector.get("batch");
+        assertEquals("batch", statistics.getBatchId());
+        assertEquals(2, statistics.getSentCount());
+        assertEquals(1, statistics.getErrorCount());
+        assertEquals(1, statistics.getRetryCount());
+        assertEquals(200, statistics.getAverageLatency());
+        assertEquals(300, statistics.getMaxLatency());
+    }
+}
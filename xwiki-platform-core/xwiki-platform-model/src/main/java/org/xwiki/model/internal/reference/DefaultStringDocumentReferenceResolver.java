@@ -22,10 +22,13 @@
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceResolver;
 
 /**
@@ -47,8 +50,28 @@ public class DefaultStringDocumentReferenceResolver implements DocumentReference
     @Inject
     private EntityReferenceResolver<String> entityReferenceResolver;
 
+    private final ReferenceCache<Pair<String, EntityReference>, DocumentReference> cache = new ReferenceCache<>();
+
     @Override
     public DocumentReference resolve(String documentReferenceRepresentation, Object... parameters)
+    {
+        if (!DefaultStringEntityReferenceResolver.isCacheable(parameters)) {
+            return resolveDocumentReference(documentReferenceRepresentation, parameters);
+        }
+
+        Pair<String, EntityReference> key = new ImmutablePair<>(documentReferenceRepresentation,
+            parameters.length > 0 ? (EntityReference) parameters[0] : null);
+
+        DocumentReference reference = this.cache.get(key);
+        if (reference == null) {
+            reference = resolveDocumentReference(documentReferenceRepresentation, parameters);
+            this.cache.put(key, reference);
+        }
+
+        return reference;
+    }
+
+    private DocumentReference resolveDocumentReference(String documentReferenceRepresentation, Object... parameters)
     {
         return new DocumentReference(this.entityReferenceResolver.resolve(documentReferenceRepresentation,
             EntityType.DOCUMENT, parameters));
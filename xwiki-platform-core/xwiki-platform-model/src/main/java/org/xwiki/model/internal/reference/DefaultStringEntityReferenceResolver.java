@@ -22,6 +22,8 @@
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.EntityReference;
@@ -45,6 +47,42 @@ public class DefaultStringEntityReferenceResolver extends AbstractStringEntityRe
     @Inject
     private EntityReferenceProvider provider;
 
+    /**
+     * The default values only depend on the configuration so the result of a resolution only depends on the passed
+     * representation, type and (optional) base reference.
+     */
+    private final ReferenceCache<Triple<String, EntityType, EntityReference>, EntityReference> cache =
+        new ReferenceCache<>();
+
+    @Override
+    public EntityReference resolve(String entityReferenceRepresentation, EntityType type, Object... parameters)
+    {
+        if (!isCacheable(parameters)) {
+            return super.resolve(entityReferenceRepresentation, type, parameters);
+        }
+
+        Triple<String, EntityType, EntityReference> key = new ImmutableTriple<>(entityReferenceRepresentation, type,
+            parameters.length > 0 ? (EntityReference) parameters[0] : null);
+
+        EntityReference reference = this.cache.get(key);
+        if (reference == null) {
+            reference = super.resolve(entityReferenceRepresentation, type, parameters);
+            this.cache.put(key, reference);
+        }
+
+        return reference;
+    }
+
+    /**
+     * @param parameters the parameters passed to the resolver
+     * @return true if the result of the resolution can be cached (i.e. there is no parameter or only a base reference)
+     */
+    static boolean isCacheable(Object... parameters)
+    {
+        return parameters != null && (parameters.length == 0
+            || (parameters.length == 1 && (parameters[0] == null || parameters[0] instanceof EntityReference)));
+    }
+
     @Override
     protected EntityReference getDefaultReference(EntityType type, Object... parameters)
     {
@@ -44,6 +44,8 @@ public class DefaultStringEntityReferenceSerializer extends AbstractStringEntity
     @Inject
     private SymbolScheme symbolScheme;
 
+    private final ReferenceCache<EntityReference, String> cache = new ReferenceCache<>();
+
     /**
      * Empty constructor, to be used by the Component Manager, which will also inject the Symbol Scheme.
      */
@@ -63,6 +65,23 @@ public DefaultStringEntityReferenceSerializer(SymbolScheme symbolScheme)
         this.symbolScheme = symbolScheme;
     }
 
+    @Override
+    public String serialize(EntityReference reference, Object... parameters)
+    {
+        // The serialization of a reference without parameters never changes so we remember the most frequent ones
+        if (reference == null || (parameters != null && parameters.length > 0)) {
+            return super.serialize(reference, parameters);
+        }
+
+        String representation = this.cache.get(reference);
+        if (representation == null) {
+            representation = super.serialize(reference);
+            this.cache.put(reference, representation);
+        }
+
+        return representation;
+    }
+
     @Override
     protected void serializeEntityReference(EntityReference currentReference, StringBuilder representation,
         boolean isLastReference, Object... parameters)
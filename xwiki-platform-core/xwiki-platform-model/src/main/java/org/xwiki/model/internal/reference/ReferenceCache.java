@@ -0,0 +1,102 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.model.internal.reference;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded cache used to remember the result of frequent reference resolutions and serializations. The cache is
+ * emptied when it's full, which is much cheaper than maintaining an access order on such hot paths while keeping the
+ * most used entries since they are added back right away.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class ReferenceCache<K, V>
+{
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final int capacity;
+
+    private final Map<K, V> entries;
+
+    /**
+     * Create a cache with the {@link #DEFAULT_CAPACITY default capacity}.
+     */
+    public ReferenceCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of entries
+     */
+    public ReferenceCache(int capacity)
+    {
+        this.capacity = capacity;
+        this.entries = new ConcurrentHashMap<>(Math.min(capacity, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * @param key the key
+     * @return the cached value or null if there is none
+     */
+    public V get(K key)
+    {
+        return this.entries.get(key);
+    }
+
+    /**
+     * @param key the key
+     * @param value the value to cache, ignored if null
+     */
+    public void put(K key, V value)
+    {
+        if (value != null) {
+            if (this.entries.size() >= this.capacity) {
+                this.entries.clear();
+            }
+
+            this.entries.put(key, value);
+        }
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear()
+    {
+        this.entries.clear();
+    }
+}
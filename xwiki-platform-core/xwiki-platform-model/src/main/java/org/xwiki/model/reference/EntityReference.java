@@ -78,6 +78,11 @@ public class EntityReference implements Serializable, Cloneable, Comparable<Enti
 
     private transient List<EntityReference> referenceList;
 
+    /**
+     * The memoized hash code of this reference, 0 if it has not been computed yet.
+     */
+    private transient int hashCode;
+
     /**
      * Clone an EntityReference.
      *
@@ -215,6 +220,7 @@ protected void setName(String name)
             throw new IllegalArgumentException("An Entity Reference name cannot be null or empty");
         }
         this.name = name;
+        this.hashCode = 0;
     }
 
     /**
@@ -236,6 +242,7 @@ public final String getName()
     protected void setParent(EntityReference parent)
     {
         this.parent = parent;
+        this.hashCode = 0;
     }
 
     /**
@@ -258,6 +265,7 @@ protected void setType(EntityType type)
             throw new IllegalArgumentException("An Entity Reference type cannot be null");
         }
         this.type = type;
+        this.hashCode = 0;
     }
 
     /**
@@ -295,6 +303,8 @@ protected void setParameters(Map<String, Serializable> parameters)
      */
     protected void setParameter(String name, Serializable value)
     {
+        this.hashCode = 0;
+
         if (value != null) {
             if (this.parameters == null) {
                 this.parameters = new TreeMap<>();
@@ -538,6 +548,11 @@ public boolean equals(Object obj)
 
         EntityReference ref = (EntityReference) obj;
 
+        // Different memoized hash codes means different references
+        if (this.hashCode != 0 && ref.hashCode != 0 && this.hashCode != ref.hashCode) {
+            return false;
+        }
+
         return name.equals(ref.name) && type.equals(ref.type)
             && (parent == null ? ref.parent == null : parent.equals(ref.parent))
             && (parameters == null ? ref.parameters == null : parameters.equals(ref.parameters));
@@ -638,16 +653,24 @@ public boolean equalsNonRecursive(EntityReference otherReference)
     @Override
     public int hashCode()
     {
-        return new HashCodeBuilder(3, 17).append(getName()).append(getType()).append(getParent())
-            .append(this.parameters).toHashCode();
+        // References are immutable so the hash code is computed only once
+        int result = this.hashCode;
+        if (result == 0) {
+            result = new HashCodeBuilder(3, 17).append(getName()).append(getType()).append(getParent())
+                .append(this.parameters).toHashCode();
+            this.hashCode = result;
+        }
+
+        return result;
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Note: The default implementation relies on comparing the string serialization of the 2 entities. It is the
-     * caller's responsibility to make sure that the entities are either first resolved or at least of the same type, in
-     * order for the comparison to actually make sense.
+     * Note: The default implementation compares the types of the 2 entities and then the names of their elements from
+     * the root, which is close to comparing their string serializations without the cost of serializing them. It is
+     * the caller's responsibility to make sure that the entities are either first resolved or at least of the same
+     * type, in order for the comparison to actually make sense.
      * </p>
      * 
      * @see java.lang.Comparable#compareTo(java.lang.Object)
@@ -663,16 +686,60 @@ public int compareTo(EntityReference reference)
             return 0;
         }
 
-        // Generically compare the string serializations of the 2 references.
-        int stringCompareResult = toString().compareTo(reference.toString());
-        if (stringCompareResult != 0) {
-            return stringCompareResult;
+        if (this.type != reference.type) {
+            return this.type.getLowerCase().compareTo(reference.type.getLowerCase());
         }
 
-        // If the string serializations are the same, compare the parameters.
+        // Compare the common part of the two references, starting from the root
+        int size = size();
+        int referenceSize = reference.size();
+        int commonSize = Math.min(size, referenceSize);
+        int namesCompareResult =
+            compareNames(getAncestor(this, size - commonSize), getAncestor(reference, referenceSize - commonSize));
+        if (namesCompareResult != 0) {
+            return namesCompareResult;
+        }
+
+        // The shortest reference comes first
+        if (size != referenceSize) {
+            return size < referenceSize ? -1 : 1;
+        }
+
+        // If the names are the same, compare the parameters.
         return compareParameters(reference);
     }
 
+    private static EntityReference getAncestor(EntityReference reference, int generations)
+    {
+        EntityReference ancestor = reference;
+        for (int i = 0; i < generations; ++i) {
+            ancestor = ancestor.parent;
+        }
+
+        return ancestor;
+    }
+
+    /**
+     * Compare the names of two references of the same size, starting from the root.
+     *
+     * @param reference1 the first reference
+     * @param reference2 the second reference, with the same number of elements as the first one
+     * @return the result of the comparison of the first different names
+     */
+    private static int compareNames(EntityReference reference1, EntityReference reference2)
+    {
+        if (reference1 == reference2 || reference1 == null) {
+            return 0;
+        }
+
+        int result = compareNames(reference1.parent, reference2.parent);
+        if (result != 0) {
+            return result;
+        }
+
+        return reference1.name.compareTo(reference2.name);
+    }
+
     /**
      * Compare parameters of this reference and another reference.
      *
@@ -697,6 +764,17 @@ private int compareParameters(EntityReference reference)
 
                     int number = ((Comparable) myobj).compareTo(obj);
 
+                    if (number != 0) {
+                        return number;
+                    }
+                } else if (myobj != null) {
+                    // Values which are not comparable (e.g. locales) are compared using their string representation
+                    if (obj == null) {
+                        return 1;
+                    }
+
+                    int number = myobj.toString().compareTo(obj.toString());
+
                     if (number != 0) {
                         return number;
                     }
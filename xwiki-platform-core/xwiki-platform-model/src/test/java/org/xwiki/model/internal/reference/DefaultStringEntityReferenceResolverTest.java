@@ -44,6 +44,8 @@
 import org.xwiki.test.junit5.mockito.MockComponent;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.when;
 
 /**
@@ -608,4 +610,20 @@ public void testResolvePageReferenceParameters() throws Exception
         assertEquals(new EntityReference(pageReference, Collections.singletonMap("key=novalue", "nokey=value")),
             reference);
     }
+
+    @Test
+    public void resolveIsCached()
+    {
+        EntityReference reference = this.resolver.resolve("wiki:space.page", EntityType.DOCUMENT);
+
+        assertSame(reference, this.resolver.resolve("wiki:space.page", EntityType.DOCUMENT));
+        assertNotSame(reference, this.resolver.resolve("wiki:space.page", EntityType.SPACE));
+
+        EntityReference baseReference = new WikiReference("otherwiki");
+        EntityReference relativeReference = this.resolver.resolve("space.page", EntityType.DOCUMENT, baseReference);
+        assertEquals("otherwiki", relativeReference.extractReference(EntityType.WIKI).getName());
+        assertSame(relativeReference, this.resolver.resolve("space.page", EntityType.DOCUMENT, baseReference));
+        assertEquals(DEFAULT_WIKI,
+            this.resolver.resolve("space.page", EntityType.DOCUMENT).extractReference(EntityType.WIKI).getName());
+    }
 }
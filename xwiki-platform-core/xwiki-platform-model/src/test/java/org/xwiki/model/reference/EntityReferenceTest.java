@@ -28,6 +28,7 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
 
@@ -353,6 +354,34 @@ public void compareTo()
         assertSame(reference, list.get(7));
     }
 
+    @Test
+    public void compareToWithLocales()
+    {
+        DocumentReference reference = new DocumentReference("wiki", "space", "page");
+        DocumentReference englishReference = new DocumentReference(reference, Locale.ENGLISH);
+        DocumentReference frenchReference = new DocumentReference(reference, Locale.FRENCH);
+
+        assertTrue(reference.compareTo(englishReference) < 0);
+        assertTrue(englishReference.compareTo(reference) > 0);
+        assertTrue(englishReference.compareTo(frenchReference) < 0);
+        assertTrue(frenchReference.compareTo(englishReference) > 0);
+        assertEquals(0, frenchReference.compareTo(new DocumentReference(reference, Locale.FRENCH)));
+    }
+
+    @Test
+    public void hashCodeIsMemoized()
+    {
+        EntityReference reference = new EntityReference("page", EntityType.DOCUMENT,
+            new EntityReference("space", EntityType.SPACE, new EntityReference("wiki", EntityType.WIKI)));
+        EntityReference otherReference = new EntityReference("otherpage", EntityType.DOCUMENT, reference.getParent());
+
+        assertEquals(reference.hashCode(), reference.hashCode());
+        assertEquals(reference.hashCode(), new EntityReference(reference).hashCode());
+        assertFalse(reference.hashCode() == otherReference.hashCode());
+        assertFalse(reference.equals(otherReference));
+        assertEquals(reference, new EntityReference(reference));
+    }
+
     @Test
     public void nullTypeInConstructor()
     {
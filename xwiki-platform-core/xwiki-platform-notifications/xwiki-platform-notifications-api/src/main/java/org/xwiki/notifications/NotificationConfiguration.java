@@ -20,6 +20,7 @@
 package org.xwiki.notifications;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Get the configuration options concerning the Notification module.
@@ -49,4 +50,16 @@
      * @since 9.6RC1
      */
     int liveNotificationsGraceTime();
+
+    /**
+     * @return true if the events matching the preferences and filters of each user should be computed when the events
+     *         are recorded and stored in a per-user inbox, instead of being searched when the notifications are
+     *         displayed
+     * @since 11.5RC1
+     */
+    @Unstable
+    default boolean isPrefilteringEnabled()
+    {
+        return false;
+    }
 }
@@ -60,4 +60,10 @@ public int liveNotificationsGraceTime()
 
         return (graceTime < 0) ? 0 : graceTime;
     }
+
+    @Override
+    public boolean isPrefilteringEnabled()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + "prefiltering", false);
+    }
 }
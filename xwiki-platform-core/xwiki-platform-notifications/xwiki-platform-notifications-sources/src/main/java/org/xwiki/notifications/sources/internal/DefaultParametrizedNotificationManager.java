@@ -21,7 +21,9 @@
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -35,7 +37,9 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.notifications.CompositeEvent;
+import org.xwiki.notifications.NotificationConfiguration;
 import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.NotificationFormat;
 import org.xwiki.notifications.filters.NotificationFilter;
 import org.xwiki.notifications.filters.internal.status.EventReadAlertFilter;
 import org.xwiki.notifications.filters.internal.status.EventReadEmailFilter;
@@ -52,9 +56,10 @@
  * @version $Id$
  * @since 10.4RC1
  */
-@Component
+@Component(roles = { ParametrizedNotificationManager.class, NotificationEventMatcher.class })
 @Singleton
-public class DefaultParametrizedNotificationManager implements ParametrizedNotificationManager
+public class DefaultParametrizedNotificationManager implements ParametrizedNotificationManager,
+    NotificationEventMatcher
 {
     /**
      * the maximal size of events to fetch in a single batch.
@@ -90,6 +95,9 @@ public class DefaultParametrizedNotificationManager implements ParametrizedNotif
     @Inject
     private PreferenceDateNotificationFilter preferenceDateNotificationFilter;
 
+    @Inject
+    private NotificationConfiguration configuration;
+
     @Override
     public List<CompositeEvent> getEvents(NotificationParameters parameters)
             throws NotificationException
@@ -110,12 +118,16 @@ private List<CompositeEvent> getEvents(List<CompositeEvent> results, Notificatio
         // more events than expected and we will filter afterwards.
         int batchSize = parameters.expectedCount * 2;
         int offset = 0;
+        // When pre-filtering is enabled, the events matching the preferences and filters of the user have already
+        // been stored in their inbox
+        boolean inbox = isInboxEnabled(parameters);
         try {
 
             boolean done = false;
             while (!done) {
                 // Create the query
-                Query query = queryGenerator.generateQuery(parameters);
+                Query query = inbox ? queryGenerator.generateInboxQuery(parameters)
+                    : queryGenerator.generateQuery(parameters);
                 if (query == null) {
                     return Collections.emptyList();
                 }
@@ -124,7 +136,7 @@ private List<CompositeEvent> getEvents(List<CompositeEvent> results, Notificatio
                 // Get a batch of events
                 List<Event> batch = eventStream.searchEvents(query);
 
-                done = addMatchingEventsToResults(batch, parameters, results);
+                done = addMatchingEventsToResults(batch, parameters, results, inbox);
                 if (!done) {
                     if (batch.size() < batchSize) {
                         // there are no more results to expect. stop.
@@ -145,8 +157,51 @@ private List<CompositeEvent> getEvents(List<CompositeEvent> results, Notificatio
         }
     }
 
+    @Override
+    public List<Event> getMatchingEvents(List<Event> events, NotificationParameters parameters)
+        throws NotificationException
+    {
+        if (events.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        try {
+            // Check all the events with a single query
+            Query query = queryGenerator.generateQuery(parameters, getEventsIds(events));
+            if (query == null) {
+                return Collections.emptyList();
+            }
+            Set<String> matchingIds = new HashSet<>(getEventsIds(eventStream.searchEvents(query)));
+
+            List<Event> matchingEvents = new ArrayList<>();
+            for (Event event : events) {
+                if (matchingIds.contains(event.getId()) && isVisible(event, parameters)
+                    && !filterEvent(event, parameters)) {
+                    matchingEvents.add(event);
+                }
+            }
+            return matchingEvents;
+        } catch (Exception e) {
+            throw new NotificationException(
+                String.format("Fail to check if the events %s match the notification parameters.",
+                    getEventsIds(events)), e);
+        }
+    }
+
+    private boolean isVisible(Event event, NotificationParameters parameters)
+    {
+        DocumentReference document = event.getDocument();
+        return document == null || authorizationManager.hasAccess(Right.VIEW, parameters.user, document);
+    }
+
+    private boolean isInboxEnabled(NotificationParameters parameters)
+    {
+        return parameters.user != null && parameters.format == NotificationFormat.ALERT
+            && configuration.isPrefilteringEnabled();
+    }
+
     private boolean addMatchingEventsToResults(List<Event> batch, NotificationParameters parameters,
-        List<CompositeEvent> results) throws EventStreamException, NotificationException
+        List<CompositeEvent> results, boolean inbox) throws EventStreamException, NotificationException
     {
         boolean done = false;
         // Add to the results the events the user has the right to see
@@ -158,7 +213,8 @@ private boolean addMatchingEventsToResults(List<Event> batch, NotificationParame
                 continue;
             }
 
-            if (filterEvent(event, parameters)) {
+            // The events of the inbox have already been filtered when they have been stored
+            if (!inbox && filterEvent(event, parameters)) {
                 continue;
             }
 
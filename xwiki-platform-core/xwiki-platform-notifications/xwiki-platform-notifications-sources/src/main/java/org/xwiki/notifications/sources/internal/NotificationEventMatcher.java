@@ -0,0 +1,47 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.List;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.eventstream.Event;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.sources.NotificationParameters;
+
+/**
+ * Check which events match the given notification parameters, applying the same filtering than the one done when the
+ * notifications are retrieved.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Role
+public interface NotificationEventMatcher
+{
+    /**
+     * @param events the events to check
+     * @param parameters the parameters of the notifications of a given user
+     * @return the events which should be displayed to the user as notifications, in the same order as the given
+     *         events
+     * @throws NotificationException if an error happens
+     */
+    List<Event> getMatchingEvents(List<Event> events, NotificationParameters parameters) throws NotificationException;
+}
@@ -21,6 +21,7 @@
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -31,6 +32,7 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.eventstream.EventStreamException;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.LocalDocumentReference;
 import org.xwiki.notifications.filters.NotificationFilter;
 import org.xwiki.notifications.filters.NotificationFilterManager;
@@ -93,6 +95,9 @@
     @Inject
     private RecordableEventDescriptorHelper recordableEventDescriptorHelper;
 
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
     /**
      * Generate the query.
      *
@@ -103,7 +108,70 @@
      */
     public Query generateQuery(NotificationParameters parameters) throws QueryException, EventStreamException
     {
-        ExpressionNodeToHQLConverter.HQLQuery result = hqlConverter.parse(generateQueryExpression(parameters));
+        return generateQuery(generateQueryExpression(parameters, null));
+    }
+
+    /**
+     * Generate a query checking which of the given events match the parameters.
+     *
+     * @param parameters parameters to use
+     * @param eventIds the identifiers of the events to check
+     * @return the query to execute, returning the events matching the parameters
+     * @throws QueryException if error happens
+     * @throws EventStreamException if error happens
+     * @since 11.5RC1
+     */
+    public Query generateQuery(NotificationParameters parameters, Collection<String> eventIds)
+        throws QueryException, EventStreamException
+    {
+        return generateQuery(generateQueryExpression(parameters, eventIds));
+    }
+
+    /**
+     * Generate a query retrieving the events stored in the inbox of the user, when notifications pre-filtering is
+     * enabled.
+     *
+     * @param parameters parameters to use
+     * @return the query to execute
+     * @throws QueryException if error happens
+     * @since 11.5RC1
+     */
+    public Query generateInboxQuery(NotificationParameters parameters) throws QueryException
+    {
+        Map<String, Object> queryParameters = new HashMap<>();
+
+        StringBuilder statement = new StringBuilder(", LegacyEventStatus status where status.activityEvent = event"
+            + " and status.entityId = :inboxUser");
+        queryParameters.put("inboxUser", serializer.serialize(parameters.user));
+
+        if (Boolean.TRUE.equals(parameters.onlyUnread)) {
+            statement.append(" and status.read = false");
+        }
+        if (parameters.fromDate != null) {
+            statement.append(" and event.date >= :inboxFromDate");
+            queryParameters.put("inboxFromDate", parameters.fromDate);
+        }
+        if (parameters.endDate != null) {
+            statement.append(" and event.date <= :inboxEndDate");
+            queryParameters.put("inboxEndDate", parameters.endDate);
+        }
+        if (parameters.blackList != null && !parameters.blackList.isEmpty()) {
+            statement.append(" and event.id not in (:inboxBlackList)");
+            queryParameters.put("inboxBlackList", parameters.blackList);
+        }
+        statement.append(" order by event.date desc");
+
+        Query query = queryManager.createQuery(statement.toString(), Query.HQL);
+        for (Map.Entry<String, Object> queryParameter : queryParameters.entrySet()) {
+            query.bindValue(queryParameter.getKey(), queryParameter.getValue());
+        }
+
+        return query;
+    }
+
+    private Query generateQuery(ExpressionNode expression) throws QueryException
+    {
+        ExpressionNodeToHQLConverter.HQLQuery result = hqlConverter.parse(expression);
         if (result.getQuery().isEmpty()) {
             return null;
         }
@@ -125,6 +193,12 @@ public Query generateQuery(NotificationParameters parameters) throws QueryExcept
      * @since 9.8RC12x
      */
     public ExpressionNode generateQueryExpression(NotificationParameters parameters) throws EventStreamException
+    {
+        return generateQueryExpression(parameters, null);
+    }
+
+    private ExpressionNode generateQueryExpression(NotificationParameters parameters, Collection<String> eventIds)
+        throws EventStreamException
     {
         // First: get the active preferences of the given user
         Collection<NotificationPreference> preferences = parameters.preferences;
@@ -180,6 +254,7 @@ public ExpressionNode generateQueryExpression(NotificationParameters parameters)
         topNode = handleEndDate(parameters, topNode);
         topNode = handleHiddenEvents(parameters, topNode);
         topNode = handleWiki(parameters, topNode);
+        topNode = handleEvents(eventIds, topNode);
         topNode = handleOrder(topNode);
 
         return topNode;
@@ -357,6 +432,24 @@ private AbstractOperatorNode handleWiki(NotificationParameters parameters, Abstr
         return topNode;
     }
 
+    private AbstractOperatorNode handleEvents(Collection<String> eventIds, AbstractOperatorNode topNode)
+    {
+        if (eventIds != null && topNode != null) {
+            Collection<AbstractValueNode> values = new ArrayList<>();
+            for (String eventId : eventIds) {
+                values.add(new StringValueNode(eventId));
+            }
+
+            return topNode.and(
+                    new InNode(
+                        new PropertyValueNode(EventProperty.ID),
+                        values
+                    )
+            );
+        }
+        return topNode;
+    }
+
     private AbstractOperatorNode handleOrder(AbstractOperatorNode topNode)
     {
         if (topNode != null) {
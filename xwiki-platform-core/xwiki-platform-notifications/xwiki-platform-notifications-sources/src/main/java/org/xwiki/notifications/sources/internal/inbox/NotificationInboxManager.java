@@ -0,0 +1,281 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal.inbox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStatus;
+import org.xwiki.eventstream.EventStatusManager;
+import org.xwiki.eventstream.internal.DefaultEventStatus;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilterManager;
+import org.xwiki.notifications.filters.NotificationFilterPreferenceManager;
+import org.xwiki.notifications.preferences.NotificationPreferenceManager;
+import org.xwiki.notifications.sources.NotificationParameters;
+import org.xwiki.notifications.sources.internal.NotificationEventMatcher;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+/**
+ * Maintain the notification inbox of the users when pre-filtering is enabled: each event is matched against the
+ * preferences and filters of the users when it is stored instead of when the notifications are displayed. The inbox
+ * of a user is made of the unread statuses stored for this user in the event stream.
+ * <p>
+ * Events are dispatched by batches: the candidate users are resolved once per batch and the events of the batch are
+ * matched against the parameters of each user with a single query. The parameters of the users are cached until a
+ * notification preference or filter preference is modified.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component(roles = NotificationInboxManager.class)
+@Singleton
+public class NotificationInboxManager
+{
+    private static final String USERS_QUERY = "select distinct doc.fullName from Document doc, "
+        + "doc.object(XWiki.XWikiUsers) objUser order by doc.fullName";
+
+    @Inject
+    private NotificationEventMatcher eventMatcher;
+
+    @Inject
+    private EventStatusManager eventStatusManager;
+
+    @Inject
+    private NotificationPreferenceManager notificationPreferenceManager;
+
+    @Inject
+    private NotificationFilterManager notificationFilterManager;
+
+    @Inject
+    private NotificationFilterPreferenceManager notificationFilterPreferenceManager;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    private final Map<DocumentReference, NotificationParameters> parametersCache = new ConcurrentHashMap<>();
+
+    private long parametersGeneration;
+
+    /**
+     * Store the given events in the inbox of all the users that should be notified about them.
+     *
+     * @param events the events to dispatch
+     * @throws NotificationException if an error happens
+     */
+    public void dispatch(List<Event> events) throws NotificationException
+    {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        Set<String> wikis = new LinkedHashSet<>();
+        for (Event event : events) {
+            if (event.getWiki() != null) {
+                wikis.add(event.getWiki().getName());
+            }
+        }
+
+        for (DocumentReference user : getCandidateUsers(wikis)) {
+            dispatch(events, getParameters(user), false);
+        }
+    }
+
+    /**
+     * Store the given events in the inbox of the user corresponding to the given parameters, if they match them.
+     *
+     * @param events the events to dispatch
+     * @param parameters the notification parameters of the user, as returned by
+     *            {@link #getParameters(DocumentReference)}
+     * @param keepReadStatus {@code true} if an event already marked as read by the user should not be added again
+     *            to the inbox
+     * @return the number of events stored in the inbox of the user
+     * @throws NotificationException if an error happens
+     */
+    public int dispatch(List<Event> events, NotificationParameters parameters, boolean keepReadStatus)
+        throws NotificationException
+    {
+        // A user without any enabled preference cannot be notified about anything
+        if (parameters.preferences == null || parameters.preferences.isEmpty()) {
+            return 0;
+        }
+
+        String userId = serializer.serialize(parameters.user);
+
+        // Discard the events the user cannot be notified about without querying the database
+        List<Event> candidateEvents = new ArrayList<>();
+        for (Event event : events) {
+            if (isCandidate(event, parameters.user, userId)) {
+                candidateEvents.add(event);
+            }
+        }
+
+        if (candidateEvents.isEmpty()) {
+            return 0;
+        }
+
+        List<Event> matchingEvents = eventMatcher.getMatchingEvents(candidateEvents, parameters);
+        if (matchingEvents.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            if (keepReadStatus) {
+                Set<String> readEvents = new LinkedHashSet<>();
+                for (EventStatus status : eventStatusManager.getEventStatus(matchingEvents,
+                    Collections.singletonList(userId))) {
+                    if (status.isRead()) {
+                        readEvents.add(status.getEvent().getId());
+                    }
+                }
+                matchingEvents.removeIf(event -> readEvents.contains(event.getId()));
+            }
+
+            for (Event event : matchingEvents) {
+                eventStatusManager.saveEventStatus(new DefaultEventStatus(event, userId, false));
+            }
+        } catch (Exception e) {
+            throw new NotificationException(
+                String.format("Failed to store the events in the inbox of [%s].", userId), e);
+        }
+
+        return matchingEvents.size();
+    }
+
+    private boolean isCandidate(Event event, DocumentReference user, String userId)
+    {
+        // Only the users of the main wiki and of the wiki of the event can be notified about it
+        String userWiki = user.getWikiReference().getName();
+        if (!userWiki.equals(wikiDescriptorManager.getMainWikiId())
+            && (event.getWiki() == null || !userWiki.equals(event.getWiki().getName()))) {
+            return false;
+        }
+
+        // An event with a target is only displayed to the users it targets
+        return event.getTarget() == null || event.getTarget().isEmpty() || event.getTarget().contains(userId);
+    }
+
+    /**
+     * @param user the user for which to compute the parameters
+     * @return the parameters used to match the events against the preferences and filters of the given user
+     * @throws NotificationException if an error happens
+     */
+    public NotificationParameters getParameters(DocumentReference user) throws NotificationException
+    {
+        NotificationParameters parameters = this.parametersCache.get(user);
+        if (parameters == null) {
+            long generation;
+            synchronized (this) {
+                generation = this.parametersGeneration;
+            }
+
+            parameters = new NotificationParameters();
+            parameters.user = user;
+            parameters.format = NotificationFormat.ALERT;
+            parameters.preferences = notificationPreferenceManager.getPreferences(user, true, parameters.format);
+            parameters.filters = notificationFilterManager.getAllFilters(user, true);
+            parameters.filterPreferences = notificationFilterPreferenceManager.getFilterPreferences(user);
+
+            synchronized (this) {
+                // Don't cache parameters which might have been computed from preferences modified in the meantime
+                if (generation == this.parametersGeneration) {
+                    this.parametersCache.put(user, parameters);
+                }
+            }
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Forget the cached parameters of the users, to be called when a notification preference or filter preference is
+     * modified.
+     */
+    public synchronized void invalidateParameters()
+    {
+        this.parametersGeneration++;
+        this.parametersCache.clear();
+    }
+
+    /**
+     * @param wikis the wikis where the events happened
+     * @return the users of the main wiki and of the given wikis, which are the only ones who can be notified about
+     *         the events of these wikis
+     * @throws NotificationException if an error happens
+     */
+    public Collection<DocumentReference> getCandidateUsers(Collection<String> wikis) throws NotificationException
+    {
+        String mainWiki = wikiDescriptorManager.getMainWikiId();
+
+        Set<DocumentReference> users = new LinkedHashSet<>();
+        users.addAll(getUsers(mainWiki));
+        for (String wiki : wikis) {
+            if (!wiki.equals(mainWiki)) {
+                users.addAll(getUsers(wiki));
+            }
+        }
+        return users;
+    }
+
+    private List<DocumentReference> getUsers(String wiki) throws NotificationException
+    {
+        try {
+            Query query = queryManager.createQuery(USERS_QUERY, Query.XWQL);
+            query.setWiki(wiki);
+
+            WikiReference wikiReference = new WikiReference(wiki);
+            List<DocumentReference> users = new ArrayList<>();
+            for (Object fullName : query.execute()) {
+                users.add(documentReferenceResolver.resolve((String) fullName, wikiReference));
+            }
+            return users;
+        } catch (QueryException e) {
+            throw new NotificationException(String.format("Failed to get the users of the wiki [%s].", wiki), e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal.inbox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStream;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.sources.NotificationParameters;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+/**
+ * Job that (re)build the notification inbox of the users from the events already stored in the event stream. It's
+ * needed to initialize the inboxes when pre-filtering is enabled on an existing wiki, or after a user modified their
+ * notification preferences or filters.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component
+@InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+@Named(NotificationInboxRebuildJob.JOB_TYPE)
+public class NotificationInboxRebuildJob extends AbstractJob<NotificationInboxRebuildJobRequest,
+        DefaultJobStatus<NotificationInboxRebuildJobRequest>>
+{
+    /**
+     * Type of the job.
+     */
+    public static final String JOB_TYPE = "NotificationInboxRebuildJob";
+
+    private static final int BATCH_SIZE = 100;
+
+    @Inject
+    private EventStream eventStream;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private NotificationInboxManager inboxManager;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Override
+    protected void runInternal() throws Exception
+    {
+        List<NotificationParameters> parameters = new ArrayList<>();
+        for (DocumentReference user : getUsers()) {
+            parameters.add(inboxManager.getParameters(user));
+        }
+
+        Date fromDate = request.getFromDate() != null ? request.getFromDate() : new Date(0);
+        int offset = 0;
+        List<Event> batch;
+        do {
+            Query query = queryManager.createQuery("where event.date >= :date order by event.date", Query.HQL);
+            query.bindValue("date", fromDate);
+            query.setLimit(BATCH_SIZE).setOffset(offset);
+            batch = eventStream.searchEvents(query);
+
+            // Match the whole batch against the parameters of each user at once
+            for (NotificationParameters userParameters : parameters) {
+                dispatch(batch, userParameters);
+            }
+
+            offset += batch.size();
+        } while (batch.size() == BATCH_SIZE);
+    }
+
+    private void dispatch(List<Event> events, NotificationParameters parameters)
+    {
+        try {
+            inboxManager.dispatch(events, parameters, true);
+        } catch (NotificationException e) {
+            logger.warn("Failed to store the events in the notification inbox of [{}].", parameters.user, e);
+        }
+    }
+
+    private Collection<DocumentReference> getUsers() throws Exception
+    {
+        if (request.getUsers() != null) {
+            List<DocumentReference> users = new ArrayList<>();
+            for (String user : request.getUsers()) {
+                users.add(documentReferenceResolver.resolve(user));
+            }
+            return users;
+        }
+
+        return inboxManager.getCandidateUsers(wikiDescriptorManager.getAllIds());
+    }
+
+    @Override
+    public String getType()
+    {
+        return JOB_TYPE;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal.inbox;
+
+import java.util.Date;
+import java.util.List;
+
+import org.xwiki.job.AbstractRequest;
+
+/**
+ * Request for the creation of a {@link NotificationInboxRebuildJob}.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class NotificationInboxRebuildJobRequest extends AbstractRequest
+{
+    private static final String USERS = "users";
+
+    private static final String FROM_DATE = "fromDate";
+
+    /**
+     * Create a request for the given users.
+     *
+     * @param users the serialized references of the users for which to rebuild the inbox, {@code null} for all
+     *            the users
+     * @param fromDate the date of the oldest event to take into account, {@code null} for all the events
+     */
+    public NotificationInboxRebuildJobRequest(List<String> users, Date fromDate)
+    {
+        setUsers(users);
+        setFromDate(fromDate);
+    }
+
+    /**
+     * @param users the serialized references of the users for which to rebuild the inbox, {@code null} for all
+     *            the users
+     */
+    public void setUsers(List<String> users)
+    {
+        setProperty(USERS, users);
+    }
+
+    /**
+     * @return the serialized references of the users for which to rebuild the inbox, {@code null} for all the users
+     */
+    public List<String> getUsers()
+    {
+        return getProperty(USERS);
+    }
+
+    /**
+     * @param fromDate the date of the oldest event to take into account, {@code null} for all the events
+     */
+    public void setFromDate(Date fromDate)
+    {
+        setProperty(FROM_DATE, fromDate);
+    }
+
+    /**
+     * @return the date of the oldest event to take into account, {@code null} for all the events
+     */
+    public Date getFromDate()
+    {
+        return getProperty(FROM_DATE);
+    }
+}
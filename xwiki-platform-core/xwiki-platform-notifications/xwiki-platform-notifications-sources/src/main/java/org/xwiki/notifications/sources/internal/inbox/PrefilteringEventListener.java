@@ -0,0 +1,216 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal.inbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.eventstream.events.EventStreamAddedEvent;
+import org.xwiki.eventstream.internal.DefaultEvent;
+import org.xwiki.notifications.NotificationConfiguration;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.filters.internal.event.NotificationFilterPreferenceAddOrUpdatedEvent;
+import org.xwiki.notifications.filters.internal.event.NotificationFilterPreferenceDeletedEvent;
+import org.xwiki.notifications.preferences.internal.event.NotificationPreferenceAddedEvent;
+import org.xwiki.notifications.preferences.internal.event.NotificationPreferenceDeletedEvent;
+import org.xwiki.notifications.preferences.internal.event.NotificationPreferenceUpdatedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Store the new events of the event stream in the inbox of the users they concern when notifications pre-filtering
+ * is enabled. The matching is done by batches in a background thread to not slow down the thread which produced the
+ * event. The queue of events waiting to be dispatched is bounded: when it's full the thread producing the event waits
+ * for some room instead of letting the memory grow without limit.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component
+@Singleton
+@Named(PrefilteringEventListener.NAME)
+public class PrefilteringEventListener extends AbstractEventListener implements Disposable
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "Notification Prefiltering Listener";
+
+    private static final int QUEUE_CAPACITY = 10000;
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final long STOP_TIMEOUT = 60000L;
+
+    /**
+     * Queued to ask the dispatch thread to stop once the events queued before it have been dispatched.
+     */
+    private static final org.xwiki.eventstream.Event STOP = new DefaultEvent();
+
+    @Inject
+    private NotificationInboxManager inboxManager;
+
+    @Inject
+    private NotificationConfiguration notificationConfiguration;
+
+    @Inject
+    @Named("context")
+    private ComponentManager componentManager;
+
+    @Inject
+    private Logger logger;
+
+    private final BlockingQueue<org.xwiki.eventstream.Event> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    private Thread dispatchThread;
+
+    private boolean disposed;
+
+    /**
+     * Thread used to store the queued events in the inbox of the users.
+     */
+    private class DispatchRunnable implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            boolean stop = false;
+            while (!stop) {
+                List<org.xwiki.eventstream.Event> batch = new ArrayList<>(BATCH_SIZE);
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                queue.drainTo(batch, BATCH_SIZE - 1);
+
+                int stopIndex = batch.indexOf(STOP);
+                if (stopIndex >= 0) {
+                    batch = batch.subList(0, stopIndex);
+                    stop = true;
+                }
+
+                dispatch(batch);
+            }
+        }
+
+        private void dispatch(List<org.xwiki.eventstream.Event> batch)
+        {
+            try {
+                inboxManager.dispatch(batch);
+            } catch (NotificationException e) {
+                logger.warn("Failed to store [{}] events in the notification inbox of the users: {}", batch.size(),
+                    e.getMessage());
+            } catch (Exception e) {
+                // Make sure the thread never dies because of an unexpected error
+                logger.error("Unexpected error while dispatching [{}] events in the notification inboxes.",
+                    batch.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Constructs a new {@link PrefilteringEventListener}.
+     */
+    public PrefilteringEventListener()
+    {
+        super(NAME, new EventStreamAddedEvent(), new NotificationPreferenceAddedEvent(),
+            new NotificationPreferenceUpdatedEvent(), new NotificationPreferenceDeletedEvent(),
+            new NotificationFilterPreferenceAddOrUpdatedEvent(), new NotificationFilterPreferenceDeletedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof EventStreamAddedEvent) {
+            if (this.notificationConfiguration.isEnabled() && this.notificationConfiguration.isPrefilteringEnabled()
+                && startDispatchThread()) {
+                try {
+                    this.queue.put((org.xwiki.eventstream.Event) source);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    this.logger.warn("Interrupted while waiting to queue the event [{}] for the notification inboxes.",
+                        ((org.xwiki.eventstream.Event) source).getId());
+                }
+            }
+        } else {
+            // The preferences or filters of a user changed
+            this.inboxManager.invalidateParameters();
+        }
+    }
+
+    private synchronized boolean startDispatchThread()
+    {
+        if (this.disposed) {
+            return false;
+        }
+
+        if (this.dispatchThread == null) {
+            this.dispatchThread =
+                new Thread(new ExecutionContextRunnable(new DispatchRunnable(), this.componentManager));
+            this.dispatchThread.setName("Notifications pre-filtering thread");
+            this.dispatchThread.setDaemon(true);
+            this.dispatchThread.setPriority(Thread.NORM_PRIORITY - 1);
+            this.dispatchThread.start();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        Thread thread;
+        synchronized (this) {
+            this.disposed = true;
+            thread = this.dispatchThread;
+        }
+
+        if (thread != null) {
+            // Dispatch the events still in the queue before stopping
+            try {
+                this.queue.put(STOP);
+                thread.join(STOP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.logger.warn("Interrupted while waiting for the notification inboxes to be updated.");
+            }
+
+            if (thread.isAlive()) {
+                this.logger.warn("[{}] events have not been stored in the notification inboxes before stopping."
+                    + " The inboxes can be rebuilt with the notification inbox rebuild job.", this.queue.size());
+                thread.interrupt();
+            }
+        }
+    }
+}
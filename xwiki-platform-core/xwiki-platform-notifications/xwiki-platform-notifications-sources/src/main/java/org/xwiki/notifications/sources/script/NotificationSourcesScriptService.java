@@ -29,11 +29,22 @@
 
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobException;
+import org.xwiki.job.JobExecutor;
 import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.notifications.CompositeEvent;
 import org.xwiki.notifications.NotificationException;
 import org.xwiki.notifications.sources.NotificationManager;
+import org.xwiki.notifications.sources.internal.inbox.NotificationInboxRebuildJob;
+import org.xwiki.notifications.sources.internal.inbox.NotificationInboxRebuildJobRequest;
 import org.xwiki.script.service.ScriptService;
+import org.xwiki.security.authorization.AccessDeniedException;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.stability.Unstable;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
 
 /**
  * Script service for the notification sources.
@@ -55,6 +66,15 @@ public class NotificationSourcesScriptService implements ScriptService
     @Inject
     private EntityReferenceSerializer<String> entityReferenceSerializer;
 
+    @Inject
+    private JobExecutor jobExecutor;
+
+    @Inject
+    private ContextualAuthorizationManager authorization;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
     /**
      * @param expectedCount number of expected events
      * @return the matching events for the current user, could be less than expectedCount but not more
@@ -120,4 +140,28 @@ public long getEventsCount(int maxCount) throws NotificationException
                 maxCount
         );
     }
+
+    /**
+     * Start a job (re)building the notification inbox of the given users from the events stored in the event
+     * stream. Only useful when notifications pre-filtering is enabled. Require administration right on the main
+     * wiki.
+     *
+     * @param users the serialized references of the users for which to rebuild the inbox, {@code null} for all the
+     *            users
+     * @param fromDate the date of the oldest event to take into account, {@code null} for all the events
+     * @return the started job
+     * @throws AccessDeniedException if the current user is not allowed to rebuild the inboxes
+     * @throws JobException if the job cannot be started
+     * @since 11.5RC1
+     */
+    @Unstable
+    public Job rebuildInbox(List<String> users, Date fromDate) throws AccessDeniedException, JobException
+    {
+        authorization.checkAccess(Right.ADMIN, new WikiReference(wikiDescriptorManager.getMainWikiId()));
+
+        NotificationInboxRebuildJobRequest request = new NotificationInboxRebuildJobRequest(users, fromDate);
+        request.setId(Arrays.asList("notifications", "inbox", "rebuild"));
+
+        return jobExecutor.execute(NotificationInboxRebuildJob.JOB_TYPE, request);
+    }
 }
@@ -425,4 +425,25 @@ public void generateQueryWithEventTypesThatHasNoDescriptor() throws Exception
             node.toString());
     }
 
+    @Test
+    public void generateInboxQuery() throws Exception
+    {
+        NotificationParameters parameters = new NotificationParameters();
+        parameters.user = userReference;
+        parameters.format = NotificationFormat.ALERT;
+        parameters.onlyUnread = true;
+        parameters.fromDate = startDate;
+        parameters.blackList = Arrays.asList("event1");
+
+        mocker.getComponentUnderTest().generateInboxQuery(parameters);
+
+        verify(this.queryManager).createQuery(
+            ", LegacyEventStatus status where status.activityEvent = event and status.entityId = :inboxUser"
+                + " and status.read = false and event.date >= :inboxFromDate"
+                + " and event.id not in (:inboxBlackList) order by event.date desc",
+            Query.HQL);
+        verify(this.query).bindValue("inboxUser", "xwiki:XWiki.UserA");
+        verify(this.query).bindValue("inboxFromDate", this.startDate);
+        verify(this.query).bindValue("inboxBlackList", Arrays.asList("event1"));
+    }
 }
@@ -0,0 +1,223 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal.inbox;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStatus;
+import org.xwiki.eventstream.EventStatusManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.preferences.NotificationPreference;
+import org.xwiki.notifications.preferences.NotificationPreferenceManager;
+import org.xwiki.notifications.sources.NotificationParameters;
+import org.xwiki.notifications.sources.internal.NotificationEventMatcher;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link NotificationInboxManager}.
+ *
+ * @version $Id$
+ */
+public class NotificationInboxManagerTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<NotificationInboxManager> mocker =
+        new MockitoComponentMockingRule<>(NotificationInboxManager.class);
+
+    private NotificationEventMatcher eventMatcher;
+
+    private EventStatusManager eventStatusManager;
+
+    private NotificationPreferenceManager preferenceManager;
+
+    private QueryManager queryManager;
+
+    private DocumentReference userA = new DocumentReference("xwiki", "XWiki", "UserA");
+
+    private DocumentReference userB = new DocumentReference("xwiki", "XWiki", "UserB");
+
+    private DocumentReference localUser = new DocumentReference("subwiki", "XWiki", "LocalUser");
+
+    private String queriedWiki;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.eventMatcher = this.mocker.getInstance(NotificationEventMatcher.class);
+        this.eventStatusManager = this.mocker.getInstance(EventStatusManager.class);
+        this.preferenceManager = this.mocker.getInstance(NotificationPreferenceManager.class);
+        this.queryManager = this.mocker.getInstance(QueryManager.class);
+
+        WikiDescriptorManager wikiDescriptorManager = this.mocker.getInstance(WikiDescriptorManager.class);
+        when(wikiDescriptorManager.getMainWikiId()).thenReturn("xwiki");
+
+        EntityReferenceSerializer<String> serializer =
+            this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        DocumentReferenceResolver<String> resolver = this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING);
+        for (DocumentReference user : Arrays.asList(this.userA, this.userB, this.localUser)) {
+            when(serializer.serialize(user)).thenReturn(user.getWikiReference().getName() + ":XWiki." + user.getName());
+            when(resolver.resolve("XWiki." + user.getName(), user.getWikiReference())).thenReturn(user);
+        }
+
+        // Each wiki has its own users
+        Query usersQuery = mock(Query.class);
+        when(this.queryManager.createQuery(anyString(), eq(Query.XWQL))).thenReturn(usersQuery);
+        when(usersQuery.setWiki(anyString())).then(invocation -> {
+            this.queriedWiki = invocation.getArgument(0);
+            return usersQuery;
+        });
+        when(usersQuery.execute()).then(invocation -> "xwiki".equals(this.queriedWiki)
+            ? Arrays.asList("XWiki.UserA", "XWiki.UserB") : Arrays.asList("XWiki.LocalUser"));
+
+        when(this.preferenceManager.getPreferences(any(DocumentReference.class), eq(true),
+            eq(NotificationFormat.ALERT))).thenReturn(Collections.singletonList(mock(NotificationPreference.class)));
+        when(this.eventMatcher.getMatchingEvents(anyList(), any(NotificationParameters.class)))
+            .then(invocation -> invocation.getArgument(0));
+    }
+
+    private Event mockEvent(String id, String wiki)
+    {
+        Event event = mock(Event.class, id);
+        when(event.getId()).thenReturn(id);
+        when(event.getWiki()).thenReturn(new WikiReference(wiki));
+        when(event.getTarget()).thenReturn(Collections.emptySet());
+        return event;
+    }
+
+    @Test
+    public void dispatchMatchesAllTheEventsOfABatchWithOneCallPerUser() throws Exception
+    {
+        Event event1 = mockEvent("event1", "xwiki");
+        Event event2 = mockEvent("event2", "xwiki");
+
+        this.mocker.getComponentUnderTest().dispatch(Arrays.asList(event1, event2));
+
+        verify(this.eventMatcher, times(2)).getMatchingEvents(eq(Arrays.asList(event1, event2)),
+            any(NotificationParameters.class));
+        // Only the users of the main wiki are candidates
+        verify(this.queryManager, times(1)).createQuery(anyString(), eq(Query.XWQL));
+
+        ArgumentCaptor<EventStatus> statusCaptor = ArgumentCaptor.forClass(EventStatus.class);
+        verify(this.eventStatusManager, times(4)).saveEventStatus(statusCaptor.capture());
+        assertEquals("xwiki:XWiki.UserA", statusCaptor.getAllValues().get(0).getEntityId());
+        assertSame(event1, statusCaptor.getAllValues().get(0).getEvent());
+        assertEquals("xwiki:XWiki.UserB", statusCaptor.getAllValues().get(3).getEntityId());
+        assertSame(event2, statusCaptor.getAllValues().get(3).getEvent());
+    }
+
+    @Test
+    public void dispatchOnlyEventsOfTheirWikiToLocalUsers() throws Exception
+    {
+        Event mainEvent = mockEvent("mainEvent", "xwiki");
+        Event subwikiEvent = mockEvent("subwikiEvent", "subwiki");
+
+        NotificationParameters parameters = this.mocker.getComponentUnderTest().getParameters(this.localUser);
+        assertEquals(1,
+            this.mocker.getComponentUnderTest().dispatch(Arrays.asList(mainEvent, subwikiEvent), parameters, false));
+
+        verify(this.eventMatcher).getMatchingEvents(Collections.singletonList(subwikiEvent), parameters);
+    }
+
+    @Test
+    public void dispatchTargetedEventOnlyToTheTargetedUsers() throws Exception
+    {
+        Event event = mockEvent("event", "xwiki");
+        when(event.getTarget()).thenReturn(Collections.singleton("xwiki:XWiki.UserA"));
+
+        this.mocker.getComponentUnderTest().dispatch(Collections.singletonList(event));
+
+        ArgumentCaptor<NotificationParameters> parametersCaptor =
+            ArgumentCaptor.forClass(NotificationParameters.class);
+        verify(this.eventMatcher).getMatchingEvents(anyList(), parametersCaptor.capture());
+        assertEquals(this.userA, parametersCaptor.getValue().user);
+    }
+
+    @Test
+    public void dispatchSkipsUsersWithoutEnabledPreferences() throws Exception
+    {
+        when(this.preferenceManager.getPreferences(this.userB, true, NotificationFormat.ALERT))
+            .thenReturn(Collections.emptyList());
+
+        this.mocker.getComponentUnderTest().dispatch(Collections.singletonList(mockEvent("event", "xwiki")));
+
+        verify(this.eventMatcher, times(1)).getMatchingEvents(anyList(), any(NotificationParameters.class));
+        verify(this.eventStatusManager, times(1)).saveEventStatus(any(EventStatus.class));
+    }
+
+    @Test
+    public void dispatchKeepsReadStatus() throws Exception
+    {
+        Event readEvent = mockEvent("readEvent", "xwiki");
+        Event unreadEvent = mockEvent("unreadEvent", "xwiki");
+
+        EventStatus readStatus = mock(EventStatus.class);
+        when(readStatus.getEvent()).thenReturn(readEvent);
+        when(readStatus.isRead()).thenReturn(true);
+        when(this.eventStatusManager.getEventStatus(anyList(), eq(Collections.singletonList("xwiki:XWiki.UserA"))))
+            .thenReturn(Collections.singletonList(readStatus));
+
+        NotificationParameters parameters = this.mocker.getComponentUnderTest().getParameters(this.userA);
+        assertEquals(1,
+            this.mocker.getComponentUnderTest().dispatch(Arrays.asList(readEvent, unreadEvent), parameters, true));
+
+        ArgumentCaptor<EventStatus> statusCaptor = ArgumentCaptor.forClass(EventStatus.class);
+        verify(this.eventStatusManager).saveEventStatus(statusCaptor.capture());
+        assertSame(unreadEvent, statusCaptor.getValue().getEvent());
+    }
+
+    @Test
+    public void getParametersIsCachedUntilInvalidated() throws Exception
+    {
+        NotificationParameters parameters = this.mocker.getComponentUnderTest().getParameters(this.userA);
+        assertSame(parameters, this.mocker.getComponentUnderTest().getParameters(this.userA));
+        verify(this.preferenceManager, times(1)).getPreferences(this.userA, true, NotificationFormat.ALERT);
+
+        this.mocker.getComponentUnderTest().invalidateParameters();
+
+        this.mocker.getComponentUnderTest().getParameters(this.userA);
+        verify(this.preferenceManager, times(2)).getPreferences(this.userA, true, NotificationFormat.ALERT);
+        verify(this.preferenceManager, never()).getPreferences(this.userB, true, NotificationFormat.ALERT);
+    }
+}
@@ -22,6 +22,7 @@
 import java.util.List;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Provide configuration for remote observation manager.
@@ -46,4 +47,36 @@
      * @return the identifier of the network adapter implementation to use to actually send and receive network messages
      */
     String getNetworkAdapter();
+
+    /**
+     * @return the maximum time in milliseconds an event can wait in the outbound queue to be grouped with following
+     *         events in a single network message, 0 or less to send each event in its own message
+     * @since 11.5RC1
+     */
+    @Unstable
+    default long getBatchWindow()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the maximum number of events to group in a single network message
+     * @since 11.5RC1
+     */
+    @Unstable
+    default int getBatchMaxSize()
+    {
+        return 1;
+    }
+
+    /**
+     * @return the size in bytes above which a group of events is compressed before being sent, a negative value to
+     *         disable compression
+     * @since 11.5RC1
+     */
+    @Unstable
+    default int getCompressionThreshold()
+    {
+        return -1;
+    }
 }
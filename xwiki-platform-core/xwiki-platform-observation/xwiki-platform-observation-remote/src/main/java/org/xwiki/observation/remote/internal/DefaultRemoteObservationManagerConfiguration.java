@@ -40,6 +40,12 @@
 @Singleton
 public class DefaultRemoteObservationManagerConfiguration implements RemoteObservationManagerConfiguration
 {
+    private static final long DEFAULT_BATCH_WINDOW = 10;
+
+    private static final int DEFAULT_BATCH_MAXSIZE = 100;
+
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
     /**
      * USed to access configuration storage.
      */
@@ -69,4 +75,23 @@ public String getNetworkAdapter()
     {
         return this.configurationSource.getProperty("observation.remote.networkadapter", "jgroups");
     }
+
+    @Override
+    public long getBatchWindow()
+    {
+        return this.configurationSource.getProperty("observation.remote.batch.window", DEFAULT_BATCH_WINDOW);
+    }
+
+    @Override
+    public int getBatchMaxSize()
+    {
+        return this.configurationSource.getProperty("observation.remote.batch.maxSize", DEFAULT_BATCH_MAXSIZE);
+    }
+
+    @Override
+    public int getCompressionThreshold()
+    {
+        return this.configurationSource.getProperty("observation.remote.compression.threshold",
+            DEFAULT_COMPRESSION_THRESHOLD);
+    }
 }
@@ -79,8 +79,19 @@ public RemoteObservationManager getRemoteObservationManager()
     @Override
     public void receive(Message msg)
     {
-        RemoteEventData remoteEvent = (RemoteEventData) msg.getObject();
+        Object object = msg.getObject();
 
+        if (object instanceof RemoteEventDataBatch) {
+            for (RemoteEventData remoteEvent : ((RemoteEventDataBatch) object).getEvents()) {
+                notify(remoteEvent);
+            }
+        } else {
+            notify((RemoteEventData) object);
+        }
+    }
+
+    private void notify(RemoteEventData remoteEvent)
+    {
         this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
 
         getRemoteObservationManager().notify(remoteEvent);
@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the messages and events exchanged through a JGroups channel.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class JGroupsChannelStatistics
+{
+    private final AtomicLong sentMessages = new AtomicLong();
+
+    private final AtomicLong sentEvents = new AtomicLong();
+
+    private final AtomicLong sentBytes = new AtomicLong();
+
+    private final AtomicLong receivedMessages = new AtomicLong();
+
+    private final AtomicLong receivedBytes = new AtomicLong();
+
+    /**
+     * @param events the number of events contained in the sent message
+     * @param bytes the size of the sent message
+     */
+    void sent(int events, int bytes)
+    {
+        this.sentMessages.incrementAndGet();
+        this.sentEvents.addAndGet(events);
+        this.sentBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @param bytes the size of the received message
+     */
+    void received(int bytes)
+    {
+        this.receivedMessages.incrementAndGet();
+        this.receivedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @return the number of messages sent through the channel
+     */
+    public long getSentMessages()
+    {
+        return this.sentMessages.get();
+    }
+
+    /**
+     * @return the number of events sent through the channel
+     */
+    public long getSentEvents()
+    {
+        return this.sentEvents.get();
+    }
+
+    /**
+     * @return the total size in bytes of the messages sent through the channel
+     */
+    public long getSentBytes()
+    {
+        return this.sentBytes.get();
+    }
+
+    /**
+     * @return the number of messages received from the channel
+     */
+    public long getReceivedMessages()
+    {
+        return this.receivedMessages.get();
+    }
+
+    /**
+     * @return the total size in bytes of the messages received from the channel
+     */
+    public long getReceivedBytes()
+    {
+        return this.receivedBytes.get();
+    }
+}
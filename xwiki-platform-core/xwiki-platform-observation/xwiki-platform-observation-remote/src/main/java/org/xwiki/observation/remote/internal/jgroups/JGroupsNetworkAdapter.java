@@ -23,8 +23,14 @@
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -46,10 +52,15 @@
 import org.xwiki.observation.remote.NetworkAdapter;
 import org.xwiki.observation.remote.RemoteEventData;
 import org.xwiki.observation.remote.RemoteEventException;
+import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
 import org.xwiki.observation.remote.jgroups.JGroupsReceiver;
 
 /**
  * JGroups based implementation of {@link NetworkAdapter}.
+ * <p>
+ * When a batch window is configured the events are not sent right away but pushed to an outbound queue consumed by a
+ * dedicated thread which groups the events produced during the window in a single message. This greatly reduces the
+ * number of messages exchanged by the cluster members during bulk operations.
  *
  * @version $Id$
  * @since 2.0RC1
@@ -76,28 +87,182 @@ public class JGroupsNetworkAdapter implements NetworkAdapter
     @Inject
     private Logger logger;
 
+    /**
+     * Used to get the batching configuration.
+     */
+    @Inject
+    private RemoteObservationManagerConfiguration configuration;
+
     /**
      * The network channels.
      */
     private Map<String, JChannel> channels = new ConcurrentHashMap<String, JChannel>();
 
+    /**
+     * The statistics of each channel.
+     */
+    private Map<String, JGroupsChannelStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * The events waiting to be sent.
+     */
+    private final BlockingQueue<RemoteEventData> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * The thread sending the queued events, null when events are sent synchronously.
+     */
+    private volatile Thread sender;
+
     @Override
     public void send(RemoteEventData remoteEvent)
     {
         this.logger.debug("Send JGroups remote event [" + remoteEvent + "]");
 
+        if (this.sender != null) {
+            this.queue.add(remoteEvent);
+
+            // The sender might have been stopped (and the queue flushed) right before the event was added, in which
+            // case nobody would ever send it. Only one of the flush and the removal below can get the event.
+            if (this.sender == null && this.queue.remove(remoteEvent)) {
+                send(Collections.singletonList(remoteEvent));
+            }
+        } else {
+            send(Collections.singletonList(remoteEvent));
+        }
+    }
+
+    /**
+     * Send the passed events in a single message to all the channels.
+     *
+     * @param events the events to send
+     */
+    private void send(List<RemoteEventData> events)
+    {
         // Send the message to the whole group
-        Message message = new Message(null, remoteEvent);
+        Message message;
+        try {
+            if (events.size() == 1) {
+                message = new Message(null, events.get(0));
+            } else {
+                message =
+                    new Message(null, new RemoteEventDataBatch(events, this.configuration.getCompressionThreshold()));
+            }
+        } catch (RuntimeException e) {
+            // The payload is serialized right away, and fails if one of the events is not serializable
+            if (events.size() == 1) {
+                this.logger.error("Failed to serialize remote event [{}]", events.get(0), e);
+            } else {
+                // Don't lose the whole batch because of one bad event
+                for (RemoteEventData event : events) {
+                    send(Collections.singletonList(event));
+                }
+            }
+
+            return;
+        }
 
         // Send message to JGroups channels
         for (Map.Entry<String, JChannel> entry : this.channels.entrySet()) {
             try {
                 entry.getValue().send(message);
+
+                JGroupsChannelStatistics channelStatistics = this.statistics.get(entry.getKey());
+                if (channelStatistics != null) {
+                    channelStatistics.sent(events.size(), message.getLength());
+                }
             } catch (Exception e) {
-                this.logger
-                    .error("Failed to send message [" + remoteEvent + "] to the channel [" + entry.getKey() + "]", e);
+                this.logger.error("Failed to send message [" + events + "] to the channel [" + entry.getKey() + "]", e);
+            }
+        }
+    }
+
+    /**
+     * Send the queued events, grouped according to the batch window and maximum size, until the thread is interrupted.
+     */
+    private void sendQueue()
+    {
+        long window = TimeUnit.MILLISECONDS.toNanos(this.configuration.getBatchWindow());
+        int maxSize = Math.max(1, this.configuration.getBatchMaxSize());
+
+        List<RemoteEventData> batch = new ArrayList<>(maxSize);
+        try {
+            while (true) {
+                batch.add(this.queue.take());
+
+                long deadline = System.nanoTime() + window;
+                while (batch.size() < maxSize) {
+                    RemoteEventData event = this.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (event == null) {
+                        break;
+                    }
+                    batch.add(event);
+                    this.queue.drainTo(batch, maxSize - batch.size());
+                }
+
+                try {
+                    send(batch);
+                } catch (RuntimeException e) {
+                    // Keep the sender alive, otherwise the queue would grow forever
+                    this.logger.error("Failed to send remote events [{}]", batch, e);
+                }
+
+                batch = new ArrayList<>(maxSize);
+            }
+        } catch (InterruptedException e) {
+            // Don't lose the events already removed from the queue
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void startSender()
+    {
+        if (this.sender == null && this.configuration.getBatchWindow() > 0) {
+            Thread thread = new Thread(this::sendQueue, "XWiki JGroups event sender");
+            thread.setDaemon(true);
+            thread.start();
+
+            this.sender = thread;
+        }
+    }
+
+    /**
+     * Stop the sender thread and send synchronously the events still in the queue.
+     */
+    private synchronized void stopSender()
+    {
+        Thread thread = this.sender;
+        if (thread != null) {
+            this.sender = null;
+
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                this.logger.warn("Interrupted while waiting for the JGroups event sender to stop");
+
+                Thread.currentThread().interrupt();
             }
         }
+
+        List<RemoteEventData> events = new ArrayList<>();
+        this.queue.drainTo(events);
+        int maxSize = Math.max(1, this.configuration.getBatchMaxSize());
+        for (int i = 0; i < events.size(); i += maxSize) {
+            send(events.subList(i, Math.min(i + maxSize, events.size())));
+        }
+    }
+
+    /**
+     * @return the statistics of each started channel, indexed by channel identifier
+     * @since 11.5RC1
+     */
+    public Map<String, JGroupsChannelStatistics> getStatistics()
+    {
+        return Collections.unmodifiableMap(this.statistics);
     }
 
     @Override
@@ -113,7 +278,11 @@ public void startChannel(String channelId) throws RemoteEventException
             channel.connect("event");
 
             this.channels.put(channelId, channel);
+
+            startSender();
         } catch (Exception e) {
+            this.statistics.remove(channelId);
+
             throw new RemoteEventException("Failed to create channel [" + channelId + "]", e);
         }
 
@@ -137,9 +306,17 @@ public void stopChannel(String channelId) throws RemoteEventException
             throw new RemoteEventException(MessageFormat.format("Channel [{0}] is not started", channelId));
         }
 
+        // Make sure the pending events are sent to the channel before closing it
+        stopSender();
+
         channel.close();
 
         this.channels.remove(channelId);
+        this.statistics.remove(channelId);
+
+        if (!this.channels.isEmpty()) {
+            startSender();
+        }
 
         // Unregister the channel from the JMX Server
         try {
@@ -175,7 +352,10 @@ private JChannel createChannel(String channelId) throws Exception
         // create channel
         JChannel channel = new JChannel(channelConf);
 
-        channel.setReceiver(channelReceiver);
+        JGroupsChannelStatistics channelStatistics = new JGroupsChannelStatistics();
+        this.statistics.put(channelId, channelStatistics);
+
+        channel.setReceiver(new StatisticsReceiver(channelReceiver, channelStatistics));
         channel.setDiscardOwnMessages(true);
 
         return channel;
@@ -218,11 +398,15 @@ private ProtocolStackConfigurator loadChannelConfiguration(String channelId) thr
     @Override
     public void stopAllChannels() throws RemoteEventException
     {
+        // Make sure the pending events are sent before closing the channels
+        stopSender();
+
         for (Map.Entry<String, JChannel> channelEntry : this.channels.entrySet()) {
             channelEntry.getValue().close();
         }
 
         this.channels.clear();
+        this.statistics.clear();
 
         this.logger.info("All channels stopped");
     }
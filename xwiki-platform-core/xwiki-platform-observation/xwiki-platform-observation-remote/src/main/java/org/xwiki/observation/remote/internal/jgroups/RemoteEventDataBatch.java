@@ -0,0 +1,152 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.xwiki.observation.remote.RemoteEventData;
+
+/**
+ * A group of remote events sent in a single network message.
+ * <p>
+ * All the events are serialized in the same stream so that the class descriptors and the objects shared between them
+ * (document references, wiki identifiers, etc.) are written only once. Above a configured size the resulting bytes are
+ * also deflated, which works well for the very repetitive events produced by bulk operations like imports or
+ * refactorings.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class RemoteEventDataBatch implements Externalizable
+{
+    private static final long serialVersionUID = 1L;
+
+    private List<RemoteEventData> events;
+
+    private transient int compressionThreshold;
+
+    /**
+     * Used by the serialization.
+     */
+    public RemoteEventDataBatch()
+    {
+        this.events = Collections.emptyList();
+    }
+
+    /**
+     * @param events the events to send
+     * @param compressionThreshold the size in bytes above which the serialized events are compressed, a negative value
+     *            to never compress them
+     */
+    public RemoteEventDataBatch(List<RemoteEventData> events, int compressionThreshold)
+    {
+        this.events = events;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * @return the events, in the order in which they were sent
+     */
+    public List<RemoteEventData> getEvents()
+    {
+        return this.events;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        byte[] bytes = serialize(this.events);
+
+        boolean compressed = this.compressionThreshold >= 0 && bytes.length > this.compressionThreshold;
+        if (compressed) {
+            bytes = compress(bytes);
+        }
+
+        out.writeBoolean(compressed);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException
+    {
+        boolean compressed = in.readBoolean();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+
+        InputStream stream = new ByteArrayInputStream(bytes);
+        if (compressed) {
+            stream = new InflaterInputStream(stream);
+        }
+
+        try (ObjectInputStream objectStream = new ObjectInputStream(stream)) {
+            int size = objectStream.readInt();
+            List<RemoteEventData> readEvents = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                readEvents.add((RemoteEventData) objectStream.readObject());
+            }
+            this.events = readEvents;
+        }
+    }
+
+    private static byte[] serialize(List<RemoteEventData> events) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream objectStream = new ObjectOutputStream(bytes)) {
+            objectStream.writeInt(events.size());
+            for (RemoteEventData event : events) {
+                objectStream.writeObject(event);
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] compress(byte[] bytes) throws IOException
+    {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2);
+
+        try (DeflaterOutputStream stream = new DeflaterOutputStream(compressed)) {
+            stream.write(bytes);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.events.toString();
+    }
+}
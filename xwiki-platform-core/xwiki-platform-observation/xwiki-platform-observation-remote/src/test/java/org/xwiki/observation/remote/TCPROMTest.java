@@ -19,10 +19,12 @@
  */
 package org.xwiki.observation.remote;
 
+import java.io.Serializable;
 import java.util.Arrays;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.remote.test.AbstractROMTestCase;
@@ -31,6 +33,7 @@
 
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -47,6 +50,13 @@ public class TCPROMTest extends AbstractROMTestCase
     {
     }
 
+    static class BrokenSerializable implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Object value = new Unserializable();
+    }
+
     @Override
     @BeforeEach
     public void beforeEach() throws Exception
@@ -92,4 +102,64 @@ public void testSerializableEvent() throws InterruptedException
         verify(localListener).onEvent(same(event), same(unserializable), same(unserializable));
         verify(remoteListener).onEvent(eq(event), eq("some source"), eq("some data"));
     }
+
+    /**
+     * Validate that a burst of events is entirely received, in order, by the other instance.
+     */
+    @Test
+    public void testBurstOfEvents() throws InterruptedException
+    {
+        EventListener remoteListener = mock(EventListener.class, "remote");
+
+        TestEvent event = new TestEvent();
+
+        when(remoteListener.getName()).thenReturn("mylistener");
+        when(remoteListener.getEvents()).thenReturn(Arrays.asList(event));
+
+        getObservationManager2().addListener(remoteListener);
+
+        for (int i = 0; i < 500; ++i) {
+            getObservationManager1().notify(event, "source" + i, "data");
+        }
+
+        // Make sure JGroups has enough time to send the messages
+        Thread.sleep(1000);
+
+        InOrder inOrder = inOrder(remoteListener);
+        for (int i = 0; i < 500; ++i) {
+            inOrder.verify(remoteListener).onEvent(eq(event), eq("source" + i), eq("data"));
+        }
+    }
+
+    /**
+     * Validate that an event which fails to be serialized does not prevent the following events from being sent.
+     */
+    @Test
+    public void testEventFailingSerialization() throws InterruptedException
+    {
+        EventListener remoteListener = mock(EventListener.class, "remote");
+
+        TestEvent event = new TestEvent();
+
+        when(remoteListener.getName()).thenReturn("mylistener");
+        when(remoteListener.getEvents()).thenReturn(Arrays.asList(event));
+
+        getObservationManager2().addListener(remoteListener);
+
+        getObservationManager1().notify(event, "source1", "data");
+        getObservationManager1().notify(event, new BrokenSerializable(), "data");
+        getObservationManager1().notify(event, "source2", "data");
+
+        // Make sure JGroups has enough time to send the messages
+        Thread.sleep(1000);
+
+        getObservationManager1().notify(event, "source3", "data");
+
+        Thread.sleep(1000);
+
+        InOrder inOrder = inOrder(remoteListener);
+        inOrder.verify(remoteListener).onEvent(eq(event), eq("source1"), eq("data"));
+        inOrder.verify(remoteListener).onEvent(eq(event), eq("source2"), eq("data"));
+        inOrder.verify(remoteListener).onEvent(eq(event), eq("source3"), eq("data"));
+    }
 }
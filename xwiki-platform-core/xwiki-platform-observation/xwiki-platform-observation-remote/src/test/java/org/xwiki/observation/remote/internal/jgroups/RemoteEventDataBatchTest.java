@@ -0,0 +1,107 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.test.TestEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link RemoteEventDataBatch}.
+ * 
+ * @version $Id$
+ */
+public class RemoteEventDataBatchTest
+{
+    private static List<RemoteEventData> createEvents(int size)
+    {
+        List<RemoteEventData> events = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            RemoteEventData event = new RemoteEventData();
+            event.setEvent(new TestEvent());
+            event.setSource("wiki:Space.Page" + i);
+            event.setData("data" + i);
+            events.add(event);
+        }
+
+        return events;
+    }
+
+    private static byte[] serialize(RemoteEventDataBatch batch) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+            stream.writeObject(batch);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static RemoteEventDataBatch deserialize(byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (RemoteEventDataBatch) stream.readObject();
+        }
+    }
+
+    private static void assertSameEvents(List<RemoteEventData> expected, List<RemoteEventData> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getEvent(), actual.get(i).getEvent());
+            assertEquals(expected.get(i).getSource(), actual.get(i).getSource());
+            assertEquals(expected.get(i).getData(), actual.get(i).getData());
+        }
+    }
+
+    @Test
+    public void serializeUncompressed() throws Exception
+    {
+        List<RemoteEventData> events = createEvents(10);
+
+        RemoteEventDataBatch batch = deserialize(serialize(new RemoteEventDataBatch(events, -1)));
+
+        assertSameEvents(events, batch.getEvents());
+    }
+
+    @Test
+    public void serializeCompressed() throws Exception
+    {
+        List<RemoteEventData> events = createEvents(100);
+
+        byte[] uncompressed = serialize(new RemoteEventDataBatch(events, -1));
+        byte[] compressed = serialize(new RemoteEventDataBatch(events, 0));
+
+        assertTrue(compressed.length < uncompressed.length);
+
+        assertSameEvents(events, deserialize(compressed).getEvents());
+    }
+}
@@ -200,6 +200,7 @@
 import com.xpn.xwiki.internal.event.XObjectPropertyDeletedEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyUpdatedEvent;
+import com.xpn.xwiki.internal.mandatory.MandatoryDocumentInitializerExecutor;
 import com.xpn.xwiki.internal.mandatory.XWikiPreferencesDocumentInitializer;
 import com.xpn.xwiki.internal.render.OldRendering;
 import com.xpn.xwiki.internal.render.groovy.ParseGroovyFromString;
@@ -1353,19 +1354,7 @@ public int compare(MandatoryDocumentInitializer left, MandatoryDocumentInitializ
 
             getObservationManager().notify(MandatoryDocumentsInitializingEvent.EVENT, null);
 
-            getProgress().pushLevelProgress(initializers.size(), this);
-
-            try {
-                for (MandatoryDocumentInitializer initializer : initializers) {
-                    getProgress().startStep(this);
-
-                    initializeMandatoryDocument(initializer, context);
-
-                    getProgress().endStep(this);
-                }
-            } finally {
-                getProgress().popLevelProgress(this);
-            }
+            Utils.getComponent(MandatoryDocumentInitializerExecutor.class).initialize(initializers, context);
 
             getObservationManager().notify(MandatoryDocumentsInitializedEvent.EVENT, null);
         }
@@ -21,6 +21,7 @@
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.stability.Unstable;
 
 /**
  * Provide a document that should be initialized at startup and when creating a new wiki.
@@ -57,4 +58,19 @@
      * @return true if the document has been modified, false otherwise
      */
     boolean updateDocument(XWikiDocument document);
+
+    /**
+     * Indicate if the initializer can be executed at the same time as other initializers of the same priority targeting
+     * other documents (when {@code xwiki.mandatoryDocuments.threads} is greater than 1). Only initializers which
+     * don't read or modify anything else than the document they are given (in particular no other document, class or
+     * shared cache) should return {@code true}.
+     *
+     * @return {@code true} if the initializer is independent from the other initializers, {@code false} otherwise
+     * @since 11.5RC1
+     */
+    @Unstable
+    default boolean isIndependent()
+    {
+        return false;
+    }
 }
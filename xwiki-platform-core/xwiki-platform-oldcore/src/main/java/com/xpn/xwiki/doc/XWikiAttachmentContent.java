@@ -32,6 +32,7 @@
 import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.io.output.ProxyOutputStream;
 import org.xwiki.environment.Environment;
+import org.xwiki.stability.Unstable;
 import org.xwiki.store.UnexpectedException;
 
 import com.xpn.xwiki.web.Utils;
@@ -338,6 +339,20 @@ public long getLongSize()
         return this.file != null ? this.file.getSize() : -1;
     }
 
+    /**
+     * Give access to the file holding the content when it can be read directly, so that the content can be sent
+     * without being copied through {@link #getContentInputStream()}.
+     *
+     * @return the file holding the content or {@code null} if the content is not stored in a file which can be read
+     *         directly
+     * @since 11.5RC1
+     */
+    @Unstable
+    public File getContentFile()
+    {
+        return null;
+    }
+
     /**
      * Set the owner document in order to propagate the content dirty flag.
      *
@@ -50,6 +50,7 @@
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -1189,21 +1190,25 @@ private String display(Syntax targetSyntax, boolean executionContextIsolated, bo
             getProgress().startStep(getDocumentReference(), "document.progress.render.cache",
                 "Try to get content from the cache");
 
+            // Configure display
+            DocumentDisplayerParameters parameters = new DocumentDisplayerParameters();
+            parameters.setExecutionContextIsolated(executionContextIsolated);
+            parameters.setTransformationContextIsolated(transformationContextIsolated);
+            parameters.setTransformationContextRestricted(transformationContextRestricted);
+            // Render the translated content (matching the current language) using this document's syntax.
+            parameters.setContentTranslated(tdoc != this);
+            parameters.setTargetSyntax(targetSyntax);
+
+            // Also used to refresh the cache in the background when an outdated rendering result is returned
+            Callable<String> renderer =
+                () -> renderXDOM(getDocumentDisplayer().display(this, parameters), targetSyntax);
+
             String renderedContent = getRenderingCache().getRenderedContent(tdoc.getDocumentReferenceWithLocale(),
-                translatedContent, xcontext);
+                translatedContent, renderer, xcontext);
 
             if (renderedContent == null) {
                 getProgress().startStep(getDocumentReference(), "document.progress.render.execute", "Execute content");
 
-                // Configure display
-                DocumentDisplayerParameters parameters = new DocumentDisplayerParameters();
-                parameters.setExecutionContextIsolated(executionContextIsolated);
-                parameters.setTransformationContextIsolated(transformationContextIsolated);
-                parameters.setTransformationContextRestricted(transformationContextRestricted);
-                // Render the translated content (matching the current language) using this document's syntax.
-                parameters.setContentTranslated(tdoc != this);
-                parameters.setTargetSyntax(targetSyntax);
-
                 // Execute display
                 XDOM contentXDOM = getDocumentDisplayer().display(this, parameters);
 
@@ -5277,7 +5282,7 @@ private Set<EntityReference> getUniqueLinkedEntityReferences(XWikiContext contex
                 references = new LinkedHashSet<>();
 
                 // Document content
-                XDOM dom = getXDOM();
+                XDOM dom = getReadOnlyXDOM();
                 getUniqueLinkedEntityReferences(dom, entityType, references);
 
                 // XObjects
@@ -5652,7 +5657,7 @@ private List<String> getIncludedPagesInternal(XWikiContext context)
             return getIncludedPagesForXWiki10Syntax(getContent(), context);
         } else {
             // Find all include macros listed on the page
-            XDOM dom = getXDOM();
+            XDOM dom = getReadOnlyXDOM();
 
             List<String> result = new ArrayList<String>();
             List<MacroBlock> macroBlocks =
@@ -7204,7 +7209,7 @@ private String getDefaultEditModeInternal(XWikiContext context) throws XWikiExce
             // Find all include macros and extract the document names
             // TODO: Is there a good way not to hardcode the macro name? The macro itself shouldn't know
             // its own name since it's a deployment time concern.
-            for (Block macroBlock : getXDOM().getBlocks(new MacroBlockMatcher("include"), Axes.CHILD)) {
+            for (Block macroBlock : getReadOnlyXDOM().getBlocks(new MacroBlockMatcher("include"), Axes.CHILD)) {
                 // Find the document reference to include by checking the macro's "reference" parameter.
                 // For backward-compatibility we also check for a "document" parameter since this is the parameter name
                 // that was used prior to XWiki 3.4M1 when the "reference" one was introduced and thus when the
@@ -8663,16 +8668,43 @@ public void convertSyntax(Syntax targetSyntax, XWikiContext context) throws XWik
     @Override
     public XDOM getXDOM()
     {
-        if (this.xdomCache == null) {
+        return getXDOM(true);
+    }
+
+    /**
+     * NOTE: This method caches the XDOM and returns it directly so it must not be modified. A new XDOM instance is
+     * cached when the content is modified so the returned XDOM stays consistent.
+     *
+     * @return the XDOM corresponding to the document's string content
+     * @since 11.5RC1
+     */
+    @Override
+    @Unstable
+    public XDOM getReadOnlyXDOM()
+    {
+        return getXDOM(false);
+    }
+
+    /**
+     * @param clone true if the cached XDOM should be cloned before being returned
+     * @return the XDOM corresponding to the document's string content
+     */
+    private XDOM getXDOM(boolean clone)
+    {
+        XDOM xdom = this.xdomCache;
+
+        if (xdom == null) {
             try {
-                this.xdomCache = parseContent(getContent());
+                xdom = parseContent(getContent());
+                this.xdomCache = xdom;
             } catch (XWikiException e) {
+                // The error XDOM is not cached so there is no need to clone it
                 ErrorBlockGenerator errorBlockGenerator = Utils.getComponent(ErrorBlockGenerator.class);
                 return new XDOM(errorBlockGenerator.generateErrorBlocks("Failed to render content", e, false));
             }
         }
 
-        return this.xdomCache.clone();
+        return clone ? xdom.clone() : xdom;
     }
 
     /**
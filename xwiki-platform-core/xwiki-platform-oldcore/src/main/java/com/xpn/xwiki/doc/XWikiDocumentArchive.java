@@ -19,17 +19,23 @@
  */
 package com.xpn.xwiki.doc;
 
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.suigeneris.jrcs.rcs.Version;
 import org.suigeneris.jrcs.util.ToString;
 
@@ -48,6 +54,9 @@
  */
 public class XWikiDocumentArchive
 {
+    /** The default number of materialized versions kept in memory. */
+    private static final int DEFAULT_MATERIALIZED_VERSIONS = 5;
+
     /** =docId. */
     private long id;
 
@@ -69,6 +78,13 @@
     /** Set of {@link XWikiRCSNodeContent} which need to update. */
     private Set<XWikiRCSNodeContent> updatedNodeContents = new TreeSet<XWikiRCSNodeContent>();
 
+    /**
+     * The XML of the recently materialized versions, in least recently used order. Used as a starting point to restore
+     * the XML of other versions without going back to the nearest full version.
+     */
+    private final Map<Version, SoftReference<String>> materializedVersions =
+        new LinkedHashMap<Version, SoftReference<String>>(16, 0.75f, true);
+
     /** @param id = {@link XWikiDocument#getId()} */
     public XWikiDocumentArchive(long id)
     {
@@ -103,6 +119,8 @@ protected Version createNextVersion(Version cur, boolean isMinor)
     /** @param node - node added to versionToNode and fullNodes */
     protected void updateNode(XWikiRCSNodeInfo node)
     {
+        clearMaterializedVersions();
+
         Version ver = node.getId().getVersion();
         this.versionToNode.put(ver, node);
         if (!node.isDiff()) {
@@ -310,6 +328,7 @@ public void removeVersions(Version newerVersion, Version olderVersion, XWikiCont
             this.deletedNodes.add(ni);
             it.remove();
         }
+        clearMaterializedVersions();
     }
 
     /**
@@ -359,15 +378,94 @@ public XWikiDocument loadDocument(Version version, XWikiContext context)
      */
     public String getVersionXml(Version version, XWikiContext context) throws XWikiException
     {
+        String xml = getMaterializedVersion(version);
+        if (xml != null) {
+            return xml;
+        }
+
         Version nearestFullVersion = getNearestFullVersion(version);
 
-        List<XWikiRCSNodeContent> lstContent = loadRCSNodeContents(nearestFullVersion, version, context);
         List<String> origText = new ArrayList<String>();
+        List<XWikiRCSNodeContent> lstContent;
+
+        // Start from the closest already materialized version, if any, instead of the nearest full version
+        Pair<Version, String> materialized = getNearestMaterializedVersion(version, nearestFullVersion);
+        if (materialized != null) {
+            origText.addAll(Arrays.asList(ToString.stringToArray(materialized.getRight())));
+            lstContent = loadRCSNodeContents(getPrevVersion(materialized.getLeft()), version, context);
+        } else {
+            lstContent = loadRCSNodeContents(nearestFullVersion, version, context);
+        }
+
         for (XWikiRCSNodeContent nodeContent : lstContent) {
             nodeContent.getPatch().patch(origText);
         }
 
-        return ToString.arrayToString(origText.toArray());
+        xml = ToString.arrayToString(origText.toArray());
+
+        setMaterializedVersion(version, xml, context);
+
+        return xml;
+    }
+
+    private String getMaterializedVersion(Version version)
+    {
+        synchronized (this.materializedVersions) {
+            SoftReference<String> reference = this.materializedVersions.get(version);
+
+            return reference != null ? reference.get() : null;
+        }
+    }
+
+    /**
+     * @param version the version to restore
+     * @param nearestFullVersion the nearest full version of the version to restore
+     * @return the oldest materialized version which is more recent than the version to restore and not more recent
+     *         than the nearest full version, {@code null} if none
+     */
+    private Pair<Version, String> getNearestMaterializedVersion(Version version, Version nearestFullVersion)
+    {
+        Pair<Version, String> nearest = null;
+
+        synchronized (this.materializedVersions) {
+            for (Map.Entry<Version, SoftReference<String>> entry : this.materializedVersions.entrySet()) {
+                Version materializedVersion = entry.getKey();
+                String xml = entry.getValue().get();
+                if (xml != null && materializedVersion.compareVersions(version) > 0
+                    && (nearestFullVersion == null || materializedVersion.compareVersions(nearestFullVersion) <= 0)
+                    && (nearest == null || materializedVersion.compareVersions(nearest.getLeft()) < 0)) {
+                    nearest = new ImmutablePair<>(materializedVersion, xml);
+                }
+            }
+        }
+
+        return nearest;
+    }
+
+    private void setMaterializedVersion(Version version, String xml, XWikiContext context)
+    {
+        int maxSize = context == null || context.getWiki() == null ? DEFAULT_MATERIALIZED_VERSIONS : Integer.parseInt(
+            context.getWiki().getConfig().getProperty("xwiki.store.rcs.materializedVersions",
+                String.valueOf(DEFAULT_MATERIALIZED_VERSIONS)));
+
+        synchronized (this.materializedVersions) {
+            if (maxSize > 0) {
+                this.materializedVersions.put(version, new SoftReference<>(xml));
+            }
+
+            Iterator<Version> it = this.materializedVersions.keySet().iterator();
+            while (this.materializedVersions.size() > Math.max(maxSize, 0) && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private void clearMaterializedVersions()
+    {
+        synchronized (this.materializedVersions) {
+            this.materializedVersions.clear();
+        }
     }
 
     /**
@@ -452,6 +550,7 @@ private List<XWikiRCSNodeContent> loadRCSNodeContents(Version vfrom, Version vto
     /** reset history. history becomes empty. */
     public void resetArchive()
     {
+        clearMaterializedVersions();
         this.versionToNode.clear();
         this.fullVersions.clear();
         this.deletedNodes.addAll(this.updatedNodeInfos);
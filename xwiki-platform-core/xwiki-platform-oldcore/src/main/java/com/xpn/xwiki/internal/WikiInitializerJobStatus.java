@@ -19,6 +19,10 @@
  */
 package com.xpn.xwiki.internal;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.xwiki.job.AbstractJobStatus;
 import org.xwiki.logging.LoggerManager;
 import org.xwiki.observation.ObservationManager;
@@ -31,6 +35,8 @@
  */
 public class WikiInitializerJobStatus extends AbstractJobStatus<WikiInitializerRequest>
 {
+    private final Map<String, Long> mandatoryDocumentInitializerTimes = new ConcurrentHashMap<>();
+
     /**
      * @param request the request provided when started the job
      * @param observationManager the observation manager component
@@ -43,4 +49,24 @@ public WikiInitializerJobStatus(WikiInitializerRequest request, ObservationManag
 
         setIsolated(false);
     }
+
+    /**
+     * @param initializer the class name of the mandatory document initializer
+     * @param time the time spent in the initializer, in milliseconds
+     * @since 11.5RC1
+     */
+    public void addMandatoryDocumentInitializerTime(String initializer, long time)
+    {
+        this.mandatoryDocumentInitializerTimes.merge(initializer, time, Long::sum);
+    }
+
+    /**
+     * @return the time (in milliseconds) spent in each mandatory document initializer executed during the
+     *         initialization of the wiki, indexed by initializer class name
+     * @since 11.5RC1
+     */
+    public Map<String, Long> getMandatoryDocumentInitializerTimes()
+    {
+        return Collections.unmodifiableMap(this.mandatoryDocumentInitializerTimes);
+    }
 }
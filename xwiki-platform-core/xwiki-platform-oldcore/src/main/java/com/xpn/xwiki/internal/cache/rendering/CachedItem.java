@@ -42,6 +42,20 @@
     public Map<RenderingCacheAware, UsedExtension> extensions = new HashMap<RenderingCacheAware,
         CachedItem.UsedExtension>();
 
+    /**
+     * The date at which this item was rendered.
+     *
+     * @since 11.5RC1
+     */
+    public long date;
+
+    /**
+     * The date at which the document was modified, making this item outdated, 0 if it has not been.
+     *
+     * @since 11.5RC1
+     */
+    public volatile long staleSince;
+
     /**
      * Extension used in cached item.
      *
@@ -21,25 +21,50 @@
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.internal.cache.DocumentCache;
 import com.xpn.xwiki.internal.cache.rendering.CachedItem.UsedExtension;
 import com.xpn.xwiki.plugin.XWikiPluginInterface;
@@ -53,7 +78,7 @@
  */
 @Component
 @Singleton
-public class DefaultRenderingCache implements RenderingCache, Initializable
+public class DefaultRenderingCache implements RenderingCache, Initializable, Disposable
 {
     /**
      * UTF-8 encoding key.
@@ -70,6 +95,43 @@ public class DefaultRenderingCache implements RenderingCache, Initializable
      */
     private static final String PARAMETER_REFRESH = "refresh";
 
+    /**
+     * The suffix of the identifier of the cache of the outdated rendering results.
+     */
+    private static final String STALE_SUFFIX = ".stale";
+
+    /**
+     * The events which make the rendering results of a document outdated.
+     */
+    private static final List<Event> EVENTS =
+        Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+    /**
+     * Mark the rendering results of the modified documents as outdated.
+     *
+     * @version $Id$
+     */
+    private class StaleListener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return NAME + STALE_SUFFIX;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return EVENTS;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            markStale(((XWikiDocument) source).getDocumentReference());
+        }
+    }
+
     /**
      * Configuration of the rendering cache.
      */
@@ -93,6 +155,58 @@ public class DefaultRenderingCache implements RenderingCache, Initializable
     @Inject
     private DocumentCache<CachedItem> cache;
 
+    /**
+     * Used to create the cache of the outdated rendering results.
+     */
+    @Inject
+    private CacheManager cacheManager;
+
+    /**
+     * Used to serialize a document reference into a cache key.
+     */
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    /**
+     * Used to get the context of the background refresh.
+     */
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    /**
+     * Used to initialize the execution context of the background refresh.
+     */
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    /**
+     * Used to know when the rendering results become outdated.
+     */
+    @Inject
+    private ObservationManager observationManager;
+
+    @Inject
+    private Logger logger;
+
+    private final StaleListener staleListener = new StaleListener();
+
+    /**
+     * The last rendering results of the documents for which a maximum staleness is configured. Contrary to the main
+     * cache, the entries are not removed when the document is modified.
+     */
+    private Cache<Map<String, CachedItem>> staleCache;
+
+    /**
+     * The keys of the rendering results currently refreshed in the background.
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Refresh in the background the outdated rendering results.
+     */
+    private ExecutorService refreshExecutor;
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -104,11 +218,36 @@ public void initialize() throws InitializationException
             lru.setLifespan(this.configuration.getDuration());
             cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
 
+            CacheConfiguration staleCacheConfiguration = new CacheConfiguration();
+            staleCacheConfiguration.setConfigurationId(NAME + STALE_SUFFIX);
+            LRUEvictionConfiguration staleLru = new LRUEvictionConfiguration();
+            staleLru.setMaxEntries(this.configuration.getSize());
+            staleCacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, staleLru);
+
             try {
                 this.cache.create(cacheConfiguration);
+                this.staleCache = this.cacheManager.createNewCache(staleCacheConfiguration);
+                this.observationManager.addListener(this.staleListener);
             } catch (CacheException e) {
                 throw new InitializationException("Failed to initialize core rendering cache", e);
             }
+
+            BasicThreadFactory factory = new BasicThreadFactory.Builder()
+                .namingPattern("XWiki rendering cache refresh thread %d").daemon(true)
+                .priority(Thread.NORM_PRIORITY - 1).build();
+            this.refreshExecutor = Executors.newSingleThreadExecutor(factory);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.refreshExecutor != null) {
+            this.refreshExecutor.shutdownNow();
+        }
+        if (this.staleCache != null) {
+            this.observationManager.removeListener(this.staleListener.getName());
+            this.staleCache.dispose();
         }
     }
 
@@ -116,6 +255,13 @@ public void initialize() throws InitializationException
 
     @Override
     public String getRenderedContent(DocumentReference documentReference, String source, XWikiContext context)
+    {
+        return getRenderedContent(documentReference, source, null, context);
+    }
+
+    @Override
+    public String getRenderedContent(DocumentReference documentReference, String source, Callable<String> renderer,
+        XWikiContext context)
     {
         String renderedContent = null;
 
@@ -123,9 +269,17 @@ public String getRenderedContent(DocumentReference documentReference, String sou
             String refresh = context.getRequest() != null ? context.getRequest().getParameter(PARAMETER_REFRESH) : null;
 
             if (!"1".equals(refresh)) {
-                CachedItem cachedItem =
-                    this.cache.get(documentReference, source, getAction(context), context.getLanguage(),
-                        getRequestParameters(context));
+                String action = getAction(context);
+                String language = context.getLanguage();
+                String parameters = getRequestParameters(context);
+
+                CachedItem cachedItem = this.cache.get(documentReference, source, action, language, parameters);
+                // The refresh is done without the request so only the results which don't depend on the request
+                // parameters can be refreshed in the background
+                if (cachedItem == null && renderer != null && parameters.isEmpty()) {
+                    cachedItem = getStaleItem(documentReference, source, action, language, parameters, renderer,
+                        context);
+                }
                 if (cachedItem != null) {
                     renderedContent = restoreCachedItem(context, cachedItem);
                 }
@@ -140,11 +294,171 @@ public void setRenderedContent(DocumentReference documentReference, String sourc
         XWikiContext context)
     {
         if (this.configuration.isCached(documentReference)) {
-            this.cache.set(buildCachedItem(context, renderedContent), documentReference, source, getAction(context),
+            setCachedItem(buildCachedItem(context, renderedContent), documentReference, source, getAction(context),
                 context.getLanguage(), getRequestParameters(context));
         }
     }
 
+    /**
+     * Store the provided item in the cache.
+     *
+     * @param cachedItem the item to store
+     * @param documentReference the reference of the document being rendered
+     * @param source the source to render
+     * @param action the current action
+     * @param language the current language
+     * @param parameters the current request parameters
+     */
+    private void setCachedItem(CachedItem cachedItem, DocumentReference documentReference, String source,
+        String action, String language, String parameters)
+    {
+        this.cache.set(cachedItem, documentReference, source, action, language, parameters);
+
+        if (this.staleCache != null && parameters.isEmpty()
+            && this.configuration.getMaxStaleness(documentReference) > 0) {
+            String documentKey = this.serializer.serialize(documentReference);
+
+            Map<String, CachedItem> variants;
+            synchronized (this.staleCache) {
+                variants = this.staleCache.get(documentKey);
+                if (variants == null) {
+                    variants = new ConcurrentHashMap<>();
+                    this.staleCache.set(documentKey, variants);
+                }
+            }
+
+            variants.put(getVariantKey(action, language, parameters), cachedItem);
+        }
+    }
+
+    /**
+     * Get the previous rendering result of a modified document, if it's not too old, and schedule its refresh.
+     *
+     * @param documentReference the reference of the document being rendered
+     * @param source the source to render
+     * @param action the current action
+     * @param language the current language
+     * @param parameters the current request parameters
+     * @param renderer used to refresh the rendering result
+     * @param context the current xwiki context
+     * @return the outdated cached item or null if there is none which can be returned
+     */
+    private CachedItem getStaleItem(DocumentReference documentReference, String source, String action,
+        String language, String parameters, Callable<String> renderer, XWikiContext context)
+    {
+        int maxStaleness = this.configuration.getMaxStaleness(documentReference);
+
+        if (this.staleCache != null && maxStaleness > 0) {
+            Map<String, CachedItem> variants = this.staleCache.get(this.serializer.serialize(documentReference));
+            CachedItem cachedItem = variants != null ? variants.get(getVariantKey(action, language, parameters)) : null;
+
+            if (cachedItem != null) {
+                long staleSince = cachedItem.staleSince;
+                if (staleSince == 0) {
+                    // The document was not modified but the result expired or was evicted from the main cache
+                    staleSince = cachedItem.date + this.configuration.getDuration() * 1000L;
+                }
+
+                if (System.currentTimeMillis() - staleSince <= maxStaleness * 1000L) {
+                    refresh(documentReference, source, action, language, parameters, renderer, context);
+
+                    return cachedItem;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Remember when the rendering results of a document became outdated.
+     *
+     * @param documentReference the reference of the modified document
+     */
+    private void markStale(DocumentReference documentReference)
+    {
+        Map<String, CachedItem> variants = this.staleCache.get(this.serializer.serialize(documentReference));
+        if (variants != null) {
+            long now = System.currentTimeMillis();
+            for (CachedItem cachedItem : variants.values()) {
+                synchronized (cachedItem) {
+                    if (cachedItem.staleSince == 0) {
+                        cachedItem.staleSince = now;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Render again the provided source in the background and store the result in the cache.
+     *
+     * @param documentReference the reference of the document being rendered
+     * @param source the source to render
+     * @param action the current action
+     * @param language the current language
+     * @param parameters the current request parameters
+     * @param renderer used to refresh the rendering result
+     * @param context the current xwiki context
+     */
+    private void refresh(DocumentReference documentReference, String source, String action, String language,
+        String parameters, Callable<String> renderer, XWikiContext context)
+    {
+        String refreshKey =
+            this.serializer.serialize(documentReference) + ':' + getVariantKey(action, language, parameters);
+
+        // Only one refresh at a time for a given rendering result
+        if (this.refreshing.add(refreshKey)) {
+            String wikiId = context.getWikiId();
+            DocumentReference userReference = context.getUserReference();
+            Locale locale = context.getLocale();
+            XWikiDocument document = context.getDoc();
+
+            Runnable runnable = () -> {
+                try {
+                    XWikiContext xcontext = this.xcontextProvider.get();
+                    xcontext.setWikiId(wikiId);
+                    xcontext.setUserReference(userReference);
+                    xcontext.setLocale(locale);
+                    xcontext.setAction(action);
+                    xcontext.setDoc(document);
+
+                    String renderedContent = renderer.call();
+                    if (renderedContent != null) {
+                        setCachedItem(buildCachedItem(xcontext, renderedContent), documentReference, source, action,
+                            language, parameters);
+                    }
+                } catch (Exception e) {
+                    this.logger.warn("Failed to refresh the rendering cache of document [{}]: {}", documentReference,
+                        ExceptionUtils.getRootCauseMessage(e));
+                } finally {
+                    this.refreshing.remove(refreshKey);
+                }
+            };
+
+            try {
+                this.refreshExecutor
+                    .execute(new ExecutionContextRunnable(runnable, this.componentManagerProvider.get()));
+            } catch (Exception e) {
+                this.refreshing.remove(refreshKey);
+
+                this.logger.warn("Failed to schedule the refresh of the rendering cache of document [{}]: {}",
+                    documentReference, ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+
+    /**
+     * @param action the current action
+     * @param language the current language
+     * @param parameters the current request parameters
+     * @return the key of the rendering result among all the ones of the same document
+     */
+    private String getVariantKey(String action, String language, String parameters)
+    {
+        return action + ':' + language + ':' + parameters;
+    }
+
     /**
      * Create cached item with all dependencies.
      *
@@ -178,6 +492,7 @@ private CachedItem buildCachedItem(XWikiContext context, String renderedContent)
         }
 
         cachedItem.rendered = renderedContent;
+        cachedItem.date = System.currentTimeMillis();
         return cachedItem;
     }
 
@@ -267,11 +582,17 @@ private String constructRequestString(SortedMap<String, String[]> sortedMap)
     public void flushCache(DocumentReference documentReference)
     {
         this.cache.removeAll(documentReference);
+        if (this.staleCache != null) {
+            this.staleCache.remove(this.serializer.serialize(documentReference));
+        }
     }
 
     @Override
     public void flushWholeCache()
     {
         this.cache.removeAll();
+        if (this.staleCache != null) {
+            this.staleCache.removeAll();
+        }
     }
 }
@@ -19,7 +19,9 @@
  */
 package com.xpn.xwiki.internal.cache.rendering;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
@@ -78,6 +80,11 @@ public class DefaultRenderingCacheConfiguration implements RenderingCacheConfigu
      */
     private static final int PROPVALUE_SIZE = 100;
 
+    /**
+     * Name of the property listing the maximum staleness of the documents matching a pattern.
+     */
+    private static final String PROPNAME_MAXSTALENESS = PREFIX + "maxStaleness";
+
     /**
      * xwiki.properties file configurations.
      */
@@ -116,6 +123,11 @@ public class DefaultRenderingCacheConfiguration implements RenderingCacheConfigu
      */
     private Pattern farmPattern;
 
+    /**
+     * The cached maximum staleness per document pattern coming from xwiki.properties file.
+     */
+    private Map<Pattern, Integer> stalenessPatterns;
+
     @Override
     public boolean isEnabled()
     {
@@ -164,6 +176,48 @@ public boolean isCached(DocumentReference documentReference)
         return false;
     }
 
+    @Override
+    public int getMaxStaleness(DocumentReference documentReference)
+    {
+        if (documentReference != null) {
+            String documentReferenceString = this.serializer.serialize(documentReference);
+
+            for (Map.Entry<Pattern, Integer> entry : getStalenessPatterns().entrySet()) {
+                if (entry.getKey().matcher(documentReferenceString).matches()) {
+                    return entry.getValue();
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the maximum staleness associated to each document pattern, in the configured order
+     */
+    private Map<Pattern, Integer> getStalenessPatterns()
+    {
+        if (this.stalenessPatterns == null) {
+            Map<Pattern, Integer> patterns = new LinkedHashMap<>();
+
+            List<String> configuration = this.farmConfiguration.getProperty(PROPNAME_MAXSTALENESS, List.class);
+            if (configuration != null) {
+                for (String element : configuration) {
+                    // The pattern itself can contain '=' so we split on the last one
+                    int index = element.lastIndexOf('=');
+                    if (index > 0) {
+                        patterns.put(Pattern.compile(element.substring(0, index).trim()),
+                            Integer.valueOf(element.substring(index + 1).trim()));
+                    }
+                }
+            }
+
+            this.stalenessPatterns = patterns;
+        }
+
+        return this.stalenessPatterns;
+    }
+
     /**
      * Indicate if the provided document's rendering result should be cached according to farm configuration.
      *
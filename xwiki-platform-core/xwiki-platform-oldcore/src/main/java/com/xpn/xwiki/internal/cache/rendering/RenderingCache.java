@@ -19,6 +19,8 @@
  */
 package com.xpn.xwiki.internal.cache.rendering;
 
+import java.util.concurrent.Callable;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.DocumentReference;
 
@@ -43,6 +45,25 @@
      */
     String getRenderedContent(DocumentReference documentReference, String source, XWikiContext context);
 
+    /**
+     * The stored result of the rendering of the provided source.
+     * <p>
+     * When a maximum staleness is configured for the document, the previous rendering result can be returned after
+     * the document has been modified, while the provided renderer is used in the background to refresh the cache.
+     *
+     * @param documentReference the reference of the document being rendered
+     * @param source the source to render
+     * @param renderer used in the background to render the source when an outdated result is returned
+     * @param context the XWiki context
+     * @return the cached result, null if it has not been yet cached
+     * @since 11.5RC1
+     */
+    default String getRenderedContent(DocumentReference documentReference, String source, Callable<String> renderer,
+        XWikiContext context)
+    {
+        return getRenderedContent(documentReference, source, context);
+    }
+
     /**
      * Stored the result of the provided source rendering if the cache is enabled for the provided document.
      *
@@ -53,4 +53,17 @@
      * @return true if the document should be cached, false otherwise
      */
     boolean isCached(DocumentReference documentReference);
+
+    /**
+     * Indicate how long the previous rendering result of the provided document can still be returned after the
+     * document has been modified, while it's refreshed in the background.
+     *
+     * @param documentReference the reference of the document
+     * @return the maximum staleness in seconds, 0 if outdated rendering results should never be returned
+     * @since 11.5RC1
+     */
+    default int getMaxStaleness(DocumentReference documentReference)
+    {
+        return 0;
+    }
 }
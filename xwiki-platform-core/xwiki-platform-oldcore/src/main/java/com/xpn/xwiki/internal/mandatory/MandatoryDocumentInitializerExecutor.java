@@ -0,0 +1,474 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.mandatory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.environment.Environment;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobContext;
+import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.MandatoryDocumentInitializer;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.WikiInitializerJobStatus;
+
+/**
+ * Execute the {@link MandatoryDocumentInitializer}s of a wiki.
+ * <p>
+ * By default the initializers are executed one after the other, in the order of their priority. Two optional modes can
+ * be enabled in xwiki.cfg:
+ * <ul>
+ * <li>{@code xwiki.mandatoryDocuments.fingerprint}: remember, for each wiki, the fingerprint of the initializers
+ * (derived from their code) and the version of the document they produced, and skip the initializers which did not
+ * change since then when the document was not modified either</li>
+ * <li>{@code xwiki.mandatoryDocuments.threads}: execute in parallel the initializers of the same priority targeting
+ * different documents which declare that they are independent (see
+ * {@link MandatoryDocumentInitializer#isIndependent()}), the other ones are still executed one after the other</li>
+ * </ul>
+ * Each document is saved as soon as its initializers have been executed. The time spent in each initializer is
+ * reported in the {@link WikiInitializerJobStatus} when the wiki is initialized by a
+ * {@link com.xpn.xwiki.internal.WikiInitializerJob}.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component(roles = MandatoryDocumentInitializerExecutor.class)
+@Singleton
+public class MandatoryDocumentInitializerExecutor
+{
+    private static final String PROPERTY_FINGERPRINT = "xwiki.mandatoryDocuments.fingerprint";
+
+    private static final String PROPERTY_THREADS = "xwiki.mandatoryDocuments.threads";
+
+    private static final String VERSION_SUMMARY = "core.model.xclass.mandatoryUpdateProperty.versionSummary";
+
+    private static final char FINGERPRINT_SEPARATOR = ';';
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<EntityReference> resolver;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    @Inject
+    @Named("xwikicfg")
+    private ConfigurationSource configuration;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private JobContext jobContext;
+
+    @Inject
+    private JobProgressManager progressManager;
+
+    @Inject
+    private ContextualLocalizationManager localization;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The initializers targeting the same document in the same priority level.
+     */
+    private final class DocumentInitialization
+    {
+        private final DocumentReference documentReference;
+
+        private final List<MandatoryDocumentInitializer> initializers = new ArrayList<>();
+
+        private final Map<String, Long> times = new HashMap<>();
+
+        private XWikiDocument document;
+
+        private boolean updated;
+
+        private DocumentInitialization(DocumentReference documentReference)
+        {
+            this.documentReference = documentReference;
+        }
+
+        /**
+         * @return {@code true} if all the initializers of the document can be executed in parallel with other
+         *         documents
+         */
+        private boolean isIndependent()
+        {
+            return this.initializers.stream().allMatch(MandatoryDocumentInitializer::isIndependent);
+        }
+
+        private void execute(Properties fingerprints)
+        {
+            XWikiContext xcontext = xcontextProvider.get();
+            xcontext.setWikiId(this.documentReference.getWikiReference().getName());
+
+            execute(fingerprints, xcontext);
+        }
+
+        /**
+         * Update the document and save it right away so that the initializers executed after it see the new version.
+         *
+         * @param fingerprints the fingerprints to update or {@code null} if they are disabled
+         * @param xcontext the XWiki context
+         */
+        private void execute(Properties fingerprints, XWikiContext xcontext)
+        {
+            try {
+                this.document = xcontext.getWiki().getDocument(this.documentReference, xcontext);
+
+                for (MandatoryDocumentInitializer initializer : this.initializers) {
+                    long start = System.currentTimeMillis();
+
+                    this.updated |= initializer.updateDocument(this.document);
+
+                    this.times.merge(initializer.getClass().getName(), System.currentTimeMillis() - start, Long::sum);
+                }
+
+                save(this, fingerprints, xcontext);
+            } catch (Exception e) {
+                logger.error("Failed to initialize mandatory document [{}]", this.documentReference, e);
+            }
+        }
+    }
+
+    /**
+     * Execute the passed initializers in the current wiki.
+     *
+     * @param initializers the initializers, sorted by priority
+     * @param xcontext the XWiki context
+     */
+    public void initialize(List<MandatoryDocumentInitializer> initializers, XWikiContext xcontext)
+    {
+        String wiki = xcontext.getWikiId();
+
+        boolean fingerprintEnabled = this.configuration.getProperty(PROPERTY_FINGERPRINT, 0) == 1;
+        Properties fingerprints = fingerprintEnabled ? loadFingerprints(wiki) : null;
+        Map<String, String> versions = fingerprintEnabled ? getDocumentVersions(initializers, wiki) : null;
+
+        // Group the initializers by priority and document, skipping the ones which don't need to be executed
+        Map<Integer, Map<DocumentReference, DocumentInitialization>> levels = new TreeMap<>();
+        int count = 0;
+        for (MandatoryDocumentInitializer initializer : initializers) {
+            DocumentReference documentReference = this.resolver.resolve(initializer.getDocumentReference());
+
+            if (documentReference.getWikiReference().getName().equals(wiki)
+                && (fingerprints == null || !isUpToDate(initializer, documentReference, fingerprints, versions))) {
+                Map<DocumentReference, DocumentInitialization> level =
+                    levels.computeIfAbsent(getPriority(initializer), key -> new LinkedHashMap<>());
+                DocumentInitialization initialization = level.get(documentReference);
+                if (initialization == null) {
+                    initialization = new DocumentInitialization(documentReference);
+                    level.put(documentReference, initialization);
+                    ++count;
+                }
+                initialization.initializers.add(initializer);
+            }
+        }
+
+        int threads = this.configuration.getProperty(PROPERTY_THREADS, 1);
+
+        this.progressManager.pushLevelProgress(count, this);
+
+        try {
+            for (Map<DocumentReference, DocumentInitialization> level : levels.values()) {
+                // Only the initializers declaring that they don't depend on anything else than their document can be
+                // executed in parallel
+                List<DocumentInitialization> independentInitializations = new ArrayList<>();
+                for (DocumentInitialization initialization : level.values()) {
+                    if (threads > 1 && initialization.isIndependent()) {
+                        independentInitializations.add(initialization);
+                    } else {
+                        this.progressManager.startStep(this);
+
+                        initialization.execute(fingerprints, xcontext);
+                        reportTimes(initialization.times);
+
+                        this.progressManager.endStep(this);
+                    }
+                }
+
+                if (!independentInitializations.isEmpty()) {
+                    initializeParallel(independentInitializations, threads, fingerprints);
+                }
+            }
+        } finally {
+            this.progressManager.popLevelProgress(this);
+        }
+
+        if (fingerprints != null) {
+            storeFingerprints(wiki, fingerprints);
+        }
+    }
+
+    private void initializeParallel(List<DocumentInitialization> initializations, int threads,
+        Properties fingerprints)
+    {
+        BasicThreadFactory factory =
+            new BasicThreadFactory.Builder().namingPattern("Mandatory document initializer %d").daemon(true).build();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, initializations.size()), factory);
+
+        try {
+            // Each document is saved by the thread which updated it, as soon as it's done
+            List<Future<?>> futures = new ArrayList<>();
+            for (DocumentInitialization initialization : initializations) {
+                futures.add(executor.submit(new ExecutionContextRunnable(() -> initialization.execute(fingerprints),
+                    this.componentManagerProvider.get())));
+            }
+
+            // Report the progress from the current thread, which is the one of the job
+            for (int i = 0; i < initializations.size(); ++i) {
+                DocumentInitialization initialization = initializations.get(i);
+
+                this.progressManager.startStep(this);
+
+                try {
+                    futures.get(i).get();
+
+                    reportTimes(initialization.times);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    return;
+                } catch (Exception e) {
+                    this.logger.error("Failed to initialize mandatory document [{}]",
+                        initialization.documentReference, e);
+                }
+
+                this.progressManager.endStep(this);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void save(DocumentInitialization initialization, Properties fingerprints, XWikiContext xcontext)
+        throws XWikiException
+    {
+        XWikiDocument document = initialization.document;
+
+        if (initialization.updated) {
+            xcontext.getWiki().saveDocument(document,
+                StringUtils.defaultString(this.localization.getTranslationPlain(VERSION_SUMMARY), VERSION_SUMMARY),
+                xcontext);
+        }
+
+        if (fingerprints != null && !document.isNew()) {
+            for (MandatoryDocumentInitializer initializer : initialization.initializers) {
+                fingerprints.setProperty(getFingerprintKey(initializer, initialization.documentReference),
+                    getFingerprint(initializer) + FINGERPRINT_SEPARATOR + document.getVersion());
+            }
+        }
+    }
+
+    private void reportTimes(Map<String, Long> times)
+    {
+        Job job = this.jobContext.getCurrentJob();
+
+        if (job != null && job.getStatus() instanceof WikiInitializerJobStatus) {
+            WikiInitializerJobStatus status = (WikiInitializerJobStatus) job.getStatus();
+            times.forEach(status::addMandatoryDocumentInitializerTime);
+        }
+    }
+
+    private int getPriority(MandatoryDocumentInitializer initializer)
+    {
+        Priority priority = initializer.getClass().getAnnotation(Priority.class);
+
+        return priority != null ? priority.value() : MandatoryDocumentInitializer.DEFAULT_PRIORITY;
+    }
+
+    private boolean isUpToDate(MandatoryDocumentInitializer initializer, DocumentReference documentReference,
+        Properties fingerprints, Map<String, String> versions)
+    {
+        String version = versions.get(this.localSerializer.serialize(documentReference));
+
+        return version != null
+            && StringUtils.equals(fingerprints.getProperty(getFingerprintKey(initializer, documentReference)),
+                getFingerprint(initializer) + FINGERPRINT_SEPARATOR + version);
+    }
+
+    private String getFingerprintKey(MandatoryDocumentInitializer initializer, DocumentReference documentReference)
+    {
+        return this.localSerializer.serialize(documentReference) + '/' + initializer.getClass().getName();
+    }
+
+    /**
+     * The expected state of the document only depends on the code of the initializer so we use the identity of the
+     * archive containing it (which usually contains the version in its name) and its last modification date.
+     *
+     * @param initializer the initializer
+     * @return the fingerprint of the initializer
+     */
+    private String getFingerprint(MandatoryDocumentInitializer initializer)
+    {
+        Class<?> initializerClass = initializer.getClass();
+
+        StringBuilder builder = new StringBuilder(initializerClass.getName());
+
+        CodeSource codeSource = initializerClass.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            builder.append('@');
+            builder.append(codeSource.getLocation());
+            try {
+                builder.append(':');
+                builder.append(new File(codeSource.getLocation().toURI()).lastModified());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // Not a file, the location is enough
+            }
+        }
+
+        String version = initializerClass.getPackage() != null
+            ? initializerClass.getPackage().getImplementationVersion() : null;
+        if (version != null) {
+            builder.append(':');
+            builder.append(version);
+        }
+
+        return DigestUtils.md5Hex(builder.toString());
+    }
+
+    /**
+     * Get the current versions of the documents targeted by the initializers using a single query.
+     *
+     * @param initializers the initializers
+     * @param wiki the wiki
+     * @return the current version of each document, indexed by local reference
+     */
+    private Map<String, String> getDocumentVersions(List<MandatoryDocumentInitializer> initializers, String wiki)
+    {
+        List<String> names = new ArrayList<>(initializers.size());
+        for (MandatoryDocumentInitializer initializer : initializers) {
+            DocumentReference documentReference = this.resolver.resolve(initializer.getDocumentReference());
+            if (documentReference.getWikiReference().getName().equals(wiki)) {
+                names.add(this.localSerializer.serialize(documentReference));
+            }
+        }
+
+        Map<String, String> versions = new HashMap<>();
+        if (!names.isEmpty()) {
+            try {
+                Query query = this.queryManager.createQuery("select doc.fullName, doc.version from XWikiDocument doc"
+                    + " where doc.translation = 0 and doc.fullName in (:names)", Query.HQL);
+                query.bindValue("names", names);
+                query.setWiki(wiki);
+
+                for (Object[] result : query.<Object[]>execute()) {
+                    versions.put((String) result[0], (String) result[1]);
+                }
+            } catch (QueryException e) {
+                this.logger.warn("Failed to get the versions of the mandatory documents of wiki [{}]: {}", wiki,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        return versions;
+    }
+
+    private File getFingerprintsFile(String wiki)
+    {
+        return new File(this.environment.getPermanentDirectory(), "mandatory/" + wiki + ".properties");
+    }
+
+    private Properties loadFingerprints(String wiki)
+    {
+        Properties fingerprints = new Properties();
+
+        File file = getFingerprintsFile(wiki);
+        if (file.exists()) {
+            try (InputStream stream = new FileInputStream(file)) {
+                fingerprints.load(stream);
+            } catch (IOException e) {
+                this.logger.warn("Failed to load the mandatory documents fingerprints of wiki [{}]: {}", wiki,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        return fingerprints;
+    }
+
+    private void storeFingerprints(String wiki, Properties fingerprints)
+    {
+        File file = getFingerprintsFile(wiki);
+        file.getParentFile().mkdirs();
+
+        try (OutputStream stream = new FileOutputStream(file)) {
+            fingerprints.store(stream, null);
+        } catch (IOException e) {
+            this.logger.warn("Failed to store the mandatory documents fingerprints of wiki [{}]: {}", wiki,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters associated to a cache of the {@link com.xpn.xwiki.store.XWikiCacheStore}.
+ * 
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class CacheStoreStatistics
+{
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong coalescedWaits = new AtomicLong();
+
+    private final AtomicLong loads = new AtomicLong();
+
+    private final AtomicLong loadTime = new AtomicLong();
+
+    /**
+     * A value was found in the cache.
+     */
+    public void hit()
+    {
+        this.hits.incrementAndGet();
+    }
+
+    /**
+     * A value was not found in the cache.
+     */
+    public void miss()
+    {
+        this.misses.incrementAndGet();
+    }
+
+    /**
+     * A value was not found in the cache but was already being loaded by another thread.
+     */
+    public void coalesced()
+    {
+        this.coalescedWaits.incrementAndGet();
+    }
+
+    /**
+     * A value was loaded from the underlying store.
+     * 
+     * @param nanoTime the time spent loading the value, in nanoseconds
+     */
+    public void loaded(long nanoTime)
+    {
+        this.loads.incrementAndGet();
+        this.loadTime.addAndGet(nanoTime);
+    }
+
+    /**
+     * @return the number of values found in the cache
+     */
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of values not found in the cache
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the number of values not found in the cache for which the caller waited for a load executed by another
+     *         thread instead of accessing the underlying store
+     */
+    public long getCoalescedWaits()
+    {
+        return this.coalescedWaits.get();
+    }
+
+    /**
+     * @return the number of values loaded from the underlying store
+     */
+    public long getLoads()
+    {
+        return this.loads.get();
+    }
+
+    /**
+     * @return the total time spent loading values from the underlying store, in milliseconds
+     */
+    public long getLoadTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.loadTime.get());
+    }
+
+    /**
+     * @return the average time spent loading a value from the underlying store, in milliseconds
+     */
+    public double getAverageLoadTime()
+    {
+        long count = this.loads.get();
+
+        return count > 0 ? (double) this.loadTime.get() / count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("hits: %d, misses: %d, coalesced waits: %d, loads: %d, average load time: %.2fms",
+            getHits(), getMisses(), getCoalescedWaits(), getLoads(), getAverageLoadTime());
+    }
+}
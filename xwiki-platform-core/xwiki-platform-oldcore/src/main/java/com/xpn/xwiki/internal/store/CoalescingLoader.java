@@ -0,0 +1,243 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * Make sure concurrent loads of the same key are executed only once: the first caller loads the value and the other
+ * callers wait for its result instead of hitting the underlying store too.
+ * <p>
+ * A load can trigger loads of other keys (e.g. loading a document loads the documents of its classes), so two threads
+ * could end up waiting for each other. Before waiting, the caller follows the chain of threads waiting for each other
+ * and loads the value itself if the chain leads back to it. As a last resort the wait is also bounded in time.
+ * 
+ * @param <V> the type of the loaded values
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class CoalescingLoader<V>
+{
+    /**
+     * Load a value from the underlying store.
+     * 
+     * @param <V> the type of the loaded value
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface Loader<V>
+    {
+        /**
+         * @return the loaded value
+         * @throws XWikiException when failing to load the value
+         */
+        V load() throws XWikiException;
+    }
+
+    private static class Flight<V>
+    {
+        private final Thread thread = Thread.currentThread();
+
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+    }
+
+    /**
+     * The default maximum time to wait for a value loaded by another thread, in milliseconds.
+     */
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    /**
+     * The flight each thread is waiting for. Shared by all the loaders since a load in one of them can trigger a load in
+     * another one.
+     */
+    private static final ConcurrentMap<Thread, Flight<?>> WAITING = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    private final CacheStoreStatistics statistics;
+
+    private final long timeout;
+
+    /**
+     * @param statistics the counters to update
+     */
+    public CoalescingLoader(CacheStoreStatistics statistics)
+    {
+        this(statistics, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param statistics the counters to update
+     * @param timeout the maximum time to wait for a value loaded by another thread before loading it directly, in
+     *            milliseconds
+     */
+    public CoalescingLoader(CacheStoreStatistics statistics, long timeout)
+    {
+        this.statistics = statistics;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Load the value associated to the passed key, or wait for the result of the load started by another thread for the
+     * same key.
+     * 
+     * @param key the key of the value to load
+     * @param loader used to load the value from the underlying store
+     * @param cacher called with the loaded value unless the key was invalidated while it was being loaded
+     * @return the loaded value
+     * @throws XWikiException when failing to load the value
+     */
+    public V load(String key, Loader<V> loader, Consumer<V> cacher) throws XWikiException
+    {
+        Flight<V> flight = new Flight<>();
+
+        Flight<V> currentFlight = this.flights.putIfAbsent(key, flight);
+        if (currentFlight != null) {
+            if (currentFlight.thread != flight.thread) {
+                return join(currentFlight, loader);
+            }
+
+            // The value is already being loaded by the current thread (the load triggered a load of the same key), don't
+            // wait for ourselves
+            return load(loader);
+        }
+
+        try {
+            V value = load(loader);
+
+            // Don't cache a value which might have been loaded before the last modification
+            if (this.flights.get(key) == flight) {
+                cacher.accept(value);
+            }
+
+            flight.future.complete(value);
+
+            return value;
+        } catch (Throwable e) {
+            flight.future.completeExceptionally(e);
+
+            throw e;
+        } finally {
+            this.flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Forget about the loads in progress for the passed key: their result won't be cached and the next callers will
+     * start a new load.
+     * 
+     * @param key the key of the value which was modified
+     */
+    public void invalidate(String key)
+    {
+        this.flights.remove(key);
+    }
+
+    /**
+     * Forget about all the loads in progress.
+     */
+    public void invalidateAll()
+    {
+        this.flights.clear();
+    }
+
+    private V load(Loader<V> loader) throws XWikiException
+    {
+        long start = System.nanoTime();
+
+        try {
+            return loader.load();
+        } finally {
+            this.statistics.loaded(System.nanoTime() - start);
+        }
+    }
+
+    private V join(Flight<V> flight, Loader<V> loader) throws XWikiException
+    {
+        Thread currentThread = Thread.currentThread();
+
+        // Register before looking for a cycle so that, when two threads start waiting for each other at the same time,
+        // at least one of them sees the complete cycle.
+        WAITING.put(currentThread, flight);
+
+        try {
+            if (!isWaitingFor(flight, currentThread)) {
+                this.statistics.coalesced();
+
+                return flight.future.get(this.timeout, TimeUnit.MILLISECONDS);
+            }
+
+            // The thread loading this key is (indirectly) waiting for a key we are loading
+        } catch (TimeoutException e) {
+            // Something else than another load is blocking the loading thread, don't wait for it forever
+        } catch (InterruptedException e) {
+            currentThread.interrupt();
+
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_READING_DOC,
+                "Interrupted while waiting for a value loaded by another thread", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof XWikiException) {
+                throw (XWikiException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_READING_DOC, "Failed to load value", cause);
+        } finally {
+            WAITING.remove(currentThread);
+        }
+
+        return load(loader);
+    }
+
+    /**
+     * @param flight the flight the current thread wants to wait for
+     * @param thread the current thread
+     * @return {@code true} if the thread loading the flight is directly or indirectly waiting for the passed thread
+     */
+    private static boolean isWaitingFor(Flight<?> flight, Thread thread)
+    {
+        Flight<?> current = flight;
+        // Bound the walk in case the chain changes while we follow it
+        for (int i = 0; current != null && i < WAITING.size() + 1; ++i) {
+            if (current.thread == thread) {
+                return true;
+            }
+
+            current = WAITING.get(current.thread);
+        }
+
+        return false;
+    }
+}
@@ -209,6 +209,16 @@ public boolean isAttachmentRecycleBinEnabled()
         return !"0".equals(this.configuration.getProperty("storage.attachment.recyclebin", "1"));
     }
 
+    /**
+     * @return true if the properties of all the objects of a document should be loaded in a fixed number of queries
+     *         instead of one query per property
+     * @since 11.5RC1
+     */
+    public boolean isBulkObjectLoadingEnabled()
+    {
+        return "1".equals(this.configuration.getProperty("xwiki.store.hibernate.bulkObjectLoading", "0"));
+    }
+
     /**
      * @return true if cache store is enabled
      */
@@ -43,9 +43,15 @@
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.configuration.ConfigurationSource;
@@ -57,6 +63,9 @@
 import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 import org.xwiki.properties.BeanManager;
 import org.xwiki.properties.ConverterManager;
 import org.xwiki.properties.PropertyException;
@@ -86,6 +95,9 @@
 import org.xwiki.skin.Skin;
 import org.xwiki.template.Template;
 import org.xwiki.template.TemplateContent;
+import org.xwiki.template.event.TemplateDeletedEvent;
+import org.xwiki.template.event.TemplateEvent;
+import org.xwiki.template.event.TemplateUpdatedEvent;
 import org.xwiki.velocity.VelocityManager;
 
 import com.xpn.xwiki.XWiki;
@@ -102,7 +114,7 @@
  */
 @Component(roles = InternalTemplateManager.class)
 @Singleton
-public class InternalTemplateManager implements Initializable
+public class InternalTemplateManager implements Initializable, Disposable
 {
     private static final Pattern PROPERTY_LINE = Pattern.compile("^##!(.+)=(.*)$\r?\n?", Pattern.MULTILINE);
 
@@ -114,6 +126,13 @@ public class InternalTemplateManager implements Initializable
 
     private static final String TEMPLATE_RESOURCE_SUFFIX = "/templates/";
 
+    private static final List<Event> EVENTS = Arrays.asList(new TemplateUpdatedEvent(), new TemplateDeletedEvent());
+
+    /**
+     * The characters starting a Velocity reference or directive.
+     */
+    private static final char[] VELOCITY_MARKERS = new char[] {'$', '#'};
+
     @Inject
     private Environment environment;
 
@@ -170,11 +189,53 @@ public class InternalTemplateManager implements Initializable
     @Inject
     private JobProgressManager progress;
 
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ObservationManager observation;
+
     @Inject
     private Logger logger;
 
     private String templateRootURL;
 
+    /**
+     * The parsed templates, indexed by template id.
+     */
+    private Cache<CachedXDOM> xdomCache;
+
+    /**
+     * Removes the modified wiki templates from {@link #xdomCache}.
+     */
+    private EventListener xdomCacheListener;
+
+    /**
+     * The result of the parsing of a template content.
+     * 
+     * @version $Id$
+     */
+    private static final class CachedXDOM
+    {
+        private final String content;
+
+        private final Syntax syntax;
+
+        private final XDOM xdom;
+
+        CachedXDOM(TemplateContent content, XDOM xdom)
+        {
+            this.content = content.getContent();
+            this.syntax = content.getSourceSyntax();
+            this.xdom = xdom;
+        }
+
+        boolean matches(TemplateContent content)
+        {
+            return this.syntax.equals(content.getSourceSyntax()) && this.content.equals(content.getContent());
+        }
+    }
+
     private static abstract class AbtractTemplate<T extends TemplateContent, R extends Resource<?>> implements Template
     {
         protected R resource;
@@ -493,6 +554,49 @@ public void setPrivileged(boolean privileged)
     public void initialize() throws InitializationException
     {
         getTemplateRootPath();
+
+        int xdomCacheCapacity = this.xwikicfg.getProperty("xwiki.template.xdomcache.capacity", 500);
+        try {
+            this.xdomCache = this.cacheManager
+                .createNewCache(new LRUCacheConfiguration("xwiki.template.xdomcache", xdomCacheCapacity));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize the templates XDOM cache", e);
+        }
+
+        // Forget about the modified wiki templates
+        this.xdomCacheListener = new EventListener()
+        {
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                InternalTemplateManager.this.xdomCache.remove(((TemplateEvent) event).getId());
+            }
+
+            @Override
+            public String getName()
+            {
+                return InternalTemplateManager.class.getName();
+            }
+
+            @Override
+            public List<Event> getEvents()
+            {
+                return EVENTS;
+            }
+        };
+        this.observation.addListener(this.xdomCacheListener);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.xdomCacheListener != null) {
+            this.observation.removeListener(this.xdomCacheListener.getName());
+        }
+
+        if (this.xdomCache != null) {
+            this.xdomCache.dispose();
+        }
     }
 
     private String getTemplateRootPath()
@@ -634,7 +738,7 @@ private XDOM getXDOM(Template template, TemplateContent content) throws Exceptio
         XDOM xdom;
 
         if (content.getSourceSyntax() != null) {
-            xdom = this.parser.parse(content.getContent(), content.getSourceSyntax());
+            xdom = parse(template, content);
         } else {
             String result = evaluateContent(template, content);
             if (StringUtils.isEmpty(result)) {
@@ -648,6 +752,31 @@ private XDOM getXDOM(Template template, TemplateContent content) throws Exceptio
         return xdom;
     }
 
+    /**
+     * Parse the template content or reuse the result of a previous parsing of the same content.
+     * 
+     * @param template the template to parse
+     * @param content the content of the template
+     * @return a copy of the parsed content, which can be safely modified by the caller
+     */
+    private XDOM parse(Template template, TemplateContent content) throws Exception
+    {
+        String id = template.getId();
+
+        // Templates created from a string don't have any id
+        if (id == null || this.xdomCache == null) {
+            return this.parser.parse(content.getContent(), content.getSourceSyntax());
+        }
+
+        CachedXDOM cachedXDOM = this.xdomCache.get(id);
+        if (cachedXDOM == null || !cachedXDOM.matches(content)) {
+            cachedXDOM = new CachedXDOM(content, this.parser.parse(content.getContent(), content.getSourceSyntax()));
+            this.xdomCache.set(id, cachedXDOM);
+        }
+
+        return cachedXDOM.xdom.clone();
+    }
+
     public XDOM getXDOM(String templateName) throws Exception
     {
         Template template = getTemplate(templateName);
@@ -859,6 +988,13 @@ private void evaluateContent(Template template, TemplateContent content, Writer
             this.authorization.checkAccess(Right.SCRIPT, content.getAuthorReference(), content.getDocumentReference());
         }
 
+        if (StringUtils.containsNone(content.getContent(), VELOCITY_MARKERS)) {
+            // No reference or directive: there is nothing Velocity would do with the content so don't parse it
+            writer.write(content.getContent());
+
+            return;
+        }
+
         // Use the Transformation id as the name passed to the Velocity Engine. This name is used internally
         // by Velocity as a cache index key for caching macros.
         String namespace = this.renderingContext.getTransformationId();
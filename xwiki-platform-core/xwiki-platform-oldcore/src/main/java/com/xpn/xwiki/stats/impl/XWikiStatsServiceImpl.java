@@ -124,6 +124,16 @@ public void init(XWikiContext context)
         }
     }
 
+    /**
+     * @return the statistics storing service, which exposes metrics about the storing queue, or {@code null} if the
+     *         statistics are disabled
+     * @since 11.5RC1
+     */
+    public XWikiStatsStoreService getStatsStoreService()
+    {
+        return this.statsRegister;
+    }
+
     @Override
     public Collection<Object> getRecentActions(String action, int size, XWikiContext context)
     {
@@ -20,23 +20,33 @@
 package com.xpn.xwiki.stats.impl.xwiki;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.hibernate.HibernateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.stats.impl.StatsUtil;
 import com.xpn.xwiki.stats.impl.VisitStats;
+import com.xpn.xwiki.store.XWikiHibernateStore;
 import com.xpn.xwiki.util.AbstractXWikiRunnable;
 import com.xpn.xwiki.web.DownloadAction;
 import com.xpn.xwiki.web.SaveAction;
+import com.xpn.xwiki.web.Utils;
 import com.xpn.xwiki.web.ViewAction;
 
 /**
@@ -57,6 +67,26 @@ public class XWikiStatsStoreService extends AbstractXWikiRunnable
      */
     private ArrayBlockingQueue<XWikiStatsStoreItem> queue;
 
+    /**
+     * The time in milliseconds during which the statistics are aggregated in memory before being stored.
+     */
+    private long flushInterval;
+
+    /**
+     * The number of statistics which have been dropped because the queue was full.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * The number of flushes of aggregated statistics to the database.
+     */
+    private final AtomicLong flushCount = new AtomicLong();
+
+    /**
+     * The time in milliseconds taken by the last flush.
+     */
+    private volatile long lastFlushDuration;
+
     /**
      * The thread on which the storing service is running.
      */
@@ -77,6 +107,7 @@ public XWikiStatsStoreService(XWikiContext context)
         this.xwikiContext = context.clone();
         long queueSize = context.getWiki().ParamAsLong("stats.queue.size", 200);
         this.queue = new ArrayBlockingQueue<>((int) queueSize);
+        this.flushInterval = context.getWiki().ParamAsLong("stats.queue.flushInterval", 1000);
     }
 
     @Override
@@ -144,12 +175,18 @@ private void register() throws InterruptedException, StopStatsStoreException
     {
         XWikiStatsStoreItem stat = this.queue.take();
 
+        // Aggregate in memory the statistics received during the flush interval so that each counter is loaded and
+        // saved only once for all of them
         List<List<XWikiStatsStoreItem>> statsList = new ArrayList<>();
         Map<String, List<XWikiStatsStoreItem>> statsMap = new HashMap<>();
 
+        long deadline = System.currentTimeMillis() + this.flushInterval;
+        boolean stop = false;
         do {
             if (stat instanceof StopStatsRegisterObject) {
-                throw new StopStatsStoreException();
+                // Store what has already been aggregated before stopping
+                stop = true;
+                break;
             }
 
             String statId = stat.getId();
@@ -165,14 +202,148 @@ private void register() throws InterruptedException, StopStatsStoreException
 
             stats.add(stat);
 
-            stat = this.queue.poll();
+            long remaining = deadline - System.currentTimeMillis();
+            stat = remaining > 0 ? this.queue.poll(remaining, TimeUnit.MILLISECONDS) : this.queue.poll();
         } while (stat != null);
 
+        flush(statsList);
+
+        if (stop) {
+            throw new StopStatsStoreException();
+        }
+    }
+
+    /**
+     * Store the aggregated statistics, using one transaction per wiki.
+     *
+     * @param statsList the aggregated statistics
+     */
+    private void flush(List<List<XWikiStatsStoreItem>> statsList)
+    {
+        long startTime = System.currentTimeMillis();
+
+        Map<String, List<List<XWikiStatsStoreItem>>> statsByWiki = new LinkedHashMap<>();
         for (List<XWikiStatsStoreItem> stats : statsList) {
-            stats.get(0).store(stats);
+            XWikiStatsStoreItem item = stats.get(0);
+            if (item instanceof AbstractStatsStoreItem) {
+                String wikiId = ((AbstractStatsStoreItem) item).context.getWikiId();
+                statsByWiki.computeIfAbsent(wikiId, k -> new ArrayList<>()).add(stats);
+            } else {
+                item.store(stats);
+            }
+        }
+
+        for (List<List<XWikiStatsStoreItem>> wikiStats : statsByWiki.values()) {
+            flushWiki(wikiStats);
+        }
+
+        this.flushCount.incrementAndGet();
+        this.lastFlushDuration = System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Store the aggregated statistics of a wiki in a single transaction. If that transaction fails, each statistic is
+     * stored again in its own transaction so that a single failing statistic does not make all the others be lost.
+     *
+     * @param wikiStats the aggregated statistics of the wiki
+     */
+    private void flushWiki(List<List<XWikiStatsStoreItem>> wikiStats)
+    {
+        XWikiContext context = ((AbstractStatsStoreItem) wikiStats.get(0).get(0)).context;
+
+        ExecutionContext econtext = Utils.getComponent(Execution.class).getContext();
+        Object currentContext = econtext.getProperty(XWikiContext.EXECUTIONCONTEXT_KEY);
+
+        try {
+            econtext.setProperty(XWikiContext.EXECUTIONCONTEXT_KEY, context);
+
+            try {
+                storeInTransaction(wikiStats, context);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to store the statistics of wiki [{}] in a single transaction, storing them one by"
+                    + " one: {}", context.getWikiId(), ExceptionUtils.getRootCauseMessage(e));
+
+                for (List<XWikiStatsStoreItem> stats : wikiStats) {
+                    try {
+                        storeInTransaction(Collections.singletonList(stats), context);
+                    } catch (Exception e2) {
+                        LOGGER.error("Failed to store the statistic [{}]", stats.get(0).getId(), e2);
+                    }
+                }
+            }
+        } finally {
+            econtext.setProperty(XWikiContext.EXECUTIONCONTEXT_KEY, currentContext);
         }
     }
 
+    /**
+     * @param statsList the aggregated statistics to store
+     * @param context the XWiki context of the wiki
+     * @throws XWikiException when failing to start the transaction
+     * @throws HibernateException when failing to commit the transaction
+     */
+    private void storeInTransaction(List<List<XWikiStatsStoreItem>> statsList, XWikiContext context)
+        throws XWikiException
+    {
+        XWikiHibernateStore store = context.getWiki().getHibernateStore();
+
+        // The store items join the transaction started here instead of creating their own one
+        boolean bTransaction = store != null && store.beginTransaction(context);
+
+        boolean commit = false;
+        try {
+            for (List<XWikiStatsStoreItem> stats : statsList) {
+                stats.get(0).store(stats);
+            }
+            commit = true;
+        } finally {
+            if (bTransaction) {
+                // Committing fails when one of the items failed to be stored in the transaction
+                store.endTransaction(context, commit);
+            }
+        }
+    }
+
+    // ////////////////////////////////////////////////////////////////////////////
+    // Metrics
+    // ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return the number of statistics waiting in the queue to be aggregated and stored
+     * @since 11.5RC1
+     */
+    public int getQueueSize()
+    {
+        return this.queue.size();
+    }
+
+    /**
+     * @return the number of statistics which have been dropped because the queue was full
+     * @since 11.5RC1
+     */
+    public long getDroppedCount()
+    {
+        return this.droppedCount.get();
+    }
+
+    /**
+     * @return the number of flushes of aggregated statistics to the database
+     * @since 11.5RC1
+     */
+    public long getFlushCount()
+    {
+        return this.flushCount.get();
+    }
+
+    /**
+     * @return the time in milliseconds taken by the last flush of aggregated statistics to the database
+     * @since 11.5RC1
+     */
+    public long getLastFlushDuration()
+    {
+        return this.lastFlushDuration;
+    }
+
     // ////////////////////////////////////////////////////////////////////////////
     // Add stats to queue
     // ////////////////////////////////////////////////////////////////////////////
@@ -184,10 +355,12 @@ private void register() throws InterruptedException, StopStatsStoreException
      */
     public void add(XWikiStatsStoreItem statsRegisterItem)
     {
-        try {
-            this.queue.put(statsRegisterItem);
-        } catch (InterruptedException e) {
-            LOGGER.error("Statistics storage thread has been interrupted", e);
+        // Never block the request thread: statistics are dropped when the storing thread can't keep up
+        if (!this.queue.offer(statsRegisterItem)) {
+            if (this.droppedCount.getAndIncrement() == 0) {
+                LOGGER.warn("The statistics queue is full, statistics are being dropped. You might want to increase "
+                    + "the [stats.queue.size] configuration.");
+            }
         }
     }
 
@@ -56,12 +56,17 @@
 import com.xpn.xwiki.doc.XWikiLink;
 import com.xpn.xwiki.doc.XWikiLock;
 import com.xpn.xwiki.internal.store.AbstractXWikiStore;
+import com.xpn.xwiki.internal.store.CacheStoreStatistics;
+import com.xpn.xwiki.internal.store.CoalescingLoader;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.web.Utils;
 
 /**
  * A proxy store implementation that caches Documents when they are first fetched and subsequently return them from a
  * cache. It delegates all write and search operations to an underlying store without doing any caching on them.
+ * <p>
+ * Concurrent cache misses for the same document are coalesced: only the first thread loads the document from the
+ * underlying store and the other threads wait for its result.
  *
  * @version $Id$
  */
@@ -108,6 +113,14 @@ public class XWikiCacheStore extends AbstractXWikiStore
      */
     private Cache<Integer> limitSizePropertyCache;
 
+    private final CacheStoreStatistics statistics = new CacheStoreStatistics();
+
+    private final CacheStoreStatistics pageExistStatistics = new CacheStoreStatistics();
+
+    private final CoalescingLoader<XWikiDocument> loader = new CoalescingLoader<>(this.statistics);
+
+    private final CoalescingLoader<Boolean> pageExistLoader = new CoalescingLoader<>(this.pageExistStatistics);
+
     /**
      * Default constructor generally used by the Component Manager.
      */
@@ -231,8 +244,7 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
             // We need to flush so that caches
             // on the cluster are informed about the change
             String key = getKey(doc, context);
-            getCache().remove(key);
-            getPageExistCache().remove(key);
+            invalidate(key);
 
             /*
              * We do not want to save the document in the cache at this time. If we did, this would introduce the
@@ -248,6 +260,9 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
     @Override
     public void flushCache()
     {
+        this.loader.invalidateAll();
+        this.pageExistLoader.invalidateAll();
+
         getCache().removeAll();
         getPageExistCache().removeAll();
         getLimitSizePropertyCache().removeAll();
@@ -265,6 +280,9 @@ public void onEvent(Event event, Object source, Object data)
 
                 String key = doc.getKey();
 
+                this.loader.invalidate(key);
+                this.pageExistLoader.invalidate(key);
+
                 if (getCache() != null) {
                     getCache().remove(key);
                 }
@@ -343,6 +361,8 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
             }
 
             if (cachedoc != null) {
+                this.statistics.hit();
+
                 cachedoc.setFromCache(true);
 
                 LOGGER.debug("Cache: got doc {} from cache", key);
@@ -350,32 +370,28 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                 Boolean result = getPageExistCache().get(key);
 
                 if (result == Boolean.FALSE) {
-                    LOGGER.debug("Cache: The document {} does not exist, return an empty one", key);
+                    this.statistics.hit();
 
-                    cachedoc = doc;
-                    cachedoc.setNew(true);
+                    LOGGER.debug("Cache: The document {} does not exist, return an empty one", key);
 
-                    // Make sure to always return a document with an original version, even for one that does not exist.
-                    // Allow writing more generic code.
-                    cachedoc
-                        .setOriginalDocument(new XWikiDocument(cachedoc.getDocumentReference(), cachedoc.getLocale()));
+                    cachedoc = setNew(doc);
                 } else {
+                    this.statistics.miss();
+
                     LOGGER.debug("Cache: Trying to get doc {} from persistent storage", key);
 
-                    cachedoc = this.store.loadXWikiDoc(doc, context);
+                    XWikiDocument loadeddoc =
+                        this.loader.load(key, () -> this.store.loadXWikiDoc(doc, context), d -> cache(key, d));
 
                     LOGGER.debug("Cache: Got doc {} from storage", key);
 
-                    if (cachedoc.isNew()) {
-                        getPageExistCache().set(key, Boolean.FALSE);
+                    if (loadeddoc == doc || !loadeddoc.isNew()) {
+                        cachedoc = loadeddoc;
                     } else {
-                        getCache().set(key, cachedoc);
-
-                        // Also update exist cache
-                        getPageExistCache().set(key, Boolean.TRUE);
+                        // The document was loaded by another thread and does not exist: don't return the instance
+                        // passed by the other thread
+                        cachedoc = setNew(doc);
                     }
-
-                    LOGGER.debug("Cache: put doc {} in cache", key);
                 }
 
                 cachedoc.setStore(this.store);
@@ -389,6 +405,40 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
         }
     }
 
+    private void cache(String key, XWikiDocument doc)
+    {
+        if (doc.isNew()) {
+            getPageExistCache().set(key, Boolean.FALSE);
+        } else {
+            getCache().set(key, doc);
+
+            // Also update exist cache
+            getPageExistCache().set(key, Boolean.TRUE);
+        }
+
+        LOGGER.debug("Cache: put doc {} in cache", key);
+    }
+
+    private XWikiDocument setNew(XWikiDocument doc)
+    {
+        doc.setNew(true);
+
+        // Make sure to always return a document with an original version, even for one that does not exist.
+        // Allow writing more generic code.
+        doc.setOriginalDocument(new XWikiDocument(doc.getDocumentReference(), doc.getLocale()));
+
+        return doc;
+    }
+
+    private void invalidate(String key)
+    {
+        this.loader.invalidate(key);
+        this.pageExistLoader.invalidate(key);
+
+        getCache().remove(key);
+        getPageExistCache().remove(key);
+    }
+
     @Override
     public void deleteXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext) throws XWikiException
     {
@@ -401,8 +451,7 @@ public void deleteXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext) throws
 
             this.store.deleteXWikiDoc(doc, context);
 
-            getCache().remove(key);
-            getPageExistCache().remove(key);
+            invalidate(key);
             getPageExistCache().set(key, Boolean.FALSE);
         } finally {
             restoreExecutionXContext();
@@ -721,15 +770,17 @@ public boolean exists(XWikiDocument doc, XWikiContext inputxcontext) throws XWik
                 Boolean result = getPageExistCache().get(key);
 
                 if (result != null) {
+                    this.pageExistStatistics.hit();
+
                     return result;
                 }
             } catch (Exception e) {
             }
 
-            boolean result = this.store.exists(doc, context);
-            getPageExistCache().set(key, Boolean.valueOf(result));
+            this.pageExistStatistics.miss();
 
-            return result;
+            return this.pageExistLoader.load(key, () -> this.store.exists(doc, context),
+                result -> getPageExistCache().set(key, result));
         } finally {
             restoreExecutionXContext();
         }
@@ -755,6 +806,26 @@ public void setPageExistCache(Cache<Boolean> pageExistCache)
         this.pageExistCache = pageExistCache;
     }
 
+    /**
+     * @return the counters associated to the document cache
+     * @since 11.5RC1
+     */
+    @Unstable
+    public CacheStoreStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * @return the counters associated to the page exist cache
+     * @since 11.5RC1
+     */
+    @Unstable
+    public CacheStoreStatistics getPageExistStatistics()
+    {
+        return this.pageExistStatistics;
+    }
+
     /**
      * @return the cache that handle the limit size properties.
      * @since 11.4RC1
@@ -25,18 +25,22 @@
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.inject.Inject;
@@ -88,6 +92,7 @@
 import com.xpn.xwiki.doc.XWikiLink;
 import com.xpn.xwiki.doc.XWikiLock;
 import com.xpn.xwiki.doc.XWikiSpace;
+import com.xpn.xwiki.internal.store.StoreConfiguration;
 import com.xpn.xwiki.internal.store.hibernate.legacy.LegacySessionImplementor;
 import com.xpn.xwiki.monitor.api.MonitorPlugin;
 import com.xpn.xwiki.objects.BaseCollection;
@@ -95,9 +100,16 @@
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseProperty;
 import com.xpn.xwiki.objects.BaseStringProperty;
+import com.xpn.xwiki.objects.DBStringListProperty;
+import com.xpn.xwiki.objects.DateProperty;
+import com.xpn.xwiki.objects.DoubleProperty;
+import com.xpn.xwiki.objects.FloatProperty;
+import com.xpn.xwiki.objects.IntegerProperty;
 import com.xpn.xwiki.objects.LargeStringProperty;
 import com.xpn.xwiki.objects.ListProperty;
+import com.xpn.xwiki.objects.LongProperty;
 import com.xpn.xwiki.objects.PropertyInterface;
+import com.xpn.xwiki.objects.StringListProperty;
 import com.xpn.xwiki.objects.StringProperty;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.objects.classes.PropertyClass;
@@ -117,6 +129,14 @@
 @Singleton
 public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWikiStoreInterface, Initializable
 {
+    /**
+     * The property types which can be loaded in bulk, each one of them being mapped to a different table.
+     */
+    private static final List<Class<? extends BaseProperty>> BULK_PROPERTY_TYPES =
+        Arrays.asList(IntegerProperty.class, LongProperty.class, FloatProperty.class, DoubleProperty.class,
+            StringProperty.class, DateProperty.class, LargeStringProperty.class, StringListProperty.class,
+            DBStringListProperty.class);
+
     @Inject
     private Logger logger;
 
@@ -173,6 +193,9 @@ public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWik
     @Named(HINT)
     private AttachmentVersioningStore attachmentArchiveStore;
 
+    @Inject
+    private StoreConfiguration storeConfiguration;
+
     private Map<String, String[]> validTypesMap = new HashMap<>();
 
     /**
@@ -959,6 +982,9 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                     DocumentReference groupsDocumentReference = new DocumentReference(context.getWikiId(),
                         localGroupEntityReference.getParent().getName(), localGroupEntityReference.getName());
 
+                    // The objects for which the properties are loaded all at once after this loop
+                    List<BaseObject> bulkObjects = isBulkObjectLoadingEnabled() ? new ArrayList<>() : null;
+
                     boolean hasGroups = false;
                     while (it.hasNext()) {
                         BaseObject object = it.next();
@@ -992,12 +1018,18 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                         if (classReference.equals(groupsDocumentReference)) {
                             // Groups objects are handled differently.
                             hasGroups = true;
+                        } else if (bulkObjects != null && !hasCustomMapping(object, doc, context)) {
+                            bulkObjects.add(object);
                         } else {
                             loadXWikiCollectionInternal(object, doc, context, false, true);
                         }
                         doc.setXObject(object.getNumber(), object);
                     }
 
+                    if (bulkObjects != null && !bulkObjects.isEmpty()) {
+                        loadXWikiObjectsProperties(bulkObjects, doc, session, context);
+                    }
+
                     // AFAICT this was added as an emergency patch because loading of objects has proven
                     // too slow and the objects which cause the most overhead are the XWikiGroups objects
                     // as each group object (each group member) would otherwise cost 2 database queries.
@@ -1429,53 +1461,8 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
                         continue;
                     }
                     String classType = (String) result[1];
-                    BaseProperty property = null;
 
-                    try {
-                        property = (BaseProperty) Class.forName(classType).newInstance();
-                        property.setObject(object);
-                        property.setName(name);
-                        loadXWikiProperty(property, context, false);
-                    } catch (Exception e) {
-                        // WORKAROUND IN CASE OF MIXMATCH BETWEEN STRING AND LARGESTRING
-                        try {
-                            if (property instanceof StringProperty) {
-                                LargeStringProperty property2 = new LargeStringProperty();
-                                property2.setObject(object);
-                                property2.setName(name);
-                                loadXWikiProperty(property2, context, false);
-                                property.setValue(property2.getValue());
-
-                                if (bclass != null) {
-                                    if (bclass.get(name) instanceof TextAreaClass) {
-                                        property = property2;
-                                    }
-                                }
-
-                            } else if (property instanceof LargeStringProperty) {
-                                StringProperty property2 = new StringProperty();
-                                property2.setObject(object);
-                                property2.setName(name);
-                                loadXWikiProperty(property2, context, false);
-                                property.setValue(property2.getValue());
-
-                                if (bclass != null) {
-                                    if (bclass.get(name) instanceof StringClass) {
-                                        property = property2;
-                                    }
-                                }
-                            } else {
-                                throw e;
-                            }
-                        } catch (Throwable e2) {
-                            Object[] args =
-                                { object.getName(), object.getClass(), Integer.valueOf(object.getNumber() + ""), name };
-                            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
-                                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
-                                "Exception while loading object '{0}' of class '{1}', number '{2}' and property '{3}'",
-                                e, args);
-                        }
-                    }
+                    BaseProperty property = loadXWikiProperty(object, bclass, name, classType, context);
 
                     object.addField(name, property);
                 }
@@ -1503,6 +1490,188 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
 
     }
 
+    private boolean isBulkObjectLoadingEnabled()
+    {
+        return this.storeConfiguration != null && this.storeConfiguration.isBulkObjectLoadingEnabled();
+    }
+
+    private BaseClass getXClass(BaseCollection object, XWikiDocument doc, XWikiContext context)
+    {
+        if (!object.getXClassReference().equals(object.getDocumentReference())) {
+            return object.getXClass(context);
+        }
+
+        // We need to get it from the document otherwise we will go in an endless loop
+        return doc != null ? doc.getXClass() : null;
+    }
+
+    private boolean hasCustomMapping(BaseCollection object, XWikiDocument doc, XWikiContext context)
+    {
+        if (!context.getWiki().hasCustomMappings()) {
+            return false;
+        }
+
+        BaseClass bclass = getXClass(object, doc, context);
+
+        return bclass != null && bclass.hasCustomMapping();
+    }
+
+    /**
+     * Load the properties of all the passed objects in a fixed number of queries (one to list the properties and one
+     * per property table) instead of one query per property.
+     * <p>
+     * Properties which can't be found that way (like the ones stored in the wrong table) are loaded one by one.
+     */
+    private void loadXWikiObjectsProperties(List<BaseObject> objects, XWikiDocument doc, Session session,
+        XWikiContext context) throws XWikiException
+    {
+        long start = System.nanoTime();
+        int queries = 0;
+
+        Map<Long, BaseObject> objectsById = new HashMap<>();
+        for (BaseObject object : objects) {
+            objectsById.put(object.getId(), object);
+        }
+
+        String objectsSubQuery =
+            "prop.id.id in (select bobject.id from BaseObject as bobject where bobject.name = :name)";
+
+        // Find the properties to load
+        Query<Object[]> query = session.createQuery(
+            "select prop.id.id, prop.id.name, prop.classType from BaseProperty as prop where " + objectsSubQuery,
+            Object[].class);
+        query.setParameter("name", doc.getFullName());
+        ++queries;
+
+        Map<BaseObject, Map<String, String>> propertiesToLoad = new LinkedHashMap<>();
+        Set<String> classTypes = new HashSet<>();
+        for (Object[] result : query.list()) {
+            BaseObject object = objectsById.get(result[0]);
+            if (object != null) {
+                propertiesToLoad.computeIfAbsent(object, k -> new LinkedHashMap<>()).put((String) result[1],
+                    (String) result[2]);
+                classTypes.add((String) result[2]);
+            }
+        }
+
+        // Load the properties, one query per property table
+        for (Class<? extends BaseProperty> propertyClass : BULK_PROPERTY_TYPES) {
+            if (classTypes.contains(propertyClass.getName())) {
+                StringBuilder statement = new StringBuilder("select prop from ");
+                statement.append(propertyClass.getName());
+                statement.append(" as prop");
+                if (propertyClass == DBStringListProperty.class) {
+                    // Avoid one more query per property to get the list items
+                    statement.append(" left join fetch prop.list");
+                }
+                statement.append(" where prop.classType = :classType and ");
+                statement.append(objectsSubQuery);
+
+                Query<? extends BaseProperty> propertiesQuery =
+                    session.createQuery(statement.toString(), propertyClass);
+                propertiesQuery.setParameter("classType", propertyClass.getName());
+                propertiesQuery.setParameter("name", doc.getFullName());
+                ++queries;
+
+                // The fetched list items produce the same property instance several times. Properties must not be
+                // compared with equals() since distinct properties can have the same value.
+                Set<BaseProperty> loaded = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (BaseProperty property : propertiesQuery.list()) {
+                    BaseObject object = objectsById.get(property.getId());
+                    Map<String, String> objectProperties = propertiesToLoad.get(object);
+                    if (loaded.add(property) && objectProperties != null
+                        && objectProperties.remove(property.getName()) != null) {
+                        property.setObject(object);
+                        // In Oracle, empty string are converted to NULL. Since an undefined property is not found at
+                        // all, it is safe to assume that a retrieved NULL value should actually be an empty string.
+                        if (property instanceof BaseStringProperty) {
+                            BaseStringProperty stringProperty = (BaseStringProperty) property;
+                            if (stringProperty.getValue() == null) {
+                                stringProperty.setValue("");
+                            }
+                        }
+                        if (property instanceof ListProperty) {
+                            ((ListProperty) property).getList();
+                        }
+                        property.setValueDirty(false);
+
+                        object.addField(property.getName(), property);
+                    }
+                }
+            }
+        }
+
+        // Load what's left the old way
+        for (Map.Entry<BaseObject, Map<String, String>> entry : propertiesToLoad.entrySet()) {
+            BaseObject object = entry.getKey();
+            for (Map.Entry<String, String> propertyEntry : entry.getValue().entrySet()) {
+                String name = propertyEntry.getKey();
+                BaseProperty property =
+                    loadXWikiProperty(object, getXClass(object, doc, context), name, propertyEntry.getValue(), context);
+                object.addField(name, property);
+                ++queries;
+            }
+        }
+
+        this.logger.debug("Loaded the properties of [{}] objects of document [{}] in [{}] queries and [{}] ms",
+            objects.size(), doc.getDocumentReference(), queries,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private BaseProperty loadXWikiProperty(BaseCollection object, BaseClass bclass, String name, String classType,
+        XWikiContext context) throws XWikiException
+    {
+        BaseProperty property = null;
+
+        try {
+            property = (BaseProperty) Class.forName(classType).newInstance();
+            property.setObject(object);
+            property.setName(name);
+            loadXWikiProperty(property, context, false);
+        } catch (Exception e) {
+            // WORKAROUND IN CASE OF MIXMATCH BETWEEN STRING AND LARGESTRING
+            try {
+                if (property instanceof StringProperty) {
+                    LargeStringProperty property2 = new LargeStringProperty();
+                    property2.setObject(object);
+                    property2.setName(name);
+                    loadXWikiProperty(property2, context, false);
+                    property.setValue(property2.getValue());
+
+                    if (bclass != null) {
+                        if (bclass.get(name) instanceof TextAreaClass) {
+                            property = property2;
+                        }
+                    }
+
+                } else if (property instanceof LargeStringProperty) {
+                    StringProperty property2 = new StringProperty();
+                    property2.setObject(object);
+                    property2.setName(name);
+                    loadXWikiProperty(property2, context, false);
+                    property.setValue(property2.getValue());
+
+                    if (bclass != null) {
+                        if (bclass.get(name) instanceof StringClass) {
+                            property = property2;
+                        }
+                    }
+                } else {
+                    throw e;
+                }
+            } catch (Throwable e2) {
+                Object[] args =
+                    { object.getName(), object.getClass(), Integer.valueOf(object.getNumber() + ""), name };
+                throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                    XWikiException.ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
+                    "Exception while loading object '{0}' of class '{1}', number '{2}' and property '{3}'",
+                    e, args);
+            }
+        }
+
+        return property;
+    }
+
     /**
      * @deprecated This is internal to XWikiHibernateStore and may be removed in the future.
      */
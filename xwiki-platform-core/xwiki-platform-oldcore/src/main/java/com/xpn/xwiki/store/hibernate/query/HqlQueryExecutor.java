@@ -44,6 +44,7 @@
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.context.Execution;
 import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryExecutor;
@@ -51,6 +52,8 @@
 import org.xwiki.query.QueryParameter;
 import org.xwiki.query.SecureQuery;
 import org.xwiki.query.WrappingQuery;
+import org.xwiki.query.internal.QueryStatementCache;
+import org.xwiki.rendering.async.AsyncContext;
 import org.xwiki.security.authorization.ContextualAuthorizationManager;
 import org.xwiki.security.authorization.Right;
 
@@ -94,12 +97,20 @@ public class HqlQueryExecutor implements QueryExecutor, Initializable
     @Inject
     private JobProgressManager progress;
 
+    @Inject
+    private AsyncContext asyncContext;
+
     @Inject
     @Named("context")
     private Provider<ComponentManager> componentManagerProvider;
 
     private volatile Set<String> allowedNamedQueries;
 
+    /**
+     * The result of {@link #isSafeSelect(String)} for the statements already checked, parsing them again is costly.
+     */
+    private final QueryStatementCache<String, Boolean> safeStatements = new QueryStatementCache<>();
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -147,7 +158,7 @@ protected void checkAllowed(final Query query) throws QueryException
                     throw new QueryException("Named queries requires programming right", query, null);
                 }
 
-                if (!isSafeSelect(query.getStatement())) {
+                if (!this.safeStatements.get(query.getStatement(), HqlQueryExecutor::isSafeSelect)) {
                     throw new QueryException("The query requires programming right", query, null);
                 }
             }
@@ -167,6 +178,10 @@ public <T> List<T> execute(final Query query) throws QueryException
             if (query.getWiki() != null) {
                 getContext().setWikiId(query.getWiki());
             }
+
+            // The result of the query can change with any document of the wiki
+            this.asyncContext.useEntity(new WikiReference(getContext().getWikiId()));
+
             return getStore().executeRead(getContext(), session -> {
                 org.hibernate.query.Query<T> hquery = createHibernateQuery(session, query);
 
@@ -19,12 +19,21 @@
  */
 package com.xpn.xwiki.web;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,7 +43,7 @@
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -53,6 +62,7 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.plugin.XWikiPluginManager;
 import com.xpn.xwiki.util.Util;
@@ -90,8 +100,22 @@ public class DownloadAction extends XWikiAction
     /** The name of the HTTP Header that signals a byte-range request. */
     private static final String RANGE_HEADER_NAME = "Range";
 
-    /** The format of a valid range header. */
-    private static final Pattern RANGE_HEADER_PATTERN = Pattern.compile("bytes=([0-9]+)?-([0-9]+)?");
+    /** The prefix of a valid range header. */
+    private static final String RANGE_HEADER_PREFIX = "bytes=";
+
+    /** The format of a valid range in the range header. */
+    private static final Pattern RANGE_PATTERN = Pattern.compile("([0-9]+)?-([0-9]+)?");
+
+    /**
+     * The maximum number of ranges accepted in a range header. Requests asking for more ranges get the full content.
+     */
+    private static final int MAX_RANGES = 32;
+
+    /** The name of the HTTP Header holding the content range. */
+    private static final String CONTENT_RANGE_HEADER_NAME = "Content-Range";
+
+    /** The new line used in multipart responses. */
+    private static final String CRLF = "\r\n";
 
     /**
      * Default constructor.
@@ -163,15 +187,25 @@ public String render(XWikiContext context) throws XWikiException
                     "Attachment content {0} not found", null, args);
             }
 
-            long lastModifiedOnClient = request.getDateHeader("If-Modified-Since");
-            long lastModifiedOnServer = attachment.getDate().getTime();
-            if (lastModifiedOnClient != -1 && lastModifiedOnClient >= lastModifiedOnServer) {
-                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-                return null;
+            String etag = getETag(attachment);
+            String etagOnClient = request.getHeader("If-None-Match");
+            if (etag != null && etagOnClient != null) {
+                if (isMatchingETag(etag, etagOnClient)) {
+                    response.setHeader("ETag", etag);
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return null;
+                }
+            } else {
+                long lastModifiedOnClient = request.getDateHeader("If-Modified-Since");
+                long lastModifiedOnServer = attachment.getDate().getTime();
+                if (lastModifiedOnClient != -1 && lastModifiedOnClient >= lastModifiedOnServer) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return null;
+                }
             }
 
             // Sending the content of the attachment
-            if (request.getHeader(RANGE_HEADER_NAME) != null) {
+            if (request.getHeader(RANGE_HEADER_NAME) != null && isRangeApplicable(attachment, etag, request)) {
                 try {
                     if (sendPartialContent(attachment, request, response, context)) {
                         return null;
@@ -183,12 +217,29 @@ public String render(XWikiContext context) throws XWikiException
             sendContent(attachment, request, response, filename, context);
             return null;
         } finally {
+            // Also when the content was not sent (e.g. not modified)
+            closeContent(attachment);
+
             if (backwardCompatibilityContextObjects != null) {
                 popDocumentFromContext(backwardCompatibilityContextObjects);
             }
         }
     }
 
+    /**
+     * Release the resources held by the content of an attachment returned by a plugin, if any (e.g. the file opened by
+     * the image plugin to serve a stored thumbnail).
+     *
+     * @param attachment the downloaded attachment
+     */
+    void closeContent(XWikiAttachment attachment)
+    {
+        XWikiAttachmentContent content = attachment != null ? attachment.getAttachment_content() : null;
+        if (content instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) content);
+        }
+    }
+
     private void throwNotFoundException(String filename) throws XWikiException
     {
         String message = filename == null ? "Attachment not found" :
@@ -199,9 +250,10 @@ private void throwNotFoundException(String filename) throws XWikiException
 
     /**
      * Respond to a range request, either with the requested bytes, or with a {@code 416 REQUESTED RANGE NOT
-     * SATISFIABLE} response if the requested byte range falls outside the length of the attachment. If the range
-     * request header is syntactically invalid, nothing is written, and instead {@code false} is returned, letting the
-     * action handler ignore the Range header and treat this as a normal (full) download request.
+     * SATISFIABLE} response if the requested byte ranges all fall outside the length of the attachment. If the range
+     * request header is syntactically invalid or if the requested ranges add up to more bytes than the attachment,
+     * nothing is written, and instead {@code false} is returned, letting the action handler ignore the Range header and
+     * treat this as a normal (full) download request. Overlapping and adjacent ranges are merged.
      *
      * @param attachment the attachment to get content from
      * @param request the current client request
@@ -219,33 +271,90 @@ private boolean sendPartialContent(final XWikiAttachment attachment,
         throws XWikiException, IOException
     {
         String range = request.getHeader(RANGE_HEADER_NAME);
-        Matcher m = RANGE_HEADER_PATTERN.matcher(range);
-        if (m.matches()) {
-            String startStr = m.group(1);
-            String endStr = m.group(2);
-            Long start = NumberUtils.createLong(startStr);
-            Long end = NumberUtils.createLong(endStr);
+        if (!range.startsWith(RANGE_HEADER_PREFIX)) {
+            return false;
+        }
+
+        String[] rangeSpecs = StringUtils.split(range.substring(RANGE_HEADER_PREFIX.length()), ',');
+        if (rangeSpecs.length == 0 || rangeSpecs.length > MAX_RANGES) {
+            return false;
+        }
+
+        long size = attachment.getContentLongSize(context);
+        List<Pair<Long, Long>> ranges = new ArrayList<>(rangeSpecs.length);
+        for (String rangeSpec : rangeSpecs) {
+            Matcher m = RANGE_PATTERN.matcher(rangeSpec.trim());
+            if (!m.matches()) {
+                return false;
+            }
+            Long start = NumberUtils.createLong(m.group(1));
+            Long end = NumberUtils.createLong(m.group(2));
             if (start == null && end != null && end > 0) {
                 // Tail request, output the last <end> bytes
-                start = Math.max(attachment.getContentLongSize(context) - end, 0L);
-                end = attachment.getContentLongSize(context) - 1L;
+                start = Math.max(size - end, 0L);
+                end = size - 1L;
             }
             if (!isValidRange(start, end)) {
                 return false;
             }
-            if (end == null) {
-                end = attachment.getContentSize(context) - 1L;
+            // Skip the ranges which fall outside the file limits
+            if (start != null && start < size) {
+                ranges.add(new ImmutablePair<>(start, end == null ? size - 1L : Math.min(end, size - 1L)));
             }
-            end = Math.min(end, attachment.getContentSize(context) - 1L);
-            writeByteRange(attachment, start, end, request, response, context);
-            return true;
         }
-        return false;
+
+        // Requesting more bytes than the whole file (e.g. with overlapping ranges) is either a mistake or an attempt
+        // to amplify the response, send the whole file once instead
+        long requestedLength = 0;
+        for (Pair<Long, Long> requestedRange : ranges) {
+            requestedLength += requestedRange.getRight() - requestedRange.getLeft() + 1L;
+        }
+        if (requestedLength > size) {
+            return false;
+        }
+
+        ranges = mergeRanges(ranges);
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(CONTENT_RANGE_HEADER_NAME, "bytes */" + size);
+        } else if (ranges.size() == 1) {
+            writeByteRange(attachment, ranges.get(0).getLeft(), ranges.get(0).getRight(), request, response, context);
+        } else {
+            writeByteRanges(attachment, ranges, request, response, context);
+        }
+
+        return true;
+    }
+
+    /**
+     * Merge the overlapping and adjacent byte ranges.
+     *
+     * @param ranges the first and last bytes of each range
+     * @return the merged ranges, sorted by first byte
+     */
+    private List<Pair<Long, Long>> mergeRanges(List<Pair<Long, Long>> ranges)
+    {
+        List<Pair<Long, Long>> sortedRanges = new ArrayList<>(ranges);
+        sortedRanges.sort(Comparator.comparing(Pair::getLeft));
+
+        List<Pair<Long, Long>> mergedRanges = new ArrayList<>(sortedRanges.size());
+        for (Pair<Long, Long> range : sortedRanges) {
+            int last = mergedRanges.size() - 1;
+            if (last >= 0 && range.getLeft() <= mergedRanges.get(last).getRight() + 1L) {
+                Pair<Long, Long> previous = mergedRanges.get(last);
+                mergedRanges.set(last,
+                    new ImmutablePair<>(previous.getLeft(), Math.max(previous.getRight(), range.getRight())));
+            } else {
+                mergedRanges.add(range);
+            }
+        }
+
+        return mergedRanges;
     }
 
     /**
-     * Write a byte range from the attachment to the response, if the requested range is valid and falls within the file
-     * limits.
+     * Write a byte range from the attachment to the response. The range must fall within the file limits.
      *
      * @param attachment the attachment to get content from
      * @param start the first byte to write
@@ -256,29 +365,119 @@ private boolean sendPartialContent(final XWikiAttachment attachment,
      * @throws XWikiException if the attachment content cannot be retrieved
      * @throws IOException if the response cannot be written
      */
-    private void writeByteRange(final XWikiAttachment attachment, Long start, Long end,
+    private void writeByteRange(final XWikiAttachment attachment, long start, long end,
         final XWikiRequest request,
         final XWikiResponse response,
         final XWikiContext context)
         throws XWikiException, IOException
     {
-        if (start >= 0 && start < attachment.getContentLongSize(context)) {
-            InputStream data = attachment.getContentInputStream(context);
-            data = new BoundedInputStream(data, end + 1);
-            data.skip(start);
-            setCommonHeaders(attachment, request, response, context);
-            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-            if ((end - start + 1L) < Integer.MAX_VALUE) {
-                response.setContentLength((int) (end - start + 1));
+        setCommonHeaders(attachment, request, response, context);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if ((end - start + 1L) < Integer.MAX_VALUE) {
+            response.setContentLength((int) (end - start + 1));
+        }
+        response.setHeader(CONTENT_RANGE_HEADER_NAME, getContentRange(attachment, start, end, context));
+        writeContent(attachment, start, end, response.getOutputStream(), context);
+    }
+
+    /**
+     * Write several byte ranges from the attachment to the response, as a {@code multipart/byteranges} content. The
+     * ranges must fall within the file limits.
+     *
+     * @param attachment the attachment to get content from
+     * @param ranges the first and last bytes of each range to write
+     * @param request the current client request
+     * @param response the response to write to.
+     * @param context the current request context
+     * @throws XWikiException if the attachment content cannot be retrieved
+     * @throws IOException if the response cannot be written
+     */
+    private void writeByteRanges(final XWikiAttachment attachment, List<Pair<Long, Long>> ranges,
+        final XWikiRequest request,
+        final XWikiResponse response,
+        final XWikiContext context)
+        throws XWikiException, IOException
+    {
+        String boundary = RandomStringUtils.randomAlphanumeric(32);
+
+        setCommonHeaders(attachment, request, response, context);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        OutputStream output = response.getOutputStream();
+        for (Pair<Long, Long> range : ranges) {
+            StringBuilder partHeader = new StringBuilder();
+            partHeader.append(CRLF).append("--").append(boundary).append(CRLF);
+            partHeader.append("Content-Type: ").append(attachment.getMimeType(context)).append(CRLF);
+            partHeader.append(CONTENT_RANGE_HEADER_NAME).append(": ")
+                .append(getContentRange(attachment, range.getLeft(), range.getRight(), context)).append(CRLF);
+            partHeader.append(CRLF);
+            output.write(partHeader.toString().getBytes(StandardCharsets.US_ASCII));
+
+            writeContent(attachment, range.getLeft(), range.getRight(), output, context);
+        }
+        output.write((CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String getContentRange(XWikiAttachment attachment, long start, long end, XWikiContext context)
+        throws XWikiException
+    {
+        return "bytes " + start + "-" + end + SEPARATOR + attachment.getContentLongSize(context);
+    }
+
+    /**
+     * Write a byte range from the attachment content to the passed output. When the content is stored in a file, the
+     * bytes are transfered directly from the file at the requested position instead of being read (and skipped)
+     * through the content input stream.
+     *
+     * @param attachment the attachment to get content from
+     * @param start the first byte to write
+     * @param end the last byte to write
+     * @param output the output where to write the content
+     * @param context the current request context
+     * @throws XWikiException if the attachment content cannot be retrieved
+     * @throws IOException if the content cannot be written
+     */
+    private void writeContent(XWikiAttachment attachment, long start, long end, OutputStream output,
+        XWikiContext context) throws XWikiException, IOException
+    {
+        File file = getContentFile(attachment);
+        if (file != null) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // Not closed on purpose since it would close the response output stream
+                WritableByteChannel target = Channels.newChannel(output);
+                long position = start;
+                long remaining = end - start + 1;
+                while (remaining > 0) {
+                    long transfered = channel.transferTo(position, remaining, target);
+                    if (transfered <= 0) {
+                        // End of file reached
+                        break;
+                    }
+                    position += transfered;
+                    remaining -= transfered;
+                }
             }
-            response.setHeader("Content-Range", "bytes " + start + "-" + end + SEPARATOR
-                + attachment.getContentLongSize(context));
-            IOUtils.copyLarge(data, response.getOutputStream());
         } else {
-            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            try (InputStream stream = attachment.getContentInputStream(context)) {
+                IOUtils.copyLarge(stream, output, start, end - start + 1);
+            }
         }
     }
 
+    /**
+     * @param attachment the attachment
+     * @return the file holding the attachment content or {@code null} if the content is not stored in a file which can
+     *         be read directly
+     */
+    private File getContentFile(XWikiAttachment attachment)
+    {
+        XWikiAttachmentContent content = attachment.getAttachment_content();
+        File file = content != null ? content.getContentFile() : null;
+
+        return file != null && file.isFile() ? file : null;
+    }
+
     /**
      * Send the attachment content in the response.
      *
@@ -296,21 +495,83 @@ private void sendContent(final XWikiAttachment attachment,
         final XWikiContext context)
         throws XWikiException
     {
-        InputStream stream = null;
         try {
             setCommonHeaders(attachment, request, response, context);
             response.setContentLength(attachment.getContentSize(context));
-            stream = attachment.getContentInputStream(context);
-            IOUtils.copy(stream, response.getOutputStream());
+            long size = attachment.getContentLongSize(context);
+            if (size > 0) {
+                writeContent(attachment, 0, size - 1, response.getOutputStream(), context);
+            }
         } catch (IOException e) {
             throw new XWikiException(XWikiException.MODULE_XWIKI_APP,
                 XWikiException.ERROR_XWIKI_APP_SEND_RESPONSE_EXCEPTION,
                 "Exception while sending response", e);
-        } finally {
-            if (stream != null) {
-                IOUtils.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * @param attachment the attachment, with its content already loaded
+     * @return the strong entity tag of the attachment content or {@code null} if the attachment has no version
+     */
+    private String getETag(XWikiAttachment attachment)
+    {
+        String version = attachment.getVersion();
+        if (version == null) {
+            return null;
+        }
+
+        XWikiAttachmentContent content = attachment.getAttachment_content();
+        long size = content != null ? content.getLongSize() : attachment.getLongSize();
+
+        // Include the size to distinguish the content of a modified attachment (e.g. a thumbnail) from the original
+        return "\"" + version + '-' + size + '"';
+    }
+
+    private boolean isMatchingETag(String etag, String header)
+    {
+        if ("*".equals(header.trim())) {
+            return true;
+        }
+
+        for (String candidate : StringUtils.split(header, ',')) {
+            if (etag.equals(StringUtils.removeStart(candidate.trim(), "W/"))) {
+                return true;
             }
         }
+
+        return false;
+    }
+
+    /**
+     * Check the {@code If-Range} header which indicates that the range should be sent only if the content did not
+     * change.
+     *
+     * @param attachment the attachment
+     * @param etag the entity tag of the attachment content
+     * @param request the current client request
+     * @return {@code true} if the range should be sent, {@code false} if the full content should be sent instead
+     */
+    private boolean isRangeApplicable(XWikiAttachment attachment, String etag, XWikiRequest request)
+    {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        } else if (ifRange.startsWith("W/")) {
+            // Weak entity tags cannot be used for ranges
+            return false;
+        }
+
+        try {
+            // The date must be an exact match (HTTP dates have a second precision)
+            return request.getDateHeader("If-Range") == attachment.getDate().getTime() / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 
     /**
@@ -478,6 +739,10 @@ private void setCommonHeaders(final XWikiAttachment attachment,
         response.addHeader("Content-disposition", dispType + "; filename*=utf-8''" + ofilename);
 
         response.setDateHeader("Last-Modified", attachment.getDate().getTime());
+        String etag = getETag(attachment);
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
         // Advertise that downloads can be resumed
         response.setHeader("Accept-Ranges", "bytes");
     }
@@ -99,6 +99,8 @@ public String render(XWikiContext context) throws XWikiException
         } catch (IOException e) {
             throw new XWikiException(XWikiException.MODULE_XWIKI_APP,
                 XWikiException.ERROR_XWIKI_APP_SEND_RESPONSE_EXCEPTION, "Exception while sending response", e);
+        } finally {
+            closeContent(attachment);
         }
         return null;
     }
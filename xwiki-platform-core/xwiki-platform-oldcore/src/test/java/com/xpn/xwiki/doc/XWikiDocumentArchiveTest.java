@@ -326,6 +326,30 @@ public void testVerifyDiffAndFullRevisionAlgorithm() throws Exception
         assertFalse(archive.getNode(new Version(6, 1)).isDiff());
     }
 
+    public void testLoadDocumentFromMaterializedVersions() throws Exception
+    {
+        XWikiDocument doc = new XWikiDocument(new DocumentReference("Test", "Test", "Test"));
+        XWikiDocumentArchive archive = new XWikiDocumentArchive(doc.getId());
+        doc.setDocumentArchive(archive);
+        String author = "XWiki.some author";
+
+        addRevisionToHistory(archive, doc, "content 1.1", author, "1.1");
+        addRevisionToHistory(archive, doc, "content 2.1\nline", author, "2.1");
+        addRevisionToHistory(archive, doc, "content 3.1\nline\nline", author, "3.1");
+        addRevisionToHistory(archive, doc, "content 4.1", author, "4.1");
+
+        // Versions are restored starting from the previously materialized (more recent) versions
+        assertEquals("content 3.1\nline\nline", archive.loadDocument(new Version(3, 1), context).getContent());
+        assertEquals("content 2.1\nline", archive.loadDocument(new Version(2, 1), context).getContent());
+        assertEquals("content 1.1", archive.loadDocument(new Version(1, 1), context).getContent());
+        assertEquals("content 2.1\nline", archive.loadDocument(new Version(2, 1), context).getContent());
+
+        // Modifying the archive forgets the materialized versions
+        addRevisionToHistory(archive, doc, "content 5.1", author, "5.1");
+        assertEquals("content 1.1", archive.loadDocument(new Version(1, 1), context).getContent());
+        assertEquals("content 4.1", archive.loadDocument(new Version(4, 1), context).getContent());
+    }
+
     private void addRevisionToHistory(XWikiDocumentArchive archive, XWikiDocument document, String content,
         String author, String comment) throws XWikiException
     {
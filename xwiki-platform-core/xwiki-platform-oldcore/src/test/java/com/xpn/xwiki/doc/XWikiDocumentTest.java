@@ -38,6 +38,7 @@
 import org.mockito.stubbing.Answer;
 import org.xwiki.context.Execution;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.configuration.ExtendedRenderingConfiguration;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.test.annotation.AllComponents;
@@ -744,6 +745,23 @@ public void rename10() throws XWikiException
         assertEquals("[pageinsamespace]", this.document.getContent());
     }
 
+    @Test
+    public void getReadOnlyXDOM()
+    {
+        this.document.setSyntax(Syntax.XWIKI_2_1);
+        this.document.setContent("**bold**");
+
+        XDOM xdom = this.document.getReadOnlyXDOM();
+
+        assertSame(xdom, this.document.getReadOnlyXDOM());
+        assertNotSame(xdom, this.document.getXDOM());
+        assertEquals(xdom.getChildren().size(), this.document.getXDOM().getChildren().size());
+
+        this.document.setContent("//italic//");
+
+        assertNotSame(xdom, this.document.getReadOnlyXDOM());
+    }
+
     /**
      * @see XWIKI-7515: 'getIncludedPages' in class com.xpn.xwiki.api.Document threw java.lang.NullPointerException
      */
@@ -138,6 +138,80 @@ public void testGetSetRenderedContent() throws Exception
     }
 
 
+    @Test
+    public void testGetStaleRenderedContent() throws Exception
+    {
+        MockConfigurationSource source = getConfigurationSource();
+
+        source.setProperty("core.renderingcache.documents",
+            Collections.singletonList(this.document.getPrefixedFullName()));
+        source.setProperty("core.renderingcache.maxStaleness",
+            Collections.singletonList(this.document.getPrefixedFullName() + "=60"));
+
+        this.renderingCache.setRenderedContent(this.document.getDocumentReference(), "source", "renderedContent",
+            getContext());
+
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(this.document.getDocumentReference()), this.document,
+            getContext());
+
+        // Without renderer the outdated result is never returned
+        Assert.assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "newsource",
+            getContext()));
+
+        // With a renderer the outdated result is returned while it's refreshed
+        Assert.assertEquals("renderedContent", this.renderingCache.getRenderedContent(
+            this.document.getDocumentReference(), "newsource", () -> "newRenderedContent", getContext()));
+    }
+
+    @Test
+    public void testGetStaleRenderedContentWithParameters() throws Exception
+    {
+        MockConfigurationSource source = getConfigurationSource();
+
+        source.setProperty("core.renderingcache.documents",
+            Collections.singletonList(this.document.getPrefixedFullName()));
+        source.setProperty("core.renderingcache.maxStaleness",
+            Collections.singletonList(this.document.getPrefixedFullName() + "=60"));
+
+        this.parameters.put("param", new String[] {"value"});
+
+        this.renderingCache.setRenderedContent(this.document.getDocumentReference(), "source", "renderedContent",
+            getContext());
+
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(this.document.getDocumentReference()), this.document,
+            getContext());
+
+        // The background refresh cannot reproduce the request parameters
+        Assert.assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source",
+            () -> "newRenderedContent", getContext()));
+    }
+
+    @Test
+    public void testGetStaleRenderedContentCountsFromModification() throws Exception
+    {
+        MockConfigurationSource source = getConfigurationSource();
+
+        source.setProperty("core.renderingcache.documents",
+            Collections.singletonList(this.document.getPrefixedFullName()));
+        source.setProperty("core.renderingcache.maxStaleness",
+            Collections.singletonList(this.document.getPrefixedFullName() + "=1"));
+
+        this.renderingCache.setRenderedContent(this.document.getDocumentReference(), "source", "renderedContent",
+            getContext());
+
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(this.document.getDocumentReference()), this.document,
+            getContext());
+
+        Thread.sleep(1100);
+
+        // Outdated for longer than the maximum staleness, even if it's the first time it's asked
+        Assert.assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source",
+            () -> "newRenderedContent", getContext()));
+    }
+
     private static class TestRenderingCacheAware extends XWikiDefaultPlugin implements RenderingCacheAware {
         public TestRenderingCacheAware(String name, String className, XWikiContext context) {
              super(name, className, context);
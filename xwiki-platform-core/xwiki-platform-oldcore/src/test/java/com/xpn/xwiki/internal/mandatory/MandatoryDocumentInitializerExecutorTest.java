@@ -0,0 +1,188 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.mandatory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.MandatoryDocumentInitializer;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.test.MockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.InjectMockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link MandatoryDocumentInitializerExecutor}.
+ *
+ * @version $Id$
+ */
+@OldcoreTest
+@ReferenceComponentList
+public class MandatoryDocumentInitializerExecutorTest
+{
+    private static final DocumentReference DOCUMENT1 = new DocumentReference("xwiki", "Space", "Document1");
+
+    private static final DocumentReference DOCUMENT2 = new DocumentReference("xwiki", "Space", "Document2");
+
+    private static final DocumentReference DOCUMENT3 = new DocumentReference("xwiki", "Space", "Document3");
+
+    @InjectMockitoOldcore
+    private MockitoOldcore oldcore;
+
+    @InjectMockComponents
+    private MandatoryDocumentInitializerExecutor executor;
+
+    @MockComponent
+    private ExecutionContextManager executionContextManager;
+
+    private final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    private class TitleInitializer implements MandatoryDocumentInitializer
+    {
+        private final DocumentReference documentReference;
+
+        private final boolean independent;
+
+        TitleInitializer(DocumentReference documentReference, boolean independent)
+        {
+            this.documentReference = documentReference;
+            this.independent = independent;
+        }
+
+        @Override
+        public EntityReference getDocumentReference()
+        {
+            return this.documentReference;
+        }
+
+        @Override
+        public boolean isIndependent()
+        {
+            return this.independent;
+        }
+
+        @Override
+        public boolean updateDocument(XWikiDocument document)
+        {
+            threads.add(Thread.currentThread().getName());
+
+            document.setTitle(this.documentReference.getName());
+
+            return true;
+        }
+    }
+
+    private class FailingInitializer extends TitleInitializer
+    {
+        FailingInitializer(DocumentReference documentReference, boolean independent)
+        {
+            super(documentReference, independent);
+        }
+
+        @Override
+        public boolean updateDocument(XWikiDocument document)
+        {
+            throw new RuntimeException("failed");
+        }
+    }
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        this.oldcore.getXWikiContext().setWikiId("xwiki");
+    }
+
+    private String getTitle(DocumentReference documentReference) throws Exception
+    {
+        XWikiContext xcontext = this.oldcore.getXWikiContext();
+
+        return xcontext.getWiki().getDocument(documentReference, xcontext).getTitle();
+    }
+
+    @Test
+    public void initializeSerially() throws Exception
+    {
+        this.executor.initialize(Collections.singletonList(new TitleInitializer(DOCUMENT1, true)),
+            this.oldcore.getXWikiContext());
+
+        assertEquals("Document1", getTitle(DOCUMENT1));
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), this.threads);
+    }
+
+    @Test
+    public void initializeWhenAnInitializerFails() throws Exception
+    {
+        this.executor.initialize(
+            Arrays.asList(new TitleInitializer(DOCUMENT1, false), new FailingInitializer(DOCUMENT2, false),
+                new TitleInitializer(DOCUMENT3, false)),
+            this.oldcore.getXWikiContext());
+
+        assertEquals("Document1", getTitle(DOCUMENT1));
+        assertTrue(this.oldcore.getSpyXWiki().getDocument(DOCUMENT2, this.oldcore.getXWikiContext()).isNew());
+        assertEquals("Document3", getTitle(DOCUMENT3));
+    }
+
+    @Test
+    public void initializeDependentInitializersSerially() throws Exception
+    {
+        this.oldcore.getMockXWikiCfg().setProperty("xwiki.mandatoryDocuments.threads", 2);
+
+        this.executor.initialize(
+            Arrays.asList(new TitleInitializer(DOCUMENT1, false), new TitleInitializer(DOCUMENT2, false)),
+            this.oldcore.getXWikiContext());
+
+        assertEquals("Document1", getTitle(DOCUMENT1));
+        assertEquals("Document2", getTitle(DOCUMENT2));
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), this.threads);
+    }
+
+    @Test
+    public void initializeIndependentInitializersInParallel() throws Exception
+    {
+        this.oldcore.getMockXWikiCfg().setProperty("xwiki.mandatoryDocuments.threads", 2);
+
+        this.executor.initialize(Arrays.asList(new TitleInitializer(DOCUMENT1, true),
+            new FailingInitializer(DOCUMENT2, true), new TitleInitializer(DOCUMENT3, false)),
+            this.oldcore.getXWikiContext());
+
+        // Each document is saved by the thread which updated it
+        assertEquals("Document1", getTitle(DOCUMENT1));
+        assertTrue(this.oldcore.getSpyXWiki().getDocument(DOCUMENT2, this.oldcore.getXWikiContext()).isNew());
+        assertEquals("Document3", getTitle(DOCUMENT3));
+        assertEquals(2, this.threads.size());
+        assertFalse(this.threads.stream().allMatch(name -> name.startsWith("Mandatory document initializer")));
+    }
+}
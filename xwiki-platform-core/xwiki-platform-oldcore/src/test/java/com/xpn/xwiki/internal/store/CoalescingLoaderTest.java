@@ -0,0 +1,199 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.xpn.xwiki.XWikiException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link CoalescingLoader}.
+ * 
+ * @version $Id$
+ */
+public class CoalescingLoaderTest
+{
+    private CacheStoreStatistics statistics;
+
+    private CoalescingLoader<String> loader;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        this.statistics = new CacheStoreStatistics();
+        this.loader = new CoalescingLoader<>(this.statistics);
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void afterEach()
+    {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void loadOnce() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        List<String> cached = new ArrayList<>();
+
+        Future<String> leader = this.executor.submit(() -> this.loader.load("key", () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            release.await();
+            return "value";
+        }, cached::add));
+
+        started.await();
+
+        List<Future<String>> waiters = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            waiters.add(this.executor.submit(() -> this.loader.load("key", () -> {
+                loads.incrementAndGet();
+                return "other";
+            }, cached::add)));
+        }
+
+        // Wait until all the waiters are blocked on the leader
+        while (this.statistics.getCoalescedWaits() < 5) {
+            Thread.sleep(1);
+        }
+
+        release.countDown();
+
+        assertEquals("value", leader.get());
+        for (Future<String> waiter : waiters) {
+            assertEquals("value", waiter.get());
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, this.statistics.getLoads());
+        assertEquals(5, this.statistics.getCoalescedWaits());
+        assertEquals(1, cached.size());
+    }
+
+    @Test
+    public void invalidateDuringLoad() throws Exception
+    {
+        List<String> cached = new ArrayList<>();
+
+        String value = this.loader.load("key", () -> {
+            this.loader.invalidate("key");
+            return "value";
+        }, cached::add);
+
+        assertEquals("value", value);
+        assertTrue(cached.isEmpty());
+    }
+
+    @Test
+    public void reentrantLoad() throws Exception
+    {
+        String value = this.loader.load("key", () -> this.loader.load("key", () -> "inner", v -> {}), v -> {});
+
+        assertEquals("inner", value);
+        assertEquals(2, this.statistics.getLoads());
+        assertEquals(0, this.statistics.getCoalescedWaits());
+    }
+
+    @Test
+    public void failure() throws Exception
+    {
+        XWikiException exception = new XWikiException();
+
+        XWikiException thrown = assertThrows(XWikiException.class, () -> this.loader.load("key", () -> {
+            throw exception;
+        }, v -> {}));
+
+        assertSame(exception, thrown);
+
+        // The failed load should not block the next ones
+        assertEquals("value", this.loader.load("key", () -> "value", v -> {}));
+    }
+
+    @Test
+    public void crossDependentLoads() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(2);
+
+        // Each load triggers the load of the key being loaded by the other thread
+        Future<String> first = this.executor.submit(() -> this.loader.load("A", () -> {
+            started.countDown();
+            started.await();
+            return "A" + this.loader.load("B", () -> "b", v -> {});
+        }, v -> {}));
+        Future<String> second = this.executor.submit(() -> this.loader.load("B", () -> {
+            started.countDown();
+            started.await();
+            return "B" + this.loader.load("A", () -> "a", v -> {});
+        }, v -> {}));
+
+        // Fails with a timeout if the threads wait for each other
+        String firstValue = first.get(10, TimeUnit.SECONDS);
+        String secondValue = second.get(10, TimeUnit.SECONDS);
+
+        // At least one of the threads must have loaded the key directly instead of waiting
+        assertTrue(firstValue.equals("Ab") || secondValue.equals("Ba"));
+    }
+
+    @Test
+    public void waitTimeout() throws Exception
+    {
+        CoalescingLoader<String> timeoutLoader = new CoalescingLoader<>(this.statistics, 100);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = this.executor.submit(() -> timeoutLoader.load("key", () -> {
+            started.countDown();
+            release.await();
+            return "value";
+        }, v -> {}));
+
+        started.await();
+
+        // The leader is blocked by something else than a load, don't wait for it forever
+        assertEquals("other", timeoutLoader.load("key", () -> "other", v -> {}));
+
+        release.countDown();
+
+        assertEquals("value", leader.get());
+    }
+}
@@ -37,6 +37,7 @@
 import org.xwiki.environment.Environment;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.observation.ObservationManager;
+import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.transformation.TransformationManager;
 import org.xwiki.security.authorization.AccessDeniedException;
 import org.xwiki.security.authorization.AuthorizationManager;
@@ -56,11 +57,13 @@
 import org.xwiki.velocity.XWikiVelocityException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -177,6 +180,41 @@ public void testRenderWiki() throws Exception
         assertEquals("<p>first line<br/>second line</p>", this.templateManager.render("template"));
     }
 
+    @Test
+    public void testRenderWikiCachedXDOM() throws Exception
+    {
+        setTemplateContent("##!source.syntax=xwiki/2.1\nfirst line");
+
+        XDOM xdom = this.templateManager.getXDOM("template");
+
+        // Make sure the caller can't modify the cached XDOM
+        xdom.getChildren().clear();
+
+        setTemplateContent("##!source.syntax=xwiki/2.1\nfirst line");
+
+        XDOM xdom2 = this.templateManager.getXDOM("template");
+
+        assertNotSame(xdom, xdom2);
+        assertEquals("<p>first line</p>", this.templateManager.render("template"));
+
+        // Make sure a modified template is parsed again
+        setTemplateContent("##!source.syntax=xwiki/2.1\nsecond line");
+
+        assertEquals("<p>second line</p>", this.templateManager.render("template"));
+    }
+
+    @Test
+    public void testDisposeRemovesListener() throws Exception
+    {
+        InternalTemplateManager internalTemplateManager =
+            this.componentManager.getInstance(InternalTemplateManager.class);
+        ObservationManager observation = this.componentManager.getInstance(ObservationManager.class);
+
+        internalTemplateManager.dispose();
+
+        verify(observation).removeListener(InternalTemplateManager.class.getName());
+    }
+
     @Test
     public void testRenderClassloaderTemplate() throws ComponentLookupException, Exception
     {
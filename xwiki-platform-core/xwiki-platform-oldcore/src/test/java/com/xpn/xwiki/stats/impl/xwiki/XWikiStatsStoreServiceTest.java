@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.stats.impl.xwiki;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.stats.impl.StatsUtil.PeriodType;
+import com.xpn.xwiki.store.XWikiHibernateStore;
+import com.xpn.xwiki.test.MockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.InjectMockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link XWikiStatsStoreService}.
+ *
+ * @version $Id$
+ */
+@OldcoreTest
+public class XWikiStatsStoreServiceTest
+{
+    @InjectMockitoOldcore
+    private MockitoOldcore oldcore;
+
+    private XWikiHibernateStore store;
+
+    private List<String> stored = new ArrayList<>();
+
+    private class TestStatsStoreItem extends AbstractStatsStoreItem
+    {
+        TestStatsStoreItem(String name)
+        {
+            super(name, new Date(), PeriodType.DAY, oldcore.getXWikiContext());
+        }
+
+        @Override
+        public String getId()
+        {
+            return this.name;
+        }
+
+        @Override
+        protected void storeInternal(List<XWikiStatsStoreItem> statsList)
+        {
+            stored.add(this.name);
+        }
+    }
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        doReturn(200L).when(this.oldcore.getSpyXWiki()).ParamAsLong(eq("stats.queue.size"), anyLong());
+        doReturn(0L).when(this.oldcore.getSpyXWiki()).ParamAsLong(eq("stats.queue.flushInterval"), anyLong());
+
+        this.store = (XWikiHibernateStore) this.oldcore.getMockStore();
+        when(this.store.beginTransaction(any(XWikiContext.class))).thenReturn(true);
+    }
+
+    private void flush(XWikiStatsStoreItem... items)
+    {
+        XWikiStatsStoreService service = new XWikiStatsStoreService(this.oldcore.getXWikiContext());
+        for (XWikiStatsStoreItem item : items) {
+            service.add(item);
+        }
+        service.add(new StopStatsRegisterObject());
+
+        // Aggregate and store the queued statistics in the current thread
+        service.runInternal();
+    }
+
+    @Test
+    public void flushInOneTransactionPerWiki() throws Exception
+    {
+        flush(new TestStatsStoreItem("a"), new TestStatsStoreItem("b"), new TestStatsStoreItem("a"));
+
+        assertEquals(Arrays.asList("a", "b"), this.stored);
+        verify(this.store, times(1)).beginTransaction(any(XWikiContext.class));
+        verify(this.store, times(1)).endTransaction(any(XWikiContext.class), eq(true));
+    }
+
+    @Test
+    public void flushOneByOneWhenTheWikiTransactionFails() throws Exception
+    {
+        doThrow(new HibernateException("commit failed")).doNothing().when(this.store)
+            .endTransaction(any(XWikiContext.class), eq(true));
+
+        flush(new TestStatsStoreItem("a"), new TestStatsStoreItem("b"));
+
+        // Stored once in the failing transaction, then each in its own transaction
+        assertEquals(Arrays.asList("a", "b", "a", "b"), this.stored);
+        verify(this.store, times(3)).beginTransaction(any(XWikiContext.class));
+        verify(this.store, times(3)).endTransaction(any(XWikiContext.class), eq(true));
+    }
+
+    @Test
+    public void flushOneByOneKeepsStoringAfterAFailure() throws Exception
+    {
+        doThrow(new HibernateException("commit failed")).doThrow(new HibernateException("a failed")).doNothing()
+            .when(this.store).endTransaction(any(XWikiContext.class), eq(true));
+
+        flush(new TestStatsStoreItem("a"), new TestStatsStoreItem("b"));
+
+        assertEquals(Arrays.asList("a", "b", "a", "b"), this.stored);
+        verify(this.store, times(3)).endTransaction(any(XWikiContext.class), eq(true));
+    }
+}
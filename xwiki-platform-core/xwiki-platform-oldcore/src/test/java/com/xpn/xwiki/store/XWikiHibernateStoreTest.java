@@ -23,6 +23,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -44,12 +45,15 @@
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.store.StoreConfiguration;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseProperty;
 import com.xpn.xwiki.objects.LargeStringProperty;
 import com.xpn.xwiki.objects.StringProperty;
+import com.xpn.xwiki.objects.classes.BaseClass;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -380,4 +384,87 @@ public void loadBacklinksFromSubwiki() throws Exception
         verify(this.hibernateStore).beginTransaction();
         verify(this.hibernateStore).endTransaction(false);
     }
+
+    @Test
+    public void loadXWikiDocWithBulkObjectLoading() throws Exception
+    {
+        StoreConfiguration storeConfiguration = this.mocker.getInstance(StoreConfiguration.class);
+        when(storeConfiguration.isBulkObjectLoadingEnabled()).thenReturn(true);
+        when(this.xcontext.getWikiId()).thenReturn("xwiki");
+
+        DocumentReference documentReference = new DocumentReference("xwiki", "Space", "Page");
+        DocumentReference classReference = new DocumentReference("xwiki", "Space", "MyClass");
+        XWikiDocument doc = mock(XWikiDocument.class);
+        when(doc.getDocumentReference()).thenReturn(documentReference);
+        when(doc.getFullName()).thenReturn("Space.Page");
+        when(doc.getDate()).thenReturn(new Date());
+        when(doc.getCreationDate()).thenReturn(new Date());
+        when(doc.getContentUpdateDate()).thenReturn(new Date());
+        when(doc.hasElement(XWikiDocument.HAS_OBJECTS)).thenReturn(true);
+
+        BaseClass xclass = mock(BaseClass.class);
+        when(this.xcontext.getWiki().getXClass(classReference, this.xcontext)).thenReturn(xclass);
+
+        // Several objects of the same class with the same property value
+        List<BaseObject> storedObjects = new ArrayList<>();
+        List<BaseObject> objects = new ArrayList<>();
+        List<Object[]> propertyRows = new ArrayList<>();
+        List<StringProperty> properties = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            long id = 100L + i;
+
+            BaseObject storedObject = mock(BaseObject.class, "stored" + i);
+            when(storedObject.getXClassReference()).thenReturn(classReference);
+            when(storedObject.getDocumentReference()).thenReturn(documentReference);
+            when(storedObject.getId()).thenReturn(id);
+            storedObjects.add(storedObject);
+
+            BaseObject object = mock(BaseObject.class, "object" + i);
+            when(object.getId()).thenReturn(id);
+            objects.add(object);
+
+            propertyRows.add(new Object[] { id, "prop", StringProperty.class.getName() });
+
+            StringProperty property = new StringProperty();
+            property.setId(id);
+            property.setName("prop");
+            property.setValue("value");
+            properties.add(property);
+        }
+        when(xclass.newCustomClassInstance(this.xcontext)).thenReturn(objects.get(0), objects.get(1),
+            objects.get(2));
+
+        Query<BaseObject> objectsQuery = mock(Query.class);
+        when(this.session.createQuery("from BaseObject as bobject where bobject.name = :name order by bobject.number",
+            BaseObject.class)).thenReturn(objectsQuery);
+        when(objectsQuery.list()).thenReturn(storedObjects);
+
+        String objectsSubQuery =
+            "prop.id.id in (select bobject.id from BaseObject as bobject where bobject.name = :name)";
+
+        Query<Object[]> propertyRowsQuery = mock(Query.class);
+        when(this.session.createQuery(
+            "select prop.id.id, prop.id.name, prop.classType from BaseProperty as prop where " + objectsSubQuery,
+            Object[].class)).thenReturn(propertyRowsQuery);
+        when(propertyRowsQuery.list()).thenReturn(propertyRows);
+
+        // A joined fetch returns the same property instance several times
+        List<StringProperty> propertiesResult = new ArrayList<>(properties);
+        propertiesResult.add(properties.get(1));
+        Query<StringProperty> propertiesQuery = mock(Query.class);
+        when(this.session.createQuery("select prop from " + StringProperty.class.getName()
+            + " as prop where prop.classType = :classType and " + objectsSubQuery, StringProperty.class))
+                .thenReturn(propertiesQuery);
+        when(propertiesQuery.list()).thenReturn(propertiesResult);
+
+        this.store.loadXWikiDoc(doc, this.xcontext);
+
+        for (int i = 0; i < objects.size(); i++) {
+            BaseObject object = objects.get(i);
+            verify(object).addField("prop", properties.get(i));
+            // Loaded only once, and not a second time the old way
+            verify(object).addField(eq("prop"), any());
+            assertSame(object, properties.get(i).getObject());
+        }
+    }
 }
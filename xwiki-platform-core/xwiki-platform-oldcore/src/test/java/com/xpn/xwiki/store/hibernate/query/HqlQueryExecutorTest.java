@@ -39,11 +39,13 @@
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryFilter;
 import org.xwiki.query.WrappingQuery;
 import org.xwiki.query.internal.DefaultQuery;
+import org.xwiki.rendering.async.AsyncContext;
 import org.xwiki.security.authorization.ContextualAuthorizationManager;
 import org.xwiki.security.authorization.Right;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
@@ -360,6 +362,15 @@ public void executeShortWhereHQLQueryWithProgrammingRights() throws QueryExcepti
         execute("where doc.space='Main'", true);
     }
 
+    @Test
+    public void executeUsesTheWiki() throws Exception
+    {
+        execute("where doc.space='Main'", null);
+
+        AsyncContext asyncContext = this.mocker.getInstance(AsyncContext.class);
+        verify(asyncContext).useEntity(new WikiReference("currentwikid"));
+    }
+
     @Test
     public void executeShortFromHQLQueryWithProgrammingRights() throws QueryException
     {
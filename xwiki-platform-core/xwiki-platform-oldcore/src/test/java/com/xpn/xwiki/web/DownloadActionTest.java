@@ -20,6 +20,8 @@
 package com.xpn.xwiki.web;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Date;
@@ -27,9 +29,11 @@
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentMatcher;
 import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.DocumentReference;
@@ -42,18 +46,21 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.plugin.XWikiPluginManager;
 import com.xpn.xwiki.test.MockitoOldcoreRule;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -73,6 +80,9 @@
     @Rule
     public MockitoOldcoreRule oldcore = new MockitoOldcoreRule();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /** Mocked context document. */
     private XWikiDocument document;
 
@@ -590,12 +600,241 @@ public void downloadWhenEmptyRange() throws XWikiException, IOException
         verifyResponseExpectations(d.getTime(), this.fileContent.length);
     }
 
-    private void createAttachment(Date d, String name) throws IOException
+    @Test
+    public void downloadWhenMultipleRanges() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=0-1, 5-6, 129-145", -1L, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(this.response).setContentType(argThat(type -> type.startsWith("multipart/byteranges; boundary=")));
+        verifyOutputExpectations(0, 2);
+        verifyOutputExpectations(5, 7);
+    }
+
+    @Test
+    public void downloadWhenOverlappingRanges() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=10-11, 2-5, 0-3, 6-7", -1L, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(this.response).setContentType(argThat(type -> type.startsWith("multipart/byteranges; boundary=")));
+        verifyOutputExpectations(0, 8);
+        verifyOutputExpectations(10, 12);
+    }
+
+    @Test
+    public void downloadWhenRangesCoverMoreThanTheFile() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=0-9, 5-13", -1L, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verifyResponseExpectations(d.getTime(), this.fileContent.length);
+        verifyOutputExpectations(0, this.fileContent.length);
+    }
+
+    @Test
+    public void downloadWhenMatchingIfRangeDate() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=0-3", -1L, DEFAULT_FILE_NAME);
+        when(this.request.getHeader("If-Range")).thenReturn("Wed, 21 Oct 2015 07:28:00 GMT");
+        when(this.request.getDateHeader("If-Range")).thenReturn(d.getTime() / 1000 * 1000);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(this.response).setHeader("Content-Range", "bytes 0-3/" + this.fileContent.length);
+    }
+
+    @Test
+    public void downloadWhenLaterIfRangeDate() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=0-3", -1L, DEFAULT_FILE_NAME);
+        when(this.request.getHeader("If-Range")).thenReturn("Wed, 21 Oct 2015 07:28:00 GMT");
+        when(this.request.getDateHeader("If-Range")).thenReturn(d.getTime() / 1000 * 1000 + 1000);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        // Only an exact date match allows to send a range
+        verify(this.response, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verifyResponseExpectations(d.getTime(), this.fileContent.length);
+    }
+
+    @Test
+    public void downloadWhenMatchingETag() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        XWikiAttachment attachment = createAttachment(d, DEFAULT_FILE_NAME);
+        setRequestExpectations(DEFAULT_URI, null, null, null, -1L, DEFAULT_FILE_NAME);
+        String etag = "\"" + attachment.getVersion() + '-' + this.fileContent.length + '"';
+        when(this.request.getHeader("If-None-Match")).thenReturn(etag);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(this.response).setHeader("ETag", etag);
+    }
+
+    @Test
+    public void downloadClosesContent() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        CloseableContent content = createCloseableContent(createAttachment(d, DEFAULT_FILE_NAME));
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=0-1, 5-6", -1L, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verifyOutputExpectations(0, 2);
+        verifyOutputExpectations(5, 7);
+        assertTrue(content.closed);
+    }
+
+    @Test
+    public void downloadClosesContentWhenNotModified() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        XWikiAttachment attachment = createAttachment(d, DEFAULT_FILE_NAME);
+        CloseableContent content = createCloseableContent(attachment);
+        setRequestExpectations(DEFAULT_URI, null, null, null, -1L, DEFAULT_FILE_NAME);
+        String etag = "\"" + attachment.getVersion() + '-' + this.fileContent.length + '"';
+        when(this.request.getHeader("If-None-Match")).thenReturn(etag);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertTrue(content.closed);
+    }
+
+    @Test
+    public void downloadFromFile() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        createFileContent(createAttachment(d, DEFAULT_FILE_NAME));
+        setRequestExpectations(DEFAULT_URI, null, null, null, -1L, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verifyResponseExpectations(d.getTime(), this.fileContent.length);
+        verifyOutputExpectations(0, this.fileContent.length);
+    }
+
+    @Test
+    public void downloadFromFileWhenValidMiddleRange() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        createFileContent(createAttachment(d, DEFAULT_FILE_NAME));
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=3-5", -1L, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(this.response).setHeader("Content-Range", "bytes 3-5/" + this.fileContent.length);
+        verifyResponseExpectations(d.getTime(), 3);
+        verifyOutputExpectations(3, 6);
+    }
+
+    @Test
+    public void downloadFromFileWhenMultipleRanges() throws XWikiException, IOException
+    {
+        Date d = new Date();
+        createFileContent(createAttachment(d, DEFAULT_FILE_NAME));
+        setRequestExpectations(DEFAULT_URI, null, null, "bytes=0-1, 5-6, 12-", -1L, DEFAULT_FILE_NAME);
+
+        assertNull(this.action.render(this.oldcore.getXWikiContext()));
+
+        verify(this.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(this.response).setContentType(argThat(type -> type.startsWith("multipart/byteranges; boundary=")));
+        verifyOutputExpectations(0, 2);
+        verifyOutputExpectations(5, 7);
+        verifyOutputExpectations(12, this.fileContent.length);
+    }
+
+    /**
+     * A content stored in a file, like the contents of the filesystem attachment store.
+     */
+    private static class FileContent extends XWikiAttachmentContent
+    {
+        private final File file;
+
+        FileContent(XWikiAttachment attachment, File file)
+        {
+            super(attachment);
+
+            this.file = file;
+        }
+
+        @Override
+        public File getContentFile()
+        {
+            return this.file;
+        }
+    }
+
+    /**
+     * A content holding resources, like the thumbnails served by the image plugin.
+     */
+    private static class CloseableContent extends XWikiAttachmentContent implements Closeable
+    {
+        private boolean closed;
+
+        CloseableContent(XWikiAttachment attachment)
+        {
+            super(attachment);
+        }
+
+        @Override
+        public void close()
+        {
+            this.closed = true;
+        }
+    }
+
+    private CloseableContent createCloseableContent(XWikiAttachment attachment) throws IOException
+    {
+        CloseableContent content = new CloseableContent(attachment);
+        content.setContent(new ByteArrayInputStream(this.fileContent));
+        attachment.setAttachment_content(content);
+
+        return content;
+    }
+
+    private FileContent createFileContent(XWikiAttachment attachment) throws IOException
+    {
+        File file = this.folder.newFile();
+        FileUtils.writeByteArrayToFile(file, this.fileContent);
+
+        FileContent content = new FileContent(attachment, file);
+        // Same length but different bytes in memory, to make sure the output is read from the file
+        content.setContent(new ByteArrayInputStream(new String(this.fileContent, XWiki.DEFAULT_ENCODING).toUpperCase()
+            .getBytes(XWiki.DEFAULT_ENCODING)));
+        attachment.setAttachment_content(content);
+
+        return content;
+    }
+
+    private XWikiAttachment createAttachment(Date d, String name) throws IOException
     {
         XWikiAttachment filetxt = new XWikiAttachment(this.document, name);
         filetxt.setContent(new ByteArrayInputStream(this.fileContent));
         filetxt.setDate(d);
         this.document.getAttachmentList().add(filetxt);
+
+        return filetxt;
     }
 
     private void setRequestExpectations(String uri, String id, String forceDownload, String range, long modifiedSince,
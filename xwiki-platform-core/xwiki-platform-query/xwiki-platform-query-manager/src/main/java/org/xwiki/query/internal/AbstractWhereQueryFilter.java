@@ -19,6 +19,9 @@
  */
 package org.xwiki.query.internal;
 
+import java.util.Arrays;
+import java.util.List;
+
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
@@ -38,6 +41,11 @@ public abstract class AbstractWhereQueryFilter implements QueryFilter
      */
     private static final String WHERE = " where ";
 
+    /**
+     * The statements already filtered, indexed by filter class, where clause, original statement and language.
+     */
+    private static final QueryStatementCache<List<Object>, String> STATEMENTS = new QueryStatementCache<>();
+
     /**
      * Used to log debug information.
      */
@@ -63,6 +71,14 @@ protected boolean isFilterable(String statement)
      * @return the modified statement that includes the passed where clause
      */
     protected String insertWhereClause(String whereClause, String statement, String language)
+    {
+        // The result only depends on the parameters (and the filter implementation of #isFilterable()) so we can
+        // avoid analyzing again the same statements
+        return STATEMENTS.get(Arrays.asList(getClass(), whereClause, statement, language),
+            key -> insertWhereClauseInternal(whereClause, statement, language));
+    }
+
+    private String insertWhereClauseInternal(String whereClause, String statement, String language)
     {
         String result = statement.trim();
         String lowerStatement = result.toLowerCase();
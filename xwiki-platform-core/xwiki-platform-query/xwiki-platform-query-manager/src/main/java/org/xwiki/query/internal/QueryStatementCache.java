@@ -0,0 +1,148 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.query.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread safe cache for the result of expensive statement processing (parsing, translation, rewriting)
+ * which only depends on the statement itself. The cache is cleared when it reaches its maximum size, which is enough
+ * for the limited number of statement shapes an application usually issues.
+ *
+ * @param <K> the type of the key
+ * @param <V> the type of the cached values
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class QueryStatementCache<K, V>
+{
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final Map<K, V> entries = new ConcurrentHashMap<>();
+
+    private final int capacity;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache with {@link #DEFAULT_CAPACITY} entries.
+     */
+    public QueryStatementCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of entries
+     */
+    public QueryStatementCache(int capacity)
+    {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param key the key
+     * @return the cached value, null if there is none
+     */
+    public V get(K key)
+    {
+        V value = this.entries.get(key);
+
+        if (value != null) {
+            this.hits.increment();
+        } else {
+            this.misses.increment();
+        }
+
+        return value;
+    }
+
+    /**
+     * @param key the key
+     * @param value the value to cache, ignored when null
+     */
+    public void put(K key, V value)
+    {
+        if (value != null) {
+            if (this.entries.size() >= this.capacity) {
+                this.entries.clear();
+            }
+
+            this.entries.put(key, value);
+        }
+    }
+
+    /**
+     * @param key the key
+     * @param loader used to compute the value when it's not cached
+     * @return the cached or computed value
+     */
+    public V get(K key, Function<K, V> loader)
+    {
+        V value = get(key);
+
+        if (value == null) {
+            value = loader.apply(key);
+            put(key, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear()
+    {
+        this.entries.clear();
+    }
+
+    /**
+     * @return the number of entries currently in the cache
+     */
+    public int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the number of lookups which found a value since the creation of the cache
+     */
+    public long getHits()
+    {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of lookups which did not find any value since the creation of the cache
+     */
+    public long getMisses()
+    {
+        return this.misses.sum();
+    }
+}
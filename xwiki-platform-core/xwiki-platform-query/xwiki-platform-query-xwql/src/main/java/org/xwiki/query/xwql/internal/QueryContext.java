@@ -27,6 +27,7 @@
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.query.internal.jpql.node.PPath;
 import org.xwiki.query.internal.jpql.node.PXObjectDecl;
@@ -56,6 +57,16 @@
 
     private DocumentAccessBridge documentAccessBridge;
 
+    /**
+     * The types of the class properties used by the query, indexed by class name and property name.
+     */
+    private Map<Pair<String, String>, String> propertyTypes = new HashMap<>();
+
+    /**
+     * Indicate if the class properties used by the query are custom mapped, indexed by class name and property name.
+     */
+    private Map<Pair<String, String>, Boolean> customMappedProperties = new HashMap<>();
+
     public QueryContext(Start tree, DocumentAccessBridge documentAccessBridge)
     {
         this.tree = tree;
@@ -72,6 +83,25 @@ public AliasGenerator getAliasGenerator()
         return aliasGenerator;
     }
 
+    /**
+     * @return the types of the class properties used by the query, indexed by class name and property name
+     * @since 11.5RC1
+     */
+    public Map<Pair<String, String>, String> getPropertyTypes()
+    {
+        return propertyTypes;
+    }
+
+    /**
+     * @return true for the class properties used by the query which are custom mapped, indexed by class name and
+     *         property name
+     * @since 11.5RC1
+     */
+    public Map<Pair<String, String>, Boolean> getCustomMappedProperties()
+    {
+        return customMappedProperties;
+    }
+
     public class DocumentInfo
     {
         public String alias;
@@ -145,12 +175,16 @@ public PropertyInfo(String name, ObjectInfo object)
 
         public String getType() throws Exception
         {
-            return documentAccessBridge.getPropertyType(object.className, name);
+            String type = documentAccessBridge.getPropertyType(object.className, name);
+            propertyTypes.put(Pair.of(object.className, name), type);
+            return type;
         }
 
         public boolean isCustomMapped() throws Exception
         {
-            return documentAccessBridge.isPropertyCustomMapped(object.className, name);
+            boolean customMapped = documentAccessBridge.isPropertyCustomMapped(object.className, name);
+            customMappedProperties.put(Pair.of(object.className, name), customMapped);
+            return customMapped;
         }
 
         public String getValueField() throws Exception
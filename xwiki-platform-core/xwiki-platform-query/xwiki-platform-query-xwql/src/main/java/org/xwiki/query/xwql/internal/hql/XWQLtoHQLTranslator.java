@@ -19,16 +19,21 @@
  */
 package org.xwiki.query.xwql.internal.hql;
 
+import java.util.Map;
+import java.util.Objects;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.xwiki.query.internal.jpql.node.Start;
 import org.xwiki.query.jpql.internal.JPQLParser;
 import org.xwiki.query.xwql.internal.QueryAnalyzer;
 import org.xwiki.query.xwql.internal.QueryContext;
 import org.xwiki.query.xwql.internal.QueryTranslator;
 import org.xwiki.query.Query;
+import org.xwiki.query.internal.QueryStatementCache;
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.component.annotation.Component;
 
@@ -40,10 +45,74 @@ public class XWQLtoHQLTranslator implements QueryTranslator
     @Inject
     protected DocumentAccessBridge documentAccessBridge;
 
+    /**
+     * The statements already translated, indexed by XWQL statement.
+     */
+    private final QueryStatementCache<String, TranslatedStatement> statements = new QueryStatementCache<>();
+
+    /**
+     * The result of a translation, along with the class properties information which was used to produce it.
+     */
+    private static final class TranslatedStatement
+    {
+        private final String statement;
+
+        private final Map<Pair<String, String>, String> propertyTypes;
+
+        private final Map<Pair<String, String>, Boolean> customMappedProperties;
+
+        TranslatedStatement(String statement, QueryContext context)
+        {
+            this.statement = statement;
+            this.propertyTypes = context.getPropertyTypes();
+            this.customMappedProperties = context.getCustomMappedProperties();
+        }
+
+        /**
+         * @param bridge used to access the current definition of the classes
+         * @return true if the classes used by the statement did not change since it was translated
+         */
+        boolean isValid(DocumentAccessBridge bridge)
+        {
+            try {
+                for (Map.Entry<Pair<String, String>, String> entry : this.propertyTypes.entrySet()) {
+                    Pair<String, String> property = entry.getKey();
+                    if (!Objects.equals(entry.getValue(),
+                        bridge.getPropertyType(property.getLeft(), property.getRight()))) {
+                        return false;
+                    }
+                }
+                for (Map.Entry<Pair<String, String>, Boolean> entry : this.customMappedProperties.entrySet()) {
+                    Pair<String, String> property = entry.getKey();
+                    if (entry.getValue() != bridge.isPropertyCustomMapped(property.getLeft(), property.getRight())) {
+                        return false;
+                    }
+                }
+            } catch (Exception e) {
+                return false;
+            }
+
+            return true;
+        }
+    }
+
     @Override
     public String translate(String input) throws Exception
     {
-        input = input.trim();
+        // The translation only depends on the statement and the definition of the classes it uses (which are quick to
+        // check compared to parsing and printing the statement again)
+        TranslatedStatement translated = this.statements.get(input);
+        if (translated == null || !translated.isValid(getDocumentAccessBridge())) {
+            translated = translateStatement(input);
+            this.statements.put(input, translated);
+        }
+
+        return translated.statement;
+    }
+
+    private TranslatedStatement translateStatement(String statement) throws Exception
+    {
+        String input = statement.trim();
         String lcInput = input.toLowerCase();
         String addition = "select doc.fullName from Document as doc ";
         if (lcInput.startsWith("where") || lcInput.startsWith("order") || lcInput.length() == 0) {
@@ -58,7 +127,7 @@ public String translate(String input) throws Exception
         tree.apply(new QueryAnalyzer(context));
 
         Printer printer = getPrinter(context);
-        return printer.print();
+        return new TranslatedStatement(printer.print(), context);
     }
 
     @Override
@@ -76,4 +145,13 @@ public DocumentAccessBridge getDocumentAccessBridge()
     {
         return documentAccessBridge;
     }
+
+    /**
+     * @return the cache of translated statements (mostly to access its hit and miss statistics)
+     * @since 11.5RC1
+     */
+    public QueryStatementCache<String, ?> getStatementCache()
+    {
+        return this.statements;
+    }
 }
@@ -28,6 +28,8 @@
 import org.xwiki.query.xwql.internal.hql.XWQLtoHQLTranslator;
 import org.xwiki.test.jmock.JMockRule;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 public class XWQLtoHQLTranslatorTest
@@ -286,4 +288,18 @@ public void testCustomMapping() throws Exception
             "select doc from XWikiDocument as doc , BaseObject as c , Custom.Mapping as cCM1, StringProperty as c_prop2 " +
                 "where ( cCM1.cmprop = 'some' and c_prop2.value = 1 ) and doc.fullName=c.name and c.id=cCM1.id and c_prop2.id.id=c.id and c_prop2.id.name='prop'");
     }
+
+    @Test
+    public void testCachedTranslation() throws Exception
+    {
+        String statement =
+            "select doc from Document as doc, doc.object(XWiki.XWikiUsers) as user where user.email = 'a'";
+
+        String translation = translator.translate(statement);
+
+        // The cached translation is returned instead of translating the statement again
+        assertSame(translation, translator.translate(statement));
+        assertEquals(1, translator.getStatementCache().getHits());
+        assertEquals(1, translator.getStatementCache().getMisses());
+    }
 }
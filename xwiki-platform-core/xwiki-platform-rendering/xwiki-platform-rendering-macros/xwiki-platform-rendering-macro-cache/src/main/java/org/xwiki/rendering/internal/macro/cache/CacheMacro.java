@@ -19,6 +19,8 @@
  */
 package org.xwiki.rendering.internal.macro.cache;
 
+import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -27,11 +29,17 @@
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentRole;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.rendering.async.AsyncContext;
+import org.xwiki.rendering.async.internal.DefaultAsyncContext;
+import org.xwiki.rendering.async.internal.DefaultAsyncContext.ContextUse;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.macro.AbstractMacro;
 import org.xwiki.rendering.macro.MacroContentParser;
@@ -45,6 +53,15 @@
 
 /**
  * Provides Caching for the content of the macro.
+ * <p>
+ * The documents and components manipulated while executing the content are remembered and the cached result is removed
+ * as soon as one of them is modified (on the current instance or on any other member of the cluster). Note that some
+ * components are only tracked by role type (for example when all the implementations of a role are looked up), in which
+ * case registering or unregistering any component with this role type (for example any macro) removes all the cached
+ * results depending on it.
+ * <p>
+ * This tracking relies on the default {@link AsyncContext} implementation: when another implementation is used the
+ * dependencies are not remembered (a warning is logged) and the cached results are only removed when they expire.
  * 
  * @version $Id$
  * @since 3.0M1
@@ -83,11 +100,28 @@ public class CacheMacro extends AbstractMacro<CacheMacroParameters>
     @Named("plain/1.0")
     private BlockRenderer plainTextBlockRenderer;
 
+    /**
+     * Used to know which entities and components are manipulated while executing the content.
+     */
+    @Inject
+    private AsyncContext asyncContext;
+
+    /**
+     * Remove the cached contents when the entities and components they depend on are modified.
+     */
+    @Inject
+    private CacheMacroDependencies dependencies;
+
+    @Inject
+    private Logger logger;
+
+    private volatile boolean trackingUnavailableLogged;
+
     /**
      * Map of all caches. There's one cache per timeToLive/maxEntry combination since currently we cannot set these
      * configuration values at the cache entry level but only for the whole cache.
      */
-    private Map<CacheKey, Cache<List<Block>>> contentCacheMap = new ConcurrentHashMap<>();
+    private Map<CacheKey, Cache<CachedContent>> contentCacheMap = new ConcurrentHashMap<>();
 
     /**
      * Create and initialize the descriptor of the macro.
@@ -122,17 +156,75 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
             cacheKey = content;
         }
 
-        Cache<List<Block>> contentCache = getContentCache(parameters.getTimeToLive(), parameters.getMaxEntries());
-        List<Block> result = contentCache.get(cacheKey);
+        Cache<CachedContent> contentCache = getContentCache(parameters.getTimeToLive(), parameters.getMaxEntries());
+        CachedContent result = contentCache.get(cacheKey);
         if (result == null) {
+            long sequence = this.dependencies.getSequence();
+
+            result = execute(content, context);
+
+            // Don't cache a result which might already be outdated
+            if (!this.dependencies.isInvalidatedSince(result, sequence)) {
+                contentCache.set(cacheKey, result);
+            }
+        }
+
+        // Make sure an enclosing cache (another cache macro or an asynchronous rendering) also depends on what the
+        // content depends on
+        use(result);
+
+        return result.getBlocks();
+    }
+
+    private CachedContent execute(String content, MacroTransformationContext context) throws MacroExecutionException
+    {
+        DefaultAsyncContext defaultAsyncContext =
+            this.asyncContext instanceof DefaultAsyncContext ? (DefaultAsyncContext) this.asyncContext : null;
+
+        if (defaultAsyncContext == null && !this.trackingUnavailableLogged) {
+            this.trackingUnavailableLogged = true;
+            this.logger.warn("The asynchronous context implementation [{}] does not allow to know what the content of"
+                + " the cache macro depends on: the cached content will only be removed when it expires.",
+                this.asyncContext.getClass().getName());
+        }
+
+        // Prepare to catch the entities and components the content depends on
+        if (defaultAsyncContext != null) {
+            defaultAsyncContext.pushContextUse();
+        }
+
+        List<Block> blocks;
+        ContextUse contextUse = null;
+        try {
             // Run the parser for the syntax on the content
             // We run the current transformation on the cache macro content. We need to do this since we want to cache
             // the XDOM resulting from the execution of Macros because that's where lengthy processing happens.
-            result = this.contentParser.parse(content, context, true, context.isInline()).getChildren();
-            contentCache.set(cacheKey, result);
+            blocks = this.contentParser.parse(content, context, true, context.isInline()).getChildren();
+        } finally {
+            if (defaultAsyncContext != null) {
+                contextUse = defaultAsyncContext.popContextUse();
+            }
         }
 
-        return result;
+        return new CachedContent(blocks, contextUse);
+    }
+
+    private void use(CachedContent content)
+    {
+        for (EntityReference reference : content.getReferences()) {
+            this.asyncContext.useEntity(reference);
+        }
+        for (Type roleType : content.getRoleTypes()) {
+            this.asyncContext.useComponent(roleType);
+        }
+        for (ComponentRole<?> role : content.getRoles()) {
+            this.asyncContext.useComponent(role.getRoleType(), role.getRoleHint());
+        }
+        for (Map.Entry<String, Collection<Object>> entry : content.getUses().entrySet()) {
+            for (Object value : entry.getValue()) {
+                this.asyncContext.use(entry.getKey(), value);
+            }
+        }
     }
 
     /**
@@ -148,10 +240,10 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
      * @return the matching cache (a new cache is created if no existing one is found)
      * @throws MacroExecutionException in case we fail to create the new cache
      */
-    Cache<List<Block>> getContentCache(int lifespan, int maxEntries) throws MacroExecutionException
+    Cache<CachedContent> getContentCache(int lifespan, int maxEntries) throws MacroExecutionException
     {
         CacheKey cacheKey = new CacheKey(lifespan, maxEntries);
-        Cache<List<Block>> contentCache = this.contentCacheMap.get(cacheKey);
+        Cache<CachedContent> contentCache = this.contentCacheMap.get(cacheKey);
         if (contentCache == null) {
             // Create Cache
             LRUCacheConfiguration configuration =
@@ -164,6 +256,9 @@ Cache<List<Block>> getContentCache(int lifespan, int maxEntries) throws MacroExe
                 throw new MacroExecutionException("Failed to create content cache", e);
             }
 
+            // Remove the entries when what they depend on is modified
+            contentCache.addCacheEntryListener(this.dependencies);
+
             this.contentCacheMap.put(cacheKey, contentCache);
         }
 
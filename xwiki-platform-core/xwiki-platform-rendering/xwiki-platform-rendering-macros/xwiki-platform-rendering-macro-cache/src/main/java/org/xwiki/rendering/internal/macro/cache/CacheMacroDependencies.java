@@ -0,0 +1,308 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.cache;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentRole;
+import org.xwiki.component.descriptor.DefaultComponentRole;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Keep track of the entities and components each cache macro entry depends on and remove the entries when one of them
+ * is modified.
+ * <p>
+ * Executing a query marks the wiki of the query as used, so an entry whose content executed a query is removed when
+ * any document of that wiki is created, updated or deleted.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component(roles = CacheMacroDependencies.class)
+@Singleton
+public class CacheMacroDependencies implements CacheEntryListener<CachedContent>
+{
+    /**
+     * The maximum number of remembered invalidations. When reached all the content being currently executed is
+     * considered invalidated.
+     */
+    private static final int MAX_INVALIDATIONS = 10000;
+
+    private static final String WIKI_PREFIX = "wiki:";
+
+    private final Map<EntityReference, Set<DependentEntry>> referenceMapping = new ConcurrentHashMap<>();
+
+    private final Map<Type, Set<DependentEntry>> roleTypeMapping = new ConcurrentHashMap<>();
+
+    private final Map<ComponentRole<?>, Set<DependentEntry>> roleMapping = new ConcurrentHashMap<>();
+
+    /**
+     * The last invalidation of each invalidated element. Used to detect invalidations happening while the content to
+     * cache is being executed (when it's not yet registered in the mappings).
+     */
+    private final Map<Object, Long> invalidations = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile long forgottenInvalidations;
+
+    /**
+     * An entry in one of the cache macro caches.
+     *
+     * @version $Id$
+     */
+    private static final class DependentEntry
+    {
+        private final Cache<CachedContent> cache;
+
+        private final String key;
+
+        DependentEntry(Cache<CachedContent> cache, String key)
+        {
+            this.cache = cache;
+            this.key = key;
+        }
+
+        void remove()
+        {
+            this.cache.remove(this.key);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof DependentEntry) {
+                DependentEntry other = (DependentEntry) obj;
+
+                return this.cache == other.cache && this.key.equals(other.key);
+            }
+
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(System.identityHashCode(this.cache), this.key);
+        }
+    }
+
+    /**
+     * @param reference the reference of the manipulated entity
+     * @return the reference under which the dependency is tracked (the locale of a document is ignored since any
+     *         modification of a translation is notified as a modification of the document)
+     */
+    static EntityReference toDependency(EntityReference reference)
+    {
+        if (reference.getType() == EntityType.DOCUMENT && !reference.getParameters().isEmpty()) {
+            return new EntityReference(reference.getName(), reference.getType(), reference.getParent());
+        }
+
+        return reference;
+    }
+
+    /**
+     * @return the current invalidation sequence, to pass to {@link #isInvalidatedSince(CachedContent, long)}
+     */
+    public long getSequence()
+    {
+        return this.sequence.get();
+    }
+
+    /**
+     * @param content the executed content
+     * @param since the invalidation sequence before the content was executed
+     * @return true if one of the dependencies of the content was modified since the passed sequence
+     */
+    public boolean isInvalidatedSince(CachedContent content, long since)
+    {
+        if (this.sequence.get() == since) {
+            return false;
+        }
+
+        if (since < this.forgottenInvalidations) {
+            return true;
+        }
+
+        for (EntityReference reference : content.getReferences()) {
+            EntityReference dependency = toDependency(reference);
+            if (isInvalidatedSince(dependency, since)
+                || isInvalidatedSince(WIKI_PREFIX + dependency.getRoot().getName(), since)) {
+                return true;
+            }
+        }
+
+        for (Type roleType : content.getRoleTypes()) {
+            if (isInvalidatedSince(roleType, since)) {
+                return true;
+            }
+        }
+
+        for (ComponentRole<?> role : content.getRoles()) {
+            if (isInvalidatedSince(role, since)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isInvalidatedSince(Object element, long since)
+    {
+        Long invalidation = this.invalidations.get(element);
+
+        return invalidation != null && invalidation > since;
+    }
+
+    private void invalidated(Object element)
+    {
+        if (this.invalidations.size() >= MAX_INVALIDATIONS) {
+            this.forgottenInvalidations = this.sequence.get();
+            this.invalidations.clear();
+        }
+
+        this.invalidations.put(element, this.sequence.incrementAndGet());
+    }
+
+    @Override
+    public void cacheEntryAdded(CacheEntryEvent<CachedContent> event)
+    {
+        CacheEntry<CachedContent> entry = event.getEntry();
+        CachedContent content = entry.getValue();
+        DependentEntry dependent = new DependentEntry(event.getCache(), entry.getKey());
+
+        for (EntityReference reference : content.getReferences()) {
+            this.referenceMapping.computeIfAbsent(toDependency(reference), k -> ConcurrentHashMap.newKeySet())
+                .add(dependent);
+        }
+
+        for (Type role : content.getRoleTypes()) {
+            this.roleTypeMapping.computeIfAbsent(role, k -> ConcurrentHashMap.newKeySet()).add(dependent);
+        }
+
+        for (ComponentRole<?> role : content.getRoles()) {
+            this.roleMapping.computeIfAbsent(role, k -> ConcurrentHashMap.newKeySet()).add(dependent);
+        }
+    }
+
+    @Override
+    public void cacheEntryRemoved(CacheEntryEvent<CachedContent> event)
+    {
+        CacheEntry<CachedContent> entry = event.getEntry();
+        CachedContent content = entry.getValue();
+        DependentEntry dependent = new DependentEntry(event.getCache(), entry.getKey());
+
+        for (EntityReference reference : content.getReferences()) {
+            remove(dependent, toDependency(reference), this.referenceMapping);
+        }
+        for (Type role : content.getRoleTypes()) {
+            remove(dependent, role, this.roleTypeMapping);
+        }
+        for (ComponentRole<?> role : content.getRoles()) {
+            remove(dependent, role, this.roleMapping);
+        }
+    }
+
+    @Override
+    public void cacheEntryModified(CacheEntryEvent<CachedContent> event)
+    {
+        cacheEntryAdded(event);
+    }
+
+    private <T> void remove(DependentEntry dependent, T value, Map<T, Set<DependentEntry>> mapping)
+    {
+        Set<DependentEntry> dependents = mapping.get(value);
+
+        if (dependents != null) {
+            dependents.remove(dependent);
+
+            if (dependents.isEmpty()) {
+                mapping.remove(value);
+            }
+        }
+    }
+
+    /**
+     * @param reference the reference of the modified entity
+     */
+    public void cleanCache(EntityReference reference)
+    {
+        if (reference != null) {
+            EntityReference dependency = toDependency(reference);
+
+            invalidated(dependency);
+            clean(this.referenceMapping.remove(dependency));
+
+            // Also clean entries associated to one of the reference parents
+            cleanCache(reference.getParent());
+        }
+    }
+
+    /**
+     * @param wiki the deleted wiki
+     */
+    public void cleanCache(String wiki)
+    {
+        invalidated(WIKI_PREFIX + wiki);
+
+        for (EntityReference reference : this.referenceMapping.keySet()) {
+            if (reference.getRoot().getName().equals(wiki)) {
+                clean(this.referenceMapping.remove(reference));
+            }
+        }
+    }
+
+    /**
+     * @param roleType the type of the registered or unregistered component
+     * @param roleHint the hint of the registered or unregistered component
+     */
+    public void cleanCache(Type roleType, String roleHint)
+    {
+        ComponentRole<?> role = new DefaultComponentRole<>(roleType, roleHint);
+
+        invalidated(roleType);
+        invalidated(role);
+
+        clean(this.roleTypeMapping.remove(roleType));
+        clean(this.roleMapping.remove(role));
+    }
+
+    private void clean(Set<DependentEntry> dependents)
+    {
+        if (dependents != null) {
+            for (DependentEntry dependent : dependents) {
+                dependent.remove();
+            }
+        }
+    }
+}
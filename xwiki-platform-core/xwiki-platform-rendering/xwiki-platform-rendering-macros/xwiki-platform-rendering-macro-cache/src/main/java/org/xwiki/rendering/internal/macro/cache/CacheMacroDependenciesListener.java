@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.cache;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Remove the cache macro entries depending on modified entities and components. Document events are also received
+ * from the other members of a cluster so each member removes its own local entries.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component
+@Singleton
+@Named(CacheMacroDependenciesListener.NAME)
+public class CacheMacroDependenciesListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "org.xwiki.rendering.internal.macro.cache.CacheMacroDependenciesListener";
+
+    @Inject
+    private CacheMacroDependencies dependencies;
+
+    /**
+     * Default constructor.
+     */
+    public CacheMacroDependenciesListener()
+    {
+        super(NAME, new WikiDeletedEvent(), new DocumentCreatedEvent(), new DocumentUpdatedEvent(),
+            new DocumentDeletedEvent(), new ComponentDescriptorAddedEvent(), new ComponentDescriptorRemovedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof ComponentDescriptorEvent) {
+            ComponentDescriptorEvent componentEvent = (ComponentDescriptorEvent) event;
+            this.dependencies.cleanCache(componentEvent.getRoleType(), componentEvent.getRoleHint());
+        } else if (event instanceof WikiDeletedEvent) {
+            this.dependencies.cleanCache(((WikiDeletedEvent) event).getWikiId());
+        } else {
+            // Any modification of a document (including its objects and attachments) is notified as a document event
+            this.dependencies.cleanCache(((DocumentModelBridge) source).getDocumentReference());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.cache;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.xwiki.component.descriptor.ComponentRole;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.rendering.async.internal.DefaultAsyncContext.ContextUse;
+import org.xwiki.rendering.block.Block;
+
+/**
+ * The result of the execution of the cache macro content and the elements which were manipulated to produce it.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class CachedContent
+{
+    private final List<Block> blocks;
+
+    private final Set<EntityReference> references;
+
+    private final Set<Type> roleTypes;
+
+    private final Set<ComponentRole<?>> roles;
+
+    private final Map<String, Collection<Object>> uses;
+
+    /**
+     * @param blocks the result of the execution of the macro content
+     * @param contextUse the elements manipulated during the execution of the macro content, null if unknown
+     */
+    public CachedContent(List<Block> blocks, ContextUse contextUse)
+    {
+        this.blocks = blocks;
+
+        if (contextUse != null) {
+            this.references = contextUse.getReferences();
+            this.roleTypes = contextUse.getRoleTypes();
+            this.roles = contextUse.getRoles();
+            this.uses = contextUse.getUses();
+        } else {
+            this.references = Collections.emptySet();
+            this.roleTypes = Collections.emptySet();
+            this.roles = Collections.emptySet();
+            this.uses = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * @return the result of the execution of the macro content
+     */
+    public List<Block> getBlocks()
+    {
+        return this.blocks;
+    }
+
+    /**
+     * @return the references of the entities manipulated during the execution of the macro content
+     */
+    public Set<EntityReference> getReferences()
+    {
+        return this.references;
+    }
+
+    /**
+     * @return the types of the components manipulated during the execution of the macro content
+     */
+    public Set<Type> getRoleTypes()
+    {
+        return this.roleTypes;
+    }
+
+    /**
+     * @return the components manipulated during the execution of the macro content
+     */
+    public Set<ComponentRole<?>> getRoles()
+    {
+        return this.roles;
+    }
+
+    /**
+     * @return the custom values associated with the result
+     */
+    public Map<String, Collection<Object>> getUses()
+    {
+        return this.uses;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.cache;
+
+import java.util.Collections;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.rendering.async.internal.DefaultAsyncContext.ContextUse;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link CacheMacroDependencies}.
+ * 
+ * @version $Id$
+ */
+public class CacheMacroDependenciesTest
+{
+    private static final DocumentReference DOCUMENT = new DocumentReference("wiki", "Space", "Page");
+
+    private static final DocumentReference OTHER_DOCUMENT = new DocumentReference("wiki", "Space", "Other");
+
+    private CacheMacroDependencies dependencies = new CacheMacroDependencies();
+
+    private CachedContent content(EntityReference reference)
+    {
+        ContextUse contextUse = new ContextUse();
+        contextUse.getReferences().add(reference);
+
+        return new CachedContent(Collections.emptyList(), contextUse);
+    }
+
+    private Cache<CachedContent> add(String key, CachedContent content)
+    {
+        Cache<CachedContent> cache = mock(Cache.class);
+        CacheEntry<CachedContent> entry = mock(CacheEntry.class);
+        when(entry.getKey()).thenReturn(key);
+        when(entry.getValue()).thenReturn(content);
+        CacheEntryEvent<CachedContent> event = mock(CacheEntryEvent.class);
+        when(event.getCache()).thenReturn(cache);
+        when(event.getEntry()).thenReturn(entry);
+
+        this.dependencies.cacheEntryAdded(event);
+
+        return cache;
+    }
+
+    @Test
+    public void cleanCache()
+    {
+        Cache<CachedContent> cache = add("key", content(DOCUMENT));
+
+        this.dependencies.cleanCache(OTHER_DOCUMENT);
+
+        verify(cache, never()).remove("key");
+
+        this.dependencies.cleanCache(DOCUMENT);
+
+        verify(cache).remove("key");
+    }
+
+    @Test
+    public void cleanCacheIgnoreLocale()
+    {
+        Cache<CachedContent> cache = add("key", content(new DocumentReference(DOCUMENT, Locale.FRENCH)));
+
+        this.dependencies.cleanCache(DOCUMENT);
+
+        verify(cache).remove("key");
+    }
+
+    @Test
+    public void cleanCacheWiki()
+    {
+        Cache<CachedContent> cache = add("key", content(DOCUMENT));
+
+        this.dependencies.cleanCache("otherwiki");
+
+        verify(cache, never()).remove("key");
+
+        this.dependencies.cleanCache("wiki");
+
+        verify(cache).remove("key");
+    }
+
+    @Test
+    public void cleanCacheWhenQueryExecuted()
+    {
+        // The content executed a query on the wiki
+        Cache<CachedContent> cache = add("key", content(new WikiReference("wiki")));
+
+        this.dependencies.cleanCache(new DocumentReference("otherwiki", "Space", "Page"));
+
+        verify(cache, never()).remove("key");
+
+        // Any document of the wiki
+        this.dependencies.cleanCache(OTHER_DOCUMENT);
+
+        verify(cache).remove("key");
+    }
+
+    @Test
+    public void isInvalidatedSinceWhenQueryExecuted()
+    {
+        long sequence = this.dependencies.getSequence();
+        CachedContent content = content(new WikiReference("wiki"));
+
+        this.dependencies.cleanCache(new DocumentReference("otherwiki", "Space", "Page"));
+
+        assertFalse(this.dependencies.isInvalidatedSince(content, sequence));
+
+        this.dependencies.cleanCache(DOCUMENT);
+
+        assertTrue(this.dependencies.isInvalidatedSince(content, sequence));
+    }
+
+    @Test
+    public void isInvalidatedSince()
+    {
+        long sequence = this.dependencies.getSequence();
+        CachedContent content = content(DOCUMENT);
+
+        assertFalse(this.dependencies.isInvalidatedSince(content, sequence));
+
+        this.dependencies.cleanCache(OTHER_DOCUMENT);
+
+        assertFalse(this.dependencies.isInvalidatedSince(content, sequence));
+
+        this.dependencies.cleanCache(DOCUMENT);
+
+        assertTrue(this.dependencies.isInvalidatedSince(content, sequence));
+        assertFalse(this.dependencies.isInvalidatedSince(content, this.dependencies.getSequence()));
+    }
+}
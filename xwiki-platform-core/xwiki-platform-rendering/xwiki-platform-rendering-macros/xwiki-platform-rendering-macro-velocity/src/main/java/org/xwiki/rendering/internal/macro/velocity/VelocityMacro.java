@@ -64,6 +64,11 @@ public class VelocityMacro extends AbstractScriptMacro<VelocityMacroParameters>
      */
     private static final String CONTENT_DESCRIPTION = "the velocity script to execute";
 
+    /**
+     * The characters starting a Velocity reference or directive.
+     */
+    private static final char[] VELOCITY_MARKERS = new char[] {'$', '#'};
+
     /**
      * Used to get the Velocity Engine and Velocity Context to use to evaluate the passed Velocity script.
      */
@@ -118,19 +123,24 @@ protected String evaluateString(VelocityMacroParameters parameters, String conte
                 cleanedContent = filter.before(cleanedContent, velocityContext);
             }
 
-            StringWriter writer = new StringWriter();
-
-            // Use the Transformation id as the name passed to the Velocity Engine. This name is used internally
-            // by Velocity as a cache index key for caching macros.
-            String key = context.getTransformationContext().getId();
-            if (key == null) {
-                key = "unknown namespace";
+            if (StringUtils.containsNone(cleanedContent, VELOCITY_MARKERS)) {
+                // No reference or directive: there is nothing Velocity would do with the content so don't parse it
+                result = cleanedContent;
+            } else {
+                StringWriter writer = new StringWriter();
+
+                // Use the Transformation id as the name passed to the Velocity Engine. This name is used internally
+                // by Velocity as a cache index key for caching macros.
+                String key = context.getTransformationContext().getId();
+                if (key == null) {
+                    key = "unknown namespace";
+                }
+
+                // Execute Velocity context
+                this.velocityManager.evaluate(writer, key, new StringReader(cleanedContent));
+                result = writer.toString();
             }
 
-            // Execute Velocity context
-            this.velocityManager.evaluate(writer, key, new StringReader(cleanedContent));
-            result = writer.toString();
-
             // Execute post filter
             if (filter != null) {
                 result = filter.after(result, velocityContext);
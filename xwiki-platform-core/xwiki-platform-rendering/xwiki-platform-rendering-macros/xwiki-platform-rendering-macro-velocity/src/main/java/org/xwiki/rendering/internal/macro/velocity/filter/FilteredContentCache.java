@@ -0,0 +1,132 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.velocity.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+/**
+ * A bounded, thread safe cache for the result of a velocity macro filter which only depends on the filtered content.
+ * The same sheets and templates are executed again and again so there is no need to clean their content each time.
+ * <p>
+ * The entries are indexed by the content itself: the same content instances usually come back (from the document and
+ * template caches) and a string caches its hash code, so a lookup is a lot cheaper than hashing the content. The least
+ * recently used entries are evicted when the cache reaches its maximum number of entries and the cache is cleared when
+ * the total length of the contents and filtered contents it holds reaches {@link #MAX_TOTAL_LENGTH}.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+class FilteredContentCache implements CacheEntryListener<String>
+{
+    /**
+     * The maximum number of entries.
+     */
+    static final int CAPACITY = 500;
+
+    /**
+     * The content bigger than this is filtered each time to not keep huge strings in memory.
+     */
+    static final int MAX_CONTENT_LENGTH = 100000;
+
+    /**
+     * The maximum total length of the contents and filtered contents kept in the cache.
+     */
+    static final long MAX_TOTAL_LENGTH = 2000000;
+
+    private final Cache<String> cache;
+
+    private final AtomicLong totalLength = new AtomicLong();
+
+    /**
+     * @param name the name of the cache
+     * @param cacheManager used to create the cache
+     * @throws CacheException when failing to create the cache
+     */
+    FilteredContentCache(String name, CacheManager cacheManager) throws CacheException
+    {
+        this.cache = cacheManager.createNewCache(new LRUCacheConfiguration(name, CAPACITY));
+        this.cache.addCacheEntryListener(this);
+    }
+
+    /**
+     * @param content the content to filter
+     * @param filter the filter to apply when the content is not already in the cache
+     * @return the filtered content
+     */
+    String get(String content, UnaryOperator<String> filter)
+    {
+        if (content.length() > MAX_CONTENT_LENGTH) {
+            return filter.apply(content);
+        }
+
+        String filtered = this.cache.get(content);
+
+        if (filtered == null) {
+            filtered = filter.apply(content);
+
+            if (this.totalLength.get() + content.length() + filtered.length() > MAX_TOTAL_LENGTH) {
+                this.cache.removeAll();
+                this.totalLength.set(0);
+            }
+            this.cache.set(content, filtered);
+        }
+
+        return filtered;
+    }
+
+    /**
+     * @return the total length of the contents and filtered contents currently in the cache
+     */
+    long getTotalLength()
+    {
+        return this.totalLength.get();
+    }
+
+    @Override
+    public void cacheEntryAdded(CacheEntryEvent<String> event)
+    {
+        this.totalLength.addAndGet(length(event));
+    }
+
+    @Override
+    public void cacheEntryRemoved(CacheEntryEvent<String> event)
+    {
+        this.totalLength.addAndGet(-length(event));
+    }
+
+    @Override
+    public void cacheEntryModified(CacheEntryEvent<String> event)
+    {
+        // The filtered content only depends on the key so its length did not change
+    }
+
+    private long length(CacheEntryEvent<String> event)
+    {
+        return event.getEntry().getKey().length() + event.getEntry().getValue().length();
+    }
+}
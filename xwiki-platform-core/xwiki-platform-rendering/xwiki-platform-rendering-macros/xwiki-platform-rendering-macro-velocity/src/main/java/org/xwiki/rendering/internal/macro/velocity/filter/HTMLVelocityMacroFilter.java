@@ -27,6 +27,8 @@
 
 import org.apache.velocity.VelocityContext;
 import org.slf4j.Logger;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
@@ -85,10 +87,27 @@ public class HTMLVelocityMacroFilter implements VelocityMacroFilter, Initializab
      */
     private VelocityParser velocityParser;
 
+    /**
+     * The already cleaned contents.
+     */
+    private FilteredContentCache cleanedContents;
+
+    /**
+     * Used to create the cache of cleaned contents.
+     */
+    @Inject
+    private CacheManager cacheManager;
+
     @Override
     public void initialize() throws InitializationException
     {
         this.velocityParser = new VelocityParser();
+
+        try {
+            this.cleanedContents = new FilteredContentCache("rendering.macro.velocity.filter.html", this.cacheManager);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the cache of cleaned velocity contents", e);
+        }
     }
 
     @Override
@@ -98,7 +117,7 @@ public String before(String content, VelocityContext velocityContext)
         velocityContext.put(BINDING_NEWLINE, NEWLINE);
         velocityContext.put(BINDING_SPACE, SPACE);
 
-        return clean(content);
+        return this.cleanedContents.get(content, this::clean);
     }
 
     /**
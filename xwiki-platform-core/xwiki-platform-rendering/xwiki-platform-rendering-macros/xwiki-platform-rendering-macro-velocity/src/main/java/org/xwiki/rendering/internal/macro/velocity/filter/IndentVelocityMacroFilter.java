@@ -21,11 +21,16 @@
 
 import java.util.regex.Pattern;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.apache.velocity.VelocityContext;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.rendering.macro.velocity.filter.VelocityMacroFilter;
 
 /**
@@ -37,17 +42,39 @@
 @Component
 @Named("indent")
 @Singleton
-public class IndentVelocityMacroFilter implements VelocityMacroFilter
+public class IndentVelocityMacroFilter implements VelocityMacroFilter, Initializable
 {
     /**
      * Match indentation spaces.
      */
     private static final Pattern INDENT_PATTERN = Pattern.compile("^[ \t]++", Pattern.MULTILINE);
 
+    /**
+     * The already filtered contents.
+     */
+    private FilteredContentCache filteredContents;
+
+    /**
+     * Used to create the cache of filtered contents.
+     */
+    @Inject
+    private CacheManager cacheManager;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.filteredContents =
+                new FilteredContentCache("rendering.macro.velocity.filter.indent", this.cacheManager);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the cache of filtered velocity contents", e);
+        }
+    }
+
     @Override
     public String before(String content, VelocityContext velocityContect)
     {
-        return INDENT_PATTERN.matcher(content).replaceAll("");
+        return this.filteredContents.get(content, c -> INDENT_PATTERN.matcher(c).replaceAll(""));
     }
 
     @Override
@@ -0,0 +1,79 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.velocity.filter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.test.jmock.AbstractComponentTestCase;
+
+/**
+ * Validate the behavior of {@link FilteredContentCache}.
+ * 
+ * @version $Id$
+ */
+public class FilteredContentCacheTest extends AbstractComponentTestCase
+{
+    private FilteredContentCache cache;
+
+    private final AtomicInteger filterCount = new AtomicInteger();
+
+    @Override
+    protected void registerComponents() throws Exception
+    {
+        this.cache = new FilteredContentCache("test", getComponentManager().getInstance(CacheManager.class));
+    }
+
+    private String filter(String content)
+    {
+        this.filterCount.incrementAndGet();
+
+        return content.trim();
+    }
+
+    @Test
+    public void testGetSameContentTwice()
+    {
+        Assert.assertEquals("content", this.cache.get(" content ", this::filter));
+        Assert.assertEquals("content", this.cache.get(" content ", this::filter));
+
+        Assert.assertEquals(1, this.filterCount.get());
+        // The content and the filtered content
+        Assert.assertEquals(16, this.cache.getTotalLength());
+    }
+
+    @Test
+    public void testTotalLengthIsBounded()
+    {
+        int count = (int) (FilteredContentCache.MAX_TOTAL_LENGTH / FilteredContentCache.MAX_CONTENT_LENGTH) * 2;
+        for (int i = 0; i < count; ++i) {
+            String content = StringUtils.leftPad(String.valueOf(i), FilteredContentCache.MAX_CONTENT_LENGTH, 'x');
+
+            this.cache.get(content, this::filter);
+
+            Assert.assertTrue(this.cache.getTotalLength() <= FilteredContentCache.MAX_TOTAL_LENGTH);
+        }
+
+        Assert.assertEquals(count, this.filterCount.get());
+    }
+}
@@ -57,4 +57,12 @@ public void testFilter()
         assertFilter("", " \t");
         assertFilter("#if (true)\nsome text\n#end", "#if (true)\n  some text\n#end");
     }
+
+    @Test
+    public void testFilterSameContentTwice()
+    {
+        assertFilter("#if (true)\nsome text\n#end", "#if (true)\n  some text\n#end");
+        assertFilter("#if (true)\nsome text\n#end", "#if (true)\n  some text\n#end");
+        assertFilter("#if (true)\nother text\n#end", "#if (true)\n\tother text\n#end");
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.resources.pages;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.xwiki.rest.XWikiRestException;
+
+/**
+ * Lightweight alternative to {@link PagesResource} for listing large spaces. The page summaries are built from the
+ * database without loading the documents. The pages are sorted by name and paginated using the name of the last page of
+ * the previous batch, and the response carries an entity tag computed from the versions of the listed pages so that
+ * clients can use conditional requests.
+ * <p>
+ * Since the entity tag is computed first, the database rows of the requested batch are all read before anything is
+ * written: only the creation and the serialization of the page summaries are streamed. Use a reasonable {@code number}
+ * to keep the memory usage low. The response is only available as XML, requesting JSON fails with
+ * {@code 406 Not Acceptable}.
+ * <p>
+ * Since the documents are not loaded, the summaries only contain what is stored in the database: the title is the raw
+ * title and the links are limited to the page, its space and its history.
+ * 
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Path("/wikis/{wikiName}/spaces/{spaceName: .+}/pagesummaries")
+@Produces(MediaType.APPLICATION_XML)
+public interface PageSummariesResource
+{
+    /**
+     * @param wikiName the name of the wiki
+     * @param spaceName the space segments
+     * @param after only return the pages whose name comes after this one, usually the name of the last page of the
+     *            previous batch (all the pages are returned when empty)
+     * @param number the maximum number of pages to return, negative for all
+     * @return the streamed page summaries, or a {@code 304 Not Modified} response if the client already has them
+     * @throws XWikiRestException if the pages cannot be retrieved
+     */
+    @GET Response getPageSummaries(
+            @PathParam("wikiName") String wikiName,
+            @PathParam("spaceName") String spaceName,
+            @QueryParam("after") @DefaultValue("") String after,
+            @QueryParam("number") @DefaultValue("-1") Integer number
+    ) throws XWikiRestException;
+}
@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Serialize a collection as XML while its items are produced, instead of building the whole JAXB object graph in
+ * memory before marshalling it. Each item is marshalled as a fragment inside the collection element.
+ * 
+ * @param <T> the type of the items
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class JAXBStreamingOutput<T> implements StreamingOutput
+{
+    private static final Map<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final QName collectionName;
+
+    private final QName itemName;
+
+    private final Class<T> itemType;
+
+    private final Iterator<T> items;
+
+    /**
+     * @param collectionName the name of the root element
+     * @param itemName the name of the element of each item
+     * @param itemType the type of the items
+     * @param items the items, only consumed when the output is written
+     */
+    public JAXBStreamingOutput(QName collectionName, QName itemName, Class<T> itemType, Iterator<T> items)
+    {
+        this.collectionName = collectionName;
+        this.itemName = itemName;
+        this.itemType = itemType;
+        this.items = items;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException
+    {
+        try {
+            Marshaller marshaller = getContext(this.itemType).createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(output, StandardCharsets.UTF_8.name());
+            writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            writer.setDefaultNamespace(this.collectionName.getNamespaceURI());
+            writer.writeStartElement(this.collectionName.getNamespaceURI(), this.collectionName.getLocalPart());
+            writer.writeDefaultNamespace(this.collectionName.getNamespaceURI());
+
+            while (this.items.hasNext()) {
+                marshaller.marshal(new JAXBElement<>(this.itemName, this.itemType, this.items.next()), writer);
+            }
+
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (JAXBException | XMLStreamException e) {
+            throw new IOException("Failed to write the collection", e);
+        }
+    }
+
+    private static JAXBContext getContext(Class<?> type) throws JAXBException
+    {
+        JAXBContext context = CONTEXTS.get(type);
+        if (context == null) {
+            // Creating a context is expensive, but it's fine if two threads create the same one at startup
+            context = JAXBContext.newInstance(type);
+            CONTEXTS.put(type, context);
+        }
+
+        return context;
+    }
+}
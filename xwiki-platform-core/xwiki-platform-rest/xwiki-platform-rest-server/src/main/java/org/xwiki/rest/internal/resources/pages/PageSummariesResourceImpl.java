@@ -0,0 +1,248 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.pages;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.xml.namespace.QName;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryFilter;
+import org.xwiki.rest.Relations;
+import org.xwiki.rest.XWikiResource;
+import org.xwiki.rest.XWikiRestException;
+import org.xwiki.rest.internal.JAXBStreamingOutput;
+import org.xwiki.rest.internal.Utils;
+import org.xwiki.rest.model.jaxb.Link;
+import org.xwiki.rest.model.jaxb.PageSummary;
+import org.xwiki.rest.resources.pages.PageHistoryResource;
+import org.xwiki.rest.resources.pages.PageResource;
+import org.xwiki.rest.resources.pages.PageSummariesResource;
+import org.xwiki.rest.resources.spaces.SpaceResource;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component
+@Named("org.xwiki.rest.internal.resources.pages.PageSummariesResourceImpl")
+public class PageSummariesResourceImpl extends XWikiResource implements PageSummariesResource
+{
+    private static final String NAMESPACE = "http://www.xwiki.org";
+
+    private static final QName PAGES = new QName(NAMESPACE, "pages");
+
+    private static final QName PAGE_SUMMARY = new QName(NAMESPACE, "pageSummary");
+
+    private static final String VIEW_ACTION = "view";
+
+    private static final String AFTER = "after";
+
+    /**
+     * The document fields needed to build a page summary, the name must stay first.
+     */
+    private static final String SELECT =
+        "select doc.name, doc.fullName, doc.title, doc.version, doc.author, doc.parent, doc.syntaxId"
+            + " from XWikiDocument as doc where doc.space = :space and doc.language = ''";
+
+    @Context
+    private Request request;
+
+    @Inject
+    @Named("hidden/document")
+    private QueryFilter hiddenDocumentFilter;
+
+    @Inject
+    private ContextualAuthorizationManager authorization;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Override
+    public Response getPageSummaries(String wikiName, String spaceName, String after, Integer number)
+        throws XWikiRestException
+    {
+        List<String> spaces = parseSpaceSegments(spaceName);
+
+        XWikiContext xcontext = this.xcontextProvider.get();
+        String database = xcontext.getWikiId();
+
+        try {
+            xcontext.setWikiId(wikiName);
+
+            List<Object[]> rows = getRows(wikiName, spaces, after, number);
+
+            EntityTag tag = getEntityTag(rows);
+            ResponseBuilder builder = this.request.evaluatePreconditions(tag);
+            if (builder == null) {
+                // The summaries are only created while the response is written, when the request context might not be
+                // available anymore
+                URI baseUri = this.uriInfo.getBaseUri();
+                Iterator<PageSummary> pageSummaries =
+                    rows.stream().map(row -> toRestPageSummary(wikiName, spaces, row, baseUri, xcontext)).iterator();
+                builder = Response.ok(
+                    new JAXBStreamingOutput<>(PAGES, PAGE_SUMMARY, PageSummary.class, pageSummaries),
+                    MediaType.APPLICATION_XML_TYPE);
+            }
+
+            return builder.tag(tag).build();
+        } catch (QueryException e) {
+            throw new XWikiRestException(e);
+        } finally {
+            xcontext.setWikiId(database);
+        }
+    }
+
+    private List<Object[]> getRows(String wikiName, List<String> spaces, String after, int number)
+        throws QueryException
+    {
+        String spaceId = Utils.getLocalSpaceId(spaces);
+
+        List<Object[]> rows = new ArrayList<>();
+        String lastName = after;
+        boolean more;
+        do {
+            // Always fetch full batches: asking only for the missing pages would end up in many tiny queries when the
+            // current user cannot view most of the pages of the space
+            Query query = createQuery(spaceId, lastName);
+            if (number > 0) {
+                query.setLimit(number);
+            }
+
+            List<Object[]> results = query.execute();
+            for (Iterator<Object[]> it = results.iterator(); it.hasNext() && (number <= 0 || rows.size() < number);) {
+                Object[] row = it.next();
+                DocumentReference reference = new DocumentReference(wikiName, spaces, (String) row[0]);
+                if (this.authorization.hasAccess(Right.VIEW, reference)) {
+                    rows.add(row);
+                }
+            }
+
+            // Continue after the last page of the batch until we have enough pages the current user can view
+            more = number > 0 && results.size() == number && rows.size() < number;
+            if (more) {
+                lastName = (String) results.get(results.size() - 1)[0];
+            }
+        } while (more);
+
+        return rows;
+    }
+
+    private Query createQuery(String spaceId, String after) throws QueryException
+    {
+        StringBuilder statement = new StringBuilder(SELECT);
+        if (StringUtils.isNotEmpty(after)) {
+            statement.append(" and doc.name > :after");
+        }
+        statement.append(" order by doc.name");
+
+        Query query = this.queryManager.createQuery(statement.toString(), Query.HQL);
+        query.bindValue("space", spaceId);
+        if (StringUtils.isNotEmpty(after)) {
+            query.bindValue(AFTER, after);
+        }
+        query.addFilter(this.hiddenDocumentFilter);
+
+        return query;
+    }
+
+    private EntityTag getEntityTag(List<Object[]> rows) throws XWikiRestException
+    {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            for (Object[] row : rows) {
+                // Full name and version
+                digest.update(((String) row[1]).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(StringUtils.defaultString((String) row[3]).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+
+            return new EntityTag(String.format("%032x", new BigInteger(1, digest.digest())));
+        } catch (NoSuchAlgorithmException e) {
+            throw new XWikiRestException(e);
+        }
+    }
+
+    private PageSummary toRestPageSummary(String wikiName, List<String> spaces, Object[] row, URI baseUri,
+        XWikiContext xcontext)
+    {
+        String name = (String) row[0];
+        DocumentReference reference = new DocumentReference(wikiName, spaces, name);
+
+        /*
+         * We manufacture page summaries in place because the DomainObjectFactory methods require an actual Document
+         */
+        PageSummary pageSummary = this.objectFactory.createPageSummary();
+        pageSummary.setId(this.serializer.serialize(reference));
+        pageSummary.setFullName((String) row[1]);
+        pageSummary.setWiki(wikiName);
+        pageSummary.setSpace(Utils.getLocalSpaceId(spaces));
+        pageSummary.setName(name);
+        pageSummary.setTitle((String) row[2]);
+        pageSummary.setVersion((String) row[3]);
+        pageSummary.setAuthor((String) row[4]);
+        pageSummary.setParent((String) row[5]);
+        pageSummary.setSyntax((String) row[6]);
+        pageSummary.setXwikiRelativeUrl(xcontext.getWiki().getURL(reference, VIEW_ACTION, xcontext));
+        pageSummary.setXwikiAbsoluteUrl(xcontext.getWiki().getExternalURL(reference, VIEW_ACTION, null, null,
+            xcontext));
+
+        pageSummary.getLinks().add(createLink(baseUri, Relations.PAGE, PageResource.class, wikiName, spaces, name));
+        pageSummary.getLinks().add(createLink(baseUri, Relations.SPACE, SpaceResource.class, wikiName, spaces));
+        pageSummary.getLinks()
+            .add(createLink(baseUri, Relations.HISTORY, PageHistoryResource.class, wikiName, spaces, name));
+
+        return pageSummary;
+    }
+
+    private Link createLink(URI baseUri, String relation, Class<?> resourceClass, Object... pathElements)
+    {
+        Link link = this.objectFactory.createLink();
+        link.setHref(Utils.createURI(baseUri, resourceClass, pathElements).toString());
+        link.setRel(relation);
+
+        return link;
+    }
+}
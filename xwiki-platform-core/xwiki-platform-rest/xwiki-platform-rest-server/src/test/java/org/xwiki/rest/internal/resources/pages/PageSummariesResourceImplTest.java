@@ -0,0 +1,230 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.pages;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.inject.Named;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryFilter;
+import org.xwiki.query.QueryManager;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.test.MockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.InjectMockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link PageSummariesResourceImpl}.
+ * 
+ * @version $Id$
+ */
+@OldcoreTest
+public class PageSummariesResourceImplTest
+{
+    private static final String STATEMENT =
+        "select doc.name, doc.fullName, doc.title, doc.version, doc.author, doc.parent, doc.syntaxId"
+            + " from XWikiDocument as doc where doc.space = :space and doc.language = ''";
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @MockComponent
+    @Named("hidden/document")
+    private QueryFilter hiddenDocumentFilter;
+
+    @MockComponent
+    private ContextualAuthorizationManager authorization;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> serializer;
+
+    @InjectMockitoOldcore
+    private MockitoOldcore oldCore;
+
+    @InjectMockComponents
+    private PageSummariesResourceImpl pageSummariesResource;
+
+    @Mock
+    private UriInfo uriInfo;
+
+    @Mock
+    private Request request;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        when(this.uriInfo.getBaseUri()).thenReturn(new URI("https://test/"));
+        FieldUtils.writeField(this.pageSummariesResource, "uriInfo", this.uriInfo, true);
+        FieldUtils.writeField(this.pageSummariesResource, "request", this.request, true);
+
+        when(this.authorization.hasAccess(eq(Right.VIEW), any(DocumentReference.class))).thenReturn(true);
+        when(this.serializer.serialize(any(DocumentReference.class)))
+            .then(invocation -> invocation.getArgument(0).toString());
+
+        doReturn("/xwiki/bin/view/Space/Page").when(this.oldCore.getSpyXWiki()).getURL(any(DocumentReference.class),
+            eq("view"), any(XWikiContext.class));
+        doReturn("https://test/xwiki/bin/view/Space/Page").when(this.oldCore.getSpyXWiki())
+            .getExternalURL(any(DocumentReference.class), eq("view"), any(), any(), any(XWikiContext.class));
+    }
+
+    private Query mockQuery(String statement, Object... rows) throws Exception
+    {
+        Query query = mock(Query.class, statement);
+        when(this.queryManager.createQuery(statement, Query.HQL)).thenReturn(query);
+        when(query.execute()).thenReturn(Arrays.asList(rows));
+
+        return query;
+    }
+
+    private Object[] row(String name, String version)
+    {
+        return new Object[] {name, "Space." + name, name + " title", version, "XWiki.Author", "", "xwiki/2.1"};
+    }
+
+    private String write(Response response) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void getPageSummaries() throws Exception
+    {
+        Query query = mockQuery(STATEMENT + " order by doc.name", row("A", "1.1"), row("B", "2.1"));
+
+        Response response = this.pageSummariesResource.getPageSummaries("wiki", "Space", "", -1);
+
+        assertEquals(Status.OK.getStatusCode(), response.getStatus());
+        assertNotNull(response.getMetadata().getFirst("ETag"));
+
+        verify(query).bindValue("space", "Space");
+        verify(query).addFilter(this.hiddenDocumentFilter);
+        verify(query, never()).setLimit(anyInt());
+
+        String xml = write(response);
+        assertTrue(xml.contains("<name>A</name>"));
+        assertTrue(xml.contains("<name>B</name>"));
+        assertTrue(xml.contains("<fullName>Space.A</fullName>"));
+        assertTrue(xml.contains("<version>2.1</version>"));
+        assertTrue(xml.contains("https://test/wikis/wiki/spaces/Space/pages/A/history"));
+    }
+
+    @Test
+    public void getPageSummariesWrittenAfterTheRequest() throws Exception
+    {
+        mockQuery(STATEMENT + " order by doc.name", row("A", "1.1"));
+
+        Response response = this.pageSummariesResource.getPageSummaries("wiki", "Space", "", -1);
+
+        // The request context is not available anymore when the response is written
+        when(this.uriInfo.getBaseUri()).thenThrow(new IllegalStateException("No request"));
+
+        String xml = write(response);
+        assertTrue(xml.contains("<name>A</name>"));
+        assertTrue(xml.contains("https://test/wikis/wiki/spaces/Space/pages/A"));
+    }
+
+    @Test
+    public void getPageSummariesAfterSkipsPagesNotViewable() throws Exception
+    {
+        String statement = STATEMENT + " and doc.name > :after order by doc.name";
+        Query firstQuery = mockQuery(statement, row("B", "1.1"), row("C", "1.1"));
+        Query secondQuery = mockQuery(statement, row("D", "1.1"), row("E", "1.1"));
+        when(this.queryManager.createQuery(statement, Query.HQL)).thenReturn(firstQuery, secondQuery);
+
+        when(this.authorization.hasAccess(Right.VIEW, new DocumentReference("wiki", "Space", "C"))).thenReturn(false);
+
+        Response response = this.pageSummariesResource.getPageSummaries("wiki", "Space", "A", 2);
+
+        verify(firstQuery).bindValue("after", "A");
+        verify(firstQuery).setLimit(2);
+        verify(secondQuery).bindValue("after", "C");
+        // Full batches are fetched even if only one page is missing
+        verify(secondQuery).setLimit(2);
+
+        String xml = write(response);
+        assertTrue(xml.contains("<name>B</name>"));
+        assertFalse(xml.contains("<name>C</name>"));
+        assertTrue(xml.contains("<name>D</name>"));
+        assertFalse(xml.contains("<name>E</name>"));
+    }
+
+    @Test
+    public void getPageSummariesNotModified() throws Exception
+    {
+        mockQuery(STATEMENT + " order by doc.name", row("A", "1.1"));
+
+        ArgumentCaptor<EntityTag> tagCaptor = ArgumentCaptor.forClass(EntityTag.class);
+        when(this.request.evaluatePreconditions(tagCaptor.capture())).thenReturn(null);
+        Response response = this.pageSummariesResource.getPageSummaries("wiki", "Space", "", -1);
+        assertEquals(Status.OK.getStatusCode(), response.getStatus());
+
+        // Same versions, same tag
+        when(this.request.evaluatePreconditions(tagCaptor.getValue())).thenReturn(Response.notModified());
+        response = this.pageSummariesResource.getPageSummaries("wiki", "Space", "", -1);
+        assertEquals(Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        assertNull(response.getEntity());
+
+        // New version, new tag
+        mockQuery(STATEMENT + " order by doc.name", row("A", "1.2"));
+        response = this.pageSummariesResource.getPageSummaries("wiki", "Space", "", -1);
+        assertEquals(Status.OK.getStatusCode(), response.getStatus());
+        assertNotEquals(tagCaptor.getAllValues().get(0), tagCaptor.getValue());
+    }
+}
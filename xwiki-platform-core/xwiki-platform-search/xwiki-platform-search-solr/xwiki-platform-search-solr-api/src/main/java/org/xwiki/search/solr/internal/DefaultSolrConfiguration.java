@@ -104,6 +104,50 @@ public class DefaultSolrConfiguration implements SolrConfiguration
      */
     public static final int SOLR_INDEXER_QUEUE_CAPACITY_DEFAULT = 100000;
 
+    /**
+     * The name of the configuration property containing the number of metadata extraction threads.
+     * 
+     * @since 11.5RC1
+     */
+    public static final String SOLR_INDEXER_EXTRACTION_THREADS_PROPERTY = "solr.indexer.extraction.threads";
+
+    /**
+     * The default number of metadata extraction threads.
+     * 
+     * @since 11.5RC1
+     */
+    public static final int SOLR_INDEXER_EXTRACTION_THREADS_DEFAULT = 1;
+
+    /**
+     * The name of the configuration property containing the capacity of the extraction queue.
+     * 
+     * @since 11.5RC1
+     */
+    public static final String SOLR_INDEXER_EXTRACTION_QUEUE_CAPACITY_PROPERTY =
+        "solr.indexer.extraction.queue.capacity";
+
+    /**
+     * The default capacity of the extraction queue.
+     * 
+     * @since 11.5RC1
+     */
+    public static final int SOLR_INDEXER_EXTRACTION_QUEUE_CAPACITY_DEFAULT = 100;
+
+    /**
+     * The name of the configuration property containing the maximum size (in megabytes) of the attachment text cache.
+     * 
+     * @since 11.5RC1
+     */
+    public static final String SOLR_INDEXER_ATTACHMENT_TEXT_CACHE_SIZE_PROPERTY =
+        "solr.indexer.extraction.attachmentCache.size";
+
+    /**
+     * The default maximum size (in megabytes) of the attachment text cache.
+     * 
+     * @since 11.5RC1
+     */
+    public static final long SOLR_INDEXER_ATTACHMENT_TEXT_CACHE_SIZE_DEFAULT = 500;
+
     /**
      * The name of the configuration property indicating if a synchronization should be run at startup.
      */
@@ -160,6 +204,27 @@ public int getIndexerQueueCapacity()
             .getProperty(SOLR_INDEXER_QUEUE_CAPACITY_PROPERTY, SOLR_INDEXER_QUEUE_CAPACITY_DEFAULT);
     }
 
+    @Override
+    public int getIndexerExtractionThreads()
+    {
+        return this.configuration
+            .getProperty(SOLR_INDEXER_EXTRACTION_THREADS_PROPERTY, SOLR_INDEXER_EXTRACTION_THREADS_DEFAULT);
+    }
+
+    @Override
+    public int getIndexerExtractionQueueCapacity()
+    {
+        return this.configuration.getProperty(SOLR_INDEXER_EXTRACTION_QUEUE_CAPACITY_PROPERTY,
+            SOLR_INDEXER_EXTRACTION_QUEUE_CAPACITY_DEFAULT);
+    }
+
+    @Override
+    public long getIndexerAttachmentTextCacheSize()
+    {
+        return this.configuration.getProperty(SOLR_INDEXER_ATTACHMENT_TEXT_CACHE_SIZE_PROPERTY,
+            SOLR_INDEXER_ATTACHMENT_TEXT_CACHE_SIZE_DEFAULT);
+    }
+
     @Override
     public boolean synchronizeAtStartup()
     {
@@ -19,14 +19,22 @@
  */
 package org.xwiki.search.solr.internal;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
@@ -43,13 +51,17 @@
 import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.job.JobException;
 import org.xwiki.job.JobExecutor;
+import org.xwiki.job.JobStatusStore;
+import org.xwiki.job.event.status.JobStatus.State;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.search.solr.internal.api.SolrConfiguration;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
 import org.xwiki.search.solr.internal.api.SolrIndexerException;
+import org.xwiki.search.solr.internal.api.SolrIndexerStageStatistics;
 import org.xwiki.search.solr.internal.api.SolrInstance;
 import org.xwiki.search.solr.internal.job.IndexerJob;
+import org.xwiki.search.solr.internal.job.IndexerJobStatus;
 import org.xwiki.search.solr.internal.job.IndexerRequest;
 import org.xwiki.search.solr.internal.metadata.LengthSolrInputDocument;
 import org.xwiki.search.solr.internal.metadata.SolrMetadataExtractor;
@@ -63,6 +75,10 @@
  * This implementation does not directly process the given leaf-references, but adds them to a processing queue, in the
  * order they were received. The {@link Runnable} part of this implementation is the one that sequentially reads and
  * processes the queue.
+ * <p>
+ * The extraction of the metadata of the entities to index is delegated to a pool of extraction threads, which can work
+ * on several entries in advance. The results are still sent to the Solr instance by the index thread, in the order of
+ * the queue, so that an operation is never overtaken by an operation that was queued before it.
  * 
  * @version $Id$
  * @since 5.1M2
@@ -97,6 +113,16 @@ public class DefaultSolrIndexer implements SolrIndexer, Initializable, Disposabl
          */
         public IndexOperation operation;
 
+        /**
+         * The document being extracted by the extraction threads.
+         */
+        public Future<LengthSolrInputDocument> document;
+
+        /**
+         * The status of the job on behalf of which the entry was queued, if any.
+         */
+        public IndexerJobStatus jobStatus;
+
         /**
          * @param indexReference the reference of the entity to index.
          * @param operation the indexing operation to perform.
@@ -107,6 +133,18 @@ public IndexQueueEntry(EntityReference indexReference, IndexOperation operation)
             this.operation = operation;
         }
 
+        /**
+         * @param indexReference the reference of the entity to index.
+         * @param operation the indexing operation to perform.
+         * @param jobStatus the status of the job on behalf of which the entry is queued, if any.
+         */
+        public IndexQueueEntry(EntityReference indexReference, IndexOperation operation, IndexerJobStatus jobStatus)
+        {
+            this(indexReference, operation);
+
+            this.jobStatus = jobStatus;
+        }
+
         /**
          * @param deleteQuery the query used to filter entries to delete.
          * @param operation the indexing operation to perform.
@@ -163,16 +201,24 @@ public String toString()
          */
         public IndexOperation operation;
 
+        /**
+         * The status of the job on behalf of which the entry was queued, if any.
+         */
+        public IndexerJobStatus jobStatus;
+
         /**
          * @param reference the reference of the entity to index.
          * @param recurse also apply operation to reference children.
          * @param operation the indexing operation to perform.
+         * @param jobStatus the status of the job on behalf of which the entry is queued, if any.
          */
-        public ResolveQueueEntry(EntityReference reference, boolean recurse, IndexOperation operation)
+        public ResolveQueueEntry(EntityReference reference, boolean recurse, IndexOperation operation,
+            IndexerJobStatus jobStatus)
         {
             this.reference = reference;
             this.recurse = recurse;
             this.operation = operation;
+            this.jobStatus = jobStatus;
         }
     }
 
@@ -204,6 +250,8 @@ public void runInternal()
                     break;
                 }
 
+                long start = System.nanoTime();
+
                 try {
                     if (queueEntry.operation == IndexOperation.INDEX) {
                         Iterable<EntityReference> references;
@@ -214,7 +262,8 @@ public void runInternal()
                         }
 
                         for (EntityReference reference : references) {
-                            indexQueue.put(new IndexQueueEntry(reference, queueEntry.operation));
+                            queued(queueEntry.jobStatus);
+                            indexQueue.put(new IndexQueueEntry(reference, queueEntry.operation, queueEntry.jobStatus));
                         }
                     } else {
                         if (queueEntry.recurse) {
@@ -228,6 +277,10 @@ public void runInternal()
                     logger.warn("Failed to apply operation [{}] on root reference [{}]", queueEntry.operation,
                         queueEntry.reference, e);
                 }
+
+                processed(queueEntry.jobStatus);
+
+                resolveStatistics.add(System.nanoTime() - start);
             }
 
             logger.debug("Stop SOLR resolver thread");
@@ -238,7 +291,7 @@ public void runInternal()
      * Stop resolver thread.
      */
     private static final ResolveQueueEntry RESOLVE_QUEUE_ENTRY_STOP =
-        new ResolveQueueEntry(null, false, IndexOperation.STOP);
+        new ResolveQueueEntry(null, false, IndexOperation.STOP, null);
 
     /**
      * Stop indexer thread.
@@ -285,6 +338,9 @@ public void runInternal()
     @Inject
     private JobExecutor jobs;
 
+    @Inject
+    private JobStatusStore jobStatusStore;
+
     /**
      * The queue of index operation to perform.
      */
@@ -305,6 +361,27 @@ public void runInternal()
      */
     private Thread resolveThread;
 
+    /**
+     * The threads in which the metadata of the entities to index are extracted.
+     */
+    private ExecutorService extractionExecutor;
+
+    /**
+     * The maximum number of entries taken from the index queue and not yet sent to the Solr instance.
+     */
+    private int extractionQueueCapacity;
+
+    /**
+     * The number of entries taken from the index queue and not yet sent to the Solr instance.
+     */
+    private volatile int extractionQueueSize;
+
+    private final SolrIndexerStageStatistics resolveStatistics = new SolrIndexerStageStatistics("resolve");
+
+    private final SolrIndexerStageStatistics extractStatistics = new SolrIndexerStageStatistics("extract");
+
+    private final SolrIndexerStageStatistics commitStatistics = new SolrIndexerStageStatistics("commit");
+
     /**
      * Indicate of the component has been disposed.
      */
@@ -321,6 +398,13 @@ public void initialize() throws InitializationException
         // Initialize the queues before starting the threads.
         this.resolveQueue = new LinkedBlockingQueue<>();
         this.indexQueue = new LinkedBlockingQueue<>(this.configuration.getIndexerQueueCapacity());
+        this.extractionQueueCapacity = Math.max(1, this.configuration.getIndexerExtractionQueueCapacity());
+
+        // Create the extraction threads
+        BasicThreadFactory factory = new BasicThreadFactory.Builder().namingPattern("XWiki Solr extraction thread %d")
+            .daemon(true).priority(Thread.NORM_PRIORITY - 1).build();
+        this.extractionExecutor =
+            Executors.newFixedThreadPool(Math.max(1, this.configuration.getIndexerExtractionThreads()), factory);
 
         // Launch the resolve thread
         this.resolveThread = new Thread(new Resolver());
@@ -379,6 +463,8 @@ public void run()
             }
         }
 
+        this.extractionExecutor.shutdownNow();
+
         this.logger.debug("Stop SOLR indexer thread");
     }
 
@@ -393,14 +479,21 @@ private boolean processBatch(IndexQueueEntry queueEntry)
     {
         SolrInstance solrInstance = this.solrInstanceProvider.get();
 
+        // The entries taken from the index queue, in the queue order, some of them being extracted in the background
+        Deque<IndexQueueEntry> pending = new ArrayDeque<>();
+        schedule(queueEntry, pending);
+
         int length = 0;
 
-        for (IndexQueueEntry batchEntry = queueEntry; batchEntry != null; batchEntry = this.indexQueue.poll()) {
+        for (IndexQueueEntry batchEntry = pending.poll(); batchEntry != null; batchEntry = next(pending)) {
             if (batchEntry == INDEX_QUEUE_ENTRY_STOP) {
                 // Discard the current batch and stop the indexing thread.
                 return false;
             }
 
+            // Give more work to the extraction threads while we wait for the current entry
+            fill(pending);
+
             IndexOperation operation = batchEntry.operation;
 
             // For the current contiguous operations queue, group the changes
@@ -408,7 +501,7 @@ private boolean processBatch(IndexQueueEntry queueEntry)
                 this.ecim.initialize(new ExecutionContext());
 
                 if (IndexOperation.INDEX.equals(operation)) {
-                    LengthSolrInputDocument solrDocument = getSolrDocument(batchEntry.reference);
+                    LengthSolrInputDocument solrDocument = batchEntry.document.get();
                     if (solrDocument != null) {
                         solrInstance.add(solrDocument);
                         length += solrDocument.getLength();
@@ -423,10 +516,21 @@ private boolean processBatch(IndexQueueEntry queueEntry)
 
                     ++this.batchSize;
                 }
+            } catch (InterruptedException e) {
+                this.logger.warn("The SOLR index thread has been interrupted", e);
+
+                cancel(pending);
+
+                return false;
+            } catch (ExecutionException e) {
+                this.logger.error("Failed to process entry [{}]", batchEntry, e.getCause());
             } catch (Throwable e) {
                 this.logger.error("Failed to process entry [{}]", batchEntry, e);
             } finally {
                 this.execution.removeContext();
+                this.extractionQueueSize = pending.size();
+
+                processed(batchEntry.jobStatus);
             }
 
             // Commit the index changes so that they become available to queries. This is a costly operation and that is
@@ -445,6 +549,125 @@ private boolean processBatch(IndexQueueEntry queueEntry)
         return true;
     }
 
+    /**
+     * @param pending the entries taken from the index queue and not yet sent to the Solr instance
+     * @return the next entry to send to the Solr instance or {@code null} if the index queue is empty
+     */
+    private IndexQueueEntry next(Deque<IndexQueueEntry> pending)
+    {
+        fill(pending);
+
+        return pending.poll();
+    }
+
+    /**
+     * Take entries from the index queue (without blocking) until the extraction queue is full.
+     * 
+     * @param pending the entries taken from the index queue and not yet sent to the Solr instance
+     */
+    private void fill(Deque<IndexQueueEntry> pending)
+    {
+        while (pending.size() < this.extractionQueueCapacity && pending.peekLast() != INDEX_QUEUE_ENTRY_STOP) {
+            IndexQueueEntry queueEntry = this.indexQueue.poll();
+            if (queueEntry == null) {
+                break;
+            }
+
+            schedule(queueEntry, pending);
+        }
+    }
+
+    /**
+     * Start extracting the metadata of the passed entry in the background and add it to the pending entries.
+     * 
+     * @param queueEntry the entry taken from the index queue
+     * @param pending the entries taken from the index queue and not yet sent to the Solr instance
+     */
+    private void schedule(IndexQueueEntry queueEntry, Deque<IndexQueueEntry> pending)
+    {
+        if (queueEntry == INDEX_QUEUE_ENTRY_STOP) {
+            // Don't waste time extracting entries which are going to be discarded anyway
+            cancel(pending);
+        } else if (IndexOperation.INDEX.equals(queueEntry.operation)) {
+            EntityReference reference = queueEntry.reference;
+            IndexerJobStatus jobStatus = queueEntry.jobStatus;
+            queueEntry.document = this.extractionExecutor.submit(() -> extract(reference, jobStatus));
+        }
+
+        pending.add(queueEntry);
+
+        this.extractionQueueSize = pending.size();
+    }
+
+    /**
+     * Cancel the extraction of the pending entries.
+     * 
+     * @param pending the entries taken from the index queue and not yet sent to the Solr instance
+     */
+    private void cancel(Deque<IndexQueueEntry> pending)
+    {
+        for (IndexQueueEntry queueEntry : pending) {
+            if (queueEntry.document != null) {
+                queueEntry.document.cancel(false);
+            }
+        }
+
+        pending.clear();
+
+        this.extractionQueueSize = 0;
+    }
+
+    /**
+     * Extract the metadata of the passed entity. Called from the extraction threads.
+     * 
+     * @param reference the reference of the entity to extract
+     * @param jobStatus the status of the job on behalf of which the entity is indexed, if any
+     * @return the extracted document
+     * @throws Exception when failing to extract the document
+     */
+    private LengthSolrInputDocument extract(EntityReference reference, IndexerJobStatus jobStatus) throws Exception
+    {
+        long start = System.nanoTime();
+
+        try {
+            ExecutionContext econtext = new ExecutionContext();
+            if (jobStatus != null) {
+                // Let the extractors count what they do for the job
+                econtext.setProperty(IndexerJobStatus.CONTEXT_KEY, jobStatus);
+            }
+            this.ecim.initialize(econtext);
+
+            return getSolrDocument(reference);
+        } finally {
+            this.execution.removeContext();
+
+            this.extractStatistics.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param jobStatus the status of the job on behalf of which an entry is queued, if any
+     */
+    private void queued(IndexerJobStatus jobStatus)
+    {
+        if (jobStatus != null) {
+            jobStatus.entryQueued();
+        }
+    }
+
+    /**
+     * @param jobStatus the status of the job on behalf of which the processed entry was queued, if any
+     */
+    private void processed(IndexerJobStatus jobStatus)
+    {
+        // The job usually finishes (and its status is stored) before the entries it queued are processed, so store
+        // the status again to keep the final statistics
+        if (jobStatus != null && jobStatus.entryProcessed() && jobStatus.getState() == State.FINISHED
+            && jobStatus.getRequest().getId() != null) {
+            this.jobStatusStore.store(jobStatus);
+        }
+    }
+
     /**
      * Commit.
      */
@@ -452,8 +675,13 @@ private void commit()
     {
         SolrInstance solrInstance = this.solrInstanceProvider.get();
 
+        long start = System.nanoTime();
+
         try {
             solrInstance.commit();
+
+            // Only time the commit itself, waiting for the extraction threads is not part of it
+            this.commitStatistics.add(System.nanoTime() - start);
         } catch (Exception e) {
             this.logger.error("Failed to commit index changes to the Solr server. Rolling back.", e);
 
@@ -529,6 +757,12 @@ public void index(EntityReference reference, boolean recurse)
         addToQueue(reference, recurse, IndexOperation.INDEX);
     }
 
+    @Override
+    public void index(EntityReference reference, boolean recurse, IndexerJobStatus jobStatus)
+    {
+        addToQueue(reference, recurse, IndexOperation.INDEX, jobStatus);
+    }
+
     @Override
     public void delete(EntityReference reference, boolean recurse)
     {
@@ -543,13 +777,31 @@ public void delete(EntityReference reference, boolean recurse)
      * @param operation the operation to assign to the given references
      */
     private void addToQueue(EntityReference reference, boolean recurse, IndexOperation operation)
+    {
+        addToQueue(reference, recurse, operation, null);
+    }
+
+    /**
+     * Add a list of references to the index queue, all having the same operation.
+     * 
+     * @param reference the references to add
+     * @param recurse also apply operation to children
+     * @param operation the operation to assign to the given references
+     * @param jobStatus the status of the job on behalf of which the references are added, if any
+     */
+    private void addToQueue(EntityReference reference, boolean recurse, IndexOperation operation,
+        IndexerJobStatus jobStatus)
     {
         if (!this.disposed) {
+            queued(jobStatus);
+
             // Don't block because the capacity of the resolver queue is not limited.
             try {
-                this.resolveQueue.put(new ResolveQueueEntry(reference, recurse, operation));
+                this.resolveQueue.put(new ResolveQueueEntry(reference, recurse, operation, jobStatus));
             } catch (InterruptedException e) {
                 this.logger.error("Failed to add reference [{}] to Solr indexing queue", reference, e);
+
+                processed(jobStatus);
             }
         }
     }
@@ -557,7 +809,13 @@ private void addToQueue(EntityReference reference, boolean recurse, IndexOperati
     @Override
     public int getQueueSize()
     {
-        return this.indexQueue.size() + this.resolveQueue.size() + this.batchSize;
+        return this.indexQueue.size() + this.resolveQueue.size() + this.extractionQueueSize + this.batchSize;
+    }
+
+    @Override
+    public List<SolrIndexerStageStatistics> getStatistics()
+    {
+        return Arrays.asList(this.resolveStatistics, this.extractStatistics, this.commitStatistics);
     }
 
     @Override
@@ -20,14 +20,17 @@
 package org.xwiki.search.solr.internal;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.bridge.event.DocumentCreatedEvent;
@@ -36,10 +39,13 @@
 import org.xwiki.bridge.event.WikiDeletedEvent;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.LocalDocumentReference;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.event.Event;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
+import org.xwiki.search.solr.internal.metadata.AttachmentTextCache;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -56,6 +62,7 @@
 import com.xpn.xwiki.internal.event.XObjectPropertyDeletedEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyUpdatedEvent;
 import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObject;
 
 /**
  * Event listener that monitors changes in the wiki and updates the Solr index accordingly.
@@ -77,6 +84,24 @@ public class SolrIndexEventListener implements EventListener
         new XObjectUpdatedEvent(), new XObjectPropertyAddedEvent(), new XObjectPropertyDeletedEvent(),
         new XObjectPropertyUpdatedEvent(), new WikiDeletedEvent());
 
+    private static final String XWIKI_SPACE = "XWiki";
+
+    private static final LocalDocumentReference RIGHTS_CLASS = new LocalDocumentReference(XWIKI_SPACE, "XWikiRights");
+
+    private static final LocalDocumentReference GLOBAL_RIGHTS_CLASS =
+        new LocalDocumentReference(XWIKI_SPACE, "XWikiGlobalRights");
+
+    private static final String SPACE_PREFERENCES = "WebPreferences";
+
+    private static final String WIKI_PREFERENCES = "XWikiPreferences";
+
+    private static final String WIKI_DESCRIPTOR_PREFIX = "XWikiServer";
+
+    private static final LocalDocumentReference WIKI_DESCRIPTOR_CLASS =
+        new LocalDocumentReference(XWIKI_SPACE, "XWikiServerClass");
+
+    private static final String FIELD_OWNER = "owner";
+
     /**
      * Logging framework.
      */
@@ -91,6 +116,15 @@ public class SolrIndexEventListener implements EventListener
     @Inject
     private Provider<SolrIndexer> solrIndexer;
 
+    @Inject
+    private Provider<AttachmentTextCache> attachmentTextCache;
+
+    @Inject
+    private Provider<SolrViewTokens> viewTokens;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
     @Override
     public List<Event> getEvents()
     {
@@ -113,6 +147,8 @@ public void onEvent(Event event, Object source, Object data)
                     // Index all the translations of a document when its default translation has been updated because
                     // the default translation holds meta data shared by all translations (attachments, objects).
                     indexTranslations(document, (XWikiContext) data);
+                    // Rights objects are also held by the default translation.
+                    indexRightsScope(document, true);
                 } else {
                     // Index only the updated translation.
                     this.solrIndexer.get().index(document.getDocumentReferenceWithLocale(), false);
@@ -127,6 +163,7 @@ public void onEvent(Event event, Object source, Object data)
                     indexTranslations(document, (XWikiContext) data);
                 } else {
                     this.solrIndexer.get().index(document.getDocumentReferenceWithLocale(), false);
+                    indexRightsScope(document, true);
                 }
             } else if (event instanceof DocumentDeletedEvent) {
                 XWikiDocument document = ((XWikiDocument) source).getOriginalDocument();
@@ -142,6 +179,14 @@ public void onEvent(Event event, Object source, Object data)
                 // See XWIKI-10003: Cache problem with Solr facet filter results count
                 this.solrIndexer.get().delete(
                     new DocumentReference(document.getDocumentReference(), document.getRealLocale()), false);
+
+                // The text extracted from the attachments of the deleted document won't be needed anymore.
+                AttachmentTextCache textCache = this.attachmentTextCache.get();
+                for (XWikiAttachment attachment : document.getAttachmentList()) {
+                    textCache.remove(attachment.getReference());
+                }
+
+                indexRightsScope((XWikiDocument) source, false);
             } else if (event instanceof AttachmentUpdatedEvent || event instanceof AttachmentAddedEvent) {
                 XWikiDocument document = (XWikiDocument) source;
                 String fileName = ((AbstractAttachmentEvent) event).getName();
@@ -154,6 +199,9 @@ public void onEvent(Event event, Object source, Object data)
                 XWikiAttachment attachment = document.getAttachment(fileName);
 
                 this.solrIndexer.get().delete(attachment.getReference(), false);
+
+                // The extracted text won't be needed anymore.
+                this.attachmentTextCache.get().remove(attachment.getReference());
             } else if (event instanceof XObjectUpdatedEvent || event instanceof XObjectAddedEvent) {
                 EntityEvent entityEvent = (EntityEvent) event;
 
@@ -181,6 +229,94 @@ public void onEvent(Event event, Object source, Object data)
         }
     }
 
+    /**
+     * Reindex the entities whose view tokens (see {@link SolrViewTokens}) depend on the rights objects of the passed
+     * document, when they have been modified.
+     * 
+     * @param document the created, updated or deleted document
+     * @param exists true if the document still exists
+     */
+    private void indexRightsScope(XWikiDocument document, boolean exists)
+    {
+        DocumentReference documentReference = document.getDocumentReference();
+
+        if (exists && hasRightsChanged(document, RIGHTS_CLASS)) {
+            this.viewTokens.get().invalidate();
+
+            // Also update the view tokens of the objects and attachments.
+            this.solrIndexer.get().index(documentReference, true);
+        }
+
+        if (SPACE_PREFERENCES.equals(documentReference.getName())) {
+            if (hasRightsChanged(document, GLOBAL_RIGHTS_CLASS)) {
+                this.viewTokens.get().invalidate();
+
+                this.solrIndexer.get().index(documentReference.getParent(), true);
+            }
+        } else if (XWIKI_SPACE.equals(documentReference.getParent().getName())) {
+            if (WIKI_PREFERENCES.equals(documentReference.getName())) {
+                if (hasRightsChanged(document, GLOBAL_RIGHTS_CLASS)) {
+                    this.viewTokens.get().invalidate();
+
+                    indexWiki(documentReference.getWikiReference().getName());
+                }
+            } else if (exists && isWikiDescriptor(documentReference) && hasOwnerChanged(document)) {
+                this.viewTokens.get().invalidate();
+
+                // The wiki owner is allowed to view all the documents of the wiki
+                indexWiki(getDescribedWiki(documentReference));
+            }
+        }
+    }
+
+    /**
+     * @param wiki the wiki whose rights or owner changed
+     */
+    private void indexWiki(String wiki)
+    {
+        if (this.wikiDescriptorManager.isMainWiki(wiki)) {
+            // The rights and the owner of the main wiki also apply to the documents of all the other wikis
+            this.solrIndexer.get().index(null, true);
+        } else {
+            this.solrIndexer.get().index(new WikiReference(wiki), true);
+        }
+    }
+
+    private boolean isWikiDescriptor(DocumentReference documentReference)
+    {
+        return documentReference.getName().startsWith(WIKI_DESCRIPTOR_PREFIX)
+            && documentReference.getName().length() > WIKI_DESCRIPTOR_PREFIX.length()
+            && this.wikiDescriptorManager.isMainWiki(documentReference.getWikiReference().getName());
+    }
+
+    private String getDescribedWiki(DocumentReference descriptorReference)
+    {
+        // See XWiki#getServerWikiPage(String)
+        return StringUtils.uncapitalize(descriptorReference.getName().substring(WIKI_DESCRIPTOR_PREFIX.length()));
+    }
+
+    private boolean hasOwnerChanged(XWikiDocument document)
+    {
+        XWikiDocument originalDocument = document.getOriginalDocument();
+
+        return !Objects.equals(getOwner(document), originalDocument != null ? getOwner(originalDocument) : null);
+    }
+
+    private String getOwner(XWikiDocument document)
+    {
+        BaseObject descriptorObject = document.getXObject(WIKI_DESCRIPTOR_CLASS);
+
+        return descriptorObject != null ? descriptorObject.getStringValue(FIELD_OWNER) : null;
+    }
+
+    private boolean hasRightsChanged(XWikiDocument document, LocalDocumentReference rightsClass)
+    {
+        XWikiDocument originalDocument = document.getOriginalDocument();
+
+        return !Objects.equals(document.getXObjects(rightsClass),
+            originalDocument != null ? originalDocument.getXObjects(rightsClass) : Collections.emptyList());
+    }
+
     /**
      * Helper method to index all the translations of a document. We don't rely on the {@code recurse} parameter of the
      * {@link SolrIndexer#index(org.xwiki.model.reference.EntityReference, boolean)} because we want to update only the
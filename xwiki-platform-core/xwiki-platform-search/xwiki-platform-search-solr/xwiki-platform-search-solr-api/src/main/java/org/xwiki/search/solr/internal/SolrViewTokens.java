@@ -0,0 +1,349 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.search.solr.internal.api.FieldUtils;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.user.group.GroupManager;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.classes.GroupsClass;
+import com.xpn.xwiki.objects.classes.LevelsClass;
+import com.xpn.xwiki.objects.classes.UsersClass;
+import com.xpn.xwiki.user.api.XWikiRightService;
+
+/**
+ * Compute the view tokens indexed in {@link FieldUtils#VIEW_TOKENS} and the matching filter query for a given user.
+ * <p>
+ * The indexed tokens are a superset of the users and groups allowed to view a document: deny rules are ignored and the
+ * search results are still checked with the authorization manager. The point is to let Solr exclude most of the
+ * documents the user cannot see before paginating, so that counts and pages are right in the common case. Group
+ * membership is resolved when querying so that changing a group does not require to reindex anything.
+ * <p>
+ * The tokens of the last document are remembered since the indexer extracts the metadata of a document, its
+ * translations, objects, properties and attachments one after the other. They are forgotten as soon as
+ * {@link #invalidate()} is called.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component(roles = SolrViewTokens.class)
+@Singleton
+public class SolrViewTokens
+{
+    /**
+     * The token indexed for documents which don't restrict view right.
+     */
+    public static final String EVERYONE = "everyone";
+
+    /**
+     * The token matching the guest user.
+     */
+    public static final String GUEST = "guest";
+
+    /**
+     * The token matching any authenticated user.
+     */
+    public static final String ALLGROUP = "allgroup";
+
+    private static final String XWIKI_SPACE = "XWiki";
+
+    private static final LocalDocumentReference RIGHTS_CLASS = new LocalDocumentReference(XWIKI_SPACE, "XWikiRights");
+
+    private static final LocalDocumentReference GLOBAL_RIGHTS_CLASS =
+        new LocalDocumentReference(XWIKI_SPACE, "XWikiGlobalRights");
+
+    private static final String SPACE_PREFERENCES = "WebPreferences";
+
+    private static final String WIKI_PREFERENCES = "XWikiPreferences";
+
+    private static final String FIELD_ALLOW = "allow";
+
+    private static final String FIELD_LEVELS = "levels";
+
+    private static final String FIELD_USERS = "users";
+
+    private static final String FIELD_GROUPS = "groups";
+
+    @Inject
+    @Named("user")
+    private DocumentReferenceResolver<String> userResolver;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private GroupManager groupManager;
+
+    @Inject
+    private WikiDescriptorManager wikis;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Logger logger;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile DocumentTokens lastDocumentTokens;
+
+    /**
+     * The view tokens of a document, along with the generation at which they were computed.
+     */
+    private static final class DocumentTokens
+    {
+        private final DocumentReference documentReference;
+
+        private final Set<String> tokens;
+
+        private final long generation;
+
+        DocumentTokens(DocumentReference documentReference, Set<String> tokens, long generation)
+        {
+            this.documentReference = documentReference;
+            this.tokens = tokens;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * @param documentReference the reference of the document
+     * @return the tokens of the users and groups which might be allowed to view the document
+     * @throws XWikiException when failing to load the documents holding the rights
+     */
+    public Set<String> getDocumentTokens(DocumentReference documentReference) throws XWikiException
+    {
+        // All the translations of a document share the same rights
+        DocumentReference reference = documentReference.getLocale() != null
+            ? new DocumentReference(documentReference, (Locale) null) : documentReference;
+
+        long currentGeneration = this.generation.get();
+        DocumentTokens documentTokens = this.lastDocumentTokens;
+        if (documentTokens == null || documentTokens.generation != currentGeneration
+            || !documentTokens.documentReference.equals(reference)) {
+            documentTokens =
+                new DocumentTokens(reference, Collections.unmodifiableSet(computeDocumentTokens(reference)),
+                    currentGeneration);
+            this.lastDocumentTokens = documentTokens;
+        }
+
+        return documentTokens.tokens;
+    }
+
+    /**
+     * Forget the remembered tokens, to call when rights or wiki owners are modified.
+     */
+    public void invalidate()
+    {
+        this.generation.incrementAndGet();
+    }
+
+    private Set<String> computeDocumentTokens(DocumentReference documentReference) throws XWikiException
+    {
+        Set<String> tokens = new LinkedHashSet<>();
+
+        // Go from the document to the farm, like the authorization settler does: the first level explicitly allowing
+        // view to someone denies it to everyone else, except for rights which cannot be overridden by a lower level
+        // (admin, programming).
+        boolean restricted = false;
+        for (DocumentReference rightsDocument : getRightsDocuments(documentReference)) {
+            restricted |= addLevelTokens(rightsDocument, documentReference.equals(rightsDocument) ? RIGHTS_CLASS
+                : GLOBAL_RIGHTS_CLASS, restricted, tokens);
+        }
+
+        if (!restricted) {
+            tokens.clear();
+            tokens.add(EVERYONE);
+        } else {
+            addOwnerToken(documentReference.getWikiReference(), tokens);
+            addOwnerToken(new WikiReference(this.wikis.getMainWikiId()), tokens);
+        }
+
+        return tokens;
+    }
+
+    /**
+     * @param user the user for which to filter the search results
+     * @return the filter query to apply, or {@code null} if the search results should not be filtered
+     */
+    public String getFilterQuery(DocumentReference user)
+    {
+        if (XWikiRightService.isSuperAdmin(user)) {
+            return null;
+        }
+
+        Set<String> tokens = new LinkedHashSet<>();
+        tokens.add(EVERYONE);
+        if (XWikiRightService.isGuest(user)) {
+            tokens.add(GUEST);
+        } else {
+            tokens.add(ALLGROUP);
+            tokens.add(this.serializer.serialize(user));
+            try {
+                for (DocumentReference group : this.groupManager.getGroups(user, this.wikis.getAllIds(), true)) {
+                    tokens.add(toToken(group));
+                }
+            } catch (Exception e) {
+                // Let the authorization manager do the whole job.
+                this.logger.warn("Failed to get the groups of user [{}]. Root cause is [{}].", user,
+                    ExceptionUtils.getRootCauseMessage(e));
+
+                return null;
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        // Documents indexed before the view tokens were introduced don't have the field.
+        builder.append("(*:* -").append(FieldUtils.VIEW_TOKENS).append(":[* TO *]) OR ");
+        builder.append(FieldUtils.VIEW_TOKENS).append(":(");
+        boolean first = true;
+        for (String token : tokens) {
+            if (!first) {
+                builder.append(" OR ");
+            }
+            builder.append(ClientUtils.escapeQueryChars(token));
+            first = false;
+        }
+        builder.append(')');
+
+        return builder.toString();
+    }
+
+    /**
+     * @param documentReference the reference of the document
+     * @return the documents holding the rights which apply to the passed document, from the closest to the farthest
+     */
+    private List<DocumentReference> getRightsDocuments(DocumentReference documentReference)
+    {
+        List<DocumentReference> documents = new ArrayList<>();
+
+        documents.add(documentReference);
+
+        for (EntityReference parent = documentReference.getParent(); parent != null
+            && parent.getType() == EntityType.SPACE; parent = parent.getParent()) {
+            documents.add(new DocumentReference(SPACE_PREFERENCES, new SpaceReference(parent)));
+        }
+
+        WikiReference wikiReference = documentReference.getWikiReference();
+        documents.add(new DocumentReference(wikiReference.getName(), XWIKI_SPACE, WIKI_PREFERENCES));
+
+        String mainWiki = this.wikis.getMainWikiId();
+        if (!StringUtils.equals(mainWiki, wikiReference.getName())) {
+            documents.add(new DocumentReference(mainWiki, XWIKI_SPACE, WIKI_PREFERENCES));
+        }
+
+        return documents;
+    }
+
+    private boolean addLevelTokens(DocumentReference rightsDocument, LocalDocumentReference rightsClass,
+        boolean restricted, Set<String> tokens) throws XWikiException
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+        XWikiDocument document = xcontext.getWiki().getDocument(rightsDocument, xcontext);
+
+        boolean restricting = false;
+        for (BaseObject rightsObject : document.getXObjects(rightsClass)) {
+            if (rightsObject != null && rightsObject.getIntValue(FIELD_ALLOW) == 1) {
+                boolean view = false;
+                boolean impliedView = false;
+                boolean notOverridable = false;
+                for (String level : LevelsClass.getListFromString(rightsObject.getStringValue(FIELD_LEVELS))) {
+                    Right right = Right.toRight(level);
+                    if (right == Right.VIEW) {
+                        view = true;
+                    } else if (right.getImpliedRights() != null && right.getImpliedRights().contains(Right.VIEW)) {
+                        impliedView = true;
+                        // Rights like admin cannot be overridden by a lower level.
+                        notOverridable |= !right.getInheritanceOverridePolicy();
+                    }
+                }
+
+                if (notOverridable || (!restricted && (view || impliedView))) {
+                    addRuleTokens(rightsObject, rightsDocument.getWikiReference(), tokens);
+                }
+                restricting |= view;
+            }
+        }
+
+        return restricting;
+    }
+
+    private void addRuleTokens(BaseObject rightsObject, WikiReference wikiReference, Set<String> tokens)
+    {
+        for (String user : UsersClass.getListFromString(rightsObject.getStringValue(FIELD_USERS))) {
+            tokens.add(toToken(this.userResolver.resolve(user, wikiReference)));
+        }
+        for (String group : GroupsClass.getListFromString(rightsObject.getStringValue(FIELD_GROUPS))) {
+            tokens.add(toToken(this.userResolver.resolve(group, wikiReference)));
+        }
+    }
+
+    private void addOwnerToken(WikiReference wikiReference, Set<String> tokens) throws XWikiException
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+        String owner = xcontext.getWiki().getWikiOwner(wikiReference.getName(), xcontext);
+        if (StringUtils.isNotEmpty(owner)) {
+            tokens.add(toToken(this.userResolver.resolve(owner, wikiReference)));
+        }
+    }
+
+    private String toToken(DocumentReference reference)
+    {
+        if (XWikiRightService.isGuest(reference)) {
+            return GUEST;
+        } else if (XWikiRightService.ALLGROUP_GROUP.equals(reference.getName())) {
+            // Group lookups don't always list the implicit members of the all group.
+            return ALLGROUP;
+        }
+
+        return this.serializer.serialize(reference);
+    }
+}
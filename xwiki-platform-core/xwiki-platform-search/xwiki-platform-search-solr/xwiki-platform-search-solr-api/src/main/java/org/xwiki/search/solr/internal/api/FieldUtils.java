@@ -318,6 +318,14 @@
      */
     public static final String PROPERTY_VALUE = "propertyvalue";
 
+    /**
+     * The users and groups that may be allowed to view the document (or the document holding the indexed entity). Uses
+     * the {@code *_string} dynamic field so that existing cores don't need a schema update.
+     *
+     * @since 11.5RC1
+     */
+    public static final String VIEW_TOKENS = "viewtokens_string";
+
     /**
      * Underscore character, used to separate the field name from the suffix.
      */
@@ -73,6 +73,25 @@
      */
     int getIndexerQueueCapacity();
 
+    /**
+     * @return the number of threads used to extract the metadata of the entities to index
+     * @since 11.5RC1
+     */
+    int getIndexerExtractionThreads();
+
+    /**
+     * @return the maximum number of entities waiting (or being extracted) between the extraction and the commit stages
+     * @since 11.5RC1
+     */
+    int getIndexerExtractionQueueCapacity();
+
+    /**
+     * @return the maximum size in megabytes of the text extracted from attachments and stored on disk to be reused when
+     *         the attachments are indexed again, 0 to disable
+     * @since 11.5RC1
+     */
+    long getIndexerAttachmentTextCacheSize();
+
     /**
      * @return true if a full synchronization job between the database and SOLR index should be run when XWiki starts
      * @since 6.1M2
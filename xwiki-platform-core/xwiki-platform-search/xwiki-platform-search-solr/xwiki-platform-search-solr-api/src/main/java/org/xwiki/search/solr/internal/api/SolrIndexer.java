@@ -19,9 +19,12 @@
  */
 package org.xwiki.search.solr.internal.api;
 
+import java.util.List;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.search.solr.internal.job.IndexerJob;
+import org.xwiki.search.solr.internal.job.IndexerJobStatus;
 import org.xwiki.search.solr.internal.job.IndexerRequest;
 
 /**
@@ -45,6 +48,21 @@
      */
     void index(EntityReference reference, boolean recurse);
 
+    /**
+     * Add an entity to the queue of entities to index on behalf of an indexing job.
+     * <p>
+     * Null reference means the whole farm.
+     * 
+     * @param reference the entity's reference.
+     * @param recurse indicate if children entities should be indexed too
+     * @param jobStatus the status of the job, updated while the queued entities are processed
+     * @since 11.5RC1
+     */
+    default void index(EntityReference reference, boolean recurse, IndexerJobStatus jobStatus)
+    {
+        index(reference, recurse);
+    }
+
     /**
      * Add an entity to the queue of entities to delete.
      * <p>
@@ -60,6 +78,12 @@
      */
     int getQueueSize();
 
+    /**
+     * @return the statistics of each stage of the indexing pipeline (resolve, extract and commit), in pipeline order
+     * @since 11.5RC1
+     */
+    List<SolrIndexerStageStatistics> getStatistics();
+
     /**
      * Start an indexing with specific criteria.
      * 
@@ -0,0 +1,96 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the entries processed by one of the stages of the {@link SolrIndexer} and the time spent processing them.
+ * 
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class SolrIndexerStageStatistics
+{
+    private final String name;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong time = new AtomicLong();
+
+    /**
+     * @param name the name of the stage
+     */
+    public SolrIndexerStageStatistics(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * @param nanoTime the time spent processing one entry (one commit for the commit stage), in nanoseconds
+     */
+    public void add(long nanoTime)
+    {
+        this.count.incrementAndGet();
+        this.time.addAndGet(nanoTime);
+    }
+
+    /**
+     * @return the name of the stage
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return the number of entries processed by the stage (the number of commits for the commit stage)
+     */
+    public long getCount()
+    {
+        return this.count.get();
+    }
+
+    /**
+     * @return the total time spent processing entries, in milliseconds
+     */
+    public long getTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.time.get());
+    }
+
+    /**
+     * @return the number of entries processed per second of processing time (cumulated over all the threads of the
+     *         stage)
+     */
+    public double getThroughput()
+    {
+        long nanoTime = this.time.get();
+
+        return nanoTime > 0 ? this.count.get() * (double) TimeUnit.SECONDS.toNanos(1) / nanoTime : 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.name + ": " + getCount() + " entries in " + getTime() + "ms";
+    }
+}
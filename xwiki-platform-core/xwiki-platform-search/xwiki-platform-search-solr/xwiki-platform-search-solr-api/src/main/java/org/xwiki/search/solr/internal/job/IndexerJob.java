@@ -29,7 +29,6 @@
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.job.AbstractJob;
-import org.xwiki.job.DefaultJobStatus;
 import org.xwiki.job.GroupedJob;
 import org.xwiki.job.JobGroupPath;
 import org.xwiki.job.Request;
@@ -47,7 +46,7 @@
 @Component
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 @Named(IndexerJob.JOBTYPE)
-public class IndexerJob extends AbstractJob<IndexerRequest, DefaultJobStatus<IndexerRequest>> implements GroupedJob
+public class IndexerJob extends AbstractJob<IndexerRequest, IndexerJobStatus> implements GroupedJob
 {
     /**
      * The id of the job.
@@ -74,6 +73,12 @@ public class IndexerJob extends AbstractJob<IndexerRequest, DefaultJobStatus<Ind
     @Named("solr")
     private transient DocumentIterator<String> solrIterator;
 
+    @Override
+    protected IndexerJobStatus createNewStatus(IndexerRequest request)
+    {
+        return new IndexerJobStatus(request, this.observationManager, this.loggerManager);
+    }
+
     @Override
     public String getType()
     {
@@ -105,7 +110,7 @@ protected void runInternal() throws Exception
         if (getRequest().isOverwrite()) {
             EntityReference rootReference = getRequest().getRootReference();
             this.logger.info("Index documents in [{}].", rootReference);
-            this.indexer.index(rootReference, true);
+            this.indexer.index(rootReference, true, getStatus());
         } else {
             updateSolrIndex();
         }
@@ -153,7 +158,7 @@ private void updateSolrIndex(int progressSize, DiffDocumentIterator<String> iter
                     // The database entry has not been indexed or the indexed version doesn't match the latest
                     // version
                     // from the database.
-                    this.indexer.index(entry.getKey(), true);
+                    this.indexer.index(entry.getKey(), true, getStatus());
                 } else if (entry.getValue() == Action.DELETE && getRequest().isRemoveMissing()) {
                     // The index entry doesn't exist anymore in the database.
                     this.indexer.delete(entry.getKey(), true);
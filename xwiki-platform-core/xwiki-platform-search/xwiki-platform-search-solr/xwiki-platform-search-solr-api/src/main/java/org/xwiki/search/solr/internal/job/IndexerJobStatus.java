@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.job;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.logging.LoggerManager;
+import org.xwiki.observation.ObservationManager;
+
+/**
+ * The status of the {@link IndexerJob}.
+ * <p>
+ * The entities are indexed in the background by the Solr indexer, which counts the attachments indexed on behalf of the
+ * job and stores the status again when the last entity queued by a finished job is processed.
+ * 
+ * @version $Id$
+ * @since 11.5RC1
+ */
+public class IndexerJobStatus extends DefaultJobStatus<IndexerRequest>
+{
+    /**
+     * The execution context property holding the status of the job on behalf of which an entity is indexed.
+     */
+    public static final String CONTEXT_KEY = "solr.indexer.jobstatus";
+
+    private final AtomicLong attachmentTextCacheHits = new AtomicLong();
+
+    private final AtomicLong attachmentTextCacheMisses = new AtomicLong();
+
+    /**
+     * The number of entries queued on behalf of the job and not yet processed by the indexer.
+     */
+    private final transient AtomicLong pendingEntries = new AtomicLong();
+
+    /**
+     * @param request the request provided when the job was started
+     * @param observationManager the observation manager
+     * @param loggerManager the logger manager
+     */
+    public IndexerJobStatus(IndexerRequest request, ObservationManager observationManager,
+        LoggerManager loggerManager)
+    {
+        super(IndexerJob.JOBTYPE, request, null, observationManager, loggerManager);
+    }
+
+    /**
+     * @return the number of attachments indexed on behalf of the job whose text was reused from the attachment text
+     *         cache
+     */
+    public long getAttachmentTextCacheHits()
+    {
+        return this.attachmentTextCacheHits.get();
+    }
+
+    /**
+     * @return the number of attachments indexed on behalf of the job whose text had to be extracted
+     */
+    public long getAttachmentTextCacheMisses()
+    {
+        return this.attachmentTextCacheMisses.get();
+    }
+
+    /**
+     * Count an attachment whose text was reused from the attachment text cache.
+     */
+    public void incrementAttachmentTextCacheHits()
+    {
+        this.attachmentTextCacheHits.incrementAndGet();
+    }
+
+    /**
+     * Count an attachment whose text had to be extracted.
+     */
+    public void incrementAttachmentTextCacheMisses()
+    {
+        this.attachmentTextCacheMisses.incrementAndGet();
+    }
+
+    /**
+     * Called by the indexer when an entry is queued on behalf of the job.
+     */
+    public void entryQueued()
+    {
+        this.pendingEntries.incrementAndGet();
+    }
+
+    /**
+     * Called by the indexer when an entry queued on behalf of the job has been processed.
+     * 
+     * @return true if there is no other entry to process
+     */
+    public boolean entryProcessed()
+    {
+        return this.pendingEntries.decrementAndGet() == 0;
+    }
+}
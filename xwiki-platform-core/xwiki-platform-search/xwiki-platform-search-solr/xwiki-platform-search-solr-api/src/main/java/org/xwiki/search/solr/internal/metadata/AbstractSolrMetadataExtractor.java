@@ -19,6 +19,7 @@
  */
 package org.xwiki.search.solr.internal.metadata;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collection;
@@ -33,6 +34,7 @@
 import javax.inject.Provider;
 
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaMetadataKeys;
 import org.slf4j.Logger;
@@ -43,6 +45,7 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.search.solr.internal.SolrViewTokens;
 import org.xwiki.search.solr.internal.api.FieldUtils;
 import org.xwiki.search.solr.internal.api.SolrIndexerException;
 import org.xwiki.search.solr.internal.reference.SolrReferenceResolver;
@@ -114,6 +117,18 @@ public abstract class AbstractSolrMetadataExtractor implements SolrMetadataExtra
     @Inject
     protected ComponentManager componentManager;
 
+    /**
+     * Used to compute the users and groups which might be allowed to view the document.
+     */
+    @Inject
+    protected SolrViewTokens viewTokens;
+
+    /**
+     * Used to reuse the text extracted from attachments which did not change.
+     */
+    @Inject
+    protected AttachmentTextCache attachmentTextCache;
+
     @Override
     public LengthSolrInputDocument getSolrDocument(EntityReference entityReference)
         throws SolrIndexerException, IllegalArgumentException
@@ -235,6 +250,9 @@ protected boolean setDocumentFields(DocumentReference documentReference, SolrInp
 
         solrDocument.setField(FieldUtils.HIDDEN, originalDocument.isHidden());
 
+        // Allow the search to filter the entities the current user cannot see before paginating.
+        solrDocument.setField(FieldUtils.VIEW_TOKENS, this.viewTokens.getDocumentTokens(documentReference));
+
         solrDocument.setField(FieldUtils.WIKI, documentReference.getWikiReference().getName());
         solrDocument.setField(FieldUtils.NAME, documentReference.getName());
 
@@ -500,13 +518,14 @@ protected void addFieldValueOnce(SolrInputDocument solrDocument, String fieldNam
     protected String getContentAsText(XWikiAttachment attachment)
     {
         try {
-            Metadata metadata = new Metadata();
-            metadata.set(TikaMetadataKeys.RESOURCE_NAME_KEY, attachment.getFilename());
+            if (this.attachmentTextCache.isEnabled()) {
+                return this.attachmentTextCache.getText(attachment, in -> parseContent(attachment, in));
+            }
 
             InputStream in = attachment.getContentInputStream(this.xcontextProvider.get());
 
             try {
-                return TikaUtils.parseToString(in, metadata);
+                return parseContent(attachment, in);
             } finally {
                 in.close();
             }
@@ -516,6 +535,14 @@ protected String getContentAsText(XWikiAttachment attachment)
         }
     }
 
+    private String parseContent(XWikiAttachment attachment, InputStream in) throws IOException, TikaException
+    {
+        Metadata metadata = new Metadata();
+        metadata.set(TikaMetadataKeys.RESOURCE_NAME_KEY, attachment.getFilename());
+
+        return TikaUtils.parseToString(in, metadata);
+    }
+
     private void setHierarchyFields(SolrInputDocument solrDocument, EntityReference path)
     {
         solrDocument.setField(FieldUtils.SPACE_EXACT, this.localSerializer.serialize(path));
@@ -0,0 +1,444 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.metadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.AttachmentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
+import org.xwiki.search.solr.internal.job.IndexerJobStatus;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+
+/**
+ * Store the text extracted from attachments on the file system so that it can be reused when the same attachment is
+ * indexed again. Entries are bound to the attachment reference, version and content checksum, only the latest entry of
+ * each attachment is kept, and the least recently used entries are deleted when the maximum size is reached. Like the
+ * thumbnails of the image plugin, the recently used order is restored from the last modification date of the files.
+ *
+ * @version $Id$
+ * @since 11.5RC1
+ */
+@Component(roles = AttachmentTextCache.class)
+@Singleton
+public class AttachmentTextCache
+{
+    /**
+     * Extract the text of an attachment.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface TextExtractor
+    {
+        /**
+         * @param content the content of the attachment, it does not need to be read until the end nor closed
+         * @return the extracted text, or {@code null} if it could not be extracted
+         * @throws Exception if the extraction fails
+         */
+        String extract(InputStream content) throws Exception;
+    }
+
+    private static class Entry
+    {
+        private final String fileName;
+
+        private final String version;
+
+        private final String checksum;
+
+        private final long size;
+
+        Entry(String fileName, String version, String checksum, long size)
+        {
+            this.fileName = fileName;
+            this.version = version;
+            this.checksum = checksum;
+            this.size = size;
+        }
+    }
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final String SUFFIX = ".gz";
+
+    private static final char SEPARATOR = '-';
+
+    /**
+     * The length of a SHA-256 hexadecimal string.
+     */
+    private static final int HASH_LENGTH = 64;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private SolrConfiguration configuration;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private Logger logger;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The stored entries indexed by attachment key, in recently used order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private File directory;
+
+    private long maxSize;
+
+    private long size;
+
+    private volatile boolean initialized;
+
+    /**
+     * @return true if the extracted text is stored
+     */
+    public boolean isEnabled()
+    {
+        initialize();
+
+        return this.maxSize > 0;
+    }
+
+    /**
+     * Return the stored text of the attachment if its content did not change, or extract and store it.
+     * 
+     * @param attachment the attachment
+     * @param extractor used to extract the text from the content of the attachment when it's not already stored
+     * @return the text of the attachment
+     * @throws Exception when failing to read the attachment or to extract its text
+     */
+    public String getText(XWikiAttachment attachment, TextExtractor extractor) throws Exception
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+        String version = attachment.getVersion();
+
+        if (!isEnabled() || version == null) {
+            try (InputStream content = attachment.getContentInputStream(xcontext)) {
+                return extractor.extract(content);
+            }
+        }
+
+        String key = DigestUtils.sha256Hex(this.serializer.serialize(attachment.getReference()));
+
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+        }
+
+        if (entry != null && entry.version.equals(version)) {
+            // Reading the content is still a lot cheaper than parsing it.
+            String checksum;
+            try (InputStream content = attachment.getContentInputStream(xcontext)) {
+                checksum = DigestUtils.sha256Hex(content);
+            }
+
+            if (entry.checksum.equals(checksum)) {
+                String text = read(key, entry);
+                if (text != null) {
+                    this.hits.incrementAndGet();
+                    IndexerJobStatus jobStatus = getJobStatus();
+                    if (jobStatus != null) {
+                        jobStatus.incrementAttachmentTextCacheHits();
+                    }
+
+                    return text;
+                }
+            }
+        }
+
+        this.misses.incrementAndGet();
+        IndexerJobStatus jobStatus = getJobStatus();
+        if (jobStatus != null) {
+            jobStatus.incrementAttachmentTextCacheMisses();
+        }
+
+        // Compute the checksum while extracting to read the content only once.
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        String text;
+        try (InputStream content = new DigestInputStream(attachment.getContentInputStream(xcontext), digest)) {
+            text = extractor.extract(new CloseShieldInputStream(content));
+            IOUtils.skip(content, Long.MAX_VALUE);
+        }
+
+        if (text != null) {
+            store(key, version, Hex.encodeHexString(digest.digest()), text);
+        }
+
+        return text;
+    }
+
+    /**
+     * Remove the stored text of the passed attachment.
+     * 
+     * @param reference the reference of the attachment
+     */
+    public void remove(AttachmentReference reference)
+    {
+        if (!isEnabled()) {
+            return;
+        }
+
+        String key = DigestUtils.sha256Hex(this.serializer.serialize(reference));
+
+        synchronized (this) {
+            Entry entry = this.entries.remove(key);
+            if (entry != null) {
+                delete(entry);
+            }
+        }
+    }
+
+    /**
+     * @return the status of the indexing job on behalf of which the attachment is indexed, if any
+     */
+    private IndexerJobStatus getJobStatus()
+    {
+        ExecutionContext econtext = this.execution.getContext();
+
+        return econtext != null ? (IndexerJobStatus) econtext.getProperty(IndexerJobStatus.CONTEXT_KEY) : null;
+    }
+
+    /**
+     * @return the number of times the text of an attachment was found in the store since the server started
+     */
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of times the text of an attachment had to be extracted since the server started
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the total size of the stored text in bytes
+     */
+    public synchronized long getSize()
+    {
+        return this.size;
+    }
+
+    private void initialize()
+    {
+        if (!this.initialized) {
+            synchronized (this) {
+                if (!this.initialized) {
+                    this.maxSize = this.configuration.getIndexerAttachmentTextCacheSize() * 1024 * 1024;
+                    if (this.maxSize > 0) {
+                        this.directory =
+                            new File(this.environment.getPermanentDirectory(), "cache/solr/attachments");
+                        load();
+                    }
+
+                    this.initialized = true;
+                }
+            }
+        }
+    }
+
+    private void load()
+    {
+        this.directory.mkdirs();
+
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                Entry entry = parse(file);
+                if (entry != null) {
+                    Entry previousEntry = this.entries.put(file.getName().substring(0, HASH_LENGTH), entry);
+                    if (previousEntry != null) {
+                        delete(previousEntry);
+                    }
+                    this.size += entry.size;
+                } else {
+                    // Leftover of an entry which was being written when the server stopped
+                    file.delete();
+                }
+            }
+        }
+
+        evict();
+    }
+
+    private Entry parse(File file)
+    {
+        String name = file.getName();
+
+        int versionEnd = name.length() - SUFFIX.length() - HASH_LENGTH - 1;
+        if (name.endsWith(SUFFIX) && versionEnd > HASH_LENGTH + 1) {
+            try {
+                return new Entry(name, URLDecoder.decode(name.substring(HASH_LENGTH + 1, versionEnd),
+                    StandardCharsets.UTF_8.name()), name.substring(versionEnd + 1, versionEnd + 1 + HASH_LENGTH),
+                    file.length());
+            } catch (UnsupportedEncodingException e) {
+                // Should never happen
+            }
+        }
+
+        return null;
+    }
+
+    private String read(String key, Entry entry)
+    {
+        File file = new File(this.directory, entry.fileName);
+
+        try (InputStream stream = new GZIPInputStream(new FileInputStream(file))) {
+            String text = IOUtils.toString(stream, StandardCharsets.UTF_8);
+
+            file.setLastModified(System.currentTimeMillis());
+
+            return text;
+        } catch (IOException e) {
+            this.logger.warn("Failed to read the stored text of attachment [{}]. Root cause is [{}].", entry.fileName,
+                ExceptionUtils.getRootCauseMessage(e));
+
+            // The file has been deleted or corrupted behind our back
+            synchronized (this) {
+                if (this.entries.get(key) == entry) {
+                    this.entries.remove(key);
+                    delete(entry);
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private void store(String key, String version, String checksum, String text)
+    {
+        try {
+            String name = key + SEPARATOR + URLEncoder.encode(version, StandardCharsets.UTF_8.name()) + SEPARATOR
+                + checksum + SUFFIX;
+            File file = new File(this.directory, name);
+
+            // Write the text outside of the lock and then move it in place atomically so that readers never see a
+            // partially written file
+            File temporaryFile = File.createTempFile(key, TEMPORARY_SUFFIX, this.directory);
+            try {
+                try (OutputStream output = new GZIPOutputStream(new FileOutputStream(temporaryFile))) {
+                    IOUtils.write(text, output, StandardCharsets.UTF_8);
+                }
+
+                synchronized (this) {
+                    Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+
+                    Entry entry = new Entry(name, version, checksum, file.length());
+                    Entry previousEntry = this.entries.put(key, entry);
+                    if (previousEntry != null) {
+                        // Only the latest version of each attachment is kept
+                        if (!previousEntry.fileName.equals(name)) {
+                            delete(previousEntry);
+                        } else {
+                            this.size -= previousEntry.size;
+                        }
+                    }
+                    this.size += entry.size;
+
+                    evict();
+                }
+            } finally {
+                Files.deleteIfExists(temporaryFile.toPath());
+            }
+        } catch (IOException e) {
+            this.logger.warn("Failed to store the text of attachment with version [{}]. Root cause is [{}].", version,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private synchronized void evict()
+    {
+        Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+        while (this.size > this.maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            delete(entry);
+        }
+    }
+
+    private synchronized void delete(Entry entry)
+    {
+        try {
+            Files.deleteIfExists(new File(this.directory, entry.fileName).toPath());
+        } catch (IOException e) {
+            this.logger.warn("Failed to delete the stored attachment text [{}]. Root cause is [{}].", entry.fileName,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+
+        this.size -= entry.size;
+    }
+}
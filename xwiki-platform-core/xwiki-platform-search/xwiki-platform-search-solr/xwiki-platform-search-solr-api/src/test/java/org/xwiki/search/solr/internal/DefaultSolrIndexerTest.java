@@ -21,12 +21,26 @@
 
 import java.net.URL;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
-import org.xwiki.model.reference.WikiReference;
+import org.mockito.InOrder;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.job.JobStatusStore;
+import org.xwiki.job.event.status.JobStatus.State;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.search.solr.internal.api.SolrConfiguration;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
+import org.xwiki.search.solr.internal.api.SolrIndexerStageStatistics;
+import org.xwiki.search.solr.internal.api.SolrInstance;
+import org.xwiki.search.solr.internal.job.IndexerJobStatus;
+import org.xwiki.search.solr.internal.job.IndexerRequest;
+import org.xwiki.search.solr.internal.metadata.LengthSolrInputDocument;
+import org.xwiki.search.solr.internal.metadata.SolrMetadataExtractor;
+import org.xwiki.search.solr.internal.reference.SolrReferenceResolver;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.xpn.xwiki.XWiki;
@@ -34,13 +48,18 @@
 import com.xpn.xwiki.test.reference.ReferenceComponentList;
 import com.xpn.xwiki.web.Utils;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
- * TODO DOCUMENT ME!
+ * Unit tests for {@link DefaultSolrIndexer}.
  * 
  * @version $Id$
  */
@@ -57,6 +76,22 @@
 
     private SolrConfiguration mockConfig;
 
+    private SolrInstance solrInstance;
+
+    private SolrMetadataExtractor documentExtractor;
+
+    private DocumentReference document1 = new DocumentReference("wiki", "Space", "Page1");
+
+    private DocumentReference document2 = new DocumentReference("wiki", "Space", "Page2");
+
+    private DocumentReference document3 = new DocumentReference("wiki", "Space", "Page3");
+
+    private LengthSolrInputDocument solrDocument1 = new LengthSolrInputDocument();
+
+    private LengthSolrInputDocument solrDocument2 = new LengthSolrInputDocument();
+
+    private LengthSolrInputDocument solrDocument3 = new LengthSolrInputDocument();
+
     @Before
     public void configure() throws Exception
     {
@@ -78,17 +113,152 @@ public void configure() throws Exception
         this.mockConfig = this.mocker.getInstance(SolrConfiguration.class);
         when(this.mockConfig.getInstanceConfiguration(eq(EmbeddedSolrInstance.TYPE), eq("home"), any()))
             .thenReturn(url.getPath());
+        when(this.mockConfig.getIndexerQueueCapacity()).thenReturn(100);
+        when(this.mockConfig.getIndexerBatchMaxLengh()).thenReturn(10000);
+        when(this.mockConfig.getIndexerExtractionThreads()).thenReturn(2);
+        when(this.mockConfig.getIndexerExtractionQueueCapacity()).thenReturn(10);
+
+        // Solr instance and extractors
+
+        this.solrInstance = this.mocker.registerMockComponent(SolrInstance.class);
+        this.documentExtractor = this.mocker.registerMockComponent(SolrMetadataExtractor.class, "document");
+
+        this.solrDocument1.setField("id", "1");
+        this.solrDocument2.setField("id", "2");
+        this.solrDocument3.setField("id", "3");
+        when(this.documentExtractor.getSolrDocument(this.document1)).thenReturn(this.solrDocument1);
+        when(this.documentExtractor.getSolrDocument(this.document2)).then(invocation -> {
+            // Make sure the next document is extracted first
+            Thread.sleep(100);
+            return this.solrDocument2;
+        });
+        when(this.documentExtractor.getSolrDocument(this.document3)).thenReturn(this.solrDocument3);
+
+        SolrReferenceResolver resolver = this.mocker.getInstance(SolrReferenceResolver.class);
+        when(resolver.getId(this.document2)).thenReturn("2");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        // Stop the indexing threads
+        ((DefaultSolrIndexer) this.mocker.getComponentUnderTest()).dispose();
     }
 
     @Test
-    public void testIndexEmptyWiki() throws Exception
+    public void indexInQueueOrderWithOneCommitPerEntry() throws Exception
     {
+        when(this.mockConfig.getIndexerBatchSize()).thenReturn(1);
+
+        SolrIndexer indexer = this.mocker.getComponentUnderTest();
+        indexer.index(this.document1, false);
+        indexer.index(this.document2, false);
+        indexer.delete(this.document2, false);
+        indexer.index(this.document3, false);
+
+        verify(this.solrInstance, timeout(10000).times(4)).commit();
+
+        // Even if the second document is slower to extract, the entries are sent in the queue order
+        InOrder inOrder = inOrder(this.solrInstance);
+        inOrder.verify(this.solrInstance).add(this.solrDocument1);
+        inOrder.verify(this.solrInstance).commit();
+        inOrder.verify(this.solrInstance).add(this.solrDocument2);
+        inOrder.verify(this.solrInstance).commit();
+        inOrder.verify(this.solrInstance).delete("2");
+        inOrder.verify(this.solrInstance).commit();
+        inOrder.verify(this.solrInstance).add(this.solrDocument3);
+        inOrder.verify(this.solrInstance).commit();
+
+        SolrIndexerStageStatistics commitStatistics = indexer.getStatistics().get(2);
+        assertEquals("commit", commitStatistics.getName());
+        assertEquals(4, commitStatistics.getCount());
+    }
+
+    @Test
+    public void commitWhenBatchMaxLengthIsReached() throws Exception
+    {
+        when(this.mockConfig.getIndexerBatchSize()).thenReturn(100);
+        // Each document has a length of 1
+        when(this.mockConfig.getIndexerBatchMaxLengh()).thenReturn(2);
+
+        SolrIndexer indexer = this.mocker.getComponentUnderTest();
+        indexer.index(this.document1, false);
+        indexer.index(this.document2, false);
+        indexer.index(this.document3, false);
+
+        verify(this.solrInstance, timeout(10000)).add(this.solrDocument3);
+        verify(this.solrInstance, timeout(10000).atLeast(2)).commit();
+
+        // The first two documents reach the maximum length
+        InOrder inOrder = inOrder(this.solrInstance);
+        inOrder.verify(this.solrInstance).add(this.solrDocument1);
+        inOrder.verify(this.solrInstance).add(this.solrDocument2);
+        inOrder.verify(this.solrInstance).commit();
+        inOrder.verify(this.solrInstance).add(this.solrDocument3);
+        inOrder.verify(this.solrInstance).commit();
+    }
+
+    private void countAttachmentText(Execution execution, boolean hit)
+    {
+        IndexerJobStatus jobStatus =
+            (IndexerJobStatus) execution.getContext().getProperty(IndexerJobStatus.CONTEXT_KEY);
+        if (jobStatus != null) {
+            if (hit) {
+                jobStatus.incrementAttachmentTextCacheHits();
+            } else {
+                jobStatus.incrementAttachmentTextCacheMisses();
+            }
+        }
+    }
+
+    @Test
+    public void indexOnBehalfOfJob() throws Exception
+    {
+        when(this.mockConfig.getIndexerBatchSize()).thenReturn(1);
+
+        ThreadLocal<ExecutionContext> contexts = new ThreadLocal<>();
+        ExecutionContextManager ecim = this.mocker.getInstance(ExecutionContextManager.class);
+        doAnswer(invocation -> {
+            contexts.set(invocation.getArgument(0));
+            return null;
+        }).when(ecim).initialize(any(ExecutionContext.class));
+        Execution execution = this.mocker.getInstance(Execution.class);
+        when(execution.getContext()).then(invocation -> contexts.get());
+
+        // Simulate the attachment text cache used by the extractors
+        when(this.documentExtractor.getSolrDocument(this.document1)).then(invocation -> {
+            countAttachmentText(execution, true);
+            countAttachmentText(execution, true);
+            return this.solrDocument1;
+        });
+        when(this.documentExtractor.getSolrDocument(this.document2)).then(invocation -> {
+            countAttachmentText(execution, false);
+            return this.solrDocument2;
+        });
+        when(this.documentExtractor.getSolrDocument(this.document3)).then(invocation -> {
+            countAttachmentText(execution, false);
+            return this.solrDocument3;
+        });
+
+        IndexerRequest request = new IndexerRequest();
+        request.setId("solr", "indexer");
+        IndexerJobStatus jobStatus = new IndexerJobStatus(request, null, null);
+        // The job finishes before the indexer processes the entries it queued
+        jobStatus.setState(State.FINISHED);
+
+        SolrIndexer indexer = this.mocker.getComponentUnderTest();
+        indexer.index(this.document1, false, jobStatus);
+        // Not indexed on behalf of the job
+        indexer.index(this.document2, false);
+        indexer.index(this.document3, false, jobStatus);
 
-        // Mock solr wrapper
-        // Add expectations
+        verify(this.solrInstance, timeout(10000).times(3)).commit();
 
-        WikiReference wikiReference = new WikiReference("xwiki");
+        assertEquals(2, jobStatus.getAttachmentTextCacheHits());
+        assertEquals(1, jobStatus.getAttachmentTextCacheMisses());
 
-        // index.index(wikiReference);
+        // The status is stored again with the final statistics
+        JobStatusStore store = this.mocker.getInstance(JobStatusStore.class);
+        verify(store, timeout(10000).atLeastOnce()).store(jobStatus);
     }
 }
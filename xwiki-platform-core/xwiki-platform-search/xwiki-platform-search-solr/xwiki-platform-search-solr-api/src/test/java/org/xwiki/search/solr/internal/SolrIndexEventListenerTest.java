@@ -27,17 +27,26 @@
 import org.junit.Test;
 import org.xwiki.bridge.event.DocumentDeletedEvent;
 import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.EventListener;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
+import org.xwiki.search.solr.internal.metadata.AttachmentTextCache;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.AttachmentDeletedEvent;
+import com.xpn.xwiki.objects.BaseObject;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -55,10 +64,19 @@
 
     private SolrIndexer indexer;
 
+    private AttachmentTextCache attachmentTextCache;
+
+    private SolrViewTokens viewTokens;
+
     @Before
     public void setUp() throws Exception
     {
         indexer = mocker.registerMockComponent(SolrIndexer.class);
+        attachmentTextCache = mocker.registerMockComponent(AttachmentTextCache.class);
+        viewTokens = mocker.registerMockComponent(SolrViewTokens.class);
+
+        WikiDescriptorManager wikiDescriptorManager = mocker.getInstance(WikiDescriptorManager.class);
+        when(wikiDescriptorManager.isMainWiki("xwiki")).thenReturn(true);
     }
 
     @Test
@@ -69,10 +87,15 @@ public void onDocumentDeleted() throws Exception
         when(document.getOriginalDocument()).thenReturn(document);
         when(document.getDocumentReference()).thenReturn(documentReference);
         when(document.getRealLocale()).thenReturn(Locale.FRENCH);
+        XWikiAttachment attachment = mock(XWikiAttachment.class);
+        AttachmentReference attachmentReference = new AttachmentReference("file.txt", documentReference);
+        when(attachment.getReference()).thenReturn(attachmentReference);
+        when(document.getAttachmentList()).thenReturn(Arrays.asList(attachment));
 
         mocker.getComponentUnderTest().onEvent(new DocumentDeletedEvent(), document, null);
 
         verify(indexer).delete(new DocumentReference(documentReference, Locale.FRENCH), false);
+        verify(attachmentTextCache).remove(attachmentReference);
     }
 
     @Test
@@ -107,4 +130,149 @@ public void onDocumentDefaultTranslationUpdated() throws Exception
         verify(this.indexer).index(new DocumentReference(documentReference, Locale.FRENCH), false);
         verify(this.indexer).index(new DocumentReference(documentReference, Locale.GERMAN), false);
     }
+
+    @Test
+    public void onSpaceRightsUpdated() throws Exception
+    {
+        XWikiDocument originalDocument = mock(XWikiDocument.class);
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+        when(document.getLocale()).thenReturn(Locale.ROOT);
+
+        DocumentReference documentReference = new DocumentReference("wiki", Arrays.asList("A", "B"), "WebPreferences");
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getXObjects(any(EntityReference.class))).thenReturn(Arrays.asList(mock(BaseObject.class)));
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, mock(XWikiContext.class));
+
+        verify(this.indexer).index(documentReference, false);
+        verify(this.indexer).index(documentReference, true);
+        verify(this.indexer).index(documentReference.getLastSpaceReference(), true);
+        verify(this.viewTokens, times(2)).invalidate();
+    }
+
+    @Test
+    public void onMainWikiRightsUpdated() throws Exception
+    {
+        XWikiDocument originalDocument = mock(XWikiDocument.class);
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+        when(document.getLocale()).thenReturn(Locale.ROOT);
+
+        DocumentReference documentReference = new DocumentReference("xwiki", "XWiki", "XWikiPreferences");
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getXObjects(new LocalDocumentReference("XWiki", "XWikiGlobalRights")))
+            .thenReturn(Arrays.asList(mock(BaseObject.class)));
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, mock(XWikiContext.class));
+
+        verify(this.indexer).index(documentReference, false);
+        // The rights of the main wiki apply to all the wikis.
+        verify(this.indexer).index(null, true);
+        verify(this.indexer, times(2)).index(any(), any(Boolean.class));
+        verify(this.viewTokens).invalidate();
+    }
+
+    @Test
+    public void onSubwikiRightsUpdated() throws Exception
+    {
+        XWikiDocument originalDocument = mock(XWikiDocument.class);
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+        when(document.getLocale()).thenReturn(Locale.ROOT);
+
+        DocumentReference documentReference = new DocumentReference("subwiki", "XWiki", "XWikiPreferences");
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getXObjects(new LocalDocumentReference("XWiki", "XWikiGlobalRights")))
+            .thenReturn(Arrays.asList(mock(BaseObject.class)));
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, mock(XWikiContext.class));
+
+        verify(this.indexer).index(documentReference, false);
+        verify(this.indexer).index(new WikiReference("subwiki"), true);
+        verify(this.viewTokens).invalidate();
+    }
+
+    @Test
+    public void onWikiOwnerUpdated() throws Exception
+    {
+        BaseObject originalDescriptor = mock(BaseObject.class);
+        when(originalDescriptor.getStringValue("owner")).thenReturn("xwiki:XWiki.Alice");
+        XWikiDocument originalDocument = mock(XWikiDocument.class);
+        when(originalDocument.getXObject(any(EntityReference.class))).thenReturn(originalDescriptor);
+
+        BaseObject descriptor = mock(BaseObject.class);
+        when(descriptor.getStringValue("owner")).thenReturn("xwiki:XWiki.Bob");
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+        when(document.getLocale()).thenReturn(Locale.ROOT);
+        when(document.getXObject(any(EntityReference.class))).thenReturn(descriptor);
+
+        DocumentReference documentReference = new DocumentReference("xwiki", "XWiki", "XWikiServerSubwiki");
+        when(document.getDocumentReference()).thenReturn(documentReference);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, mock(XWikiContext.class));
+
+        verify(this.indexer).index(documentReference, false);
+        verify(this.indexer).index(new WikiReference("subwiki"), true);
+        verify(this.viewTokens).invalidate();
+    }
+
+    @Test
+    public void onWikiDescriptorUpdatedWithoutOwnerChange() throws Exception
+    {
+        BaseObject descriptor = mock(BaseObject.class);
+        when(descriptor.getStringValue("owner")).thenReturn("xwiki:XWiki.Alice");
+        XWikiDocument originalDocument = mock(XWikiDocument.class);
+        when(originalDocument.getXObject(any(EntityReference.class))).thenReturn(descriptor);
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+        when(document.getLocale()).thenReturn(Locale.ROOT);
+        when(document.getXObject(any(EntityReference.class))).thenReturn(descriptor);
+
+        DocumentReference documentReference = new DocumentReference("xwiki", "XWiki", "XWikiServerSubwiki");
+        when(document.getDocumentReference()).thenReturn(documentReference);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, mock(XWikiContext.class));
+
+        verify(this.indexer, times(1)).index(any(EntityReference.class), any(Boolean.class));
+        verify(this.indexer).index(documentReference, false);
+        verify(this.viewTokens, never()).invalidate();
+    }
+
+    @Test
+    public void onWikiPreferencesUpdatedWithoutRightsChange() throws Exception
+    {
+        XWikiDocument originalDocument = mock(XWikiDocument.class);
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+        when(document.getLocale()).thenReturn(Locale.ROOT);
+
+        DocumentReference documentReference = new DocumentReference("wiki", "XWiki", "XWikiPreferences");
+        when(document.getDocumentReference()).thenReturn(documentReference);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, mock(XWikiContext.class));
+
+        verify(this.indexer, times(1)).index(any(EntityReference.class), any(Boolean.class));
+        verify(this.indexer).index(documentReference, false);
+    }
+
+    @Test
+    public void onAttachmentDeleted() throws Exception
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getOriginalDocument()).thenReturn(document);
+        XWikiAttachment attachment = mock(XWikiAttachment.class);
+        when(document.getAttachment("file.txt")).thenReturn(attachment);
+        AttachmentReference attachmentReference =
+            new AttachmentReference("file.txt", new DocumentReference("wiki", "Space", "Page"));
+        when(attachment.getReference()).thenReturn(attachmentReference);
+
+        this.mocker.getComponentUnderTest().onEvent(new AttachmentDeletedEvent("wiki:Space.Page", "file.txt"),
+            document, null);
+
+        verify(this.indexer).delete(attachmentReference, false);
+        verify(this.attachmentTextCache).remove(attachmentReference);
+    }
 }
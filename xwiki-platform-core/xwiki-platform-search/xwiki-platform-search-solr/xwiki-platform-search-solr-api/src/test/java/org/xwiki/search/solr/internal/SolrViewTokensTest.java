@@ -0,0 +1,221 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.inject.Named;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.search.solr.internal.api.FieldUtils;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.group.GroupManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.test.MockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.InjectMockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SolrViewTokens}.
+ *
+ * @version $Id$
+ */
+@OldcoreTest
+@ReferenceComponentList
+public class SolrViewTokensTest
+{
+    private static final LocalDocumentReference RIGHTS_CLASS = new LocalDocumentReference("XWiki", "XWikiRights");
+
+    private static final LocalDocumentReference GLOBAL_RIGHTS_CLASS =
+        new LocalDocumentReference("XWiki", "XWikiGlobalRights");
+
+    private static final DocumentReference DOCUMENT = new DocumentReference("xwiki", "Space", "Page");
+
+    private static final DocumentReference SPACE_PREFERENCES =
+        new DocumentReference("xwiki", "Space", "WebPreferences");
+
+    private static final DocumentReference WIKI_PREFERENCES =
+        new DocumentReference("xwiki", "XWiki", "XWikiPreferences");
+
+    private static final String OWNER = "xwiki:XWiki.Owner";
+
+    @InjectMockitoOldcore
+    private MockitoOldcore oldcore;
+
+    @InjectMockComponents
+    private SolrViewTokens viewTokens;
+
+    @MockComponent
+    @Named("user")
+    private DocumentReferenceResolver<String> userResolver;
+
+    @MockComponent
+    private GroupManager groupManager;
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        when(this.userResolver.resolve(anyString(), any())).then(invocation -> {
+            String user = invocation.getArgument(0);
+            String wiki = invocation.<WikiReference>getArgument(1).getName();
+            if (user.contains(":")) {
+                wiki = StringUtils.substringBefore(user, ":");
+                user = StringUtils.substringAfter(user, ":");
+            }
+
+            return new DocumentReference(wiki, "XWiki", StringUtils.substringAfter(user, "."));
+        });
+
+        doReturn(OWNER).when(this.oldcore.getSpyXWiki()).getWikiOwner(eq("xwiki"), any(XWikiContext.class));
+    }
+
+    private void addRule(DocumentReference documentReference, LocalDocumentReference rightsClass, String levels,
+        String users, String groups) throws Exception
+    {
+        XWikiContext xcontext = this.oldcore.getXWikiContext();
+
+        XWikiDocument document = xcontext.getWiki().getDocument(documentReference, xcontext);
+        BaseObject rule = document.newXObject(rightsClass, xcontext);
+        rule.setIntValue("allow", 1);
+        rule.setStringValue("levels", levels);
+        rule.setStringValue("users", users);
+        rule.setStringValue("groups", groups);
+        xcontext.getWiki().saveDocument(document, xcontext);
+    }
+
+    private Set<String> tokens(String... tokens)
+    {
+        return new LinkedHashSet<>(Arrays.asList(tokens));
+    }
+
+    @Test
+    public void getDocumentTokensWithoutRights() throws Exception
+    {
+        assertEquals(Collections.singleton(SolrViewTokens.EVERYONE), this.viewTokens.getDocumentTokens(DOCUMENT));
+    }
+
+    @Test
+    public void getDocumentTokensInheritedFromWiki() throws Exception
+    {
+        addRule(WIKI_PREFERENCES, GLOBAL_RIGHTS_CLASS, "view", "", "XWiki.XWikiAllGroup,XWiki.Readers");
+
+        assertEquals(tokens(SolrViewTokens.ALLGROUP, "xwiki:XWiki.Readers", OWNER),
+            this.viewTokens.getDocumentTokens(DOCUMENT));
+    }
+
+    @Test
+    public void getDocumentTokensWhenTheClosestLevelRestrictsView() throws Exception
+    {
+        addRule(WIKI_PREFERENCES, GLOBAL_RIGHTS_CLASS, "view", "", "XWiki.WikiReaders");
+        addRule(SPACE_PREFERENCES, GLOBAL_RIGHTS_CLASS, "view", "", "XWiki.SpaceReaders");
+        addRule(DOCUMENT, RIGHTS_CLASS, "view", "XWiki.Reader,XWiki.XWikiGuest", "");
+
+        // The translations share the rights of the default translation
+        assertEquals(tokens("xwiki:XWiki.Reader", SolrViewTokens.GUEST, OWNER),
+            this.viewTokens.getDocumentTokens(new DocumentReference(DOCUMENT, Locale.FRENCH)));
+    }
+
+    @Test
+    public void getDocumentTokensWithInheritanceOverridingRights() throws Exception
+    {
+        addRule(WIKI_PREFERENCES, GLOBAL_RIGHTS_CLASS, "admin", "", "XWiki.Admins");
+        addRule(WIKI_PREFERENCES, GLOBAL_RIGHTS_CLASS, "view", "", "XWiki.WikiReaders");
+        addRule(DOCUMENT, RIGHTS_CLASS, "view", "XWiki.Reader", "");
+
+        assertEquals(tokens("xwiki:XWiki.Reader", "xwiki:XWiki.Admins", OWNER),
+            this.viewTokens.getDocumentTokens(DOCUMENT));
+    }
+
+    @Test
+    public void getDocumentTokensInSubwiki() throws Exception
+    {
+        doReturn("subwiki:XWiki.SubOwner").when(this.oldcore.getSpyXWiki()).getWikiOwner(eq("subwiki"),
+            any(XWikiContext.class));
+
+        DocumentReference document = new DocumentReference("subwiki", "Space", "Page");
+        addRule(document, RIGHTS_CLASS, "view", "XWiki.Reader", "");
+        // The rights of the main wiki also apply to subwikis
+        addRule(WIKI_PREFERENCES, GLOBAL_RIGHTS_CLASS, "admin", "", "XWiki.Admins");
+
+        assertEquals(tokens("subwiki:XWiki.Reader", "xwiki:XWiki.Admins", "subwiki:XWiki.SubOwner", OWNER),
+            this.viewTokens.getDocumentTokens(document));
+    }
+
+    @Test
+    public void getDocumentTokensIsCachedUntilInvalidated() throws Exception
+    {
+        addRule(DOCUMENT, RIGHTS_CLASS, "view", "XWiki.Reader", "");
+
+        Set<String> tokens = this.viewTokens.getDocumentTokens(DOCUMENT);
+
+        assertSame(tokens, this.viewTokens.getDocumentTokens(DOCUMENT));
+
+        addRule(DOCUMENT, RIGHTS_CLASS, "view", "XWiki.OtherReader", "");
+
+        assertSame(tokens, this.viewTokens.getDocumentTokens(DOCUMENT));
+
+        this.viewTokens.invalidate();
+
+        Set<String> newTokens = this.viewTokens.getDocumentTokens(DOCUMENT);
+        assertNotSame(tokens, newTokens);
+        assertEquals(tokens("xwiki:XWiki.Reader", "xwiki:XWiki.OtherReader", OWNER), newTokens);
+    }
+
+    @Test
+    public void getFilterQuery() throws Exception
+    {
+        DocumentReference user = new DocumentReference("xwiki", "XWiki", "User");
+        when(this.groupManager.getGroups(eq(user), any(), eq(true)))
+            .thenReturn(Arrays.asList(new DocumentReference("xwiki", "XWiki", "Group")));
+
+        String noTokens = "(*:* -" + FieldUtils.VIEW_TOKENS + ":[* TO *]) OR ";
+
+        assertEquals(noTokens + FieldUtils.VIEW_TOKENS + ":(everyone OR allgroup OR xwiki\\:XWiki.User OR "
+            + "xwiki\\:XWiki.Group)", this.viewTokens.getFilterQuery(user));
+        assertEquals(noTokens + FieldUtils.VIEW_TOKENS + ":(everyone OR guest)",
+            this.viewTokens.getFilterQuery(new DocumentReference("xwiki", "XWiki", "XWikiGuest")));
+        assertNull(this.viewTokens.getFilterQuery(new DocumentReference("xwiki", "XWiki", "superadmin")));
+    }
+}
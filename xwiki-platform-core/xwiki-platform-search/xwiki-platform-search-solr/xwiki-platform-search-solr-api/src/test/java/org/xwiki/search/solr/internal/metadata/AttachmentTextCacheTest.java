@@ -0,0 +1,196 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.AttachmentReference;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
+import org.xwiki.search.solr.internal.job.IndexerJobStatus;
+import org.xwiki.search.solr.internal.job.IndexerRequest;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link AttachmentTextCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+public class AttachmentTextCacheTest
+{
+    private static final File DIRECTORY = new File("target/test-attachmenttextcache");
+
+    @MockComponent
+    private Environment environment;
+
+    @MockComponent
+    private SolrConfiguration configuration;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> serializer;
+
+    @MockComponent
+    private Provider<XWikiContext> xcontextProvider;
+
+    @MockComponent
+    private Execution execution;
+
+    @InjectMockComponents
+    private AttachmentTextCache cache;
+
+    private XWikiContext xcontext = mock(XWikiContext.class);
+
+    private XWikiAttachment attachment = mock(XWikiAttachment.class);
+
+    private AttachmentReference attachmentReference =
+        new AttachmentReference("file.pdf", new DocumentReference("wiki", "Space", "Page"));
+
+    private AtomicInteger extractions = new AtomicInteger();
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        FileUtils.deleteDirectory(DIRECTORY);
+
+        when(this.environment.getPermanentDirectory()).thenReturn(DIRECTORY);
+        when(this.configuration.getIndexerAttachmentTextCacheSize()).thenReturn(1L);
+        when(this.xcontextProvider.get()).thenReturn(this.xcontext);
+        when(this.serializer.serialize(this.attachmentReference)).thenReturn("wiki:Space.Page@file.pdf");
+
+        when(this.attachment.getReference()).thenReturn(this.attachmentReference);
+        when(this.attachment.getVersion()).thenReturn("1.1");
+        setContent("content");
+    }
+
+    private void setContent(String content) throws Exception
+    {
+        when(this.attachment.getContentInputStream(this.xcontext))
+            .thenAnswer(invocation -> new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String getText() throws Exception
+    {
+        return this.cache.getText(this.attachment, in -> {
+            this.extractions.incrementAndGet();
+            // Only read the beginning of the content, like Tika does with long documents
+            return "text of " + (char) in.read();
+        });
+    }
+
+    @Test
+    public void getTextTwice() throws Exception
+    {
+        assertTrue(this.cache.isEnabled());
+
+        assertEquals("text of c", getText());
+        assertEquals("text of c", getText());
+
+        assertEquals(1, this.extractions.get());
+        assertEquals(1, this.cache.getHits());
+        assertEquals(1, this.cache.getMisses());
+        assertTrue(this.cache.getSize() > 0);
+    }
+
+    @Test
+    public void getTextOnBehalfOfJob() throws Exception
+    {
+        // Not counted for the job
+        getText();
+
+        IndexerJobStatus jobStatus = new IndexerJobStatus(new IndexerRequest(), null, null);
+        ExecutionContext econtext = new ExecutionContext();
+        econtext.setProperty(IndexerJobStatus.CONTEXT_KEY, jobStatus);
+        when(this.execution.getContext()).thenReturn(econtext);
+
+        getText();
+        setContent("modified");
+        getText();
+
+        assertEquals(1, jobStatus.getAttachmentTextCacheHits());
+        assertEquals(1, jobStatus.getAttachmentTextCacheMisses());
+    }
+
+    @Test
+    public void getTextAfterContentChange() throws Exception
+    {
+        assertEquals("text of c", getText());
+
+        // Same version but a different content
+        setContent("modified");
+        assertEquals("text of m", getText());
+
+        // New version
+        when(this.attachment.getVersion()).thenReturn("2.1");
+        assertEquals("text of m", getText());
+
+        assertEquals(3, this.extractions.get());
+        // Only the latest version is kept
+        assertEquals(1, new File(DIRECTORY, "cache/solr/attachments").list().length);
+    }
+
+    @Test
+    public void remove() throws Exception
+    {
+        getText();
+
+        this.cache.remove(this.attachmentReference);
+
+        assertEquals(0, this.cache.getSize());
+        assertEquals("text of c", getText());
+        assertEquals(2, this.extractions.get());
+    }
+
+    @Test
+    public void disabled() throws Exception
+    {
+        when(this.configuration.getIndexerAttachmentTextCacheSize()).thenReturn(0L);
+
+        assertEquals("text of c", getText());
+        assertEquals("text of c", getText());
+
+        assertEquals(2, this.extractions.get());
+        assertEquals(0, this.cache.getMisses());
+        assertFalse(new File(DIRECTORY, "cache/solr/attachments").exists());
+    }
+}
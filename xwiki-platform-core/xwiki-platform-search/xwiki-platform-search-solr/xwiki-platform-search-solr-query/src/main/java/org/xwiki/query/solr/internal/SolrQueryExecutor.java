@@ -44,6 +44,7 @@
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryExecutor;
 import org.xwiki.query.SecureQuery;
+import org.xwiki.search.solr.internal.SolrViewTokens;
 import org.xwiki.search.solr.internal.api.SolrInstance;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
@@ -105,6 +106,9 @@ public class SolrQueryExecutor implements QueryExecutor
     @Inject
     private JobProgressManager progress;
 
+    @Inject
+    private SolrViewTokens viewTokens;
+
     @Override
     public <T> List<T> execute(Query query) throws QueryException
     {
@@ -115,7 +119,8 @@ public <T> List<T> execute(Query query) throws QueryException
             this.progress.startStep(query, "query.solr.progress.execute.prepare", "Prepare");
 
             SolrInstance solrInstance = solrInstanceProvider.get();
-            SolrQuery solrQuery = createSolrQuery(query);
+            List<DocumentReference> usersToCheck = getUsersToCheck(query);
+            SolrQuery solrQuery = createSolrQuery(query, usersToCheck);
 
             this.progress.startStep(query, "query.solr.progress.execute.execute", "Execute");
 
@@ -123,25 +128,9 @@ public <T> List<T> execute(Query query) throws QueryException
 
             this.progress.startStep(query, "query.solr.progress.execute.filter", "Filter");
 
-            // Check access rights need to be checked before returning the response.
-            // FIXME: this is not really the best way, mostly because at this point all grouping operations
-            // have already been performed and any change on the result will not ensure that the grouping
-            // information (facets, highlighting, maxScore, etc.) is still relevant.
-            // A better way would be using a PostFilter as described in this article:
-            // http://java.dzone.com/articles/custom-security-filtering-solr
-            // Basically, we would be asking
-            List<DocumentReference> usersToCheck = new ArrayList<>(2);
-            if (query instanceof SecureQuery) {
-                if (((SecureQuery) query).isCurrentUserChecked()) {
-                    usersToCheck.add(xcontextProvider.get().getUserReference());
-                }
-                if (((SecureQuery) query).isCurrentAuthorChecked()) {
-                    usersToCheck.add(xcontextProvider.get().getAuthorReference());
-                }
-            } else {
-                usersToCheck.add(xcontextProvider.get().getUserReference());
-                usersToCheck.add(xcontextProvider.get().getAuthorReference());
-            }
+            // The view tokens filter query only excludes the documents the users are certainly not allowed to see
+            // (and it's not applied to documents indexed before the view tokens were introduced) so access rights
+            // still need to be checked before returning the response.
             if (!usersToCheck.isEmpty()) {
                 filterResponse(response, usersToCheck);
             }
@@ -155,7 +144,25 @@ public <T> List<T> execute(Query query) throws QueryException
         }
     }
 
-    private SolrQuery createSolrQuery(Query query)
+    private List<DocumentReference> getUsersToCheck(Query query)
+    {
+        List<DocumentReference> usersToCheck = new ArrayList<>(2);
+        if (query instanceof SecureQuery) {
+            if (((SecureQuery) query).isCurrentUserChecked()) {
+                usersToCheck.add(xcontextProvider.get().getUserReference());
+            }
+            if (((SecureQuery) query).isCurrentAuthorChecked()) {
+                usersToCheck.add(xcontextProvider.get().getAuthorReference());
+            }
+        } else {
+            usersToCheck.add(xcontextProvider.get().getUserReference());
+            usersToCheck.add(xcontextProvider.get().getAuthorReference());
+        }
+
+        return usersToCheck;
+    }
+
+    private SolrQuery createSolrQuery(Query query, List<DocumentReference> usersToCheck)
     {
         SolrQuery solrQuery = new SolrQuery(query.getStatement());
 
@@ -191,6 +198,14 @@ private SolrQuery createSolrQuery(Query query)
                 StringUtils.join(xcontext.getWiki().getAvailableLocales(xcontext), ","));
         }
 
+        // Let Solr exclude the documents the users are not allowed to view so that pagination and counts are right.
+        for (DocumentReference user : usersToCheck) {
+            String filterQuery = this.viewTokens.getFilterQuery(user);
+            if (filterQuery != null) {
+                solrQuery.addFilterQuery(filterQuery);
+            }
+        }
+
         return solrQuery;
     }
 
@@ -34,6 +34,7 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.xwiki.component.internal.ContextComponentManagerProvider;
@@ -46,6 +47,7 @@
 import org.xwiki.query.internal.DefaultQueryExecutorManager;
 import org.xwiki.query.internal.DefaultQueryManager;
 import org.xwiki.query.solr.internal.SolrQueryExecutor;
+import org.xwiki.search.solr.internal.SolrViewTokens;
 import org.xwiki.search.solr.internal.api.SolrInstance;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
@@ -61,6 +63,7 @@
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -232,4 +235,27 @@ public void filterResponse() throws Exception
         results = ((QueryResponse) this.componentManager.getComponentUnderTest().execute(query).get(0)).getResults();
         assertEquals(Arrays.asList(alice, bob), results);
     }
+
+    @Test
+    public void filterQueryFromViewTokens() throws Exception
+    {
+        SolrViewTokens viewTokens = this.componentManager.getInstance(SolrViewTokens.class);
+
+        DocumentReference currentUserReference = new DocumentReference("xwiki", "XWiki", "currentuser");
+        this.oldCore.getXWikiContext().setUserReference(currentUserReference);
+        when(viewTokens.getFilterQuery(currentUserReference)).thenReturn("viewtokens_string:(everyone)");
+
+        QueryResponse response = mock(QueryResponse.class);
+        when(response.getResults()).thenReturn(new SolrDocumentList());
+        when(this.solr.query(any(SolrParams.class))).thenReturn(response);
+
+        DefaultQuery query = new DefaultQuery("", null);
+        query.checkCurrentUser(true);
+
+        this.componentManager.getComponentUnderTest().execute(query);
+
+        ArgumentCaptor<SolrParams> solrParams = ArgumentCaptor.forClass(SolrParams.class);
+        verify(this.solr).query(solrParams.capture());
+        Assert.assertArrayEquals(new String[] {"viewtokens_string:(everyone)"}, solrParams.getValue().getParams("fq"));
+    }
 }
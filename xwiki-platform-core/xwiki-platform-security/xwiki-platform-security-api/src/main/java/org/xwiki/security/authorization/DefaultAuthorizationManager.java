@@ -19,6 +19,12 @@
  */
 package org.xwiki.security.authorization;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -115,6 +121,46 @@ public boolean hasAccess(Right right, DocumentReference userReference, EntityRef
         }
     }
 
+    @Override
+    public <E extends EntityReference> List<E> filterAccessible(Right right, DocumentReference userReference,
+        Collection<E> entityReferences)
+    {
+        if (isSuperAdmin(userReference)) {
+            return new ArrayList<>(entityReferences);
+        }
+
+        List<E> accessible = new ArrayList<>(entityReferences.size());
+
+        if (right == null || right == Right.ILLEGAL || (!right.isReadOnly() && xwikiBridge.isWikiReadOnly())
+            || (userReference == null && xwikiBridge.needsAuthentication(right))) {
+            return accessible;
+        }
+
+        UserSecurityReference user = securityReferenceFactory.newUserReference(userReference);
+
+        // The accesses resolved on the ancestors of the already evaluated entities, shared with their siblings
+        Map<SecurityReference, SecurityAccess> ancestorAccesses = new HashMap<>();
+
+        for (E entityReference : entityReferences) {
+            try {
+                SecurityAccess securityAccess =
+                    getAccess(user, securityReferenceFactory.newEntityReference(entityReference), ancestorAccesses);
+
+                RuleState access = securityAccess.get(right);
+                logAccess(access, userReference, entityReference, right, "bulk access inquiry", true);
+                if (access == RuleState.ALLOW) {
+                    accessible.add(entityReference);
+                }
+            } catch (Exception e) {
+                this.logger.error(String.format("Failed to load rights for user [%s] on [%s].",
+                    (userReference == null) ? AuthorizationException.NULL_USER : userReference,
+                    (entityReference == null) ? AuthorizationException.NULL_ENTITY : entityReference), e);
+            }
+        }
+
+        return accessible;
+    }
+
     /**
      * Verifies if the user identified by {@code userReference} has the access identified by {@code right} on the
      * entity identified by {@code entityReference}. Note that some rights may be checked higher in hierarchy of the
@@ -199,7 +245,38 @@ public Right register(RightDescription rightDescription) throws UnableToRegister
     private SecurityAccess getAccess(UserSecurityReference user, SecurityReference entity)
         throws AuthorizationException
     {
+        return getAccess(user, entity, null);
+    }
+
+    /**
+     * Obtain the access for the user on the given entity and load it into the cache if unavailable.
+     *
+     * @param user The user identity.
+     * @param entity The entity.  May be of type DOCUMENT, WIKI, or SPACE.
+     * @param ancestorAccesses the accesses already resolved on ancestors of other entities, completed with the
+     *            ancestors of this entity, null if the accesses should not be shared between entities
+     * @return the cached access entry.
+     * @exception org.xwiki.security.authorization.AuthorizationException if an error occurs
+     */
+    private SecurityAccess getAccess(UserSecurityReference user, SecurityReference entity,
+        Map<SecurityReference, SecurityAccess> ancestorAccesses) throws AuthorizationException
+    {
+        // The ancestors without any rule, which inherit the access of their own ancestors
+        List<SecurityReference> inheritingAncestors = new ArrayList<>();
+
         for (SecurityReference ref = entity; ref != null; ref = ref.getParentSecurityReference()) {
+            if (ancestorAccesses != null && ref != entity) {
+                SecurityAccess access = ancestorAccesses.get(ref);
+                if (access != null) {
+                    shareAccess(access, inheritingAncestors, ancestorAccesses);
+
+                    logger.debug("0. Got shared entry for user {} on {}: [{}]", user, entity, access);
+
+                    return access;
+                }
+
+                inheritingAncestors.add(ref);
+            }
             if (Right.getEnabledRights(ref.getSecurityType()).isEmpty()) {
                 // Skip search on entity types that will obviously have empty/useless list of rules.
                 continue;
@@ -223,6 +300,10 @@ private SecurityAccess getAccess(UserSecurityReference user, SecurityReference e
                 } else {
                     SecurityAccess access = accessEntry.getAccess();
 
+                    if (ancestorAccesses != null && ref != entity) {
+                        shareAccess(access, inheritingAncestors, ancestorAccesses);
+                    }
+
                     logger.debug("3. Got entry for user {} on {} from cache: [{}]", user, entity, access);
 
                     return access;
@@ -237,6 +318,21 @@ private SecurityAccess getAccess(UserSecurityReference user, SecurityReference e
         return access;
     }
 
+    /**
+     * Remember the access resolved for a set of ancestors so that it can be reused for the siblings of the entity.
+     *
+     * @param access the access resolved for the ancestors
+     * @param ancestors the ancestors
+     * @param ancestorAccesses the already shared accesses
+     */
+    private void shareAccess(SecurityAccess access, List<SecurityReference> ancestors,
+        Map<SecurityReference, SecurityAccess> ancestorAccesses)
+    {
+        for (SecurityReference ancestor : ancestors) {
+            ancestorAccesses.put(ancestor, access);
+        }
+    }
+
     /**
      * Log access conclusion.
      * @param access The ALLOW or DENY state
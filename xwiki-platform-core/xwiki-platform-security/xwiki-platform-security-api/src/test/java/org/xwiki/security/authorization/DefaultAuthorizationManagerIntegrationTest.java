@@ -21,8 +21,10 @@
 package org.xwiki.security.authorization;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -70,6 +72,7 @@
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -797,4 +800,31 @@ public void testLoadUserInAnotherWikiAfterUserDoc() throws Exception
                 securityReferenceFactory.newEntityReference(getDoc("any document", "any space", "subwiki"))),
             nullValue());
     }
+
+    @Test
+    public void testFilterAccessible() throws Exception
+    {
+        initialiseWikiMock("inheritancePolicyForGlobalFullWikiAccess");
+
+        List<DocumentReference> documents = Arrays.asList(getXDoc("any document", "any space"),
+            getXDoc("any document", "spaceAllowA"), getXDoc("docDenyA", "spaceAllowA"),
+            getXDoc("docAllowA", "any space"), getXDoc("another document", "any space"),
+            getXDoc("another document", "spaceAllowA"), getDoc("any document", "any space", "wikiAllowA"));
+
+        List<DocumentReference> expected = new ArrayList<>();
+        for (DocumentReference document : documents) {
+            if (authorizationManager.hasAccess(VIEW, getXUser("userA"), document)) {
+                expected.add(document);
+            }
+        }
+
+        assertEquals(Arrays.asList(getXDoc("any document", "spaceAllowA"), getXDoc("docDenyA", "spaceAllowA"),
+            getXDoc("docAllowA", "any space"), getXDoc("another document", "spaceAllowA"),
+            getDoc("any document", "any space", "wikiAllowA")), expected);
+        assertEquals(expected, authorizationManager.filterAccessible(VIEW, getXUser("userA"), documents));
+
+        assertEquals(documents, authorizationManager.filterAccessible(VIEW, SUPERADMIN, documents));
+        assertEquals(Collections.emptyList(), authorizationManager.filterAccessible(ILLEGAL, getXUser("userA"),
+            documents));
+    }
 }